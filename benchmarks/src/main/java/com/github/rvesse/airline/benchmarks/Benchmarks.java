@@ -0,0 +1,30 @@
+package com.github.rvesse.airline.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for running the benchmarks
+ * <p>
+ * Accepts the usual JMH command line options, e.g. a regular expression to
+ * select benchmarks or {@code -p} to restrict parameter values, and always
+ * enables the GC profiler so allocation rates are reported alongside
+ * throughput.
+ * </p>
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        //@formatter:off
+        Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                                              .addProfiler(GCProfiler.class)
+                                              .build();
+        //@formatter:on
+        new Runner(options).run();
+    }
+}
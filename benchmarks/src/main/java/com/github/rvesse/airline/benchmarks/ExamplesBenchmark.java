@@ -0,0 +1,96 @@
+package com.github.rvesse.airline.benchmarks;
+
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.TestGalaxyCommandLineParser;
+import com.github.rvesse.airline.TestGalaxyCommandLineParser.GalaxyCommand;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.examples.cli.AbbreviationCli;
+import com.github.rvesse.airline.examples.cli.GroupCli;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing realistic command lines with the example CLIs and the
+ * Galaxy CLI from the test suite
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExamplesBenchmark {
+
+    @Param({ "group", "abbreviation", "galaxy" })
+    public String cli;
+
+    private Cli<?> parser;
+    private String[] args;
+
+    @Setup
+    public void setup() {
+        switch (cli) {
+        case "group":
+            parser = GroupCli.createCli();
+            args = new String[] { "inheritance", "good-grandchild", "--parent", "--child", "1.5" };
+            break;
+        case "abbreviation":
+            parser = AbbreviationCli.createCli();
+            args = new String[] { "inh", "good", "--par", "--chi", "1.5" };
+            break;
+        case "galaxy":
+            parser = createGalaxyCli();
+            args = new String[] { "--debug", "ssh", "-u", "b2", "--state", "r", "tail -F var/log/launcher.log" };
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown CLI " + cli);
+        }
+        // Fail fast if the arguments are not valid for the CLI
+        parser.parse(args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cli<GalaxyCommand> createGalaxyCli() {
+        // Same as the CLI in TestGalaxyCommandLineParser
+        //@formatter:off
+        CliBuilder<GalaxyCommand> builder = Cli.<GalaxyCommand> builder("galaxy")
+                .withDescription("cloud management system")
+                .withDefaultCommand(TestGalaxyCommandLineParser.HelpCommand.class)
+                .withCommands(TestGalaxyCommandLineParser.HelpCommand.class,
+                              TestGalaxyCommandLineParser.ShowCommand.class,
+                              TestGalaxyCommandLineParser.InstallCommand.class,
+                              TestGalaxyCommandLineParser.UpgradeCommand.class,
+                              TestGalaxyCommandLineParser.TerminateCommand.class,
+                              TestGalaxyCommandLineParser.StartCommand.class,
+                              TestGalaxyCommandLineParser.StopCommand.class,
+                              TestGalaxyCommandLineParser.RestartCommand.class,
+                              TestGalaxyCommandLineParser.SshCommand.class,
+                              TestGalaxyCommandLineParser.ResetToActualCommand.class);
+
+        builder.withGroup("agent")
+                .withDescription("Manage agents")
+                .withDefaultCommand(TestGalaxyCommandLineParser.AgentShowCommand.class)
+                .withCommands(TestGalaxyCommandLineParser.AgentShowCommand.class,
+                              TestGalaxyCommandLineParser.AgentAddCommand.class,
+                              TestGalaxyCommandLineParser.AgentTerminateCommand.class);
+        //@formatter:on
+
+        return builder.build();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return parser.parse(args);
+    }
+}
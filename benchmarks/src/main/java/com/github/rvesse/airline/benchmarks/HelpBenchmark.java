@@ -0,0 +1,86 @@
+package com.github.rvesse.airline.benchmarks;
+
+import com.github.rvesse.airline.help.CommandUsageGenerator;
+import com.github.rvesse.airline.help.GlobalUsageGenerator;
+import com.github.rvesse.airline.help.cli.CliCommandUsageGenerator;
+import com.github.rvesse.airline.help.cli.CliGlobalUsageGenerator;
+import com.github.rvesse.airline.help.cli.bash.BashCompletionGenerator;
+import com.github.rvesse.airline.model.CommandGroupMetadata;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks help and completion generation, these are dominated by
+ * {@link com.github.rvesse.airline.help.UsagePrinter} and the bash completion
+ * script generation respectively
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpBenchmark {
+
+    @Param({ "10", "100" })
+    public int commands;
+
+    @Param({ "0", "10" })
+    public int groups;
+
+    @Param({ "5", "50" })
+    public int options;
+
+    private GlobalMetadata metadata;
+    private CommandGroupMetadata group;
+    private CommandMetadata command;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final CommandUsageGenerator commandUsage = new CliCommandUsageGenerator();
+    private final GlobalUsageGenerator globalUsage = new CliGlobalUsageGenerator();
+    private final GlobalUsageGenerator completion = new BashCompletionGenerator();
+
+    @Setup
+    public void setup() {
+        SyntheticCli cli = new SyntheticCli(commands, groups, options, 1, false, false);
+        metadata = cli.getMetadata();
+        group = cli.getTargetGroup();
+        command = cli.getTargetCommand();
+    }
+
+    @Benchmark
+    public int commandUsage() throws IOException {
+        output.reset();
+        commandUsage.usage(metadata.getName(), group != null ? group.getName() : null, command.getName(), command,
+                output);
+        return output.size();
+    }
+
+    @Benchmark
+    public int globalUsage() throws IOException {
+        output.reset();
+        globalUsage.usage(metadata, output);
+        return output.size();
+    }
+
+    @Benchmark
+    public int bashCompletion() throws IOException {
+        output.reset();
+        completion.usage(metadata, output);
+        return output.size();
+    }
+}
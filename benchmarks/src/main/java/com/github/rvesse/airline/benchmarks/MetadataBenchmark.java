@@ -0,0 +1,73 @@
+package com.github.rvesse.airline.benchmarks;
+
+import com.github.rvesse.airline.TestGalaxyCommandLineParser;
+import com.github.rvesse.airline.examples.inheritance.GoodGrandchild;
+import com.github.rvesse.airline.examples.simple.Simple;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.InjectionMetadata;
+import com.github.rvesse.airline.model.MetadataLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading command metadata
+ * <p>
+ * {@link MetadataLoader#loadCommand(Class)} caches the metadata per class so
+ * the cost of inspecting the command via reflection is measured separately by
+ * {@link #inspect()}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Param({ "simple", "good-grandchild", "galaxy-install", "galaxy-agent-add" })
+    public String command;
+
+    private Class<?> commandType;
+
+    @Setup
+    public void setup() {
+        switch (command) {
+        case "simple":
+            commandType = Simple.class;
+            break;
+        case "good-grandchild":
+            commandType = GoodGrandchild.class;
+            break;
+        case "galaxy-install":
+            commandType = TestGalaxyCommandLineParser.InstallCommand.class;
+            break;
+        case "galaxy-agent-add":
+            commandType = TestGalaxyCommandLineParser.AgentAddCommand.class;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown command " + command);
+        }
+    }
+
+    @Benchmark
+    public CommandMetadata loadCommand() {
+        return MetadataLoader.loadCommand(commandType);
+    }
+
+    @Benchmark
+    public InjectionMetadata inspect() {
+        return MetadataLoader.loadInjectionMetadata(commandType);
+    }
+}
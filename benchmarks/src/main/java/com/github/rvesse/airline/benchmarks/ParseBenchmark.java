@@ -0,0 +1,94 @@
+package com.github.rvesse.airline.benchmarks;
+
+import com.github.rvesse.airline.benchmarks.SyntheticCli.SyntheticCommand;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.parser.ParseState;
+import com.github.rvesse.airline.parser.Parser;
+import com.github.rvesse.airline.parser.ParserUtil;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing and injection over synthetic CLIs of varying shape
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({ "10", "100" })
+    public int commands;
+
+    @Param({ "0", "10" })
+    public int groups;
+
+    @Param({ "5", "50" })
+    public int options;
+
+    @Param({ "0", "10" })
+    public int arguments;
+
+    @Param({ "false", "true" })
+    public boolean abbreviation;
+
+    @Param({ "false", "true" })
+    public boolean aliases;
+
+    private GlobalMetadata metadata;
+    private List<String> args;
+    private Parser parser;
+    private ParseState state;
+    private Map<Class<?>, Object> bindings;
+
+    @Setup
+    public void setup() {
+        SyntheticCli cli = new SyntheticCli(commands, groups, options, arguments, abbreviation, aliases);
+        metadata = cli.getMetadata();
+        args = cli.getArgs();
+        parser = new Parser();
+        state = parser.parse(metadata, args);
+        if (state.getCommand() != cli.getTargetCommand())
+            throw new IllegalStateException("Arguments did not parse to the expected command");
+        bindings = ImmutableMap.<Class<?>, Object> of(GlobalMetadata.class, metadata);
+    }
+
+    @Benchmark
+    public ParseState parse() {
+        return parser.parse(metadata, args);
+    }
+
+    @Benchmark
+    public SyntheticCommand inject() {
+        return inject(state);
+    }
+
+    @Benchmark
+    public SyntheticCommand parseAndInject() {
+        return inject(parser.parse(metadata, args));
+    }
+
+    private SyntheticCommand inject(ParseState state) {
+        CommandMetadata command = state.getCommand();
+        return ParserUtil.<SyntheticCommand> createInstance(command.getType(), command.getAllOptions(),
+                state.getParsedOptions(), command.getArguments(), state.getParsedArguments(),
+                command.getMetadataInjections(), bindings);
+    }
+}
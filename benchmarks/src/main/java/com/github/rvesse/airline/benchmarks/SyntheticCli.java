@@ -0,0 +1,208 @@
+package com.github.rvesse.airline.benchmarks;
+
+import com.github.rvesse.airline.Accessor;
+import com.github.rvesse.airline.Group;
+import com.github.rvesse.airline.OptionType;
+import com.github.rvesse.airline.model.AliasMetadata;
+import com.github.rvesse.airline.model.ArgumentsMetadata;
+import com.github.rvesse.airline.model.CommandGroupMetadata;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.model.MetadataLoader;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds CLI metadata of an arbitrary size so that benchmarks can be
+ * parameterized by the number of commands, groups, options and arguments
+ * <p>
+ * Since the number of options cannot be varied with annotated classes the
+ * metadata is constructed directly, every option of a command injects into the
+ * same collection field of {@link SyntheticCommand}.
+ * </p>
+ */
+public class SyntheticCli {
+
+    /**
+     * Command class that all synthetic commands are parsed into
+     */
+    public static class SyntheticCommand {
+        public List<String> options;
+
+        public List<String> arguments;
+    }
+
+    private final GlobalMetadata metadata;
+    private final CommandGroupMetadata targetGroup;
+    private final CommandMetadata targetCommand;
+    private final List<String> args;
+
+    /**
+     * Creates a synthetic CLI
+     * 
+     * @param commands
+     *            Number of commands
+     * @param groups
+     *            Number of groups the commands are spread across, if zero all
+     *            commands are top level commands
+     * @param options
+     *            Number of options per command
+     * @param arguments
+     *            Number of arguments passed to the command
+     * @param abbreviation
+     *            Whether command and option abbreviation is enabled
+     * @param aliases
+     *            Whether each command has an alias and the arguments invoke the
+     *            command via its alias
+     */
+    public SyntheticCli(int commands, int groups, int options, int arguments, boolean abbreviation, boolean aliases) {
+        Field optionsField = field("options");
+        Field argumentsField = field("arguments");
+
+        List<CommandMetadata> topLevel = new ArrayList<CommandMetadata>();
+        List<List<CommandMetadata>> grouped = new ArrayList<List<CommandMetadata>>();
+        for (int g = 0; g < groups; g++) {
+            grouped.add(new ArrayList<CommandMetadata>());
+        }
+
+        CommandMetadata command = null;
+        for (int c = 0; c < commands; c++) {
+            ImmutableList.Builder<OptionMetadata> commandOptions = ImmutableList.builder();
+            for (int o = 0; o < options; o++) {
+                //@formatter:off
+                commandOptions.add(new OptionMetadata(OptionType.COMMAND, 
+                                                      ImmutableList.of("--option-" + o), 
+                                                      "option" + o,
+                                                      "Synthetic option " + o, 
+                                                      1, 
+                                                      false, 
+                                                      false, 
+                                                      false, 
+                                                      false, 
+                                                      null, 
+                                                      false, 
+                                                      0, 
+                                                      "",
+                                                      ImmutableList.of(optionsField)));
+                //@formatter:on
+            }
+            ArgumentsMetadata commandArguments = new ArgumentsMetadata(ImmutableList.of("arguments"),
+                    "Synthetic arguments", "", false, Integer.MIN_VALUE, 0, "", ImmutableList.of(argumentsField));
+
+            //@formatter:off
+            command = new CommandMetadata("command-" + c, 
+                                          "Synthetic command " + c, 
+                                          null, 
+                                          null, 
+                                          false,
+                                          ImmutableList.<OptionMetadata> of(), 
+                                          ImmutableList.<OptionMetadata> of(), 
+                                          commandOptions.build(),
+                                          null, 
+                                          commandArguments, 
+                                          ImmutableList.<Accessor> of(), 
+                                          SyntheticCommand.class,
+                                          ImmutableList.<String> of(), 
+                                          ImmutableList.<Group> of(), 
+                                          ImmutableMap.<Integer, String> of());
+            //@formatter:on
+            if (groups == 0) {
+                topLevel.add(command);
+            } else {
+                grouped.get(c % groups).add(command);
+            }
+        }
+        this.targetCommand = command;
+
+        List<CommandGroupMetadata> commandGroups = new ArrayList<CommandGroupMetadata>();
+        CommandGroupMetadata group = null;
+        for (int g = 0; g < groups; g++) {
+            CommandGroupMetadata commandGroup = MetadataLoader.loadCommandGroup("group-" + g, "Synthetic group " + g,
+                    false, null, grouped.get(g));
+            commandGroups.add(commandGroup);
+            if (commandGroup.getCommands().contains(command)) {
+                group = commandGroup;
+            }
+        }
+        this.targetGroup = group;
+
+        List<AliasMetadata> aliasMetadata = new ArrayList<AliasMetadata>();
+        if (aliases) {
+            for (CommandGroupMetadata commandGroup : commandGroups) {
+                for (CommandMetadata groupCommand : commandGroup.getCommands()) {
+                    aliasMetadata.add(new AliasMetadata("alias-" + groupCommand.getName(), ImmutableList.of(
+                            commandGroup.getName(), groupCommand.getName())));
+                }
+            }
+            for (CommandMetadata topLevelCommand : topLevel) {
+                aliasMetadata.add(new AliasMetadata("alias-" + topLevelCommand.getName(), ImmutableList
+                        .of(topLevelCommand.getName())));
+            }
+        }
+
+        this.metadata = MetadataLoader.loadGlobal("synthetic", "Synthetic CLI", null, topLevel, commandGroups,
+                aliasMetadata, false, abbreviation, abbreviation);
+
+        ImmutableList.Builder<String> args = ImmutableList.builder();
+        if (aliases) {
+            args.add("alias-" + command.getName());
+        } else {
+            if (group != null) {
+                args.add(group.getName());
+            }
+            args.add(command.getName());
+        }
+        for (int o = 0; o < options; o++) {
+            args.add("--option-" + o).add("value-" + o);
+        }
+        for (int a = 0; a < arguments; a++) {
+            args.add("argument-" + a);
+        }
+        this.args = args.build();
+    }
+
+    private static Field field(String name) {
+        try {
+            return SyntheticCommand.class.getField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public GlobalMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Gets the group containing the command the arguments invoke
+     * 
+     * @return Group or {@code null} if the command is a top level command
+     */
+    public CommandGroupMetadata getTargetGroup() {
+        return targetGroup;
+    }
+
+    /**
+     * Gets the command the arguments invoke
+     * 
+     * @return Command
+     */
+    public CommandMetadata getTargetCommand() {
+        return targetCommand;
+    }
+
+    /**
+     * Gets the arguments that invoke the last command declared, passing a
+     * value for every option followed by the configured number of arguments
+     * 
+     * @return Arguments
+     */
+    public List<String> getArgs() {
+        return args;
+    }
+}
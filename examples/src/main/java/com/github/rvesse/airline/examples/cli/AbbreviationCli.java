@@ -31,8 +31,17 @@ import com.github.rvesse.airline.examples.simple.Simple;
  */
 public class AbbreviationCli {
 
-    @SuppressWarnings("unchecked")
     public static void main(String[] args) {
+        ExampleExecutor.executeCli(createCli(), args);
+    }
+
+    /**
+     * Creates the CLI with command and option abbreviation enabled
+     * 
+     * @return CLI
+     */
+    @SuppressWarnings("unchecked")
+    public static Cli<ExampleRunnable> createCli() {
         //@formatter:off
         // The program name is cli
         CliBuilder<ExampleRunnable> builder = Cli.<ExampleRunnable>builder("cli")
@@ -55,7 +64,7 @@ public class AbbreviationCli {
         builder.withCommand(Help.class);
         //@formatter:on
 
-        ExampleExecutor.executeCli(builder.build(), args);
+        return builder.build();
     }
 
 }
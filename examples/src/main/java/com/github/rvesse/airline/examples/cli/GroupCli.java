@@ -15,8 +15,18 @@ import com.github.rvesse.airline.examples.simple.Simple;
  */
 public class GroupCli {
     
-    @SuppressWarnings("unchecked")
     public static void main(String[] args) {
+        ExampleExecutor.executeCli(createCli(), args);
+    }
+
+    /**
+     * Creates the CLI, this is separate from {@link #main(String[])} so the CLI
+     * can also be reused e.g. by the benchmarks
+     * 
+     * @return CLI
+     */
+    @SuppressWarnings("unchecked")
+    public static Cli<ExampleRunnable> createCli() {
         //@formatter:off
         // The program name is cli
         CliBuilder<ExampleRunnable> builder = Cli.<ExampleRunnable>builder("cli")
@@ -33,8 +43,8 @@ public class GroupCli {
         // You can still define top level commands as well 
         builder.withCommand(Help.class);
         //@formatter:on
-        
-        ExampleExecutor.executeCli(builder.build(), args);
+
+        return builder.build();
     }
 
 }
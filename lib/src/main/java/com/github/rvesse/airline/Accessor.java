@@ -2,19 +2,29 @@ package com.github.rvesse.airline;
 
 import com.github.rvesse.airline.parser.ParseException;
 import com.github.rvesse.airline.parser.ParserUtil;
+import com.github.rvesse.airline.parser.PrimitiveValues;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
@@ -22,10 +32,24 @@ import java.util.TreeSet;
 
 public class Accessor
 {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class);
+
     private final String name;
     private final Class<?> javaType;
     private final List<Field> path;
     private boolean multiValued;
+    private final boolean streaming;
+    private final boolean array;
+
+    // Compiled form of the path, handles are null where a field could not be
+    // unreflected in which case we fall back to plain reflection
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+    private final MethodHandle[] factories;
+    private final Supplier<Collection<Object>> collectionFactory;
 
     public Accessor(Field... path)
     {
@@ -48,8 +72,60 @@ public class Accessor
 
 
         Field field = this.path.get(this.path.size() - 1);
-        multiValued = Collection.class.isAssignableFrom(field.getType());
+        streaming = Iterable.class.equals(field.getType()) || Iterator.class.equals(field.getType());
+        array = field.getType().isArray();
+        multiValued = streaming || array || Collection.class.isAssignableFrom(field.getType());
         javaType = getItemType(name, field.getGenericType());
+
+        // Compile the path
+        int size = this.path.size();
+        getters = new MethodHandle[size];
+        setters = new MethodHandle[size];
+        factories = new MethodHandle[size];
+        for (int i = 0; i < size; i++) {
+            Field f = this.path.get(i);
+            makeAccessible(f);
+            getters[i] = unreflectGetter(f);
+            setters[i] = unreflectSetter(f);
+            if (i < size - 1) {
+                factories[i] = unreflectFactory(f.getType());
+            }
+        }
+        collectionFactory = multiValued && !streaming ? collectionFactory(field.getType()) : null;
+    }
+
+    /**
+     * Creates an accessor that is not backed by a field path, subclasses must
+     * override {@link #getValue(Object)} and {@link #addValues(Object, Iterable)}
+     * <p>
+     * This is used by the command metadata generated at compile time which
+     * accesses fields directly rather than via reflection.
+     * </p>
+     *
+     * @param name
+     *            Name of the accessor, conventionally the simple name of the
+     *            declaring class followed by the field path
+     * @param javaType
+     *            Java type of the values, for collections and arrays this is
+     *            the item type
+     * @param multiValued
+     *            Whether the field is a collection or an array
+     */
+    protected Accessor(String name, Class<?> javaType, boolean multiValued)
+    {
+        Preconditions.checkNotNull(name, "name is null");
+        Preconditions.checkNotNull(javaType, "javaType is null");
+
+        this.name = name;
+        this.javaType = javaType;
+        this.multiValued = multiValued;
+        this.streaming = false;
+        this.array = false;
+        this.path = ImmutableList.of();
+        this.getters = new MethodHandle[0];
+        this.setters = new MethodHandle[0];
+        this.factories = new MethodHandle[0];
+        this.collectionFactory = null;
     }
 
     public String getName()
@@ -67,25 +143,46 @@ public class Accessor
         return multiValued;
     }
 
-    public Object getValue(Object instance)
+    /**
+     * Gets the path of fields that is followed to reach the field the values
+     * are injected into
+     *
+     * @return Field path, empty if the accessor is not backed by a field path
+     */
+    public List<Field> getPath()
     {
-        StringBuilder pathName = new StringBuilder();
-        for (Field intermediateField : path.subList(0, path.size() - 1)) {
-            if (pathName.length() != 0) {
-                pathName.append(".");
-            }
-            pathName.append(intermediateField.getName());
+        return path;
+    }
+
+    /**
+     * Gets whether the field is an {@link Iterable} or {@link Iterator} that
+     * is bound directly to the values rather than having the values copied
+     * into it
+     * <p>
+     * This allows {@link Arguments} to be streamed, see
+     * {@link com.github.rvesse.airline.parser.StreamedArguments}.
+     * </p>
+     *
+     * @return True if streaming, false otherwise
+     */
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
 
+    public Object getValue(Object instance)
+    {
+        for (int i = 0; i < path.size() - 1; i++) {
             try {
-                Object nextInstance = intermediateField.get(instance);
+                Object nextInstance = get(i, instance);
                 if (nextInstance == null) {
-                    nextInstance = ParserUtil.createInstance(intermediateField.getType());
-                    intermediateField.set(instance, nextInstance);
+                    nextInstance = newInstance(i);
+                    set(i, instance, nextInstance);
                 }
                 instance = nextInstance;
             }
-            catch (Exception e) {
-                throw new ParseException(e, "Error getting value of %s", pathName);
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error getting value of %s", getPathName(i));
             }
         }
         return instance;
@@ -93,6 +190,11 @@ public class Accessor
 
     public void addValues(Object commandInstance, Iterable<?> values)
     {
+        if (streaming) {
+            bindValues(commandInstance, values);
+            return;
+        }
+
         if (Iterables.isEmpty(values)) {
             return;
         }
@@ -100,23 +202,44 @@ public class Accessor
         // get the actual instance
         Object instance = getValue(commandInstance);
 
-        Field field = path.get(path.size() - 1);
-        field.setAccessible(true);
-        if (Collection.class.isAssignableFrom(field.getType())) {
-            Collection<Object> collection = getOrCreateCollectionField(name, instance, field);
+        int last = path.size() - 1;
+        if (array) {
+            setArrayField(instance, values);
+        }
+        else if (multiValued) {
+            Collection<Object> collection = getOrCreateCollectionField(instance);
             Iterables.addAll(collection, values);
         }
         else {
             try {
-                field.set(instance, Iterables.getLast(values));
+                set(last, instance, Iterables.getLast(values));
             }
-            catch (Exception e) {
-                throw new ParseException(e, "Error setting %s for argument %s", field.getName(), name);
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error setting %s for argument %s", path.get(last).getName(), name);
             }
         }
 
     }
 
+    private void bindValues(Object commandInstance, Iterable<?> values)
+    {
+        // Values may only be iterable once so avoid touching them unless we
+        // know they are an ordinary collection
+        if (values instanceof Collection && ((Collection<?>) values).isEmpty()) {
+            return;
+        }
+
+        Object instance = getValue(commandInstance);
+        int last = path.size() - 1;
+        Object value = Iterator.class.equals(path.get(last).getType()) ? values.iterator() : values;
+        try {
+            set(last, instance, value);
+        }
+        catch (Throwable e) {
+            throw new ParseException(asException(e), "Error setting %s for argument %s", path.get(last).getName(), name);
+        }
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -132,6 +255,9 @@ public class Accessor
         if (!path.equals(accessor.path)) {
             return false;
         }
+        if (!name.equals(accessor.name)) {
+            return false;
+        }
 
         return true;
     }
@@ -139,7 +265,7 @@ public class Accessor
     @Override
     public int hashCode()
     {
-        return path.hashCode();
+        return 31 * path.hashCode() + name.hashCode();
     }
 
     @Override
@@ -152,51 +278,231 @@ public class Accessor
     // Private reflection helper methods
     //
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    private static Collection<Object> newCollection(Class<?> type)
+    private Object get(int index, Object instance) throws Throwable
     {
-        if (Collection.class.equals(type) || List.class.equals(type)) {
-            return new ArrayList<Object>();
+        MethodHandle getter = getters[index];
+        if (getter != null) {
+            return (Object) getter.invokeExact(instance);
         }
-        if (Set.class.equals(type)) {
-            return new HashSet<Object>();
+        return path.get(index).get(instance);
+    }
+
+    private void set(int index, Object instance, Object value) throws Throwable
+    {
+        MethodHandle setter = setters[index];
+        if (setter != null) {
+            setter.invokeExact(instance, value);
         }
-        if (SortedSet.class.equals(type)) {
-            return new TreeSet();
+        else {
+            path.get(index).set(instance, value);
         }
+    }
 
-        try {
-            return (Collection<Object>) type.getConstructor().newInstance();
+    private Object newInstance(int index) throws Throwable
+    {
+        MethodHandle factory = factories[index];
+        if (factory != null) {
+            return (Object) factory.invokeExact();
         }
-        catch (Exception ignored) {
+        return ParserUtil.createInstance(path.get(index).getType());
+    }
+
+    private String getPathName(int index)
+    {
+        // Only needed for error messages so computed on demand
+        StringBuilder pathName = new StringBuilder();
+        for (int i = 0; i <= index; i++) {
+            if (pathName.length() != 0) {
+                pathName.append(".");
+            }
+            pathName.append(path.get(i).getName());
         }
+        return pathName.toString();
+    }
+
+    /**
+     * Sets an array field, values are appended to any existing array in the
+     * same way as they are added to an existing collection
+     * <p>
+     * Primitive values of the matching type are copied directly so values
+     * accumulated by the parser without boxing are never boxed.
+     * </p>
+     */
+    private void setArrayField(Object object, Iterable<?> values)
+    {
+        int last = path.size() - 1;
+        Field field = path.get(last);
 
-        throw new ParseException("Parameters of Collection type '%s' are not supported. Please use List or Set instead.", type.getSimpleName());
+        Object array;
+        if (values instanceof PrimitiveValues && ((PrimitiveValues) values).getType() == javaType) {
+            array = ((PrimitiveValues) values).toPrimitiveArray();
+        }
+        else {
+            Collection<?> collection = values instanceof Collection ? (Collection<?>) values : ImmutableList.copyOf(values);
+            array = Array.newInstance(javaType, collection.size());
+            int i = 0;
+            for (Object value : collection) {
+                Array.set(array, i++, value);
+            }
+        }
+
+        try {
+            Object existing = get(last, object);
+            if (existing != null && Array.getLength(existing) > 0) {
+                int length = Array.getLength(existing);
+                Object combined = Array.newInstance(javaType, length + Array.getLength(array));
+                System.arraycopy(existing, 0, combined, 0, length);
+                System.arraycopy(array, 0, combined, length, Array.getLength(array));
+                array = combined;
+            }
+            set(last, object, array);
+        }
+        catch (Throwable e) {
+            throw new ParseException(asException(e), "Error setting array field %s for argument %s", field.getName(), name);
+        }
     }
 
     @SuppressWarnings("unchecked")
-    private static Collection<Object> getOrCreateCollectionField(String name, Object object, Field field)
+    private Collection<Object> getOrCreateCollectionField(Object object)
     {
+        int last = path.size() - 1;
+        Field field = path.get(last);
+
         Collection<Object> collection;
         try {
-            collection = (Collection<Object>) field.get(object);
+            collection = (Collection<Object>) get(last, object);
         }
-        catch (Exception e) {
-            throw new ParseException(e, "Error getting collection field %s for argument %s", field.getName(), name);
+        catch (Throwable e) {
+            throw new ParseException(asException(e), "Error getting collection field %s for argument %s", field.getName(), name);
         }
 
         if (collection == null) {
-            collection = newCollection(field.getType());
+            collection = collectionFactory.get();
             try {
-                field.set(object, collection);
+                set(last, object, collection);
             }
-            catch (Exception e) {
-                throw new ParseException(e, "Error setting collection field %s for argument %s", field.getName(), name);
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error setting collection field %s for argument %s", field.getName(), name);
             }
         }
         return collection;
     }
 
+    private static Exception asException(Throwable e)
+    {
+        if (e instanceof Exception) {
+            return (Exception) e;
+        }
+        throw Throwables.propagate(e);
+    }
+
+    private static void makeAccessible(Field field)
+    {
+        try {
+            field.setAccessible(true);
+        }
+        catch (RuntimeException ignored) {
+            // Unreflecting will fail and we fall back to reflection which
+            // will report the access failure if it matters
+        }
+    }
+
+    private static MethodHandle unreflectGetter(Field field)
+    {
+        if (Modifier.isStatic(field.getModifiers())) {
+            // Rare enough that plain reflection is fine
+            return null;
+        }
+        try {
+            return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+        }
+        catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflectSetter(Field field)
+    {
+        if (Modifier.isStatic(field.getModifiers())) {
+            // Rare enough that plain reflection is fine
+            return null;
+        }
+        try {
+            return LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+        }
+        catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflectFactory(Class<?> type)
+    {
+        try {
+            Constructor<?> constructor = type.getConstructor();
+            if (Modifier.isAbstract(type.getModifiers())) {
+                return null;
+            }
+            return LOOKUP.unreflectConstructor(constructor).asType(FACTORY_TYPE);
+        }
+        catch (Exception e) {
+            // Instance creation will fail and report the error if it is ever
+            // needed
+            return null;
+        }
+    }
+
+    private static Supplier<Collection<Object>> collectionFactory(final Class<?> type)
+    {
+        if (Collection.class.equals(type) || List.class.equals(type)) {
+            return new Supplier<Collection<Object>>()
+            {
+                @Override
+                public Collection<Object> get()
+                {
+                    return new ArrayList<Object>();
+                }
+            };
+        }
+        if (Set.class.equals(type)) {
+            return new Supplier<Collection<Object>>()
+            {
+                @Override
+                public Collection<Object> get()
+                {
+                    return new HashSet<Object>();
+                }
+            };
+        }
+        if (SortedSet.class.equals(type)) {
+            return new Supplier<Collection<Object>>()
+            {
+                @Override
+                public Collection<Object> get()
+                {
+                    return new TreeSet<Object>();
+                }
+            };
+        }
+
+        final MethodHandle factory = unreflectFactory(type);
+        return new Supplier<Collection<Object>>()
+        {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Collection<Object> get()
+            {
+                if (factory != null) {
+                    try {
+                        return (Collection<Object>) (Object) factory.invokeExact();
+                    }
+                    catch (Throwable ignored) {
+                    }
+                }
+                throw new ParseException("Parameters of Collection type '%s' are not supported. Please use List or Set instead.", type.getSimpleName());
+            }
+        };
+    }
+
     private static Class<?> getItemType(String name, Type type)
     {
         Class<?> rawClass = getRawType(type);
@@ -204,6 +510,18 @@ public class Accessor
             throw new ParseException("Type of option %s be an exact type", name);
         }
 
+        if (Iterable.class.equals(rawClass) || Iterator.class.equals(rawClass)) {
+            Type[] types = getTypeParameters(rawClass, type);
+            if ((types == null) || (types.length != 1) || !(types[0] instanceof Class)) {
+                throw new ParseException("%s type option %s must have an exact item type", rawClass.getSimpleName(), name);
+            }
+            return (Class<?>) types[0];
+        }
+
+        if (rawClass.isArray()) {
+            return rawClass.getComponentType();
+        }
+
         if (!Collection.class.isAssignableFrom(rawClass)) {
             return rawClass;
         }
@@ -78,4 +78,20 @@ public @interface Arguments {
      * @return Completion command
      */
     String completionCommand() default "";
+
+    /**
+     * Sets whether the arguments may be read from standard input
+     * <p>
+     * When enabled the argument {@code -} is replaced by the arguments read
+     * from standard input, delimited as specified, which are always treated as
+     * arguments and never as options. Standard input is read incrementally as
+     * the arguments are parsed, or as they are consumed if the arguments are
+     * streamed (see {@link com.github.rvesse.airline.parser.StreamedArguments}),
+     * so large inputs such as the output of {@code find} can be processed by a
+     * single invocation.
+     * </p>
+     * 
+     * @return Standard input mode
+     */
+    StdinArguments stdin() default StdinArguments.NONE;
 }
@@ -22,33 +22,30 @@ import com.github.rvesse.airline.builder.AliasBuilder;
 import com.github.rvesse.airline.builder.CliBuilder;
 import com.github.rvesse.airline.builder.GroupBuilder;
 import com.github.rvesse.airline.model.AliasMetadata;
-import com.github.rvesse.airline.model.ArgumentsMetadata;
 import com.github.rvesse.airline.model.CommandGroupMetadata;
 import com.github.rvesse.airline.model.CommandMetadata;
 import com.github.rvesse.airline.model.GlobalMetadata;
 import com.github.rvesse.airline.model.MetadataLoader;
-import com.github.rvesse.airline.model.OptionMetadata;
-import com.github.rvesse.airline.parser.ParseArgumentsMissingException;
-import com.github.rvesse.airline.parser.ParseArgumentsUnexpectedException;
-import com.github.rvesse.airline.parser.ParseCommandMissingException;
-import com.github.rvesse.airline.parser.ParseCommandUnrecognizedException;
-import com.github.rvesse.airline.parser.ParseOptionMissingException;
-import com.github.rvesse.airline.parser.ParseOptionMissingValueException;
-import com.github.rvesse.airline.parser.ParseState;
-import com.github.rvesse.airline.parser.Parser;
-import com.github.rvesse.airline.parser.ParserUtil;
+import com.github.rvesse.airline.model.MetadataSnapshot;
+import com.github.rvesse.airline.parser.DeferredArguments;
+import com.github.rvesse.airline.parser.ParseError;
+import com.github.rvesse.airline.parser.ParseResult;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import org.apache.commons.lang3.StringUtils;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import static com.github.rvesse.airline.parser.ParserUtil.createInstance;
+import org.apache.commons.lang3.StringUtils;
 
 public class Cli<C> {
     /**
@@ -63,9 +60,15 @@ public class Cli<C> {
         return new CliBuilder<T>(name);
     }
 
-    private final GlobalMetadata metadata;
+    private final TypeConverter typeConverter;
+
+    private final CompiledParser<C> compiled;
 
-    private final CommandFactory<C> mCommandFactory;
+    /**
+     * Lazily loaded parser, {@code null} unless lazy metadata loading is in
+     * effect in which case {@link #compiled} is {@code null}
+     */
+    private final LazyCompiledParser<C> lazy;
 
     /**
      * Creates a new CLI
@@ -96,13 +99,191 @@ public class Cli<C> {
             CommandFactory<C> theCommandFactory, Iterable<Class<? extends C>> defaultGroupCommands,
             Iterable<GroupBuilder<C>> groups, Iterable<AliasBuilder<C>> aliases, boolean aliasesOverrideBuiltIns,
             boolean allowAbbreviatedCommands, boolean allowAbbreviatedOptions) {
+        this(name, description, typeConverter, defaultCommand, theCommandFactory, defaultGroupCommands, groups,
+                aliases, aliasesOverrideBuiltIns, allowAbbreviatedCommands, allowAbbreviatedOptions, false, null,
+                false, null);
+    }
+
+    /**
+     * Creates a new CLI
+     * 
+     * @param name
+     *            Program Name
+     * @param description
+     *            Program Description
+     * @param typeConverter
+     *            Type converter used to convert arguments into the Java types
+     *            that the options expect
+     * @param defaultCommand
+     *            Default command
+     * @param theCommandFactory
+     *            Command factory
+     * @param defaultGroupCommands
+     *            Commands in the default group i.e. top level commands
+     * @param groups
+     *            Command groups
+     * @param aliases
+     *            Command aliases
+     * @param allowAbbreviatedCommands
+     *            Whether command abbreviation is allowed
+     * @param allowAbbreviatedOptions
+     *            Whethr option abbreviation is allowed
+     * @param lazyMetadata
+     *            Whether command metadata is loaded lazily, see
+     *            {@link CliBuilder#withLazyMetadata()}
+     * @param metadataCache
+     *            File in which a snapshot of the metadata is cached, see
+     *            {@link CliBuilder#withMetadataCache(File)}, may be
+     *            {@code null}
+     * @param argumentFiles
+     *            Whether argument files are expanded, see
+     *            {@link CliBuilder#withArgumentFiles()}
+     * @param conversionPool
+     *            Pool on which arguments are converted in parallel once
+     *            parsing has finished, see
+     *            {@link CliBuilder#withParallelConversion(ForkJoinPool)}, may be
+     *            {@code null}
+     */
+    public Cli(String name, String description, TypeConverter typeConverter, Class<? extends C> defaultCommand,
+            CommandFactory<C> theCommandFactory, Iterable<Class<? extends C>> defaultGroupCommands,
+            Iterable<GroupBuilder<C>> groups, Iterable<AliasBuilder<C>> aliases, boolean aliasesOverrideBuiltIns,
+            boolean allowAbbreviatedCommands, boolean allowAbbreviatedOptions, boolean lazyMetadata,
+            File metadataCache, boolean argumentFiles, ForkJoinPool conversionPool) {
         Preconditions.checkArgument(StringUtils.isNotEmpty(name) && !StringUtils.isWhitespace(name),
                 "Program name cannot be null/empty/whitespace");
         Preconditions.checkNotNull(typeConverter, "typeConverter is null");
         Preconditions.checkNotNull(theCommandFactory, "theCommandFactory is null");
 
-        mCommandFactory = theCommandFactory;
+        this.typeConverter = typeConverter;
 
+        // Build aliases
+        List<AliasMetadata> aliasData;
+        if (aliases != null) {
+            aliasData = Lists.newArrayList(Iterables.transform(aliases, new Function<AliasBuilder<C>, AliasMetadata>() {
+
+                @Override
+                public AliasMetadata apply(AliasBuilder<C> input) {
+                    return input.build();
+                }
+
+            }));
+        } else {
+            aliasData = Lists.newArrayList();
+        }
+
+        List<Class<? extends C>> commandClasses = defaultGroupCommands != null ? ImmutableList
+                .copyOf(defaultGroupCommands) : ImmutableList.<Class<? extends C>> of();
+        List<GroupBuilder<C>> groupBuilders = groups != null ? ImmutableList.copyOf(groups) : ImmutableList
+                .<GroupBuilder<C>> of();
+
+        // Resolving abbreviations requires all the names to be known so lazy
+        // loading is not possible, a metadata cache restores all the metadata
+        // at once so lazy loading is not needed
+        if (lazyMetadata && !allowAbbreviatedCommands && !allowAbbreviatedOptions && metadataCache == null) {
+            this.lazy = new LazyCompiledParser<C>(name, description, typeConverter, defaultCommand,
+                    theCommandFactory, commandClasses, groupBuilders, aliasData, aliasesOverrideBuiltIns,
+                    argumentFiles, conversionPool);
+            this.compiled = null;
+            return;
+        }
+
+        GlobalMetadata metadata = null;
+        String key = null;
+        if (metadataCache != null) {
+            key = fingerprint(name, description, defaultCommand, commandClasses, groupBuilders, aliasData,
+                    aliasesOverrideBuiltIns, allowAbbreviatedCommands, allowAbbreviatedOptions);
+            metadata = MetadataSnapshot.load(metadataCache, key,
+                    classLoader(defaultCommand, commandClasses, groupBuilders));
+        }
+        if (metadata == null) {
+            metadata = loadMetadata(name, description, defaultCommand, commandClasses, groupBuilders, aliasData,
+                    aliasesOverrideBuiltIns, allowAbbreviatedCommands, allowAbbreviatedOptions);
+            if (metadataCache != null)
+                MetadataSnapshot.save(metadataCache, key, metadata);
+        }
+        this.lazy = null;
+        this.compiled = CompiledParser.forCli(metadata, typeConverter, theCommandFactory, argumentFiles,
+                conversionPool);
+    }
+
+    /**
+     * Computes a fingerprint of the configuration of a CLI, a cached metadata
+     * snapshot is only used if it was saved with the same fingerprint
+     */
+    private static <C> String fingerprint(String name, String description, Class<? extends C> defaultCommand,
+            List<Class<? extends C>> defaultGroupCommands, List<GroupBuilder<C>> groups, List<AliasMetadata> aliases,
+            boolean aliasesOverrideBuiltIns, boolean allowAbbreviatedCommands, boolean allowAbbreviatedOptions) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        putString(hasher, name);
+        putString(hasher, description);
+        hasher.putBoolean(aliasesOverrideBuiltIns).putBoolean(allowAbbreviatedCommands)
+                .putBoolean(allowAbbreviatedOptions);
+        putClass(hasher, defaultCommand);
+        putClasses(hasher, defaultGroupCommands);
+        hasher.putInt(groups.size());
+        for (GroupBuilder<C> group : groups) {
+            putString(hasher, group.getName());
+            putString(hasher, group.getDescription());
+            hasher.putBoolean(group.isHidden());
+            putClass(hasher, group.getDefaultCommand());
+            putClasses(hasher, group.getCommands());
+        }
+        hasher.putInt(aliases.size());
+        for (AliasMetadata alias : aliases) {
+            putString(hasher, alias.getName());
+            hasher.putInt(alias.getArguments().size());
+            for (String arg : alias.getArguments()) {
+                putString(hasher, arg);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        // Length prefix so adjacent values cannot run together
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length()).putUnencodedChars(value);
+        }
+    }
+
+    private static void putClass(Hasher hasher, Class<?> type) {
+        putString(hasher, type != null ? type.getName() : null);
+    }
+
+    private static void putClasses(Hasher hasher, List<? extends Class<?>> types) {
+        hasher.putInt(types.size());
+        for (Class<?> type : types) {
+            putClass(hasher, type);
+        }
+    }
+
+    /**
+     * Gets the class loader from which the command classes of a CLI are loaded
+     */
+    private static <C> ClassLoader classLoader(Class<? extends C> defaultCommand,
+            List<Class<? extends C>> defaultGroupCommands, List<GroupBuilder<C>> groups) {
+        Class<?> type = defaultCommand;
+        if (type == null && !defaultGroupCommands.isEmpty())
+            type = defaultGroupCommands.get(0);
+        for (int i = 0; type == null && i < groups.size(); i++) {
+            type = groups.get(i).getDefaultCommand();
+            if (type == null && !groups.get(i).getCommands().isEmpty())
+                type = groups.get(i).getCommands().get(0);
+        }
+        ClassLoader loader = type != null ? type.getClassLoader() : null;
+        return loader != null ? loader : Thread.currentThread().getContextClassLoader();
+    }
+
+    /**
+     * Loads the metadata for a CLI
+     * 
+     * @return Global metadata
+     */
+    static <C> GlobalMetadata loadMetadata(String name, String description, Class<? extends C> defaultCommand,
+            List<Class<? extends C>> defaultGroupCommands, List<GroupBuilder<C>> groups, List<AliasMetadata> aliases,
+            boolean aliasesOverrideBuiltIns, boolean allowAbbreviatedCommands, boolean allowAbbreviatedOptions) {
         CommandMetadata defaultCommandMetadata = null;
         if (defaultCommand != null) {
             defaultCommandMetadata = MetadataLoader.loadCommand(defaultCommand);
@@ -110,8 +291,8 @@ public class Cli<C> {
 
         final List<CommandMetadata> allCommands = new ArrayList<CommandMetadata>();
 
-        List<CommandMetadata> defaultCommandGroup = defaultGroupCommands != null ? Lists.newArrayList(MetadataLoader
-                .loadCommands(defaultGroupCommands)) : Lists.<CommandMetadata> newArrayList();
+        List<CommandMetadata> defaultCommandGroup = Lists.newArrayList(MetadataLoader
+                .loadCommands(defaultGroupCommands));
 
         // Currently the default command is required to be in the commands
         // list. If that changes, we'll need to add it here and add checks for
@@ -119,20 +300,15 @@ public class Cli<C> {
         allCommands.addAll(defaultCommandGroup);
 
         // Build groups
-        List<CommandGroupMetadata> commandGroups;
-        if (groups != null) {
-            commandGroups = Lists.newArrayList(Iterables.transform(groups,
-                    new Function<GroupBuilder<C>, CommandGroupMetadata>() {
+        List<CommandGroupMetadata> commandGroups = Lists.newArrayList(Iterables.transform(groups,
+                new Function<GroupBuilder<C>, CommandGroupMetadata>() {
 
-                        @Override
-                        public CommandGroupMetadata apply(GroupBuilder<C> group) {
-                            return group.build();
-                        }
+                    @Override
+                    public CommandGroupMetadata apply(GroupBuilder<C> group) {
+                        return group.build();
+                    }
 
-                    }));
-        } else {
-            commandGroups = Lists.newArrayList();
-        }
+                }));
         for (CommandGroupMetadata group : commandGroups) {
             allCommands.addAll(group.getCommands());
         }
@@ -143,135 +319,173 @@ public class Cli<C> {
         // post-processing was an easier, yet uglier, way to go
         MetadataLoader.loadCommandsIntoGroupsByAnnotation(allCommands, commandGroups, defaultCommandGroup);
 
-        // Build aliases
-        List<AliasMetadata> aliasData;
-        if (aliases != null) {
-            aliasData = Lists.newArrayList(Iterables.transform(aliases, new Function<AliasBuilder<C>, AliasMetadata>() {
-
-                @Override
-                public AliasMetadata apply(AliasBuilder<C> input) {
-                    return input.build();
-                }
-
-            }));
-        } else {
-            aliasData = Lists.newArrayList();
-        }
-
         Preconditions.checkArgument(allCommands.size() > 0, "Must specify at least one command to create a CLI");
 
-        this.metadata = MetadataLoader.loadGlobal(name, description, defaultCommandMetadata,
+        return MetadataLoader.loadGlobal(name, description, defaultCommandMetadata,
                 ImmutableList.copyOf(defaultCommandGroup), ImmutableList.copyOf(commandGroups),
-                ImmutableList.copyOf(aliasData), aliasesOverrideBuiltIns, allowAbbreviatedCommands,
+                ImmutableList.copyOf(aliases), aliasesOverrideBuiltIns, allowAbbreviatedCommands,
                 allowAbbreviatedOptions);
     }
 
+    /**
+     * Gets the metadata for this CLI, when metadata is loaded lazily this
+     * forces all the metadata to be loaded
+     * 
+     * @return Global metadata
+     */
     public GlobalMetadata getMetadata() {
-        return metadata;
+        return compile().getMetadata();
+    }
+
+    public TypeConverter getTypeConverter() {
+        return typeConverter;
+    }
+
+    /**
+     * Gets the compiled parser for this CLI
+     * <p>
+     * The compiled parser is created once when the CLI is built and is what
+     * the {@code parse} methods of the CLI delegate to, it is immutable and
+     * may be shared between threads, see {@link CompiledParser} for details.
+     * When metadata is loaded lazily the compiled parser is instead created on
+     * first use and forces all the metadata to be loaded.
+     * </p>
+     * 
+     * @return Compiled parser
+     */
+    public CompiledParser<C> compile() {
+        return lazy != null ? lazy.getFullParser() : compiled;
     }
 
     public C parse(CommandFactory<C> commandFactory, String... args) {
-        return parse(commandFactory, ImmutableList.copyOf(args));
+        return parse(commandFactory, Arrays.asList(args));
     }
 
     public C parse(String... args) {
-        return parse(mCommandFactory, ImmutableList.copyOf(args));
+        return parse(Arrays.asList(args));
     }
 
     public C parse(Iterable<String> args) {
-        return parse(mCommandFactory, args);
+        if (lazy != null)
+            return lazy.tryParse(args).getCommandOrThrow();
+        return compiled.parse(args);
     }
 
     public C parse(CommandFactory<C> commandFactory, Iterable<String> args) {
-        Preconditions.checkNotNull(args, "args is null");
-
-        Parser parser = new Parser();
-        ParseState state = parser.parse(metadata, args);
-
-        if (state.getCommand() == null) {
-            if (state.getGroup() != null) {
-                state = state.withCommand(state.getGroup().getDefaultCommand());
-            } else {
-                state = state.withCommand(metadata.getDefaultCommand());
-            }
-        }
-
-        validate(state);
-
-        CommandMetadata command = state.getCommand();
-
-        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object> builder().put(
-                GlobalMetadata.class, metadata);
-
-        if (state.getGroup() != null) {
-            bindings.put(CommandGroupMetadata.class, state.getGroup());
-        }
-
-        if (state.getCommand() != null) {
-            bindings.put(CommandMetadata.class, state.getCommand());
-        }
-
-        return createInstance(command.getType(), command.getAllOptions(), state.getParsedOptions(),
-                command.getArguments(), state.getParsedArguments(), command.getMetadataInjections(), bindings.build(),
-                commandFactory);
+        if (lazy != null)
+            return lazy.tryParse(commandFactory, args).getCommandOrThrow();
+        return compiled.parse(commandFactory, args);
     }
 
     public C parse(C commandInstance, String... args) {
-        Preconditions.checkNotNull(args, "args is null");
-
-        Parser parser = new Parser();
-        ParseState state = parser.parse(metadata, args);
-
-        CommandMetadata command = MetadataLoader.loadCommand(commandInstance.getClass());
-
-        state = state.withCommand(command);
-
-        validate(state);
-
-        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object> builder().put(
-                GlobalMetadata.class, metadata);
-
-        if (state.getGroup() != null) {
-            bindings.put(CommandGroupMetadata.class, state.getGroup());
-        }
-
-        bindings.put(CommandMetadata.class, command);
+        return compile().parse(commandInstance, args);
+    }
 
-        C c = (C) ParserUtil.injectOptions(commandInstance, command.getAllOptions(), state.getParsedOptions(),
-                command.getArguments(), state.getParsedArguments(), command.getMetadataInjections(), bindings.build());
+    /**
+     * Parses the arguments without throwing on invalid input, see
+     * {@link CompiledParser#tryParse(CommandFactory, Iterable)}
+     *
+     * @param args
+     *            Arguments
+     * @return Result holding either the command or the errors
+     */
+    public ParseResult<C> tryParse(String... args) {
+        return tryParse(Arrays.asList(args));
+    }
 
-        return c;
+    public ParseResult<C> tryParse(Iterable<String> args) {
+        if (lazy != null)
+            return lazy.tryParse(args);
+        return compiled.tryParse(args);
     }
 
-    private void validate(ParseState state) {
-        CommandMetadata command = state.getCommand();
-        if (command == null) {
-            List<String> unparsedInput = state.getUnparsedInput();
-            if (unparsedInput.isEmpty()) {
-                throw new ParseCommandMissingException();
-            } else {
-                throw new ParseCommandUnrecognizedException(unparsedInput);
-            }
-        }
+    public ParseResult<C> tryParse(CommandFactory<C> commandFactory, Iterable<String> args) {
+        if (lazy != null)
+            return lazy.tryParse(commandFactory, args);
+        return compiled.tryParse(commandFactory, args);
+    }
 
-        ArgumentsMetadata arguments = command.getArguments();
-        if (state.getParsedArguments().isEmpty() && arguments != null && arguments.isRequired()) {
-            throw new ParseArgumentsMissingException(arguments.getTitle());
-        }
+    /**
+     * Parses many sets of arguments in parallel on the shared fork join pool,
+     * see {@link DeferredArguments#getDefaultPool()} and
+     * {@link #parseAll(ForkJoinPool, Iterable)}
+     *
+     * @param argsList
+     *            Sets of arguments
+     * @return Results in the same order as the sets of arguments
+     */
+    public List<ParseResult<C>> parseAll(Iterable<? extends List<String>> argsList) {
+        return parseAll(DeferredArguments.getDefaultPool(), argsList);
+    }
 
-        if (!state.getUnparsedInput().isEmpty()) {
-            throw new ParseArgumentsUnexpectedException(state.getUnparsedInput());
+    /**
+     * Parses many sets of arguments in parallel
+     * <p>
+     * The metadata and compiled parser are immutable so every set of arguments
+     * is parsed against the same shared instances, each set is parsed as if by
+     * {@link #tryParse(Iterable)} so invalid arguments produce a failed result
+     * rather than an exception and do not affect the other results. Any other
+     * exception thrown while parsing a set of arguments, e.g. by the command
+     * factory, produces a failed result with a single
+     * {@link com.github.rvesse.airline.parser.ParseError.Kind#EXCEPTION}
+     * error.
+     * </p>
+     *
+     * @param pool
+     *            Pool to parse on
+     * @param argsList
+     *            Sets of arguments
+     * @return Results in the same order as the sets of arguments
+     */
+    public List<ParseResult<C>> parseAll(ForkJoinPool pool, Iterable<? extends List<String>> argsList) {
+        Preconditions.checkNotNull(pool, "pool is null");
+        Preconditions.checkNotNull(argsList, "argsList is null");
+        List<? extends List<String>> inputs = ImmutableList.copyOf(argsList);
+        @SuppressWarnings("unchecked")
+        ParseResult<C>[] results = new ParseResult[inputs.size()];
+        if (!inputs.isEmpty()) {
+            // Aim for a few tasks per worker so uneven parse costs balance out
+            int threshold = Math.max(1, inputs.size() / (pool.getParallelism() * 4));
+            pool.invoke(new ParseAllTask(inputs, results, 0, inputs.size(), threshold));
         }
+        return Arrays.asList(results);
+    }
 
-        if (state.getLocation() == Context.OPTION) {
-            throw new ParseOptionMissingValueException(state.getCurrentOption().getTitle());
+    /**
+     * Parses a range of sets of arguments, splitting it while it is larger
+     * than the threshold
+     */
+    private final class ParseAllTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends List<String>> inputs;
+        private final ParseResult<C>[] results;
+        private final int start, end, threshold;
+
+        ParseAllTask(List<? extends List<String>> inputs, ParseResult<C>[] results, int start, int end,
+                int threshold) {
+            this.inputs = inputs;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
         }
 
-        for (OptionMetadata option : command.getAllOptions()) {
-            if (option.isRequired() && !state.getParsedOptions().containsKey(option)) {
-                throw new ParseOptionMissingException(option.getOptions().iterator().next());
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                for (int i = start; i < end; i++) {
+                    try {
+                        results[i] = tryParse(inputs.get(i));
+                    } catch (RuntimeException e) {
+                        results[i] = ParseResult.failure(ImmutableList.of(ParseError.exception(e)), null);
+                    }
+                }
+                return;
             }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ParseAllTask(inputs, results, start, middle, threshold), new ParseAllTask(inputs,
+                    results, middle, end, threshold));
         }
     }
-
 }
@@ -0,0 +1,493 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.model.ArgumentsMetadata;
+import com.github.rvesse.airline.model.CommandGroupMetadata;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.model.MetadataLoader;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.github.rvesse.airline.parser.ParseError;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.github.rvesse.airline.parser.ParseState;
+import com.github.rvesse.airline.parser.ParsedOptions;
+import com.github.rvesse.airline.parser.Parser;
+import com.github.rvesse.airline.parser.ParserUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A parser compiled for a specific CLI or single command
+ * <p>
+ * Everything that does not depend on the arguments being parsed is computed
+ * once when the parser is compiled, this includes the {@link Parser} itself,
+ * the slot of every option of every command within the parsed option values
+ * (see {@link ParsedOptions}), the required options of every command and the
+ * metadata bindings that are injected into every command. Parsing then only allocates the state for that
+ * individual parse. Compiled parsers are obtained via {@link Cli#compile()}
+ * or {@link SingleCommand#compile()}.
+ * </p>
+ * <h3>Error Handling</h3>
+ * <p>
+ * The {@code tryParse} methods never throw for invalid input, instead they
+ * return a {@link ParseResult} holding every {@link ParseError} found. Errors
+ * are plain values so failing to parse does not incur the cost of creating
+ * and filling in the stack traces of exceptions, which matters when parsing
+ * untrusted input in bulk. The {@code parse} methods are thin wrappers which
+ * throw the exception equivalent to the first error. Exceptions thrown
+ * internally by conversion functions, and errors in
+ * {@link com.github.rvesse.airline.parser.StreamedArguments} which are only
+ * detected as the arguments are consumed, are not avoided.
+ * </p>
+ * <h3>Thread Safety</h3>
+ * <p>
+ * A compiled parser is immutable and may be shared freely between threads,
+ * concurrent calls to the {@code parse} methods do not share any mutable
+ * state. This holds provided that:
+ * </p>
+ * <ul>
+ * <li>The {@link CommandFactory} is itself thread safe, the default factory
+ * is</li>
+ * <li>Any custom conversions registered with the {@link TypeConverter} are
+ * thread safe and are registered before the parser is first used</li>
+ * <li>The command instances passed to {@link #parse(Object, String...)} are
+ * not used concurrently by other threads</li>
+ * <li>Arguments passed to a {@code parse} method are not modified until the
+ * command has consumed any
+ * {@link com.github.rvesse.airline.parser.StreamedArguments} bound to it</li>
+ * </ul>
+ *
+ * @param <C>
+ *            Command type
+ */
+public final class CompiledParser<C> {
+
+    private final GlobalMetadata metadata;
+    private final CommandMetadata singleCommand;
+    private final Parser parser;
+    private final TypeConverter typeConverter;
+    private final CommandFactory<C> commandFactory;
+
+    /**
+     * Compiled commands keyed by group (a {@code null} key for commands not in
+     * a group) and then command, lookups are by identity because metadata
+     * objects are shared and equality on them is comparatively expensive
+     */
+    private final Map<CommandGroupMetadata, Map<CommandMetadata, CompiledCommand>> commands;
+
+    private CompiledParser(GlobalMetadata metadata, CommandMetadata singleCommand, TypeConverter typeConverter,
+            CommandFactory<C> commandFactory, boolean argumentFiles, ForkJoinPool conversionPool) {
+        this.metadata = metadata;
+        this.singleCommand = singleCommand;
+        this.typeConverter = Preconditions.checkNotNull(typeConverter, "typeConverter is null");
+        this.commandFactory = Preconditions.checkNotNull(commandFactory, "commandFactory is null");
+        this.parser = new Parser(typeConverter, argumentFiles, conversionPool);
+
+        Map<CommandGroupMetadata, Map<CommandMetadata, CompiledCommand>> commands = new IdentityHashMap<CommandGroupMetadata, Map<CommandMetadata, CompiledCommand>>();
+        if (metadata != null) {
+            Map<CommandMetadata, CompiledCommand> topLevel = new IdentityHashMap<CommandMetadata, CompiledCommand>();
+            for (CommandMetadata command : metadata.getDefaultGroupCommands()) {
+                topLevel.put(command, compile(metadata, null, command, command));
+            }
+            CommandMetadata defaultCommand = metadata.getDefaultCommand();
+            if (defaultCommand != null && !topLevel.containsKey(defaultCommand)) {
+                topLevel.put(defaultCommand, compile(metadata, null, defaultCommand, defaultCommand));
+            }
+            commands.put(null, Collections.unmodifiableMap(topLevel));
+
+            for (CommandGroupMetadata group : metadata.getCommandGroups()) {
+                Map<CommandMetadata, CompiledCommand> grouped = new IdentityHashMap<CommandMetadata, CompiledCommand>();
+                for (CommandMetadata command : group.getCommands()) {
+                    grouped.put(command, compile(metadata, group, command, command));
+                }
+                CommandMetadata groupDefault = group.getDefaultCommand();
+                if (groupDefault != null && !grouped.containsKey(groupDefault)) {
+                    grouped.put(groupDefault, compile(metadata, group, groupDefault, groupDefault));
+                }
+                commands.put(group, Collections.unmodifiableMap(grouped));
+            }
+        } else {
+            commands.put(null,
+                    Collections.singletonMap(singleCommand, compile(null, null, singleCommand, singleCommand)));
+        }
+        this.commands = Collections.unmodifiableMap(commands);
+    }
+
+    /**
+     * Compiles a parser for a CLI
+     *
+     * @param metadata
+     *            Global metadata
+     * @param typeConverter
+     *            Type converter
+     * @param commandFactory
+     *            Command factory
+     * @param argumentFiles
+     *            Whether argument files are expanded
+     * @param conversionPool
+     *            Pool on which arguments are converted in parallel, may be
+     *            {@code null}
+     * @return Compiled parser
+     */
+    static <C> CompiledParser<C> forCli(GlobalMetadata metadata, TypeConverter typeConverter,
+            CommandFactory<C> commandFactory, boolean argumentFiles, ForkJoinPool conversionPool) {
+        Preconditions.checkNotNull(metadata, "metadata is null");
+        return new CompiledParser<C>(metadata, null, typeConverter, commandFactory, argumentFiles, conversionPool);
+    }
+
+    /**
+     * Compiles a parser for a single command
+     *
+     * @param command
+     *            Command metadata
+     * @param typeConverter
+     *            Type converter
+     * @param argumentFiles
+     *            Whether argument files are expanded
+     * @param conversionPool
+     *            Pool on which arguments are converted in parallel, may be
+     *            {@code null}
+     * @return Compiled parser
+     */
+    static <C> CompiledParser<C> forCommand(CommandMetadata command, TypeConverter typeConverter,
+            boolean argumentFiles, ForkJoinPool conversionPool) {
+        Preconditions.checkNotNull(command, "command is null");
+        return new CompiledParser<C>(null, command, typeConverter, new CommandFactoryDefault<C>(), argumentFiles,
+                conversionPool);
+    }
+
+    /**
+     * Gets the global metadata, {@code null} if this parser was compiled for a
+     * single command
+     *
+     * @return Global metadata
+     */
+    public GlobalMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Gets the command metadata, {@code null} if this parser was compiled for
+     * a CLI
+     *
+     * @return Command metadata
+     */
+    public CommandMetadata getCommandMetadata() {
+        return singleCommand;
+    }
+
+    public TypeConverter getTypeConverter() {
+        return typeConverter;
+    }
+
+    public C parse(String... args) {
+        return parse(commandFactory, Arrays.asList(args));
+    }
+
+    public C parse(Iterable<String> args) {
+        return parse(commandFactory, args);
+    }
+
+    public C parse(CommandFactory<C> commandFactory, String... args) {
+        return parse(commandFactory, Arrays.asList(args));
+    }
+
+    public C parse(CommandFactory<C> commandFactory, Iterable<String> args) {
+        return tryParse(commandFactory, args).getCommandOrThrow();
+    }
+
+    /**
+     * Parses the arguments into an existing command instance
+     *
+     * @param commandInstance
+     *            Command instance
+     * @param args
+     *            Arguments
+     * @return Command instance
+     */
+    public C parse(C commandInstance, String... args) {
+        Preconditions.checkNotNull(args, "args is null");
+
+        ParseState state = parseState(Arrays.asList(args));
+        CommandMetadata command = MetadataLoader.loadCommand(commandInstance.getClass());
+        state = state.withCommand(command);
+
+        return result(state, null, commandInstance).getCommandOrThrow();
+    }
+
+    public ParseResult<C> tryParse(String... args) {
+        return tryParse(commandFactory, Arrays.asList(args));
+    }
+
+    public ParseResult<C> tryParse(Iterable<String> args) {
+        return tryParse(commandFactory, args);
+    }
+
+    /**
+     * Parses the arguments without throwing on invalid input
+     *
+     * @param commandFactory
+     *            Command factory
+     * @param args
+     *            Arguments
+     * @return Result holding either the command or the errors
+     */
+    public ParseResult<C> tryParse(CommandFactory<C> commandFactory, Iterable<String> args) {
+        Preconditions.checkNotNull(args, "args is null");
+
+        return result(parseState(args), commandFactory, null);
+    }
+
+    private ParseResult<C> result(ParseState state, CommandFactory<C> commandFactory, C commandInstance) {
+        List<ParseError> errors = new ArrayList<ParseError>(state.getErrors());
+        CompiledCommand compiled = validate(state, errors);
+        if (!errors.isEmpty())
+            return ParseResult.failure(errors, state);
+
+        if (commandInstance == null) {
+            commandInstance = commandFactory.createInstance(compiled.command.getType());
+        }
+        return ParseResult.success(inject(commandInstance, compiled, state), state);
+    }
+
+    private ParseState parseState(Iterable<String> args) {
+        if (metadata == null)
+            return parser.tryParseCommand(singleCommand, args);
+
+        ParseState state = parser.tryParse(metadata, args);
+        if (state.getCommand() == null) {
+            if (state.getGroup() != null) {
+                state = state.withCommand(state.getGroup().getDefaultCommand());
+            } else {
+                state = state.withCommand(metadata.getDefaultCommand());
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Validates the parsed state adding any errors found, errors are added in
+     * the order the checks are made so the first error is always the one the
+     * {@code parse} methods throw
+     *
+     * @param state
+     *            Parse state
+     * @param errors
+     *            Errors, pre-populated with any errors from the parser
+     * @return Compiled command, {@code null} if there is no command
+     */
+    private CompiledCommand validate(ParseState state, List<ParseError> errors) {
+        CommandMetadata command = state.getCommand();
+        if (command == null) {
+            List<String> unparsedInput = state.getUnparsedInput();
+            if (unparsedInput.isEmpty()) {
+                errors.add(ParseError.commandMissing());
+            } else {
+                errors.add(ParseError.commandUnrecognized(state.getUnparsedInputIndex(), unparsedInput));
+            }
+            return null;
+        }
+
+        ArgumentsMetadata arguments = command.getArguments();
+        if (arguments != null && arguments.isRequired() && state.getParsedArguments().isEmpty()
+                && (state.getStreamedArguments() == null || state.getStreamedArguments().isEmpty())
+                && !hasError(errors, null)) {
+            errors.add(ParseError.argumentsMissing(arguments.getTitle()));
+        }
+
+        if (!state.getUnparsedInput().isEmpty()) {
+            errors.add(ParseError.argumentsUnexpected(state.getUnparsedInputIndex(), state.getUnparsedInput()));
+        }
+
+        if (state.getLocation() == Context.OPTION) {
+            errors.add(ParseError.optionMissingValue(state.getCurrentOptionIndex(), state.getCurrentOption()));
+        }
+
+        ParsedOptions values = state.getOptionValues();
+        CompiledCommand compiled = find(state.getGroup(), command, values.getCommand());
+        if (compiled.hasRequired) {
+            BitSet missing = (BitSet) compiled.required.clone();
+            missing.andNot(values.getPresent());
+            if (compiled.unreachableRequired || !missing.isEmpty()) {
+                // Report missing options in declaration order, options whose
+                // values were erroneous have already been reported
+                for (int i = 0; i < compiled.options.length; i++) {
+                    OptionMetadata option = compiled.options[i];
+                    if (option.isRequired() && !values.isPresent(compiled.slots[i]) && !hasError(errors, option)) {
+                        errors.add(ParseError.optionMissing(option));
+                    }
+                }
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Gets whether a value error has already been reported for an option
+     *
+     * @param errors
+     *            Errors
+     * @param option
+     *            Option, {@code null} for the arguments
+     * @return True if an error was reported, false otherwise
+     */
+    private static boolean hasError(List<ParseError> errors, OptionMetadata option) {
+        for (ParseError error : errors) {
+            switch (error.getKind()) {
+            case CONVERSION:
+            case OPTION_ILLEGAL_VALUE:
+            case OPTION_MISSING_VALUE:
+                if (option == null ? error.getOption() == null : option.equals(error.getOption()))
+                    return true;
+                break;
+            default:
+                break;
+            }
+        }
+        return false;
+    }
+
+    private <T> T inject(T commandInstance, CompiledCommand compiled, ParseState state) {
+        ParsedOptions values = state.getOptionValues();
+        for (int i = 0; i < compiled.options.length; i++) {
+            int slot = compiled.slots[i];
+            if (values.isPresent(slot)) {
+                ParserUtil.injectOption(commandInstance, compiled.options[i], values.getValues(slot));
+            }
+        }
+
+        CommandMetadata command = compiled.command;
+        ParserUtil.injectArguments(commandInstance, command.getArguments(), arguments(state));
+        ParserUtil.injectMetadata(commandInstance, command.getMetadataInjections(), compiled.bindings);
+        return commandInstance;
+    }
+
+    private static Iterable<Object> arguments(ParseState state) {
+        if (state.getStreamedArguments() != null)
+            return state.getStreamedArguments();
+        return state.getParsedArguments();
+    }
+
+    private CompiledCommand find(CommandGroupMetadata group, CommandMetadata command, CommandMetadata parsedCommand) {
+        if (parsedCommand != null && parsedCommand != command) {
+            // Only happens when parsing into an instance of a command other
+            // than the one that was parsed
+            return compile(metadata, group, command, parsedCommand);
+        }
+
+        Map<CommandMetadata, CompiledCommand> candidates = commands.get(group);
+        CompiledCommand compiled = candidates != null ? candidates.get(command) : null;
+        if (compiled == null) {
+            // Only happens when parsing into an instance of a command that is
+            // not part of the CLI
+            compiled = compile(metadata, group, command, command);
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles a command
+     *
+     * @param metadata
+     *            Global metadata, {@code null} for a single command
+     * @param group
+     *            Group, {@code null} if none
+     * @param command
+     *            Command
+     * @param parsedCommand
+     *            Command whose options occupy the command slots of the parsed
+     *            option values, normally the same as the command
+     * @return Compiled command
+     */
+    private static CompiledCommand compile(GlobalMetadata metadata, CommandGroupMetadata group,
+            CommandMetadata command, CommandMetadata parsedCommand) {
+        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object> builder();
+        if (metadata != null) {
+            bindings.put(GlobalMetadata.class, metadata);
+        }
+        if (group != null) {
+            bindings.put(CommandGroupMetadata.class, group);
+        }
+        bindings.put(CommandMetadata.class, command);
+
+        // Work out the slot in the parsed option values of every option
+        // following the layout used by ParsedOptions
+        int groupOffset = metadata != null ? metadata.getOptions().size() : 0;
+        int commandOffset = groupOffset + (group != null ? group.getOptions().size() : 0);
+
+        List<OptionMetadata> options = command.getAllOptions();
+        int[] slots = new int[options.size()];
+        BitSet required = new BitSet();
+        boolean unreachableRequired = false;
+        for (int i = 0; i < slots.length; i++) {
+            OptionMetadata option = options.get(i);
+            int slot = -1;
+            switch (option.getOptionType()) {
+            case GLOBAL:
+                if (metadata != null)
+                    slot = slot(0, metadata.getOptions().indexOf(option));
+                break;
+            case GROUP:
+                if (group != null)
+                    slot = slot(groupOffset, group.getOptions().indexOf(option));
+                break;
+            case COMMAND:
+                if (parsedCommand == command) {
+                    slot = slot(commandOffset, command.getCommandOptionIndex().indexOf(option));
+                } else {
+                    slot = slot(commandOffset, parsedCommand.getCommandOptions().indexOf(option));
+                }
+                break;
+            }
+            slots[i] = slot;
+
+            if (option.isRequired()) {
+                if (slot >= 0) {
+                    required.set(slot);
+                } else {
+                    // Can never be parsed so is always missing
+                    unreachableRequired = true;
+                }
+            }
+        }
+
+        return new CompiledCommand(command, options.toArray(new OptionMetadata[options.size()]), slots, required,
+                unreachableRequired, bindings.build());
+    }
+
+    private static int slot(int offset, int index) {
+        return index >= 0 ? offset + index : -1;
+    }
+
+    /**
+     * Everything about a command in a given group that is independent of the
+     * arguments being parsed
+     */
+    private static final class CompiledCommand {
+        private final CommandMetadata command;
+        private final OptionMetadata[] options;
+        private final int[] slots;
+        private final BitSet required;
+        private final boolean hasRequired, unreachableRequired;
+        private final Map<Class<?>, Object> bindings;
+
+        private CompiledCommand(CommandMetadata command, OptionMetadata[] options, int[] slots, BitSet required,
+                boolean unreachableRequired, Map<Class<?>, Object> bindings) {
+            this.command = command;
+            this.options = options;
+            this.slots = slots;
+            this.required = required;
+            this.hasRequired = unreachableRequired || !required.isEmpty();
+            this.unreachableRequired = unreachableRequired;
+            this.bindings = bindings;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.builder.GroupBuilder;
+import com.github.rvesse.airline.model.AliasMetadata;
+import com.github.rvesse.airline.model.CommandGroupMetadata;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parser for a CLI whose metadata is loaded lazily, see
+ * {@link com.github.rvesse.airline.builder.CliBuilder#withLazyMetadata()}
+ * <p>
+ * When created only the names of the commands and groups are read from their
+ * annotations. Each parse selects the commands and groups whose names appear
+ * in the arguments, or in the expansions of aliases that appear in the
+ * arguments, and parses with metadata restricted to just those. If that parse
+ * is not successful, or the restricted metadata is not sufficient, the parse
+ * is repeated with the full metadata so errors and results are exactly those
+ * of an eagerly loaded CLI. The full metadata is only loaded on first demand.
+ * </p>
+ * <p>
+ * Restricted parsers are cached by the selection they were built from so
+ * repeatedly parsing the same command does not reload its metadata, the cache
+ * is cleared when it grows too large.
+ * </p>
+ */
+final class LazyCompiledParser<C> {
+
+    private static final int MAX_CACHED_PARSERS = 64;
+
+    private final String name, description;
+    private final TypeConverter typeConverter;
+    private final Class<? extends C> defaultCommand;
+    private final CommandFactory<C> commandFactory;
+    private final List<Class<? extends C>> commands;
+    private final List<GroupBuilder<C>> groups;
+    private final List<AliasMetadata> aliases;
+    private final boolean aliasesOverrideBuiltIns, argumentFiles;
+    private final ForkJoinPool conversionPool;
+
+    /**
+     * Map from names to the indices of the commands and groups that must be
+     * loaded when a name is used, group indices are offset by the number of
+     * commands
+     */
+    private final SetMultimap<String, Integer> names = HashMultimap.create();
+    private final Map<String, AliasMetadata> aliasesByName = Maps.newHashMap();
+    private final ConcurrentMap<Set<Integer>, CompiledParser<C>> restricted = Maps.newConcurrentMap();
+    private volatile CompiledParser<C> full;
+
+    LazyCompiledParser(String name, String description, TypeConverter typeConverter,
+            Class<? extends C> defaultCommand, CommandFactory<C> commandFactory, List<Class<? extends C>> commands,
+            List<GroupBuilder<C>> groups, List<AliasMetadata> aliases, boolean aliasesOverrideBuiltIns,
+            boolean argumentFiles, ForkJoinPool conversionPool) {
+        this.name = name;
+        this.description = description;
+        this.typeConverter = typeConverter;
+        this.defaultCommand = defaultCommand;
+        this.commandFactory = commandFactory;
+        this.commands = commands;
+        this.groups = groups;
+        this.aliases = ImmutableList.copyOf(aliases);
+        this.aliasesOverrideBuiltIns = aliasesOverrideBuiltIns;
+        this.argumentFiles = argumentFiles;
+        this.conversionPool = conversionPool;
+
+        for (int i = 0; i < commands.size(); i++) {
+            Class<? extends C> command = commands.get(i);
+            Command annotation = indexGroupNames(command, i);
+            if (annotation != null)
+                names.put(annotation.name(), i);
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            GroupBuilder<C> group = groups.get(i);
+            int index = commands.size() + i;
+            names.put(group.getName(), index);
+            for (Class<? extends C> command : group.getCommands()) {
+                indexGroupNames(command, index);
+            }
+        }
+        for (AliasMetadata alias : aliases) {
+            if (!aliasesByName.containsKey(alias.getName()))
+                aliasesByName.put(alias.getName(), alias);
+        }
+    }
+
+    /**
+     * Indexes the names of the groups a command is placed in by its
+     * annotations, this reads the same annotations as
+     * {@link com.github.rvesse.airline.model.MetadataLoader#loadCommand(Class)}
+     * but does not load any other metadata
+     */
+    private Command indexGroupNames(Class<?> commandType, int index) {
+        Command command = null;
+        for (Class<?> cls = commandType; command == null && cls != null && !Object.class.equals(cls); cls = cls
+                .getSuperclass()) {
+            command = cls.getAnnotation(Command.class);
+
+            if (cls.isAnnotationPresent(Groups.class)) {
+                for (Group group : cls.getAnnotation(Groups.class).value()) {
+                    names.put(group.name(), index);
+                }
+            }
+            if (cls.isAnnotationPresent(Group.class)) {
+                names.put(cls.getAnnotation(Group.class).name(), index);
+            }
+        }
+        if (command != null) {
+            for (String groupName : command.groupNames()) {
+                names.put(groupName, index);
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Gets the parser for the full metadata, loading it if necessary
+     *
+     * @return Compiled parser
+     */
+    CompiledParser<C> getFullParser() {
+        CompiledParser<C> parser = full;
+        if (parser == null) {
+            synchronized (this) {
+                parser = full;
+                if (parser == null) {
+                    GlobalMetadata metadata = Cli.loadMetadata(name, description, defaultCommand, commands, groups,
+                            aliases, aliasesOverrideBuiltIns, false, false);
+                    parser = CompiledParser.forCli(metadata, typeConverter, commandFactory, argumentFiles,
+                            conversionPool);
+                    full = parser;
+                    restricted.clear();
+                }
+            }
+        }
+        return parser;
+    }
+
+    ParseResult<C> tryParse(Iterable<String> args) {
+        return tryParse(commandFactory, args);
+    }
+
+    ParseResult<C> tryParse(CommandFactory<C> commandFactory, Iterable<String> args) {
+        // Arguments are consumed twice if the restricted parse fails
+        List<String> tokens = ImmutableList.copyOf(args);
+
+        CompiledParser<C> parser = full;
+        if (parser == null) {
+            parser = restrictedParser(tokens);
+            if (parser != null) {
+                ParseResult<C> result = parser.tryParse(commandFactory, tokens);
+                if (result.wasSuccessful())
+                    return result;
+            }
+        }
+        return getFullParser().tryParse(commandFactory, tokens);
+    }
+
+    /**
+     * Gets a parser restricted to the commands and groups named in the
+     * arguments
+     *
+     * @return Restricted parser or {@code null} if the full metadata is needed
+     */
+    private CompiledParser<C> restrictedParser(List<String> tokens) {
+        if (argumentFiles) {
+            // Names within argument files are not known until they are read
+            for (String token : tokens) {
+                if (token.startsWith("@"))
+                    return null;
+            }
+        }
+
+        Set<Integer> selected = select(tokens);
+        if (selected.isEmpty())
+            return null;
+
+        CompiledParser<C> parser = restricted.get(selected);
+        if (parser != null)
+            return parser;
+
+        List<Class<? extends C>> selectedCommands = Lists.newArrayList();
+        List<GroupBuilder<C>> selectedGroups = Lists.newArrayList();
+        for (int i = 0; i < commands.size(); i++) {
+            if (selected.contains(i))
+                selectedCommands.add(commands.get(i));
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            if (selected.contains(commands.size() + i))
+                selectedGroups.add(groups.get(i));
+        }
+
+        GlobalMetadata metadata;
+        try {
+            metadata = Cli.loadMetadata(name, description, null, selectedCommands, selectedGroups, aliases,
+                    aliasesOverrideBuiltIns, false, false);
+        } catch (IllegalArgumentException e) {
+            // Selection is not valid by itself, let the full metadata report
+            // any errors
+            return null;
+        }
+        if (requiresFullMetadata(metadata))
+            return null;
+
+        parser = CompiledParser.forCli(metadata, typeConverter, commandFactory, argumentFiles, conversionPool);
+        if (restricted.size() >= MAX_CACHED_PARSERS)
+            restricted.clear();
+        restricted.putIfAbsent(selected, parser);
+        return parser;
+    }
+
+    /**
+     * Selects the commands and groups named by the arguments including those
+     * named in the expansions of any aliases
+     */
+    private Set<Integer> select(List<String> tokens) {
+        Set<Integer> selected = new HashSet<Integer>();
+        Set<String> expanded = new HashSet<String>();
+        Deque<String> candidates = new ArrayDeque<String>(tokens);
+        while (!candidates.isEmpty()) {
+            String candidate = candidates.pop();
+            selected.addAll(names.get(candidate));
+            AliasMetadata alias = aliasesByName.get(candidate);
+            if (alias != null && expanded.add(candidate))
+                candidates.addAll(alias.getArguments());
+        }
+        return selected;
+    }
+
+    /**
+     * Determines whether commands need the full metadata, commands that have
+     * metadata injected must see the full metadata
+     */
+    private static boolean requiresFullMetadata(GlobalMetadata metadata) {
+        for (CommandMetadata command : metadata.getDefaultGroupCommands()) {
+            if (!command.getMetadataInjections().isEmpty())
+                return true;
+        }
+        for (CommandGroupMetadata group : metadata.getCommandGroups()) {
+            for (CommandMetadata command : group.getCommands()) {
+                if (!command.getMetadataInjections().isEmpty())
+                    return true;
+            }
+        }
+        return false;
+    }
+}
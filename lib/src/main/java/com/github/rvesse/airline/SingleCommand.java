@@ -18,40 +18,102 @@
 
 package com.github.rvesse.airline;
 
-import com.github.rvesse.airline.model.ArgumentsMetadata;
 import com.github.rvesse.airline.model.CommandMetadata;
 import com.github.rvesse.airline.model.MetadataLoader;
-import com.github.rvesse.airline.model.OptionMetadata;
-import com.github.rvesse.airline.parser.ParseArgumentsMissingException;
-import com.github.rvesse.airline.parser.ParseArgumentsUnexpectedException;
-import com.github.rvesse.airline.parser.ParseCommandMissingException;
-import com.github.rvesse.airline.parser.ParseCommandUnrecognizedException;
-import com.github.rvesse.airline.parser.ParseOptionMissingException;
-import com.github.rvesse.airline.parser.ParseOptionMissingValueException;
-import com.github.rvesse.airline.parser.ParseState;
-import com.github.rvesse.airline.parser.Parser;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-
-import java.util.List;
-
-import static com.github.rvesse.airline.parser.ParserUtil.createInstance;
+import com.github.rvesse.airline.parser.DeferredArguments;
+import com.github.rvesse.airline.parser.ParseResult;
+
+import java.util.concurrent.ForkJoinPool;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class SingleCommand<C>
 {
     public static <C> SingleCommand<C> singleCommand(Class<C> command)
     {
-        return new SingleCommand<C>(command);
+        return new SingleCommand<C>(command, TypeConverter.newInstance());
+    }
+
+    /**
+     * Creates a single command parser that uses the given type converter
+     * 
+     * @param command
+     *            Command class
+     * @param typeConverter
+     *            Type converter used to convert arguments into the Java types
+     *            that the options and arguments expect
+     * @return Single command parser
+     */
+    public static <C> SingleCommand<C> singleCommand(Class<C> command, TypeConverter typeConverter)
+    {
+        return new SingleCommand<C>(command, typeConverter);
     }
 
     private final CommandMetadata commandMetadata;
+    private final TypeConverter typeConverter;
+    private final boolean argumentFiles;
+    private final ForkJoinPool conversionPool;
+    private final CompiledParser<C> compiled;
 
-    private SingleCommand(Class<C> command)
+    private SingleCommand(Class<C> command, TypeConverter typeConverter)
     {
         checkNotNull(command, "command is null");
+        checkNotNull(typeConverter, "typeConverter is null");
 
+        this.typeConverter = typeConverter;
+        this.argumentFiles = false;
+        this.conversionPool = null;
         commandMetadata = MetadataLoader.loadCommand(command);
+        compiled = CompiledParser.forCommand(commandMetadata, typeConverter, false, null);
+    }
+
+    private SingleCommand(CommandMetadata commandMetadata, TypeConverter typeConverter, boolean argumentFiles,
+            ForkJoinPool conversionPool)
+    {
+        this.typeConverter = typeConverter;
+        this.commandMetadata = commandMetadata;
+        this.argumentFiles = argumentFiles;
+        this.conversionPool = conversionPool;
+        compiled = CompiledParser.forCommand(commandMetadata, typeConverter, argumentFiles, conversionPool);
+    }
+
+    /**
+     * Creates a copy of this single command parser that expands argument
+     * files, arguments of the form {@code @path} are replaced by the arguments
+     * held in the file, see {@link com.github.rvesse.airline.parser.ArgumentFiles}
+     * 
+     * @return Single command parser
+     */
+    public SingleCommand<C> withArgumentFiles()
+    {
+        return new SingleCommand<C>(commandMetadata, typeConverter, true, conversionPool);
+    }
+
+    /**
+     * Creates a copy of this single command parser that converts arguments in
+     * parallel on a shared pool once parsing has finished, see
+     * {@link #withParallelConversion(ForkJoinPool)}
+     * 
+     * @return Single command parser
+     */
+    public SingleCommand<C> withParallelConversion()
+    {
+        return withParallelConversion(DeferredArguments.getDefaultPool());
+    }
+
+    /**
+     * Creates a copy of this single command parser that converts arguments in
+     * parallel on the given pool once parsing has finished, see
+     * {@link DeferredArguments}
+     * 
+     * @param pool
+     *            Pool to convert on
+     * @return Single command parser
+     */
+    public SingleCommand<C> withParallelConversion(ForkJoinPool pool)
+    {
+        checkNotNull(pool, "pool is null");
+        return new SingleCommand<C>(commandMetadata, typeConverter, argumentFiles, pool);
     }
 
     public CommandMetadata getCommandMetadata()
@@ -59,60 +121,47 @@ public class SingleCommand<C>
         return commandMetadata;
     }
 
+    /**
+     * Gets the compiled parser for this command
+     * <p>
+     * The compiled parser is created once when the single command parser is
+     * created and is what the {@code parse} methods delegate to, it is
+     * immutable and may be shared between threads, see
+     * {@link CompiledParser} for details.
+     * </p>
+     * 
+     * @return Compiled parser
+     */
+    public CompiledParser<C> compile()
+    {
+        return compiled;
+    }
+
     public C parse(String... args)
     {
-        return parse(ImmutableList.copyOf(args));
+        return compiled.parse(args);
     }
     
     public C parse(Iterable<String> args)
     {
-        checkNotNull(args, "args is null");
-        
-        Parser parser = new Parser();
-        ParseState state = parser.parseCommand(commandMetadata, args);
-        validate(state);
-
-        CommandMetadata command = state.getCommand();
-
-        return createInstance(command.getType(),
-                command.getAllOptions(),
-                state.getParsedOptions(),
-                command.getArguments(),
-                state.getParsedArguments(),
-                command.getMetadataInjections(),
-                ImmutableMap.<Class<?>, Object>of(CommandMetadata.class, commandMetadata));
+        return compiled.parse(args);
     }
-    
-    private void validate(ParseState state)
+
+    /**
+     * Parses the arguments without throwing on invalid input, see
+     * {@link CompiledParser#tryParse(CommandFactory, Iterable)}
+     * 
+     * @param args
+     *            Arguments
+     * @return Result holding either the command or the errors
+     */
+    public ParseResult<C> tryParse(String... args)
+    {
+        return compiled.tryParse(args);
+    }
+
+    public ParseResult<C> tryParse(Iterable<String> args)
     {
-        CommandMetadata command = state.getCommand();
-        if (command == null) {
-            List<String> unparsedInput = state.getUnparsedInput();
-            if (unparsedInput.isEmpty()) {
-                throw new ParseCommandMissingException();
-            }
-            else {
-                throw new ParseCommandUnrecognizedException(unparsedInput);
-            }
-        }
-
-        ArgumentsMetadata arguments = command.getArguments();
-        if (state.getParsedArguments().isEmpty() && arguments != null && arguments.isRequired()) {
-            throw new ParseArgumentsMissingException(arguments.getTitle());
-        }
-        
-        if (!state.getUnparsedInput().isEmpty()) {
-            throw new ParseArgumentsUnexpectedException(state.getUnparsedInput());
-        }
-
-        if (state.getLocation() == Context.OPTION) {
-            throw new ParseOptionMissingValueException(state.getCurrentOption().getTitle());
-        }
-
-        for (OptionMetadata option : command.getAllOptions()) {
-            if (option.isRequired() && !state.getParsedOptions().containsKey(option)) {
-                throw new ParseOptionMissingException(option.getOptions().iterator().next());
-            }
-        }
+        return compiled.tryParse(args);
     }
 }
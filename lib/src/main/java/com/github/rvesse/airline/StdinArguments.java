@@ -0,0 +1,23 @@
+package com.github.rvesse.airline;
+
+/**
+ * How the {@link Arguments} of a command may be read from standard input when
+ * the argument {@code -} is given, see {@link Arguments#stdin()}
+ */
+public enum StdinArguments
+{
+    /**
+     * Arguments are never read from standard input, {@code -} is an ordinary
+     * argument
+     */
+    NONE,
+    /**
+     * Each line of standard input is an argument, empty lines are ignored
+     */
+    LINES,
+    /**
+     * Arguments are separated by NUL characters as produced by
+     * {@code find -print0}
+     */
+    NUL
+}
@@ -1,18 +1,156 @@
 package com.github.rvesse.airline;
 
 import com.github.rvesse.airline.parser.ParseOptionConversionException;
+import com.github.rvesse.airline.parser.PrimitiveValues;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Converts string values into the Java types that options and arguments expect
+ * <p>
+ * The converter for a given type is resolved once and then cached. Custom
+ * converters may be registered for specific types via
+ * {@link #register(Class, Function)} and take precedence over the built-in
+ * conversions. Otherwise the following are tried in order:
+ * </p>
+ * <ol>
+ * <li>Built-in conversions for {@link String}, {@link Boolean}, {@link Byte},
+ * {@link Short}, {@link Integer}, {@link Long}, {@link Float} and
+ * {@link Double} (and their primitive equivalents)</li>
+ * <li>A static {@code fromString(String)} method</li>
+ * <li>A static {@code valueOf(String)} method, this covers enums</li>
+ * <li>A constructor that takes a single {@link String}</li>
+ * </ol>
+ * <p>
+ * Options and arguments whose fields are arrays of {@code int}, {@code long},
+ * {@code double} or {@code boolean} are converted via
+ * {@link #newPrimitiveValues(Class)} so their values are never boxed, unless a
+ * custom converter is registered for the primitive type.
+ * </p>
+ * <p>
+ * Instances are safe to share between threads.
+ * </p>
+ */
 public class TypeConverter
 {
+    private static final Function<String, Object> UNSUPPORTED = new Function<String, Object>()
+    {
+        @Override
+        public Object apply(String value)
+        {
+            throw new IllegalArgumentException("No conversion available");
+        }
+    };
+
+    private static final Map<Class<?>, Function<String, ?>> BUILTIN_CONVERTERS = builtinConverters();
+
+    /**
+     * Converters resolved from the built-ins or via reflection, these do not
+     * vary between instances so are shared. Using a {@link ClassValue} means
+     * resolved converters do not prevent classes from being unloaded.
+     */
+    private static final ClassValue<Function<String, ?>> DEFAULT_CONVERTERS = new ClassValue<Function<String, ?>>()
+    {
+        @Override
+        protected Function<String, ?> computeValue(Class<?> type)
+        {
+            return resolveConverter(type);
+        }
+    };
+
+    private final ConcurrentMap<Class<?>, Function<String, ?>> converters = new ConcurrentHashMap<Class<?>, Function<String, ?>>();
+
     public static TypeConverter newInstance()
     {
         return new TypeConverter();
     }
 
+    /**
+     * Registers a custom converter for a type, this takes precedence over any
+     * built-in conversion for the type
+     *
+     * @param type
+     *            Type
+     * @param converter
+     *            Converter, should throw an exception if the value cannot be
+     *            converted
+     * @return Type converter
+     */
+    public <T> TypeConverter register(Class<T> type, Function<String, ? extends T> converter)
+    {
+        Preconditions.checkNotNull(type, "type is null");
+        Preconditions.checkNotNull(converter, "converter is null");
+        converters.put(type, converter);
+        return this;
+    }
+
+    /**
+     * Creates a new converter with the same custom converters registered,
+     * registering further converters on either does not affect the other.
+     * Subclasses that change how values are converted should override this.
+     *
+     * @return Type converter
+     */
+    public TypeConverter copy()
+    {
+        TypeConverter copy = new TypeConverter();
+        copy.converters.putAll(converters);
+        return copy;
+    }
+
+    /**
+     * Gets the converter that will be used for the given type
+     *
+     * @param type
+     *            Type
+     * @return Converter, this throws an exception if the value cannot be
+     *         converted
+     */
+    public Function<String, ?> getConverter(Class<?> type)
+    {
+        Preconditions.checkNotNull(type, "type is null");
+
+        Function<String, ?> converter = converters.get(type);
+        if (converter != null) {
+            return converter;
+        }
+        return DEFAULT_CONVERTERS.get(type);
+    }
+
+    /**
+     * Creates an accumulator that converts values of a primitive type straight
+     * into a primitive array without boxing them
+     *
+     * @param type
+     *            Type
+     * @return Values or {@code null} if values of the type must be converted
+     *         individually via {@link #getConverter(Class)}, either because
+     *         the type has no specialised representation or because a custom
+     *         converter is registered for it
+     */
+    public PrimitiveValues newPrimitiveValues(Class<?> type)
+    {
+        Preconditions.checkNotNull(type, "type is null");
+
+        if (converters.containsKey(type)) {
+            return null;
+        }
+        return PrimitiveValues.create(type);
+    }
+
     public Object convert(String name, Class<?> type, String value)
     {
         Preconditions.checkNotNull(name, "name is null");
@@ -20,61 +158,178 @@ public class TypeConverter
         Preconditions.checkNotNull(value, "value is null");
 
         try {
-            if (String.class.isAssignableFrom(type)) {
+            return getConverter(type).apply(value);
+        }
+        catch (Exception ignored) {
+        }
+
+        throw new ParseOptionConversionException(name, value, type.getSimpleName());
+    }
+
+    //
+    // Converter resolution
+    //
+
+    private static Map<Class<?>, Function<String, ?>> builtinConverters()
+    {
+        Function<String, String> string = new Function<String, String>()
+        {
+            @Override
+            public String apply(String value)
+            {
                 return value;
             }
-            else if (Boolean.class.isAssignableFrom(type) || Boolean.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Boolean> bool = new Function<String, Boolean>()
+        {
+            @Override
+            public Boolean apply(String value)
+            {
                 return Boolean.valueOf(value);
             }
-            else if (Byte.class.isAssignableFrom(type) || Byte.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Byte> b = new Function<String, Byte>()
+        {
+            @Override
+            public Byte apply(String value)
+            {
                 return Byte.valueOf(value);
             }
-            else if (Short.class.isAssignableFrom(type) || Short.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Short> s = new Function<String, Short>()
+        {
+            @Override
+            public Short apply(String value)
+            {
                 return Short.valueOf(value);
             }
-            else if (Integer.class.isAssignableFrom(type) || Integer.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Integer> i = new Function<String, Integer>()
+        {
+            @Override
+            public Integer apply(String value)
+            {
                 return Integer.valueOf(value);
             }
-            else if (Long.class.isAssignableFrom(type) || Long.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Long> l = new Function<String, Long>()
+        {
+            @Override
+            public Long apply(String value)
+            {
                 return Long.valueOf(value);
             }
-            else if (Float.class.isAssignableFrom(type) || Float.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Float> f = new Function<String, Float>()
+        {
+            @Override
+            public Float apply(String value)
+            {
                 return Float.valueOf(value);
             }
-            else if (Double.class.isAssignableFrom(type) || Double.TYPE.isAssignableFrom(type)) {
+        };
+        Function<String, Double> d = new Function<String, Double>()
+        {
+            @Override
+            public Double apply(String value)
+            {
                 return Double.valueOf(value);
             }
-        }
-        catch (Exception ignored) {
+        };
+
+        return ImmutableMap.<Class<?>, Function<String, ?>>builder()
+                .put(String.class, string)
+                .put(Boolean.class, bool).put(Boolean.TYPE, bool)
+                .put(Byte.class, b).put(Byte.TYPE, b)
+                .put(Short.class, s).put(Short.TYPE, s)
+                .put(Integer.class, i).put(Integer.TYPE, i)
+                .put(Long.class, l).put(Long.TYPE, l)
+                .put(Float.class, f).put(Float.TYPE, f)
+                .put(Double.class, d).put(Double.TYPE, d)
+                .build();
+    }
+
+    private static Function<String, ?> resolveConverter(Class<?> type)
+    {
+        Function<String, ?> converter = BUILTIN_CONVERTERS.get(type);
+        if (converter != null) {
+            return converter;
         }
 
         // Look for a static fromString(String) method
-        try {
-            Method valueOf = type.getMethod("fromString", String.class);
-            if (valueOf.getReturnType().isAssignableFrom(type)) {
-                return valueOf.invoke(null, value);
-            }
-        } catch (Throwable ignored) {
+        converter = resolveFactoryMethod(type, "fromString");
+        if (converter != null) {
+            return converter;
         }
 
         // Look for a static valueOf(String) method (this covers enums which have a valueOf method)
+        converter = resolveFactoryMethod(type, "valueOf");
+        if (converter != null) {
+            return converter;
+        }
+
+        // Look for a constructor taking a string
         try {
-            Method valueOf = type.getMethod("valueOf", String.class);
-            if (valueOf.getReturnType().isAssignableFrom(type)) {
-                return valueOf.invoke(null, value);
+            Constructor<?> constructor = type.getConstructor(String.class);
+            if (!Modifier.isAbstract(type.getModifiers())) {
+                makeAccessible(constructor);
+                return new MethodHandleConverter(MethodHandles.lookup().unreflectConstructor(constructor));
             }
         }
         catch (Throwable ignored) {
         }
 
-        // Look for a constructor taking a string
+        return UNSUPPORTED;
+    }
+
+    private static Function<String, ?> resolveFactoryMethod(Class<?> type, String methodName)
+    {
         try {
-            Constructor<?> constructor = type.getConstructor(String.class);
-            return constructor.newInstance(value);
+            Method method = type.getMethod(methodName, String.class);
+            if (Modifier.isStatic(method.getModifiers()) && method.getReturnType().isAssignableFrom(type)) {
+                makeAccessible(method);
+                return new MethodHandleConverter(MethodHandles.lookup().unreflect(method));
+            }
         }
         catch (Throwable ignored) {
         }
+        return null;
+    }
 
-        throw new ParseOptionConversionException(name, value, type.getSimpleName());
+    private static void makeAccessible(AccessibleObject member)
+    {
+        try {
+            // Public members of non-public classes need this
+            member.setAccessible(true);
+        }
+        catch (RuntimeException ignored) {
+            // Unreflecting will report the access failure if it matters
+        }
+    }
+
+    /**
+     * Converter that invokes a method handle for a static factory method or
+     * constructor that takes a single string
+     */
+    private static final class MethodHandleConverter
+            implements Function<String, Object>
+    {
+        private final MethodHandle handle;
+
+        private MethodHandleConverter(MethodHandle handle)
+        {
+            this.handle = handle.asType(MethodType.methodType(Object.class, String.class));
+        }
+
+        @Override
+        public Object apply(String value)
+        {
+            try {
+                return (Object) handle.invokeExact(value);
+            }
+            catch (Throwable e) {
+                throw Throwables.propagate(e);
+            }
+        }
     }
 }
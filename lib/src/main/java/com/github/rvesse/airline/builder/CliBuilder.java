@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -18,6 +19,8 @@ import com.github.rvesse.airline.CommandFactory;
 import com.github.rvesse.airline.CommandFactoryDefault;
 import com.github.rvesse.airline.TypeConverter;
 import com.github.rvesse.airline.parser.AliasArgumentsParser;
+import com.github.rvesse.airline.parser.DeferredArguments;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
@@ -26,13 +29,17 @@ public class CliBuilder<C> extends AbstractBuilder<Cli<C>> {
     protected final String name;
     protected String description;
     protected TypeConverter typeConverter = new TypeConverter();
+    protected final Map<Class<?>, Function<String, ?>> typeConverters = newHashMap();
     protected String optionSeparators;
     private Class<? extends C> defaultCommand;
     private final List<Class<? extends C>> defaultCommandGroupCommands = newArrayList();
     protected final Map<String, AliasBuilder<C>> aliases = newHashMap();
     protected final Map<String, GroupBuilder<C>> groups = newHashMap();
     protected CommandFactory<C> commandFactory = new CommandFactoryDefault<C>();
-    protected boolean allowAbbreviatedCommands, allowAbbreviatedOptions, aliasesOverrideBuiltIns;
+    protected boolean allowAbbreviatedCommands, allowAbbreviatedOptions, aliasesOverrideBuiltIns, lazyMetadata,
+            argumentFiles;
+    protected File metadataCache;
+    protected ForkJoinPool conversionPool;
 
     public CliBuilder(String name) {
         checkNotBlank(name, "Program name");
@@ -50,6 +57,36 @@ public class CliBuilder<C> extends AbstractBuilder<Cli<C>> {
         return this;
     }
 
+    public CliBuilder<C> withTypeConverter(TypeConverter typeConverter) {
+        Preconditions.checkNotNull(typeConverter, "typeConverter is null");
+        this.typeConverter = typeConverter;
+        return this;
+    }
+
+    /**
+     * Registers a custom converter for values of the given type, this takes
+     * precedence over the built-in conversions of the type converter
+     * <p>
+     * Converters are registered on a copy of the type converter made by each
+     * {@link #build()} so they apply whichever type converter is set and the
+     * type converter passed to {@link #withTypeConverter(TypeConverter)} is
+     * never modified.
+     * </p>
+     * 
+     * @param type
+     *            Type
+     * @param converter
+     *            Converter, should throw an exception if a value cannot be
+     *            converted
+     * @return Builder
+     */
+    public <T> CliBuilder<C> withTypeConverter(Class<T> type, Function<String, ? extends T> converter) {
+        Preconditions.checkNotNull(type, "type is null");
+        Preconditions.checkNotNull(converter, "converter is null");
+        this.typeConverters.put(type, converter);
+        return this;
+    }
+
     public CliBuilder<C> withDefaultCommand(Class<? extends C> defaultCommand) {
         this.defaultCommand = defaultCommand;
         return this;
@@ -196,8 +233,10 @@ public class CliBuilder<C> extends AbstractBuilder<Cli<C>> {
      * </p>
      * <h3>Notes</h3>
      * <ul>
-     * <li>Recursive aliases are not supported and will result in errors when
-     * used</li>
+     * <li>An alias whose first argument is the name of another alias expands
+     * that alias in turn, expansion stops if it would re-enter an alias that is
+     * already being expanded so an alias may refer to a command of the same
+     * name e.g. {@code add=add --verbose}</li>
      * <li>Aliases cannot override built-ins unless you have called
      * {@link #withAliasesOverridingBuiltIns()} on your builder</li>
      * </ul>
@@ -269,10 +308,132 @@ public class CliBuilder<C> extends AbstractBuilder<Cli<C>> {
         return this;
     }
 
+    /**
+     * Enables lazy loading of command metadata
+     * <p>
+     * By default the metadata for every command is loaded when the CLI is
+     * built. With lazy loading only the names of commands and groups are read
+     * from their annotations when the CLI is built, each parse then loads just
+     * the commands and groups named in the arguments. This greatly reduces
+     * start up time for CLIs with many commands where each invocation uses only
+     * one. The full metadata is loaded on first use of
+     * {@link Cli#getMetadata()} or {@link Cli#compile()}, e.g. by help and
+     * completion generators, and whenever the arguments cannot be parsed with
+     * just the named commands e.g. when relying upon the default command or
+     * when the command has metadata injected.
+     * </p>
+     * <p>
+     * Lazy loading has no effect if command or option abbreviation is enabled
+     * since resolving abbreviations requires all names to be known. Global and
+     * group options should be declared on every command that accepts them,
+     * typically via a shared options class, since options declared only on
+     * commands that were not named are not recognised unless the parse would
+     * otherwise fail. Errors in the metadata of a command are only detected
+     * when it is loaded, and the group builders must not be modified after the
+     * CLI is built.
+     * </p>
+     * 
+     * @return Builder
+     */
+    public CliBuilder<C> withLazyMetadata() {
+        this.lazyMetadata = true;
+        return this;
+    }
+
+    /**
+     * Enables caching of the CLI metadata in the given file
+     * <p>
+     * When the CLI is built the metadata is restored from a binary snapshot
+     * held in the file rather than being loaded from the command classes via
+     * reflection, this makes building the CLI much cheaper for CLIs that are
+     * launched many times e.g. from scripts. The snapshot is only used if it
+     * was saved for the same CLI configuration and none of the class files, or
+     * the JARs containing them, that the metadata was loaded from have changed
+     * since, otherwise the metadata is loaded as normal and the snapshot is
+     * rewritten. Failing to read or write the snapshot never causes building
+     * the CLI to fail.
+     * </p>
+     * <p>
+     * When a metadata cache is used {@link #withLazyMetadata()} has no effect
+     * since all the metadata is restored at once. CLIs whose command metadata
+     * was generated at compile time by the {@code airline-processor} already
+     * avoid reflection and are not cached.
+     * </p>
+     * 
+     * @param file
+     *            Snapshot file, created if it does not exist
+     * @return Builder
+     */
+    public CliBuilder<C> withMetadataCache(File file) {
+        Preconditions.checkNotNull(file, "file is null");
+        this.metadataCache = file;
+        return this;
+    }
+
+    /**
+     * Enables argument files, also known as response files
+     * <p>
+     * An argument of the form {@code @path} is replaced by the arguments held
+     * in the file at {@code path}, this allows invocations whose arguments
+     * would exceed the operating system limits on command lines. An argument
+     * that should start with a literal {@code @} is given as {@code @@}. Files
+     * are memory mapped and their arguments read lazily as they are parsed,
+     * see {@link com.github.rvesse.airline.parser.ArgumentFiles} for the
+     * format.
+     * </p>
+     * 
+     * @return Builder
+     */
+    public CliBuilder<C> withArgumentFiles() {
+        this.argumentFiles = true;
+        return this;
+    }
+
+    /**
+     * Enables parallel conversion of arguments on a shared pool, see
+     * {@link #withParallelConversion(ForkJoinPool)}
+     * 
+     * @return Builder
+     */
+    public CliBuilder<C> withParallelConversion() {
+        return withParallelConversion(DeferredArguments.getDefaultPool());
+    }
+
+    /**
+     * Enables parallel conversion of arguments
+     * <p>
+     * Rather than converting each argument as it is parsed the conversion of
+     * the arguments of a command is deferred until parsing has finished, the
+     * arguments are then split into chunks that are converted in parallel on
+     * the given pool. This helps commands that take very many arguments whose
+     * type is expensive to convert, see
+     * {@link com.github.rvesse.airline.parser.DeferredArguments} for details.
+     * Any custom type converters must be safe to call concurrently.
+     * </p>
+     * 
+     * @param pool
+     *            Pool to convert on
+     * @return Builder
+     */
+    public CliBuilder<C> withParallelConversion(ForkJoinPool pool) {
+        Preconditions.checkNotNull(pool, "pool is null");
+        this.conversionPool = pool;
+        return this;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     public Cli<C> build() {
+        TypeConverter typeConverter = this.typeConverter;
+        if (!typeConverters.isEmpty()) {
+            typeConverter = typeConverter.copy();
+            for (Map.Entry<Class<?>, Function<String, ?>> entry : typeConverters.entrySet()) {
+                typeConverter.register((Class) entry.getKey(), (Function) entry.getValue());
+            }
+        }
         return new Cli<C>(name, description, typeConverter, defaultCommand, commandFactory,
                 defaultCommandGroupCommands, groups.values(), aliases.values(), aliasesOverrideBuiltIns,
-                allowAbbreviatedCommands, allowAbbreviatedOptions);
+                allowAbbreviatedCommands, allowAbbreviatedOptions, lazyMetadata, metadataCache, argumentFiles,
+                conversionPool);
     }
 }
@@ -73,6 +73,26 @@ public class GroupBuilder<C> {
         return this;
     }
     
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    public Class<? extends C> getDefaultCommand() {
+        return defaultCommand;
+    }
+
+    public List<Class<? extends C>> getCommands() {
+        return ImmutableList.copyOf(commands);
+    }
+
     public CommandGroupMetadata build() {
         CommandMetadata groupDefault = MetadataLoader.loadCommand(defaultCommand);
         List<CommandMetadata> groupCommands = MetadataLoader.loadCommands(commands);
@@ -0,0 +1,17 @@
+package com.github.rvesse.airline.daemon;
+
+/**
+ * Listener notified of the results of a {@link BatchRunner} as they become
+ * available
+ */
+public interface BatchListener {
+
+    /**
+     * Called on the thread running the batch when a result is available, in
+     * script order if the runner is ordered otherwise in completion order
+     *
+     * @param result
+     *            Result
+     */
+    void completed(BatchResult result);
+}
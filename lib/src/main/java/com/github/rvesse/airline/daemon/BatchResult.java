@@ -0,0 +1,73 @@
+package com.github.rvesse.airline.daemon;
+
+/**
+ * Result of running one command line of a script with a {@link BatchRunner}
+ */
+public final class BatchResult {
+
+    private final int sequence;
+    private final int lineNumber;
+    private final String commandLine;
+    private final int exitCode;
+    private final String output, error;
+
+    BatchResult(int sequence, int lineNumber, String commandLine, int exitCode, String output, String error) {
+        this.sequence = sequence;
+        this.lineNumber = lineNumber;
+        this.commandLine = commandLine;
+        this.exitCode = exitCode;
+        this.output = output;
+        this.error = error;
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the number of the line of the script the command line starts on
+     *
+     * @return Line number, starting from 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    /**
+     * Gets the exit code, {@link DaemonServer#EXIT_PARSE_ERROR} if the command
+     * line could not be parsed and {@link DaemonServer#EXIT_ERROR} if the
+     * command threw an error
+     *
+     * @return Exit code
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Gets the standard output written by the command
+     *
+     * @return Output
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Gets the standard error written by the command or the parser
+     *
+     * @return Error output
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d: %s -> %d", lineNumber, commandLine, exitCode);
+    }
+}
@@ -0,0 +1,327 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.CompiledParser;
+import com.github.rvesse.airline.parser.ShellArgumentsParser;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs scripts of command lines with a single resident CLI and a pool of
+ * workers so that large scripts do not pay for a JVM per command
+ * <p>
+ * Each line of a script is a command line split into arguments by the
+ * {@link ShellArgumentsParser}, a line that ends within quotes or with a
+ * backslash is continued on the next line and blank lines and lines starting
+ * with {@code #} are ignored. The script is read and parsed on the calling
+ * thread while previously parsed commands are run by a {@link CommandExecutor}
+ * on the workers, at most a few commands per worker are queued so parsing
+ * never runs far ahead of execution. Each command has an {@link Invocation}
+ * with an empty standard input and its standard output and error captured in
+ * its {@link BatchResult}.
+ * </p>
+ * <p>
+ * Results are returned, and passed to a {@link BatchListener} as soon as they
+ * are available, either in script order or in completion order. Workers are
+ * daemon platform threads by default, a different {@link ThreadFactory} such
+ * as one creating virtual threads may be supplied where the JVM has them.
+ * </p>
+ *
+ * @param <C>
+ *            Command type
+ */
+public class BatchRunner<C> {
+
+    private static final int QUEUED_PER_WORKER = 4;
+
+    private final CompiledParser<C> parser;
+    private final CommandExecutor<C> executor;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private boolean ordered = true;
+    private ThreadFactory threadFactory;
+
+    /**
+     * Creates a new runner for commands that implement {@link Runnable} or
+     * {@link java.util.concurrent.Callable}
+     *
+     * @param cli
+     *            CLI, its metadata is loaded and compiled immediately
+     */
+    public BatchRunner(Cli<C> cli) {
+        this(cli, new DefaultCommandExecutor<C>());
+    }
+
+    /**
+     * Creates a new runner
+     *
+     * @param cli
+     *            CLI, its metadata is loaded and compiled immediately
+     * @param executor
+     *            Command executor, called concurrently by the workers
+     */
+    public BatchRunner(Cli<C> cli, CommandExecutor<C> executor) {
+        Preconditions.checkNotNull(cli, "cli is null");
+        Preconditions.checkNotNull(executor, "executor is null");
+        this.parser = cli.compile();
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the number of workers, defaults to the number of processors
+     *
+     * @param workers
+     *            Number of workers
+     */
+    public void setWorkers(int workers) {
+        Preconditions.checkArgument(workers > 0, "workers must be positive");
+        this.workers = workers;
+    }
+
+    /**
+     * Sets whether results are collected in script order, the default, or in
+     * completion order
+     *
+     * @param ordered
+     *            Whether results are ordered
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Sets the factory used to create the workers
+     *
+     * @param threadFactory
+     *            Thread factory, {@code null} for daemon platform threads
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Runs a UTF-8 encoded script file
+     *
+     * @param script
+     *            Script
+     * @return Results
+     * @throws IOException
+     *             Thrown if the script cannot be read
+     */
+    public List<BatchResult> run(File script) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(script), Charsets.UTF_8)) {
+            return run(reader, null);
+        }
+    }
+
+    /**
+     * Runs a script
+     *
+     * @param script
+     *            Script
+     * @return Results
+     * @throws IOException
+     *             Thrown if the script cannot be read
+     */
+    public List<BatchResult> run(Reader script) throws IOException {
+        return run(script, null);
+    }
+
+    /**
+     * Runs a script
+     *
+     * @param script
+     *            Script
+     * @param listener
+     *            Listener notified of each result as it becomes available,
+     *            may be {@code null}
+     * @return Results
+     * @throws IOException
+     *             Thrown if the script cannot be read, commands already
+     *             started are completed first
+     */
+    public List<BatchResult> run(Reader script, BatchListener listener) throws IOException {
+        Preconditions.checkNotNull(script, "script is null");
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, threadFactory != null ? threadFactory
+                : new WorkerThreadFactory());
+        final BlockingQueue<BatchResult> completed = new LinkedBlockingQueue<BatchResult>();
+        final Semaphore queued = new Semaphore(workers * QUEUED_PER_WORKER);
+        Collector collector = new Collector(ordered, listener);
+
+        BufferedReader reader = new BufferedReader(script);
+        Map<String, String> env = System.getenv();
+        File workingDirectory = new File(System.getProperty("user.dir"));
+        int lineNumber = 0;
+        int submitted = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                final int startLine = lineNumber;
+                StringBuilder builder = new StringBuilder(line);
+                while (!ShellArgumentsParser.isComplete(builder.toString())) {
+                    line = reader.readLine();
+                    if (line == null)
+                        break;
+                    lineNumber++;
+                    builder.append('\n').append(line);
+                }
+                final String commandLine = builder.toString();
+                String trimmed = commandLine.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                    continue;
+
+                // Only counted once a result is certain to be produced for it
+                final int sequence = submitted;
+                final Output output = new Output();
+                final Invocation invocation;
+                final C command;
+                try {
+                    invocation = new Invocation(ShellArgumentsParser.parse(commandLine), env, workingDirectory,
+                            new ByteArrayInputStream(new byte[0]), output.out, output.err);
+                    Invocation.setCurrent(invocation);
+                    command = parser.parse(invocation.getArguments());
+                } catch (RuntimeException e) {
+                    int exitCode = DaemonServer.parseFailed(e, output.err);
+                    completed.add(output.toResult(sequence, startLine, commandLine, exitCode));
+                    submitted++;
+                    continue;
+                } finally {
+                    Invocation.setCurrent(null);
+                }
+
+                queued.acquireUninterruptibly();
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            int exitCode = DaemonServer.execute(executor, command, invocation);
+                            completed.add(output.toResult(sequence, startLine, commandLine, exitCode));
+                        } finally {
+                            queued.release();
+                        }
+                    }
+                });
+                submitted++;
+
+                BatchResult result;
+                while ((result = completed.poll()) != null) {
+                    collector.add(result);
+                }
+            }
+        } finally {
+            pool.shutdown();
+            while (collector.size() < submitted) {
+                try {
+                    collector.add(completed.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return collector.results;
+    }
+
+    /**
+     * Collects results in the configured order
+     */
+    private static final class Collector {
+        private final List<BatchResult> results = new ArrayList<BatchResult>();
+        private final Queue<BatchResult> pending;
+        private final BatchListener listener;
+        private int received = 0;
+
+        Collector(boolean ordered, BatchListener listener) {
+            this.pending = ordered ? new PriorityQueue<BatchResult>(11, new Comparator<BatchResult>() {
+                @Override
+                public int compare(BatchResult a, BatchResult b) {
+                    return Integer.compare(a.getSequence(), b.getSequence());
+                }
+            }) : null;
+            this.listener = listener;
+        }
+
+        int size() {
+            return received;
+        }
+
+        void add(BatchResult result) {
+            received++;
+            if (pending == null) {
+                deliver(result);
+                return;
+            }
+            pending.add(result);
+            while (!pending.isEmpty() && pending.peek().getSequence() == results.size()) {
+                deliver(pending.remove());
+            }
+        }
+
+        private void deliver(BatchResult result) {
+            results.add(result);
+            if (listener != null)
+                listener.completed(result);
+        }
+    }
+
+    /**
+     * Captured standard output and error of a command
+     */
+    private static final class Output {
+        private final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        private final PrintStream out, err;
+
+        Output() {
+            try {
+                out = new PrintStream(outBytes, false, "UTF-8");
+                err = new PrintStream(errBytes, false, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        BatchResult toResult(int sequence, int lineNumber, String commandLine, int exitCode) {
+            out.flush();
+            err.flush();
+            return new BatchResult(sequence, lineNumber, commandLine, exitCode, new String(outBytes.toByteArray(),
+                    Charsets.UTF_8), new String(errBytes.toByteArray(), Charsets.UTF_8));
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger id = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "airline-batch-worker-" + id.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.rvesse.airline.daemon;
+
+/**
+ * Executes the commands parsed by a {@link DaemonServer} or an
+ * {@link InteractiveShell}
+ *
+ * @param <C>
+ *            Command type
+ */
+public interface CommandExecutor<C> {
+
+    /**
+     * Executes a command
+     *
+     * @param command
+     *            Command
+     * @param invocation
+     *            Invocation whose streams, environment and working directory
+     *            the command should use
+     * @return Exit code that the client exits with
+     * @throws Exception
+     *             Thrown if the command fails, the client exits with
+     *             {@link DaemonServer#EXIT_ERROR}
+     */
+    int execute(C command, Invocation invocation) throws Exception;
+}
@@ -0,0 +1,172 @@
+package com.github.rvesse.airline.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Thin client that forwards an invocation to a {@link DaemonServer}
+ * <p>
+ * The arguments, environment, working directory and standard input of the
+ * client are forwarded to the server, the standard output and error of the
+ * command are written to those of the client and {@link #main(String...)}
+ * exits with the exit code of the command. The client only uses classes from
+ * the JDK so that it starts as quickly as possible, it can be launched as
+ * follows:
+ * </p>
+ *
+ * <pre>
+ * java -cp airline.jar com.github.rvesse.airline.daemon.DaemonClient daemon.info arg1 arg2 ...
+ * </pre>
+ */
+public final class DaemonClient {
+
+    /**
+     * Exit code used when the daemon cannot be contacted
+     */
+    public static final int EXIT_UNAVAILABLE = 127;
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Runs the client, the first argument is the daemon information file and
+     * the remaining arguments are forwarded to the daemon
+     *
+     * @param args
+     *            Arguments
+     */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.err.println("Usage: DaemonClient <info-file> [args...]");
+            System.exit(EXIT_UNAVAILABLE);
+        }
+        int exitCode;
+        try {
+            exitCode = run(new File(args[0]), Arrays.asList(args).subList(1, args.length), System.getenv(),
+                    new File(System.getProperty("user.dir")), System.in, System.out, System.err);
+        } catch (IOException e) {
+            System.err.println("Unable to contact daemon: " + e.getMessage());
+            exitCode = EXIT_UNAVAILABLE;
+        }
+        System.out.flush();
+        System.err.flush();
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs an invocation on the daemon
+     *
+     * @param infoFile
+     *            Daemon information file written by
+     *            {@link DaemonServer#start(File)}
+     * @param args
+     *            Arguments
+     * @param env
+     *            Environment
+     * @param workingDirectory
+     *            Working directory
+     * @param stdin
+     *            Standard input, read on a background thread
+     * @param stdout
+     *            Standard output
+     * @param stderr
+     *            Standard error
+     * @return Exit code of the command
+     * @throws IOException
+     *             Thrown if the daemon cannot be contacted or the connection
+     *             to it fails
+     */
+    public static int run(File infoFile, List<String> args, Map<String, String> env, File workingDirectory,
+            final InputStream stdin, OutputStream stdout, OutputStream stderr) throws IOException {
+        Properties info = new Properties();
+        try (InputStream input = new FileInputStream(infoFile)) {
+            info.load(input);
+        }
+        int port;
+        try {
+            port = Integer.parseInt(info.getProperty(DaemonProtocol.PORT));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid daemon information file " + infoFile);
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            out.writeInt(DaemonProtocol.MAGIC);
+            out.writeInt(DaemonProtocol.VERSION);
+            DaemonProtocol.writeString(out, info.getProperty(DaemonProtocol.TOKEN));
+            out.writeInt(args.size());
+            for (String arg : args) {
+                DaemonProtocol.writeString(out, arg);
+            }
+            out.writeInt(env.size());
+            for (Map.Entry<String, String> var : env.entrySet()) {
+                DaemonProtocol.writeString(out, var.getKey());
+                DaemonProtocol.writeString(out, var.getValue());
+            }
+            DaemonProtocol.writeString(out, workingDirectory.getAbsolutePath());
+            out.flush();
+
+            // Standard input may block indefinitely so is forwarded on a
+            // background thread that is abandoned once the command completes
+            Thread forwarder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[8192];
+                    try {
+                        int read;
+                        while ((read = stdin.read(buffer)) >= 0) {
+                            DaemonProtocol.writeFrame(out, DaemonProtocol.STDIN, buffer, 0, read);
+                        }
+                        DaemonProtocol.writeFrame(out, DaemonProtocol.STDIN_EOF, 0);
+                    } catch (IOException e) {
+                        // Connection closed
+                    }
+                }
+            }, "airline-daemon-stdin");
+            forwarder.setDaemon(true);
+            forwarder.start();
+
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    throw new IOException("Daemon closed the connection without an exit code");
+                }
+                int length = in.readInt();
+                if (type == DaemonProtocol.EXIT) {
+                    stdout.flush();
+                    stderr.flush();
+                    return length;
+                }
+                OutputStream target = type == DaemonProtocol.STDERR ? stderr : stdout;
+                while (length > 0) {
+                    int read = in.read(buffer, 0, Math.min(buffer.length, length));
+                    if (read < 0)
+                        throw new EOFException();
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+                target.flush();
+            }
+        }
+    }
+}
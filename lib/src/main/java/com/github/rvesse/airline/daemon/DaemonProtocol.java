@@ -0,0 +1,90 @@
+package com.github.rvesse.airline.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Wire protocol spoken between {@link DaemonClient} and {@link DaemonServer}
+ * <p>
+ * The client opens a connection and sends a header consisting of the magic
+ * number, protocol version, authentication token, arguments, environment and
+ * working directory. After that the client only sends standard input frames
+ * while the server sends standard output and standard error frames followed
+ * by a single exit frame, each frame is a type byte followed by an
+ * {@code int} length and that many bytes, the exit frame carries the exit
+ * code in place of the length.
+ * </p>
+ * <p>
+ * This class, like {@link DaemonClient}, deliberately only uses the JDK so
+ * that the client loads as few classes as possible.
+ * </p>
+ */
+final class DaemonProtocol {
+
+    static final int MAGIC = 0x41495244;
+    static final int VERSION = 1;
+
+    static final byte STDIN = 0;
+    static final byte STDIN_EOF = 1;
+    static final byte STDOUT = 2;
+    static final byte STDERR = 3;
+    static final byte EXIT = 4;
+
+    static final String PORT = "port";
+    static final String TOKEN = "token";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private DaemonProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return readString(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a string rejecting any longer than the given number of bytes
+     * before allocating space for it, used for anything read before the
+     * client is authenticated
+     */
+    static String readString(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        if (length > maxLength)
+            throw new IOException("String of " + length + " bytes exceeds the maximum of " + maxLength);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, byte[] data, int offset, int length)
+            throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(length);
+            out.write(data, offset, length);
+            out.flush();
+        }
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, int value) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(value);
+            out.flush();
+        }
+    }
+}
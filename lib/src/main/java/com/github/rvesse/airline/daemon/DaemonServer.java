@@ -0,0 +1,446 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.CompiledParser;
+import com.github.rvesse.airline.parser.ParseException;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves a CLI from a long running JVM so that repeated invocations do not
+ * pay for JVM start up, class loading and metadata loading, invocations are
+ * made via the thin {@link DaemonClient}
+ * <p>
+ * The server listens on a loopback TCP port and writes the port, plus a random
+ * token clients must present, to an information file readable only by its
+ * owner so only the same user can run commands. At most
+ * {@link #MAX_REQUESTS} connections are served at once and a client must send
+ * its header promptly, so other local users cannot tie up the daemon. Each
+ * connection is one invocation, the arguments are parsed with the compiled
+ * parser of the CLI and the command is run by a {@link CommandExecutor} on a
+ * thread of its own with the standard streams, environment and working
+ * directory of the client available via the {@link Invocation}. The exit code
+ * of the command is returned to the client which exits with it, if the
+ * arguments cannot be parsed the client exits with {@link #EXIT_PARSE_ERROR}
+ * and if the command, or the command factory creating it, throws an error
+ * with {@link #EXIT_ERROR}.
+ * </p>
+ * <p>
+ * Commands share the JVM of the daemon so must not call {@link System#exit(int)}
+ * or use the standard streams and working directory of the JVM, see
+ * {@link Invocation}.
+ * </p>
+ *
+ * @param <C>
+ *            Command type
+ */
+public class DaemonServer<C> implements Closeable {
+
+    /**
+     * Exit code used when a command throws an error
+     */
+    public static final int EXIT_ERROR = 1;
+    /**
+     * Exit code used when the arguments cannot be parsed
+     */
+    public static final int EXIT_PARSE_ERROR = 2;
+
+    /**
+     * Maximum number of invocations served at once, further connections are
+     * closed immediately
+     */
+    public static final int MAX_REQUESTS = 64;
+
+    private static final int DRAIN_TIMEOUT = 5000;
+    /**
+     * Time allowed for a client to send the header, any local user can
+     * connect so an unauthenticated connection must not hold a request thread
+     * for long
+     */
+    private static final int HANDSHAKE_TIMEOUT = 5000;
+    private static final int TOKEN_BYTES = 16;
+
+    private final CompiledParser<C> parser;
+    private final CommandExecutor<C> executor;
+    private final byte[] token;
+    private final ExecutorService requests;
+    private ServerSocket serverSocket;
+    private File infoFile;
+
+    /**
+     * Creates a new server
+     *
+     * @param cli
+     *            CLI, its metadata is loaded and compiled immediately
+     * @param executor
+     *            Command executor
+     */
+    public DaemonServer(Cli<C> cli, CommandExecutor<C> executor) {
+        Preconditions.checkNotNull(cli, "cli is null");
+        Preconditions.checkNotNull(executor, "executor is null");
+        this.parser = cli.compile();
+        this.executor = executor;
+
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        this.token = BaseEncoding.base16().encode(random).getBytes(Charsets.UTF_8);
+
+        this.requests = new ThreadPoolExecutor(0, MAX_REQUESTS, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger id = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "airline-daemon-request-" + id.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Starts the server on a random free port
+     *
+     * @param infoFile
+     *            File to which the port and token are written
+     * @throws IOException
+     *             Thrown if the server cannot be started
+     */
+    public void start(File infoFile) throws IOException {
+        start(0, infoFile);
+    }
+
+    /**
+     * Starts the server
+     *
+     * @param port
+     *            Port, {@code 0} for a random free port
+     * @param infoFile
+     *            File to which the port and token are written
+     * @throws IOException
+     *             Thrown if the server cannot be started
+     */
+    public synchronized void start(int port, File infoFile) throws IOException {
+        Preconditions.checkNotNull(infoFile, "infoFile is null");
+        Preconditions.checkState(serverSocket == null, "server is already started");
+
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.infoFile = infoFile;
+        try {
+            writeInfo(infoFile, serverSocket.getLocalPort());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "airline-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Gets the port the server is listening on
+     *
+     * @return Port or {@code -1} if not started
+     */
+    public synchronized int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    /**
+     * Stops the server, invocations already running are not interrupted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        requests.shutdown();
+        if (infoFile != null) {
+            Files.deleteIfExists(infoFile.toPath());
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    private void writeInfo(File infoFile, int port) throws IOException {
+        Properties info = new Properties();
+        info.setProperty(DaemonProtocol.PORT, Integer.toString(port));
+        info.setProperty(DaemonProtocol.TOKEN, new String(token, Charsets.UTF_8));
+
+        File dir = infoFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Unable to create directory " + dir);
+        File temp = File.createTempFile(infoFile.getName(), ".tmp", dir);
+        try {
+            // Only the owner may read the token
+            temp.setReadable(false, false);
+            temp.setReadable(true, true);
+            temp.setWritable(false, false);
+            temp.setWritable(true, true);
+            try (OutputStream out = new FileOutputStream(temp)) {
+                info.store(out, "Airline daemon");
+            }
+            Files.move(temp.toPath(), infoFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // Server was closed
+                return;
+            }
+            try {
+                requests.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                closeQuietly(socket);
+                if (requests.isShutdown())
+                    return;
+                // Otherwise too many invocations are already being served
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (in.readInt() != DaemonProtocol.MAGIC || in.readInt() != DaemonProtocol.VERSION)
+                return;
+            String clientToken = DaemonProtocol.readString(in, token.length);
+            if (clientToken == null || !MessageDigest.isEqual(token, clientToken.getBytes(Charsets.UTF_8))) {
+                byte[] message = String.format("Invalid daemon token%n").getBytes(Charsets.UTF_8);
+                DaemonProtocol.writeFrame(out, DaemonProtocol.STDERR, message, 0, message.length);
+                DaemonProtocol.writeFrame(out, DaemonProtocol.EXIT, EXIT_ERROR);
+                drain(socket, in);
+                return;
+            }
+
+            int count = in.readInt();
+            List<String> args = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                args.add(DaemonProtocol.readString(in));
+            }
+            count = in.readInt();
+            Map<String, String> env = new HashMap<String, String>(count);
+            for (int i = 0; i < count; i++) {
+                String name = DaemonProtocol.readString(in);
+                env.put(name, DaemonProtocol.readString(in));
+            }
+            File workingDirectory = new File(DaemonProtocol.readString(in));
+            // Standard input may legitimately be idle for as long as the command
+            // runs
+            socket.setSoTimeout(0);
+
+            PrintStream stdout = new PrintStream(new FrameOutputStream(out, DaemonProtocol.STDOUT), true);
+            PrintStream stderr = new PrintStream(new FrameOutputStream(out, DaemonProtocol.STDERR), true);
+            Invocation invocation = new Invocation(args, env, workingDirectory, new FrameInputStream(in), stdout,
+                    stderr);
+
+            int exitCode = run(parser, executor, invocation);
+            stdout.flush();
+            stderr.flush();
+            DaemonProtocol.writeFrame(out, DaemonProtocol.EXIT, exitCode);
+            drain(socket, in);
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Waits for the client to close the connection, closing while it may still
+     * be sending input could reset the connection before it has read the exit
+     * code
+     */
+    private static void drain(Socket socket, InputStream in) throws IOException {
+        socket.shutdownOutput();
+        socket.setSoTimeout(DRAIN_TIMEOUT);
+        while (in.read() >= 0) {
+            in.skip(in.available());
+        }
+    }
+
+    /**
+     * Parses and executes an invocation as the current invocation of the
+     * calling thread
+     */
+    static <C> int run(CompiledParser<C> parser, CommandExecutor<C> executor, Invocation invocation) {
+        C command;
+        Invocation.setCurrent(invocation);
+        try {
+            command = parser.parse(invocation.getArguments());
+        } catch (RuntimeException e) {
+            return parseFailed(e, invocation.getErr());
+        } finally {
+            Invocation.setCurrent(null);
+        }
+        return execute(executor, command, invocation);
+    }
+
+    /**
+     * Reports an error thrown while parsing an invocation, besides parser
+     * errors the command factory or injection may also throw
+     *
+     * @return Exit code
+     */
+    static int parseFailed(RuntimeException e, PrintStream err) {
+        if (e instanceof ParseException) {
+            err.println("Parser error: " + e.getMessage());
+            return EXIT_PARSE_ERROR;
+        }
+        err.println("Command threw error: " + e.getMessage());
+        e.printStackTrace(err);
+        return EXIT_ERROR;
+    }
+
+    /**
+     * Executes a parsed command as the current invocation of the calling
+     * thread
+     */
+    static <C> int execute(CommandExecutor<C> executor, C command, Invocation invocation) {
+        Invocation.setCurrent(invocation);
+        try {
+            return executor.execute(command, invocation);
+        } catch (Throwable e) {
+            invocation.getErr().println("Command threw error: " + e.getMessage());
+            e.printStackTrace(invocation.getErr());
+            return EXIT_ERROR;
+        } finally {
+            Invocation.setCurrent(null);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * Output stream that sends everything written as frames of a given type
+     */
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0)
+                DaemonProtocol.writeFrame(out, type, b, off, len);
+        }
+    }
+
+    /**
+     * Input stream that reads the standard input frames sent by the client
+     */
+    private static final class FrameInputStream extends InputStream {
+        private final DataInputStream in;
+        private int remaining = 0;
+        private boolean eof = false;
+
+        FrameInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        private boolean fill() throws IOException {
+            while (!eof && remaining == 0) {
+                byte type = in.readByte();
+                if (type == DaemonProtocol.STDIN) {
+                    remaining = in.readInt();
+                } else {
+                    eof = true;
+                }
+            }
+            return !eof;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill())
+                return -1;
+            remaining--;
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!fill())
+                return -1;
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read < 0)
+                throw new IOException("Connection closed by client");
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return eof ? 0 : Math.min(remaining, in.available());
+        }
+    }
+}
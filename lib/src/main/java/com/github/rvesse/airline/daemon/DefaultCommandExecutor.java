@@ -0,0 +1,31 @@
+package com.github.rvesse.airline.daemon;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Executes commands that implement {@link Callable} or {@link Runnable}
+ * <p>
+ * A {@link Callable} is preferred where a command implements both, if it
+ * returns a {@link Number} that is used as the exit code, otherwise and for a
+ * {@link Runnable} the exit code is {@code 0} unless the command throws an
+ * error.
+ * </p>
+ *
+ * @param <C>
+ *            Command type
+ */
+public class DefaultCommandExecutor<C> implements CommandExecutor<C> {
+
+    @Override
+    public int execute(C command, Invocation invocation) throws Exception {
+        if (command instanceof Callable) {
+            Object result = ((Callable<?>) command).call();
+            return result instanceof Number ? ((Number) result).intValue() : 0;
+        } else if (command instanceof Runnable) {
+            ((Runnable) command).run();
+            return 0;
+        }
+        throw new IllegalArgumentException(String.format("Command %s is neither Runnable nor Callable", command
+                .getClass().getName()));
+    }
+}
@@ -0,0 +1,360 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.CompiledParser;
+import com.github.rvesse.airline.help.SuggestCommand;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.parser.ParseException;
+import com.github.rvesse.airline.parser.ShellArgumentsParser;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interactive shell that reads command lines and runs each of them with a
+ * single resident CLI so that the start up and metadata loading costs are paid
+ * once per session rather than once per command
+ * <p>
+ * Command lines are split into arguments by the {@link ShellArgumentsParser}, a
+ * line that ends within quotes or with a backslash is continued on the next
+ * line. Each command is parsed with the compiled parser of the CLI and run by
+ * a {@link CommandExecutor} with an {@link Invocation} whose standard output
+ * and error are those of the shell, whose standard input is empty and whose
+ * environment and working directory are those of the JVM.
+ * </p>
+ * <p>
+ * The shell provides the following built in commands which take precedence
+ * over the commands of the CLI:
+ * </p>
+ * <ul>
+ * <li>{@code exit [code]} or {@code quit} - Ends the session</li>
+ * <li>{@code history} - Lists the command history</li>
+ * <li>{@code !!}, {@code !n} and {@code !prefix} - Re-runs the previous
+ * command, the command numbered {@code n} in the history or the most recent
+ * command starting with {@code prefix}</li>
+ * </ul>
+ * <p>
+ * A line ending with a tab character, which a terminal passes through as typed,
+ * lists the completions of the rest of the line rather than running it,
+ * completions are generated by the suggesters of the {@link SuggestCommand}
+ * and are also available via {@link #complete(String)}.
+ * </p>
+ * <p>
+ * The shell reads whole lines with the terminal in its normal line mode so
+ * completion is not interactive, pressing tab only inserts a tab character and
+ * the completions are listed once the line is entered. Applications needing
+ * completion as tab is pressed should read lines with a line editing library
+ * and call {@link #complete(String)} from its completion hook.
+ * </p>
+ *
+ * @param <C>
+ *            Command type
+ */
+public class InteractiveShell<C> {
+
+    private static final String CONTINUATION_PROMPT = "> ";
+    private static final List<String> BUILT_INS = ImmutableList.of("exit", "history", "quit");
+
+    private final CompiledParser<C> parser;
+    private final GlobalMetadata metadata;
+    private final CommandExecutor<C> executor;
+    private final LinkedList<String> history = new LinkedList<String>();
+    private String prompt;
+    private File historyFile;
+    private int historySize = 1000;
+
+    /**
+     * Creates a new shell
+     *
+     * @param cli
+     *            CLI, its metadata is loaded and compiled immediately
+     * @param executor
+     *            Command executor
+     */
+    public InteractiveShell(Cli<C> cli, CommandExecutor<C> executor) {
+        Preconditions.checkNotNull(cli, "cli is null");
+        Preconditions.checkNotNull(executor, "executor is null");
+        this.parser = cli.compile();
+        this.metadata = parser.getMetadata();
+        this.executor = executor;
+        this.prompt = metadata.getName() + "> ";
+    }
+
+    /**
+     * Sets the prompt
+     *
+     * @param prompt
+     *            Prompt
+     */
+    public void setPrompt(String prompt) {
+        Preconditions.checkNotNull(prompt, "prompt is null");
+        this.prompt = prompt;
+    }
+
+    /**
+     * Sets the file the history is loaded from when the shell starts and saved
+     * to when it ends
+     *
+     * @param historyFile
+     *            History file, {@code null} to keep the history in memory only
+     */
+    public void setHistoryFile(File historyFile) {
+        this.historyFile = historyFile;
+    }
+
+    /**
+     * Sets the maximum number of commands kept in the history
+     *
+     * @param historySize
+     *            History size
+     */
+    public void setHistorySize(int historySize) {
+        Preconditions.checkArgument(historySize > 0, "historySize must be positive");
+        this.historySize = historySize;
+    }
+
+    /**
+     * Gets the command history, oldest first
+     *
+     * @return History
+     */
+    public List<String> getHistory() {
+        return ImmutableList.copyOf(history);
+    }
+
+    /**
+     * Runs the shell on the standard streams of the JVM
+     *
+     * @return Exit code of the last command run or the code given to
+     *         {@code exit}
+     * @throws IOException
+     *             Thrown if the input cannot be read
+     */
+    public int run() throws IOException {
+        return run(System.in, System.out, System.err);
+    }
+
+    /**
+     * Runs the shell until the input ends or {@code exit} is entered
+     *
+     * @param in
+     *            Input the command lines are read from
+     * @param out
+     *            Output for the prompts and the standard output of commands
+     * @param err
+     *            Output for errors and the standard error of commands
+     * @return Exit code of the last command run or the code given to
+     *         {@code exit}
+     * @throws IOException
+     *             Thrown if the input cannot be read
+     */
+    public int run(InputStream in, PrintStream out, PrintStream err) throws IOException {
+        Preconditions.checkNotNull(in, "in is null");
+        Preconditions.checkNotNull(out, "out is null");
+        Preconditions.checkNotNull(err, "err is null");
+
+        loadHistory();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charsets.UTF_8));
+        Map<String, String> env = System.getenv();
+        File workingDirectory = new File(System.getProperty("user.dir"));
+        int exitCode = 0;
+        try {
+            while (true) {
+                out.print(prompt);
+                out.flush();
+                String line = reader.readLine();
+                if (line == null)
+                    break;
+
+                if (line.endsWith("\t")) {
+                    for (String completion : complete(line.substring(0, line.length() - 1))) {
+                        out.println(completion);
+                    }
+                    continue;
+                }
+
+                StringBuilder commandLine = new StringBuilder(line);
+                while (!ShellArgumentsParser.isComplete(commandLine.toString())) {
+                    out.print(CONTINUATION_PROMPT);
+                    out.flush();
+                    line = reader.readLine();
+                    if (line == null)
+                        break;
+                    commandLine.append('\n').append(line);
+                }
+
+                String entered = commandLine.toString();
+                String expanded = expandHistory(entered);
+                if (expanded == null) {
+                    err.println("Event not found: " + entered.trim());
+                    continue;
+                } else if (expanded != entered) {
+                    out.println(expanded);
+                }
+
+                List<String> args;
+                try {
+                    args = ShellArgumentsParser.parse(expanded);
+                } catch (ParseException e) {
+                    err.println("Parser error: " + e.getMessage());
+                    continue;
+                }
+                if (args.isEmpty())
+                    continue;
+                addHistory(expanded.trim());
+
+                String first = args.get(0);
+                if (first.equals("exit") || first.equals("quit")) {
+                    if (args.size() > 1) {
+                        try {
+                            exitCode = Integer.parseInt(args.get(1));
+                        } catch (NumberFormatException e) {
+                            err.println("Invalid exit code: " + args.get(1));
+                            continue;
+                        }
+                    }
+                    break;
+                } else if (first.equals("history")) {
+                    int i = 1;
+                    for (String entry : history) {
+                        out.println(String.format("%5d  %s", i++, entry));
+                    }
+                    continue;
+                }
+
+                Invocation invocation = new Invocation(args, env, workingDirectory, new ByteArrayInputStream(
+                        new byte[0]), out, err);
+                exitCode = DaemonServer.run(parser, executor, invocation);
+                out.flush();
+                err.flush();
+            }
+        } finally {
+            saveHistory();
+        }
+        return exitCode;
+    }
+
+    /**
+     * Gets the completions of a partially typed command line
+     *
+     * @param line
+     *            Partial command line, the last argument is the one being
+     *            completed and is empty if the line ends with white space
+     * @return Completions of the last argument
+     */
+    public List<String> complete(String line) {
+        List<String> args = ShellArgumentsParser.parsePartial(line);
+        String partial = args.remove(args.size() - 1);
+
+        Set<String> completions = new LinkedHashSet<String>();
+        if (args.isEmpty()) {
+            for (String builtIn : BUILT_INS) {
+                if (builtIn.startsWith(partial))
+                    completions.add(builtIn);
+            }
+        }
+
+        SuggestCommand suggest = new SuggestCommand();
+        suggest.metadata = metadata;
+        suggest.arguments = args;
+        try {
+            for (String suggestion : suggest.generateSuggestions()) {
+                if (suggestion.startsWith(partial))
+                    completions.add(suggestion);
+            }
+        } catch (ParseException e) {
+            // No completions
+        }
+        return ImmutableList.copyOf(completions);
+    }
+
+    /**
+     * Expands a history reference
+     *
+     * @return Expanded command line, the command line itself if it is not a
+     *         history reference or {@code null} if the reference does not
+     *         match the history
+     */
+    private String expandHistory(String commandLine) {
+        String reference = commandLine.trim();
+        if (!reference.startsWith("!") || reference.length() == 1)
+            return commandLine;
+
+        reference = reference.substring(1);
+        if (reference.equals("!"))
+            return history.isEmpty() ? null : history.getLast();
+        try {
+            int index = Integer.parseInt(reference);
+            return index >= 1 && index <= history.size() ? history.get(index - 1) : null;
+        } catch (NumberFormatException e) {
+            // Prefix reference
+        }
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if (history.get(i).startsWith(reference))
+                return history.get(i);
+        }
+        return null;
+    }
+
+    private void addHistory(String commandLine) {
+        if (!history.isEmpty() && history.getLast().equals(commandLine))
+            return;
+        history.add(commandLine);
+        while (history.size() > historySize) {
+            history.removeFirst();
+        }
+    }
+
+    private void loadHistory() throws IOException {
+        if (historyFile == null || !historyFile.isFile())
+            return;
+        history.clear();
+        for (String entry : Files.readAllLines(historyFile.toPath(), Charsets.UTF_8)) {
+            if (!entry.isEmpty())
+                addHistory(unescape(entry));
+        }
+    }
+
+    private void saveHistory() throws IOException {
+        if (historyFile == null)
+            return;
+        List<String> entries = new ArrayList<String>(history.size());
+        for (String entry : history) {
+            // Continued command lines are stored on one line
+            entries.add(entry.replace("\\", "\\\\").replace("\n", "\\n"));
+        }
+        File dir = historyFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Unable to create directory " + dir);
+        Files.write(historyFile.toPath(), entries, Charsets.UTF_8);
+    }
+
+    private static String unescape(String entry) {
+        StringBuilder builder = new StringBuilder(entry.length());
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (c == '\\' && i + 1 < entry.length()) {
+                c = entry.charAt(++i);
+                builder.append(c == 'n' ? '\n' : c);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
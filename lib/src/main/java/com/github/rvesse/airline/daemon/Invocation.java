@@ -0,0 +1,116 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.parser.ArgumentFiles;
+import com.github.rvesse.airline.parser.StandardInputArguments;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single invocation of a CLI served by a {@link DaemonServer} or an
+ * {@link InteractiveShell}
+ * <p>
+ * Commands run inside the daemon share its JVM so must not use
+ * {@link System#out}, {@link System#in}, {@link System#getenv()} or the
+ * working directory of the JVM, instead they should use the streams,
+ * environment and working directory of the invocation which are those of the
+ * client. Each invocation runs on its own thread and the invocation for the
+ * current thread is available via {@link #current()} so that commands, or a
+ * {@link com.github.rvesse.airline.CommandFactory}, can obtain it. Arguments
+ * read from standard input (see
+ * {@link com.github.rvesse.airline.Arguments#stdin()}) are read from the
+ * standard input of the invocation and relative argument file paths are
+ * resolved against its working directory.
+ * </p>
+ */
+public final class Invocation {
+
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<Invocation>();
+
+    private final List<String> args;
+    private final Map<String, String> environment;
+    private final File workingDirectory;
+    private final InputStream in;
+    private final PrintStream out, err;
+
+    public Invocation(List<String> args, Map<String, String> environment, File workingDirectory, InputStream in,
+            PrintStream out, PrintStream err) {
+        Preconditions.checkNotNull(args, "args is null");
+        Preconditions.checkNotNull(workingDirectory, "workingDirectory is null");
+        Preconditions.checkNotNull(in, "in is null");
+        Preconditions.checkNotNull(out, "out is null");
+        Preconditions.checkNotNull(err, "err is null");
+
+        this.args = ImmutableList.copyOf(args);
+        this.environment = environment != null ? ImmutableMap.copyOf(environment) : ImmutableMap
+                .<String, String> of();
+        this.workingDirectory = workingDirectory;
+        this.in = in;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Gets the invocation being run by the current thread
+     *
+     * @return Invocation or {@code null} if the current thread is not running
+     *         an invocation
+     */
+    public static Invocation current() {
+        return CURRENT.get();
+    }
+
+    static void setCurrent(Invocation invocation) {
+        if (invocation != null) {
+            CURRENT.set(invocation);
+            StandardInputArguments.setInput(invocation.getIn());
+            ArgumentFiles.setWorkingDirectory(invocation.getWorkingDirectory());
+        } else {
+            CURRENT.remove();
+            StandardInputArguments.setInput(null);
+            ArgumentFiles.setWorkingDirectory(null);
+        }
+    }
+
+    public List<String> getArguments() {
+        return args;
+    }
+
+    public Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    public File getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    public InputStream getIn() {
+        return in;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public PrintStream getErr() {
+        return err;
+    }
+
+    /**
+     * Resolves a path relative to the working directory of the invocation
+     *
+     * @param path
+     *            Path
+     * @return File
+     */
+    public File resolve(String path) {
+        File f = new File(path);
+        return f.isAbsolute() ? f : new File(workingDirectory, path);
+    }
+}
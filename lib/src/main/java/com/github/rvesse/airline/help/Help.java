@@ -9,21 +9,16 @@ import com.github.rvesse.airline.help.cli.CliCommandGroupUsageGenerator;
 import com.github.rvesse.airline.help.cli.CliCommandUsageGenerator;
 import com.github.rvesse.airline.help.cli.CliGlobalUsageGenerator;
 import com.github.rvesse.airline.help.cli.CliGlobalUsageSummaryGenerator;
+import com.github.rvesse.airline.model.AbbreviationIndex;
 import com.github.rvesse.airline.model.CommandGroupMetadata;
 import com.github.rvesse.airline.model.CommandMetadata;
 import com.github.rvesse.airline.model.GlobalMetadata;
-import com.github.rvesse.airline.parser.AbbreviatedCommandFinder;
-import com.github.rvesse.airline.parser.AbbreviatedGroupFinder;
-import com.google.common.base.Predicate;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.Callable;
 
-import static com.google.common.base.Predicates.compose;
-import static com.google.common.base.Predicates.equalTo;
-import static com.google.common.collect.Iterables.find;
 import static com.google.common.collect.Lists.newArrayList;
 
 @Command(name = "help", description = "Display help information")
@@ -171,22 +166,8 @@ public class Help implements Runnable, Callable<Void> {
             return;
         }
 
-        // Predicates we may need
-        Predicate<? super CommandGroupMetadata> findGroupPredicate;
-        Predicate<? super CommandMetadata> findCommandPredicate;
-        //@formatter:off
-        findGroupPredicate = global.allowsAbbreviatedCommands() 
-                             ? new AbbreviatedGroupFinder(name, global.getCommandGroups()) 
-                             : compose(equalTo(name), CommandGroupMetadata.nameGetter());
-        //@formatter:on
-
         // A command in the default group?
-        //@formatter:off
-        findCommandPredicate = global.allowsAbbreviatedCommands() 
-                               ? new AbbreviatedCommandFinder(name, global.getDefaultGroupCommands())
-                               : compose(equalTo(name), CommandMetadata.nameGetter());
-        //@formatter:on
-        CommandMetadata command = find(global.getDefaultGroupCommands(), findCommandPredicate, null);
+        CommandMetadata command = findName(global, global.getDefaultGroupCommandIndex(), name);
         if (command != null) {
             // Command in default group help
             new CliCommandUsageGenerator(includeHidden).usage(global.getName(), null, command.getName(), command, out);
@@ -194,7 +175,7 @@ public class Help implements Runnable, Callable<Void> {
         }
 
         // A command in a group?
-        CommandGroupMetadata group = find(global.getCommandGroups(), findGroupPredicate, null);
+        CommandGroupMetadata group = findName(global, global.getCommandGroupIndex(), name);
         if (group != null) {
             // General group help or specific group command help?
             if (commandNames.size() == 1) {
@@ -204,12 +185,7 @@ public class Help implements Runnable, Callable<Void> {
             } else {
                 // Group command help
                 String commandName = commandNames.get(1);
-                //@formatter:off
-                findCommandPredicate = global.allowsAbbreviatedCommands() 
-                                       ? new AbbreviatedCommandFinder(commandName, group.getCommands())
-                                       : compose(equalTo(commandName), CommandMetadata.nameGetter());
-                //@formatter:on
-                command = find(group.getCommands(), findCommandPredicate, null);
+                command = findName(global, group.getCommandIndex(), commandName);
                 if (command != null) {
                     new CliCommandUsageGenerator().usage(global.getName(), group.getName(), command.getName(), command,
                             out);
@@ -233,4 +209,8 @@ public class Help implements Runnable, Callable<Void> {
             System.out.println("Unknown command " + name);
         }
     }
+
+    private static <T> T findName(GlobalMetadata global, AbbreviationIndex<T> index, String name) {
+        return global.allowsAbbreviatedCommands() ? index.find(name) : index.findExact(name);
+    }
 }
@@ -0,0 +1,169 @@
+package com.github.rvesse.airline.model;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Precomputed index used to resolve possibly abbreviated names e.g. of
+ * commands, groups or options
+ * <p>
+ * Names are held in a sorted array so that all names starting with a given
+ * prefix form a contiguous range that can be located by binary search. This
+ * allows the index to answer whether a value is an exact name, a unique
+ * abbreviation or an ambiguous abbreviation without allocating.
+ * </p>
+ *
+ * @param <T>
+ *            Type of the named items
+ */
+public class AbbreviationIndex<T> {
+
+    private final Map<String, T> exact;
+    private final String[] names;
+    private final List<T> items;
+
+    /**
+     * Creates a new index
+     *
+     * @param names
+     *            Map from names to the items they identify
+     * @param minAbbreviationLength
+     *            Minimum length a name must have for it to be matched by an
+     *            abbreviation, shorter names may only be matched exactly
+     */
+    public AbbreviationIndex(Map<String, T> names, int minAbbreviationLength) {
+        Preconditions.checkNotNull(names, "names is null");
+        this.exact = ImmutableMap.copyOf(names);
+
+        SortedMap<String, T> abbreviable = Maps.newTreeMap();
+        for (Map.Entry<String, T> entry : this.exact.entrySet()) {
+            if (entry.getKey().length() < minAbbreviationLength)
+                continue;
+            abbreviable.put(entry.getKey(), entry.getValue());
+        }
+        this.names = abbreviable.keySet().toArray(new String[abbreviable.size()]);
+        this.items = ImmutableList.copyOf(abbreviable.values());
+    }
+
+    /**
+     * Creates an index of items that each have a single name, any name may be
+     * abbreviated
+     *
+     * @param items
+     *            Items
+     * @param nameGetter
+     *            Function that retrieves the name of an item
+     * @return Index
+     */
+    public static <T> AbbreviationIndex<T> forNames(Iterable<T> items, Function<? super T, String> nameGetter) {
+        Map<String, T> names = Maps.newLinkedHashMap();
+        for (T item : items) {
+            String name = nameGetter.apply(item);
+            // First declaration wins, consistent with searching the items in
+            // order
+            if (!names.containsKey(name)) {
+                names.put(name, item);
+            }
+        }
+        return new AbbreviationIndex<T>(names, 0);
+    }
+
+    /**
+     * Finds the item with precisely the given name
+     *
+     * @param value
+     *            Value
+     * @return Item or {@code null} if no such item
+     */
+    public T findExact(String value) {
+        return exact.get(value);
+    }
+
+    /**
+     * Finds the item with the given name or whose name is uniquely abbreviated
+     * by the given value
+     *
+     * @param value
+     *            Value
+     * @return Item or {@code null} if there is no such item or the value is an
+     *         ambiguous abbreviation
+     */
+    public T find(String value) {
+        T match = exact.get(value);
+        if (match != null)
+            return match;
+
+        for (int i = lowerBound(value); i < names.length && names[i].startsWith(value); i++) {
+            T item = items.get(i);
+            if (match == null) {
+                match = item;
+            } else if (match != item) {
+                // Ambiguous
+                return null;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Gets whether the value is an ambiguous abbreviation i.e. it is not an
+     * exact name and is an abbreviation of the names of several items
+     *
+     * @param value
+     *            Value
+     * @return True if ambiguous, false otherwise
+     */
+    public boolean isAmbiguous(String value) {
+        if (exact.containsKey(value))
+            return false;
+
+        T match = null;
+        for (int i = lowerBound(value); i < names.length && names[i].startsWith(value); i++) {
+            T item = items.get(i);
+            if (match == null) {
+                match = item;
+            } else if (match != item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the items that the given value may identify, if the value is an exact
+     * name this is just the named item otherwise it is all items whose names the
+     * value abbreviates
+     *
+     * @param value
+     *            Value
+     * @return Candidate items
+     */
+    public List<T> getCandidates(String value) {
+        T match = exact.get(value);
+        if (match != null)
+            return ImmutableList.of(match);
+
+        List<T> candidates = new ArrayList<T>();
+        for (int i = lowerBound(value); i < names.length && names[i].startsWith(value); i++) {
+            T item = items.get(i);
+            if (!candidates.contains(item)) {
+                candidates.add(item);
+            }
+        }
+        return candidates;
+    }
+
+    private int lowerBound(String value) {
+        int pos = Arrays.binarySearch(names, value);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.rvesse.airline.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed lookup index over the aliases of a CLI
+ * <p>
+ * Aliases are indexed by name so that resolving an alias from a token is a
+ * single hash lookup, aliases that are shadowed by a built-in group or command
+ * are excluded from the index unless aliases override built-ins.
+ * </p>
+ * <h3>Nested Aliases</h3>
+ * <p>
+ * An alias whose first argument is the name of another alias expands to the
+ * expansion of that alias, in turn that may be a nested alias. As in common
+ * shells expansion stops if it would re-enter an alias that is already being
+ * expanded, so an alias such as {@code ls=ls -l} expands once and cyclic
+ * aliases cannot expand forever. The chain of aliases each alias expands
+ * through is resolved once when the index is built, if no alias in the chain
+ * has positional parameters the entire expansion is also memoized so that
+ * expanding the alias is just a copy.
+ * </p>
+ */
+public class AliasIndex {
+
+    private final Map<String, Expansion> expansions;
+
+    /**
+     * Creates a new index
+     *
+     * @param aliases
+     *            Aliases, if several aliases have the same name the first wins
+     * @param aliasesOverrideBuiltIns
+     *            Whether aliases override built-in groups and commands of the
+     *            same name
+     * @param groups
+     *            Index of built-in groups
+     * @param commands
+     *            Index of built-in commands not in a group
+     */
+    public AliasIndex(Iterable<AliasMetadata> aliases, boolean aliasesOverrideBuiltIns,
+            AbbreviationIndex<CommandGroupMetadata> groups, AbbreviationIndex<CommandMetadata> commands) {
+        Preconditions.checkNotNull(aliases, "aliases is null");
+
+        Map<String, AliasMetadata> byName = Maps.newLinkedHashMap();
+        for (AliasMetadata alias : aliases) {
+            if (byName.containsKey(alias.getName()))
+                continue;
+            // Check we don't have a default group/command with the same name
+            // as otherwise that would take precedence
+            if (!aliasesOverrideBuiltIns
+                    && (groups.findExact(alias.getName()) != null || commands.findExact(alias.getName()) != null))
+                continue;
+            byName.put(alias.getName(), alias);
+        }
+
+        ImmutableMap.Builder<String, Expansion> expansions = ImmutableMap.builder();
+        for (AliasMetadata alias : byName.values()) {
+            expansions.put(alias.getName(), resolve(alias, byName));
+        }
+        this.expansions = expansions.build();
+    }
+
+    /**
+     * Resolves the chain of aliases an alias expands through
+     */
+    private static Expansion resolve(AliasMetadata alias, Map<String, AliasMetadata> byName) {
+        List<AliasMetadata> chain = new ArrayList<AliasMetadata>();
+        Set<String> expanding = new HashSet<String>();
+        AliasMetadata current = alias;
+        while (current != null && expanding.add(current.getName())) {
+            chain.add(current);
+            List<String> args = current.getArguments();
+            // Only a literal first argument may name a nested alias
+            current = !args.isEmpty() && !current.isPositionalParameter(0) ? byName.get(args.get(0)) : null;
+        }
+
+        // Memoize the expansion of chains without positional parameters, the
+        // innermost alias comes first followed by the remaining arguments of
+        // each enclosing alias
+        for (AliasMetadata link : chain) {
+            if (link.hasPositionalParameters())
+                return new Expansion(ImmutableList.copyOf(chain), null);
+        }
+        List<String> memoized = new ArrayList<String>(chain.get(chain.size() - 1).getArguments());
+        for (int i = chain.size() - 2; i >= 0; i--) {
+            List<String> args = chain.get(i).getArguments();
+            memoized.addAll(args.subList(1, args.size()));
+        }
+        return new Expansion(ImmutableList.copyOf(chain), ImmutableList.copyOf(memoized));
+    }
+
+    /**
+     * Finds the alias with the given name
+     *
+     * @param name
+     *            Name
+     * @return Alias or {@code null} if no such alias
+     */
+    public AliasMetadata find(String name) {
+        Expansion expansion = expansions.get(name);
+        return expansion != null ? expansion.chain.get(0) : null;
+    }
+
+    /**
+     * Expands an alias including any nested aliases
+     *
+     * @param alias
+     *            Alias
+     * @param params
+     *            Parameters given after the alias
+     * @return Expanded arguments
+     */
+    public List<String> expand(AliasMetadata alias, List<String> params) {
+        Expansion expansion = expansions.get(alias.getName());
+        if (expansion == null || expansion.chain.get(0) != alias)
+            return alias.expand(params);
+
+        if (expansion.memoized != null) {
+            List<String> expanded = new ArrayList<String>(expansion.memoized.size() + params.size());
+            expanded.addAll(expansion.memoized);
+            expanded.addAll(params);
+            return expanded;
+        }
+
+        List<String> expanded = alias.expand(params);
+        for (int i = 1; i < expansion.chain.size(); i++) {
+            // Discard the name of the nested alias
+            expanded = expansion.chain.get(i).expand(expanded.subList(1, expanded.size()));
+        }
+        return expanded;
+    }
+
+    private static final class Expansion {
+        private final List<AliasMetadata> chain;
+        private final List<String> memoized;
+
+        private Expansion(List<AliasMetadata> chain, List<String> memoized) {
+            this.chain = chain;
+            this.memoized = memoized;
+        }
+    }
+}
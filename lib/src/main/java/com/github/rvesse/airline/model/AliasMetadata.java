@@ -1,5 +1,6 @@
 package com.github.rvesse.airline.model;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
@@ -8,16 +9,52 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
+/**
+ * Metadata about an alias
+ * <p>
+ * The arguments of an alias are compiled into a template when the alias is
+ * created, each argument is either a literal or a positional parameter of the
+ * form {@code $N} that is replaced by the Nth argument given after the alias
+ * if present. This allows {@link #expand(List)} to expand the alias in a
+ * single pass.
+ * </p>
+ */
 public class AliasMetadata {
 
     private final String name;
     private final List<String> arguments;
+    /**
+     * Zero based position of the parameter each argument refers to, {@code -1}
+     * for literal arguments
+     */
+    private final int[] positions;
+    private final boolean positional;
 
     public AliasMetadata(String name, List<String> arguments) {
         Preconditions.checkArgument(StringUtils.isNotEmpty(name) || !StringUtils.isWhitespace(name),
                 "Alias name cannot be null/empty/whitespace");
         this.name = name;
         this.arguments = arguments != null ? ImmutableList.copyOf(arguments) : ImmutableList.<String> of();
+
+        this.positions = new int[this.arguments.size()];
+        boolean positional = false;
+        for (int i = 0; i < this.positions.length; i++) {
+            this.positions[i] = position(this.arguments.get(i));
+            positional = positional || this.positions[i] >= 0;
+        }
+        this.positional = positional;
+    }
+
+    private static int position(String arg) {
+        if (!arg.startsWith("$"))
+            return -1;
+        try {
+            int num = Integer.parseInt(arg.substring(1));
+            return num >= 1 ? num - 1 : -1;
+        } catch (NumberFormatException e) {
+            // Not a valid number so an ordinary argument
+            return -1;
+        }
     }
 
     public String getName() {
@@ -28,6 +65,62 @@ public class AliasMetadata {
         return this.arguments;
     }
 
+    /**
+     * Gets whether any of the arguments are positional parameters
+     * 
+     * @return True if there are positional parameters, false otherwise
+     */
+    public boolean hasPositionalParameters() {
+        return this.positional;
+    }
+
+    /**
+     * Gets whether the argument at the given index is a positional parameter
+     * 
+     * @param index
+     *            Argument index
+     * @return True if a positional parameter, false if a literal argument
+     */
+    public boolean isPositionalParameter(int index) {
+        return this.positions[index] >= 0;
+    }
+
+    /**
+     * Expands the alias
+     * <p>
+     * Positional parameters are replaced by the corresponding parameter, a
+     * positional parameter that refers to a parameter that was not given is
+     * treated as a literal argument. Any parameters not referred to by a
+     * positional parameter are passed through after the alias arguments.
+     * </p>
+     * 
+     * @param params
+     *            Parameters given after the alias
+     * @return Expanded arguments
+     */
+    public List<String> expand(List<String> params) {
+        List<String> expanded = new ArrayList<String>(this.arguments.size() + params.size());
+        boolean[] used = null;
+        for (int i = 0; i < this.positions.length; i++) {
+            int pos = this.positions[i];
+            if (pos >= 0 && pos < params.size()) {
+                expanded.add(params.get(pos));
+                if (used == null)
+                    used = new boolean[params.size()];
+                used[pos] = true;
+            } else {
+                expanded.add(this.arguments.get(i));
+            }
+        }
+
+        // Pass through any remaining parameters
+        for (int i = 0; i < params.size(); i++) {
+            if (used == null || !used[i])
+                expanded.add(params.get(i));
+        }
+        return expanded;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
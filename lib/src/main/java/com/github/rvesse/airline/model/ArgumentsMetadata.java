@@ -1,6 +1,7 @@
 package com.github.rvesse.airline.model;
 
 import com.github.rvesse.airline.Accessor;
+import com.github.rvesse.airline.StdinArguments;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -20,12 +21,32 @@ public class ArgumentsMetadata {
     private final boolean required;
     private final Set<Accessor> accessors;
     private final int arity;
+    private final StdinArguments stdin;
 
     public ArgumentsMetadata(Iterable<String> titles, String description, String usage, boolean required,
             int arity, int completionBehaviour, String completionCommand, Iterable<Field> path) {
+        this(titles, description, usage, required, arity, completionBehaviour, completionCommand,
+                StdinArguments.NONE, new Accessor(path));
+    }
+
+    public ArgumentsMetadata(Iterable<String> titles, String description, String usage, boolean required,
+            int arity, int completionBehaviour, String completionCommand, Accessor accessor) {
+        this(titles, description, usage, required, arity, completionBehaviour, completionCommand,
+                StdinArguments.NONE, accessor);
+    }
+
+    public ArgumentsMetadata(Iterable<String> titles, String description, String usage, boolean required,
+            int arity, int completionBehaviour, String completionCommand, StdinArguments stdin,
+            Iterable<Field> path) {
+        this(titles, description, usage, required, arity, completionBehaviour, completionCommand, stdin,
+                new Accessor(path));
+    }
+
+    public ArgumentsMetadata(Iterable<String> titles, String description, String usage, boolean required,
+            int arity, int completionBehaviour, String completionCommand, StdinArguments stdin, Accessor accessor) {
         Preconditions.checkNotNull(titles, "title is null");
-        Preconditions.checkNotNull(path, "path is null");
-        Preconditions.checkArgument(!Iterables.isEmpty(path), "path is empty");
+        Preconditions.checkNotNull(stdin, "stdin is null");
+        Preconditions.checkNotNull(accessor, "accessor is null");
 
         this.titles = ImmutableList.copyOf(titles);
         this.description = description;
@@ -34,7 +55,8 @@ public class ArgumentsMetadata {
         this.arity = arity <= 0 ? Integer.MIN_VALUE : arity;
         this.completionBehaviour = completionBehaviour;
         this.completionCommand = completionCommand;
-        this.accessors = ImmutableSet.of(new Accessor(path));
+        this.stdin = stdin;
+        this.accessors = ImmutableSet.of(accessor);
     }
 
     public ArgumentsMetadata(Iterable<ArgumentsMetadata> arguments) {
@@ -50,6 +72,7 @@ public class ArgumentsMetadata {
         this.arity = first.arity;
         this.completionBehaviour = first.completionBehaviour;
         this.completionCommand = first.completionCommand;
+        this.stdin = first.stdin;
 
         Set<Accessor> accessors = newHashSet();
         for (ArgumentsMetadata other : arguments) {
@@ -88,6 +111,16 @@ public class ArgumentsMetadata {
         return completionCommand;
     }
 
+    /**
+     * Gets whether and how the arguments may be read from standard input when
+     * the argument {@code -} is given
+     * 
+     * @return Standard input mode
+     */
+    public StdinArguments getStdin() {
+        return stdin;
+    }
+
     public Set<Accessor> getAccessors() {
         return accessors;
     }
@@ -96,6 +129,17 @@ public class ArgumentsMetadata {
         return accessors.iterator().next().isMultiValued();
     }
 
+    /**
+     * Gets whether the arguments are streamed, this is the case when they are
+     * injected into a single {@link Iterable} or {@link java.util.Iterator}
+     * field
+     * 
+     * @return True if streamed, false otherwise
+     */
+    public boolean isStreaming() {
+        return accessors.size() == 1 && accessors.iterator().next().isStreaming();
+    }
+
     public Class<?> getJavaType() {
         return accessors.iterator().next().getJavaType();
     }
@@ -11,8 +11,10 @@ public class CommandGroupMetadata {
     private final String description;
     private final boolean hidden;
     private final List<OptionMetadata> options;
+    private final OptionIndex optionIndex;
     private final CommandMetadata defaultCommand;
     private final List<CommandMetadata> commands;
+    private AbbreviationIndex<CommandMetadata> commandIndex;
 
     public CommandGroupMetadata(String name, String description, boolean hidden, Iterable<OptionMetadata> options,
             CommandMetadata defaultCommand, Iterable<CommandMetadata> commands) {
@@ -20,8 +22,10 @@ public class CommandGroupMetadata {
         this.description = description;
         this.hidden = hidden;
         this.options = ImmutableList.copyOf(options);
+        this.optionIndex = new OptionIndex(this.options);
         this.defaultCommand = defaultCommand;
         this.commands = Lists.newArrayList(commands);
+        this.commandIndex = AbbreviationIndex.forNames(this.commands, CommandMetadata.nameGetter());
     }
 
     public String getName() {
@@ -40,6 +44,10 @@ public class CommandGroupMetadata {
         return options;
     }
 
+    public OptionIndex getOptionIndex() {
+        return optionIndex;
+    }
+
     public CommandMetadata getDefaultCommand() {
         return defaultCommand;
     }
@@ -48,9 +56,14 @@ public class CommandGroupMetadata {
         return ImmutableList.copyOf(commands);
     }
 
+    public AbbreviationIndex<CommandMetadata> getCommandIndex() {
+        return commandIndex;
+    }
+
     public void addCommand(CommandMetadata command) {
         if (!commands.contains(command)) {
             commands.add(command);
+            commandIndex = AbbreviationIndex.forNames(commands, CommandMetadata.nameGetter());
         }
     }
 
@@ -16,6 +16,8 @@ public class CommandMetadata {
     private final List<OptionMetadata> globalOptions;
     private final List<OptionMetadata> groupOptions;
     private final List<OptionMetadata> commandOptions;
+    private final List<OptionMetadata> allOptions;
+    private final OptionIndex commandOptionIndex;
     private final OptionMetadata defaultOption;
     private final ArgumentsMetadata arguments;
     private final List<Accessor> metadataInjections;
@@ -50,6 +52,9 @@ public class CommandMetadata {
         this.globalOptions = ImmutableList.copyOf(globalOptions);
         this.groupOptions = ImmutableList.copyOf(groupOptions);
         this.commandOptions = ImmutableList.copyOf(commandOptions);
+        this.allOptions = ImmutableList.<OptionMetadata> builder().addAll(this.globalOptions)
+                .addAll(this.groupOptions).addAll(this.commandOptions).build();
+        this.commandOptionIndex = new OptionIndex(this.commandOptions);
         this.defaultOption = defaultOption;
         this.arguments = arguments;
         
@@ -82,8 +87,7 @@ public class CommandMetadata {
     }
 
     public List<OptionMetadata> getAllOptions() {
-        return ImmutableList.<OptionMetadata> builder().addAll(globalOptions).addAll(groupOptions)
-                .addAll(commandOptions).build();
+        return allOptions;
     }
 
     public List<String> getExamples() {
@@ -106,6 +110,10 @@ public class CommandMetadata {
         return commandOptions;
     }
     
+    public OptionIndex getCommandOptionIndex() {
+        return commandOptionIndex;
+    }
+
     public OptionMetadata getDefaultOption() {
         return defaultOption;
     }
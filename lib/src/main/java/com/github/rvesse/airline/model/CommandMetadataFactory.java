@@ -0,0 +1,32 @@
+package com.github.rvesse.airline.model;
+
+/**
+ * Factory that creates the metadata for a single command class without
+ * inspecting it via reflection
+ * <p>
+ * Implementations are normally generated at compile time by the
+ * {@code airline-processor} annotation processor with the name given by
+ * {@link MetadataLoader#getFactoryClassName(Class)}, which is how
+ * {@link MetadataLoader} finds them, and must have a public no argument
+ * constructor. They are also registered in
+ * {@code META-INF/services/com.github.rvesse.airline.model.CommandMetadataFactory}
+ * so that tools may list them via {@link java.util.ServiceLoader}. Commands
+ * with no factory are loaded via reflection as usual.
+ * </p>
+ */
+public interface CommandMetadataFactory {
+
+    /**
+     * Gets the command class this factory creates metadata for
+     *
+     * @return Command class
+     */
+    Class<?> getCommandType();
+
+    /**
+     * Creates the metadata for the command
+     *
+     * @return Command metadata
+     */
+    CommandMetadata createCommandMetadata();
+}
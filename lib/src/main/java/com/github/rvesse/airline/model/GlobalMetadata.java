@@ -8,10 +8,14 @@ public class GlobalMetadata {
     private final String name;
     private final String description;
     private final List<OptionMetadata> options;
+    private final OptionIndex optionIndex;
     private final CommandMetadata defaultCommand;
     private final List<CommandMetadata> defaultGroupCommands;
+    private final AbbreviationIndex<CommandMetadata> defaultGroupCommandIndex;
     private final List<CommandGroupMetadata> commandGroups;
+    private final AbbreviationIndex<CommandGroupMetadata> commandGroupIndex;
     private final List<AliasMetadata> aliases;
+    private final AliasIndex aliasIndex;
     private final boolean allowAbbreviatedCommands, allowAbbreviatedOptions, aliasesOverrideBuiltIns;
 
     public GlobalMetadata(String name, String description, Iterable<OptionMetadata> options,
@@ -21,11 +25,17 @@ public class GlobalMetadata {
         this.name = name;
         this.description = description;
         this.options = ImmutableList.copyOf(options);
+        this.optionIndex = new OptionIndex(this.options);
         this.defaultCommand = defaultCommand;
         this.defaultGroupCommands = ImmutableList.copyOf(defaultGroupCommands);
+        this.defaultGroupCommandIndex = AbbreviationIndex.forNames(this.defaultGroupCommands,
+                CommandMetadata.nameGetter());
         this.commandGroups = ImmutableList.copyOf(commandGroups);
+        this.commandGroupIndex = AbbreviationIndex.forNames(this.commandGroups, CommandGroupMetadata.nameGetter());
         this.aliases = ImmutableList.copyOf(aliases);
         this.aliasesOverrideBuiltIns = aliasesOverrideBuiltIns;
+        this.aliasIndex = new AliasIndex(this.aliases, aliasesOverrideBuiltIns, this.commandGroupIndex,
+                this.defaultGroupCommandIndex);
         this.allowAbbreviatedCommands = allowAbbreviatedCommands;
         this.allowAbbreviatedOptions = allowAbbreviatedOptions;
     }
@@ -42,6 +52,10 @@ public class GlobalMetadata {
         return options;
     }
 
+    public OptionIndex getOptionIndex() {
+        return optionIndex;
+    }
+
     public CommandMetadata getDefaultCommand() {
         return defaultCommand;
     }
@@ -50,14 +64,26 @@ public class GlobalMetadata {
         return defaultGroupCommands;
     }
 
+    public AbbreviationIndex<CommandMetadata> getDefaultGroupCommandIndex() {
+        return defaultGroupCommandIndex;
+    }
+
     public List<CommandGroupMetadata> getCommandGroups() {
         return commandGroups;
     }
 
+    public AbbreviationIndex<CommandGroupMetadata> getCommandGroupIndex() {
+        return commandGroupIndex;
+    }
+
     public List<AliasMetadata> getAliases() {
         return aliases;
     }
     
+    public AliasIndex getAliasIndex() {
+        return aliasIndex;
+    }
+
     public boolean aliasesOverrideBuiltIns() {
         return aliasesOverrideBuiltIns;
     }
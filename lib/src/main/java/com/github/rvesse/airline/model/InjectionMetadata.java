@@ -0,0 +1,160 @@
+package com.github.rvesse.airline.model;
+
+import com.github.rvesse.airline.Accessor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Accumulates the options, arguments and metadata injections discovered on a
+ * type
+ * <p>
+ * This is populated by {@link MetadataLoader} as it inspects the fields of a
+ * type and by the metadata factories generated at compile time, see
+ * {@link CommandMetadataFactory}. Once all fields have been added
+ * {@link #compact()} must be called to resolve overridden options.
+ * </p>
+ */
+public class InjectionMetadata {
+    private List<OptionMetadata> globalOptions = newArrayList();
+    private List<OptionMetadata> groupOptions = newArrayList();
+    private List<OptionMetadata> commandOptions = newArrayList();
+    private OptionMetadata defaultOption = null;
+    private List<ArgumentsMetadata> arguments = newArrayList();
+    private List<Accessor> metadataInjections = newArrayList();
+
+    public List<OptionMetadata> getGlobalOptions() {
+        return globalOptions;
+    }
+
+    public List<OptionMetadata> getGroupOptions() {
+        return groupOptions;
+    }
+
+    public List<OptionMetadata> getCommandOptions() {
+        return commandOptions;
+    }
+
+    public OptionMetadata getDefaultOption() {
+        return defaultOption;
+    }
+
+    public List<ArgumentsMetadata> getArguments() {
+        return arguments;
+    }
+
+    public List<Accessor> getMetadataInjections() {
+        return metadataInjections;
+    }
+
+    /**
+     * Adds an option
+     *
+     * @param option
+     *            Option
+     * @param isDefaultOption
+     *            Whether the option is also annotated with
+     *            {@link com.github.rvesse.airline.DefaultOption}
+     * @param type
+     *            Type being inspected
+     * @param source
+     *            Source of the option, used in error messages
+     */
+    public void addOption(OptionMetadata option, boolean isDefaultOption, Class<?> type, Object source) {
+        switch (option.getOptionType()) {
+        case GLOBAL:
+            if (isDefaultOption)
+                throw new IllegalArgumentException(
+                        String.format(
+                                "Field %s which defines a global option cannot be annotated with @DefaultOption as this may only be applied to command options",
+                                source));
+            globalOptions.add(option);
+            break;
+        case GROUP:
+            if (isDefaultOption)
+                throw new IllegalArgumentException(
+                        String.format(
+                                "Field %s which defines a global option cannot be annotated with @DefaultOption as this may only be applied to command options",
+                                source));
+            groupOptions.add(option);
+            break;
+        case COMMAND:
+            // Do we also have a @DefaultOption annotation
+
+            if (isDefaultOption) {
+                // Can't have both @DefaultOption and @Arguments
+                if (arguments.size() > 0)
+                    throw new IllegalArgumentException(
+                            String.format(
+                                    "Field %s cannot be annotated with @DefaultOption because there are fields with @Arguments annotations present",
+                                    source));
+                // Can't have more than one @DefaultOption
+                if (defaultOption != null)
+                    throw new IllegalArgumentException(String.format(
+                            "Command type %s has more than one field with @DefaultOption declared upon it", type));
+                // Arity of associated @Option must be 1
+                if (option.getArity() != 1)
+                    throw new IllegalArgumentException(
+                            String.format(
+                                    "Field %s annotated with @DefaultOption must also have an @Option annotation with an arity of 1",
+                                    source));
+                defaultOption = option;
+            }
+            commandOptions.add(option);
+            break;
+        }
+    }
+
+    /**
+     * Adds arguments
+     *
+     * @param arguments
+     *            Arguments
+     * @param source
+     *            Source of the arguments, used in error messages
+     */
+    public void addArguments(ArgumentsMetadata arguments, Object source) {
+        // Can't have both @DefaultOption and @Arguments
+        if (defaultOption != null)
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Field %s cannot be annotated with @Arguments because there is a field with @DefaultOption present",
+                            source));
+        this.arguments.add(arguments);
+    }
+
+    /**
+     * Adds a field into which metadata is injected
+     *
+     * @param accessor
+     *            Accessor for the field
+     */
+    public void addMetadataInjection(Accessor accessor) {
+        metadataInjections.add(accessor);
+    }
+
+    /**
+     * Resolves overridden options and merges multiple arguments definitions,
+     * must be called once all fields have been added
+     */
+    public void compact() {
+        globalOptions = MetadataLoader.overrideOptionSet(globalOptions);
+        groupOptions = MetadataLoader.overrideOptionSet(groupOptions);
+        commandOptions = MetadataLoader.overrideOptionSet(commandOptions);
+        if (defaultOption != null) {
+            for (OptionMetadata option : commandOptions) {
+                if (Sets.intersection(option.getOptions(), defaultOption.getOptions()).size() > 0) {
+                    defaultOption = option;
+                    break;
+                }
+            }
+        }
+
+        if (arguments.size() > 1) {
+            arguments = ImmutableList.of(new ArgumentsMetadata(arguments));
+        }
+    }
+}
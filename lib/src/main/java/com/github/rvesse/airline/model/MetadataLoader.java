@@ -16,10 +16,60 @@ import static com.google.common.base.Predicates.compose;
 import static com.google.common.base.Predicates.equalTo;
 import static com.google.common.collect.Iterables.find;
 import static com.google.common.collect.Iterables.transform;
-import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 
 public class MetadataLoader {
+    /**
+     * Suffix of the name of the {@link CommandMetadataFactory} generated for a
+     * command class, see {@link #getFactoryClassName(Class)}
+     */
+    public static final String FACTORY_SUFFIX = "_AirlineMetadata";
+
+    /**
+     * Guice's {@code @Inject} annotation if Guice is on the class path,
+     * probed once rather than for every field
+     */
+    private static final Class<? extends Annotation> GUICE_INJECT = findGuiceInject();
+
+    /**
+     * Cache of command metadata, since the metadata for a class never changes
+     * it need only be loaded once. Using a {@link ClassValue} means the cache
+     * does not prevent command classes from being unloaded.
+     */
+    private static final ClassValue<CommandMetadata> COMMAND_CACHE = new ClassValue<CommandMetadata>() {
+        @Override
+        protected CommandMetadata computeValue(Class<?> type) {
+            return loadCommandUncached(type);
+        }
+    };
+
+    /**
+     * Cache of suggester metadata
+     */
+    private static final ClassValue<SuggesterMetadata> SUGGESTER_CACHE = new ClassValue<SuggesterMetadata>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected SuggesterMetadata computeValue(Class<?> type) {
+            InjectionMetadata injectionMetadata = loadInjectionMetadata(type);
+            return new SuggesterMetadata((Class<? extends Suggester>) type, injectionMetadata.getMetadataInjections());
+        }
+    };
+
+    private static Class<? extends Annotation> findGuiceInject() {
+        try {
+            return Class.forName("com.google.inject.Inject").asSubclass(Annotation.class);
+        } catch (ClassNotFoundException e) {
+            // this is ok, means Guice is not on the class path, so
+            // probably not being used
+            return null;
+        } catch (ClassCastException e) {
+            // ignore this too, we're doing some funky cross your
+            // fingers type reflect stuff to play
+            // nicely with Guice
+            return null;
+        }
+    }
+
     public static GlobalMetadata loadGlobal(String name, String description, CommandMetadata defaultCommand,
             Iterable<CommandMetadata> defaultGroupCommands, Iterable<CommandGroupMetadata> groups,
             Iterable<AliasMetadata> aliases, boolean aliasesOverrideBuiltIns, boolean allowAbbreviatedCommands,
@@ -62,10 +112,37 @@ public class MetadataLoader {
         }));
     }
 
+    /**
+     * Loads the metadata for a command
+     * <p>
+     * Metadata is cached so loading the metadata for the same class again
+     * returns the previously loaded metadata.
+     * </p>
+     * <p>
+     * If a {@link CommandMetadataFactory} for the class was generated at
+     * compile time by the {@code airline-processor} annotation processor then
+     * that is used to create the metadata, otherwise the metadata is loaded
+     * via reflection. The factory is resolved directly by its name, see
+     * {@link #getFactoryClassName(Class)}, so no other factories are loaded.
+     * </p>
+     * 
+     * @param commandType
+     *            Command class
+     * @return Command metadata or {@code null} if the class is {@code null}
+     */
     public static CommandMetadata loadCommand(Class<?> commandType) {
         if (commandType == null) {
             return null;
         }
+        return COMMAND_CACHE.get(commandType);
+    }
+
+    private static CommandMetadata loadCommandUncached(Class<?> commandType) {
+        CommandMetadataFactory factory = findCommandMetadataFactory(commandType);
+        if (factory != null) {
+            return factory.createCommandMetadata();
+        }
+
         Command command = null;
         List<Group> groups = Lists.newArrayList();
 
@@ -103,12 +180,12 @@ public class MetadataLoader {
                                                               command.discussion().length == 0 ? null : Lists.newArrayList(command.discussion()), 
                                                               command.examples().length == 0 ? null : Lists.newArrayList(command.examples()),
                                                               hidden, 
-                                                              injectionMetadata.globalOptions, 
-                                                              injectionMetadata.groupOptions,
-                                                              injectionMetadata.commandOptions, 
-                                                              injectionMetadata.defaultOption,
-                                                              Iterables.getFirst(injectionMetadata.arguments, null),
-                                                              injectionMetadata.metadataInjections, 
+                                                              injectionMetadata.getGlobalOptions(), 
+                                                              injectionMetadata.getGroupOptions(),
+                                                              injectionMetadata.getCommandOptions(), 
+                                                              injectionMetadata.getDefaultOption(),
+                                                              Iterables.getFirst(injectionMetadata.getArguments(), null),
+                                                              injectionMetadata.getMetadataInjections(), 
                                                               commandType, 
                                                               groupNames, 
                                                               groups, 
@@ -118,9 +195,52 @@ public class MetadataLoader {
         return commandMetadata;
     }
 
+    /**
+     * Gets the name of the {@link CommandMetadataFactory} generated for a
+     * command class, this is the name of the class with the names of any
+     * enclosing classes joined by underscores plus {@link #FACTORY_SUFFIX} in
+     * the package of the class
+     *
+     * @param commandType
+     *            Command class
+     * @return Factory class name
+     */
+    public static String getFactoryClassName(Class<?> commandType) {
+        StringBuilder name = new StringBuilder(commandType.getSimpleName());
+        Class<?> outermost = commandType;
+        for (Class<?> outer = commandType.getDeclaringClass(); outer != null; outer = outer.getDeclaringClass()) {
+            name.insert(0, '_').insert(0, outer.getSimpleName());
+            outermost = outer;
+        }
+        int dot = outermost.getName().lastIndexOf('.');
+        if (dot >= 0) {
+            name.insert(0, outermost.getName().substring(0, dot + 1));
+        }
+        return name.append(FACTORY_SUFFIX).toString();
+    }
+
+    private static CommandMetadataFactory findCommandMetadataFactory(Class<?> commandType) {
+        // Only called once per command class since the resulting metadata is
+        // cached, any problem with the factory falls back to reflection
+        Class<?> factoryType;
+        try {
+            factoryType = Class.forName(getFactoryClassName(commandType), false, commandType.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        if (!CommandMetadataFactory.class.isAssignableFrom(factoryType)) {
+            return null;
+        }
+        try {
+            CommandMetadataFactory factory = factoryType.asSubclass(CommandMetadataFactory.class).newInstance();
+            return commandType.equals(factory.getCommandType()) ? factory : null;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+
     public static SuggesterMetadata loadSuggester(Class<? extends Suggester> suggesterClass) {
-        InjectionMetadata injectionMetadata = loadInjectionMetadata(suggesterClass);
-        return new SuggesterMetadata(suggesterClass, injectionMetadata.metadataInjections);
+        return SUGGESTER_CACHE.get(suggesterClass);
     }
 
     public static InjectionMetadata loadInjectionMetadata(Class<?> type) {
@@ -144,33 +264,20 @@ public class MetadataLoader {
                     if (field.getType().equals(GlobalMetadata.class)
                             || field.getType().equals(CommandGroupMetadata.class)
                             || field.getType().equals(CommandMetadata.class)) {
-                        injectionMetadata.metadataInjections.add(new Accessor(path));
+                        injectionMetadata.addMetadataInjection(new Accessor(path));
                     } else {
                         loadInjectionMetadata(field.getType(), injectionMetadata, path);
                     }
                 }
 
-                try {
-                    @SuppressWarnings("unchecked")
-                    Annotation aGuiceInject = field.getAnnotation((Class<? extends Annotation>) Class
-                            .forName("com.google.inject.Inject"));
-                    if (aGuiceInject != null) {
-                        if (field.getType().equals(GlobalMetadata.class)
-                                || field.getType().equals(CommandGroupMetadata.class)
-                                || field.getType().equals(CommandMetadata.class)) {
-                            injectionMetadata.metadataInjections.add(new Accessor(path));
-                        } else {
-                            loadInjectionMetadata(field.getType(), injectionMetadata, path);
-                        }
+                if (GUICE_INJECT != null && field.getAnnotation(GUICE_INJECT) != null) {
+                    if (field.getType().equals(GlobalMetadata.class)
+                            || field.getType().equals(CommandGroupMetadata.class)
+                            || field.getType().equals(CommandMetadata.class)) {
+                        injectionMetadata.addMetadataInjection(new Accessor(path));
+                    } else {
+                        loadInjectionMetadata(field.getType(), injectionMetadata, path);
                     }
-                } catch (ClassNotFoundException e) {
-                    // this is ok, means Guice is not on the class path, so
-                    // probably not being used
-                    // and thus, ok that this did not work.
-                } catch (ClassCastException e) {
-                    // ignore this too, we're doing some funky cross your
-                    // fingers type reflect stuff to play
-                    // nicely with Guice
                 }
 
                 Option optionAnnotation = field.getAnnotation(Option.class);
@@ -228,49 +335,7 @@ public class MetadataLoader {
                                                                        optionAnnotation.completionCommand(),
                                                                        path);
                     //@formatter:on
-                    switch (optionType) {
-                    case GLOBAL:
-                        if (defaultOptionAnnotation != null)
-                            throw new IllegalArgumentException(
-                                    String.format(
-                                            "Field %s which defines a global option cannot be annotated with @DefaultOption as this may only be applied to command options",
-                                            field));
-                        injectionMetadata.globalOptions.add(optionMetadata);
-                        break;
-                    case GROUP:
-                        if (defaultOptionAnnotation != null)
-                            throw new IllegalArgumentException(
-                                    String.format(
-                                            "Field %s which defines a global option cannot be annotated with @DefaultOption as this may only be applied to command options",
-                                            field));
-                        injectionMetadata.groupOptions.add(optionMetadata);
-                        break;
-                    case COMMAND:
-                        // Do we also have a @DefaultOption annotation
-
-                        if (defaultOptionAnnotation != null) {
-                            // Can't have both @DefaultOption and @Arguments
-                            if (injectionMetadata.arguments.size() > 0)
-                                throw new IllegalArgumentException(
-                                        String.format(
-                                                "Field %s cannot be annotated with @DefaultOption because there are fields with @Arguments annotations present",
-                                                field));
-                            // Can't have more than one @DefaultOption
-                            if (injectionMetadata.defaultOption != null)
-                                throw new IllegalArgumentException(String.format(
-                                        "Command type %s has more than one field with @DefaultOption declared upon it",
-                                        type));
-                            // Arity of associated @Option must be 1
-                            if (optionMetadata.getArity() != 1)
-                                throw new IllegalArgumentException(
-                                        String.format(
-                                                "Field %s annotated with @DefaultOption must also have an @Option annotation with an arity of 1",
-                                                field));
-                            injectionMetadata.defaultOption = optionMetadata;
-                        }
-                        injectionMetadata.commandOptions.add(optionMetadata);
-                        break;
-                    }
+                    injectionMetadata.addOption(optionMetadata, defaultOptionAnnotation != null, type, field);
                 }
 
                 if (optionAnnotation == null && defaultOptionAnnotation != null) {
@@ -281,13 +346,6 @@ public class MetadataLoader {
 
                 Arguments argumentsAnnotation = field.getAnnotation(Arguments.class);
                 if (field.isAnnotationPresent(Arguments.class)) {
-                    // Can't have both @DefaultOption and @Arguments
-                    if (injectionMetadata.defaultOption != null)
-                        throw new IllegalArgumentException(
-                                String.format(
-                                        "Field %s cannot be annotated with @Arguments because there is a field with @DefaultOption present",
-                                        field));
-
                     ImmutableList.Builder<String> titlesBuilder = ImmutableList.<String> builder();
 
                     if (!(argumentsAnnotation.title().length == 1 && argumentsAnnotation.title()[0].equals(""))) {
@@ -302,14 +360,16 @@ public class MetadataLoader {
                     int arity = argumentsAnnotation.arity() <= 0 ? Integer.MIN_VALUE : argumentsAnnotation.arity();
 
                     //@formatter:off
-                    injectionMetadata.arguments.add(new ArgumentsMetadata(titlesBuilder.build(), 
-                                                                          description, 
-                                                                          usage,
-                                                                          required, 
-                                                                          arity,
-                                                                          argumentsAnnotation.completionBehaviour(), 
-                                                                          argumentsAnnotation.completionCommand(),
-                                                                          path));
+                    injectionMetadata.addArguments(new ArgumentsMetadata(titlesBuilder.build(), 
+                                                                         description, 
+                                                                         usage,
+                                                                         required, 
+                                                                         arity,
+                                                                         argumentsAnnotation.completionBehaviour(), 
+                                                                         argumentsAnnotation.completionCommand(),
+                                                                         argumentsAnnotation.stdin(),
+                                                                         path), 
+                                                   field);
                     //@formatter:on
                 }
             }
@@ -352,7 +412,7 @@ public class MetadataLoader {
         return options;
     }
 
-    private static List<OptionMetadata> overrideOptionSet(List<OptionMetadata> options) {
+    static List<OptionMetadata> overrideOptionSet(List<OptionMetadata> options) {
         options = ImmutableList.copyOf(options);
 
         Map<Set<String>, OptionMetadata> optionIndex = newHashMap();
@@ -511,31 +571,4 @@ public class MetadataLoader {
             }
         }
     }
-
-    private static class InjectionMetadata {
-        private List<OptionMetadata> globalOptions = newArrayList();
-        private List<OptionMetadata> groupOptions = newArrayList();
-        private List<OptionMetadata> commandOptions = newArrayList();
-        private OptionMetadata defaultOption = null;
-        private List<ArgumentsMetadata> arguments = newArrayList();
-        private List<Accessor> metadataInjections = newArrayList();
-
-        private void compact() {
-            globalOptions = overrideOptionSet(globalOptions);
-            groupOptions = overrideOptionSet(groupOptions);
-            commandOptions = overrideOptionSet(commandOptions);
-            if (defaultOption != null) {
-                for (OptionMetadata option : commandOptions) {
-                    if (Sets.intersection(option.getOptions(), defaultOption.getOptions()).size() > 0) {
-                        defaultOption = option;
-                        break;
-                    }
-                }
-            }
-
-            if (arguments.size() > 1) {
-                arguments = ImmutableList.of(new ArgumentsMetadata(arguments));
-            }
-        }
-    }
 }
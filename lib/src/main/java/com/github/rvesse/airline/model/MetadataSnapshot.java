@@ -0,0 +1,584 @@
+package com.github.rvesse.airline.model;
+
+import com.github.rvesse.airline.Accessor;
+import com.github.rvesse.airline.Group;
+import com.github.rvesse.airline.OptionType;
+import com.github.rvesse.airline.StdinArguments;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes compact binary snapshots of {@link GlobalMetadata} so that
+ * a CLI that is launched many times does not have to load its metadata via
+ * reflection on every launch, see
+ * {@link com.github.rvesse.airline.builder.CliBuilder#withMetadataCache(File)}
+ * <p>
+ * A snapshot is keyed by a caller supplied fingerprint of the CLI
+ * configuration and records the last modified time and size of the class
+ * file, or the JAR containing it, of every class the metadata was loaded
+ * from i.e. the command classes, their superclasses and the classes declaring
+ * the fields options and arguments are injected into. When loaded the key and
+ * every stamp are checked and the snapshot is ignored if any differ, so a
+ * stale snapshot is never used. Snapshots are read with a single sequential
+ * read and restoring them performs no reflection beyond loading the command
+ * classes, the fields of the accessors are resolved by name when first used
+ * (see {@link SnapshotAccessor}).
+ * </p>
+ * <p>
+ * Only metadata whose accessors are backed by field paths can be
+ * snapshotted, metadata generated at compile time by the
+ * {@code airline-processor} already avoids reflection and is not saved. The
+ * annotations that placed a command into groups are already reflected in the
+ * groups of the snapshot so {@link CommandMetadata#getGroups()} is empty for
+ * restored commands.
+ * </p>
+ */
+public final class MetadataSnapshot {
+
+    private static final int MAGIC = 0x4149524D;
+    private static final int VERSION = 2;
+
+    private static final Map<String, Class<?>> PRIMITIVES;
+    static {
+        Map<String, Class<?>> primitives = Maps.newHashMap();
+        for (Class<?> type : new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class, void.class }) {
+            primitives.put(type.getName(), type);
+        }
+        PRIMITIVES = ImmutableMap.copyOf(primitives);
+    }
+
+    private MetadataSnapshot() {
+    }
+
+    /**
+     * Loads a snapshot
+     *
+     * @param file
+     *            Snapshot file
+     * @param key
+     *            Fingerprint of the CLI configuration the snapshot must have
+     *            been saved with
+     * @param loader
+     *            Class loader used to load the command classes
+     * @return Metadata or {@code null} if there is no snapshot or it is stale
+     *         or unreadable
+     */
+    public static GlobalMetadata load(File file, String key, ClassLoader loader) {
+        if (!file.isFile())
+            return null;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(readString(in)))
+                return null;
+
+            // Check the snapshot is not stale
+            Map<File, long[]> files = Maps.newHashMap();
+            int stamps = in.readInt();
+            for (int i = 0; i < stamps; i++) {
+                String className = readString(in);
+                long[] stamp = stamp(loader, className, files);
+                long lastModified = in.readLong(), length = in.readLong();
+                if (stamp == null || stamp[0] != lastModified || stamp[1] != length)
+                    return null;
+            }
+
+            return new Reader(in, loader).readGlobal();
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            // Unreadable snapshots are treated as stale
+            return null;
+        }
+    }
+
+    /**
+     * Saves a snapshot, the snapshot file is replaced atomically where
+     * supported so concurrent launches never see a partially written snapshot
+     *
+     * @param file
+     *            Snapshot file
+     * @param key
+     *            Fingerprint of the CLI configuration
+     * @param metadata
+     *            Metadata
+     * @return True if saved, false if the metadata cannot be snapshotted or
+     *         the snapshot could not be written
+     */
+    public static boolean save(File file, String key, GlobalMetadata metadata) {
+        try {
+            Writer writer = new Writer();
+            writer.writeGlobal(metadata);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, key);
+            Map<File, long[]> files = Maps.newHashMap();
+            out.writeInt(writer.classes.size());
+            for (Map.Entry<String, ClassLoader> entry : writer.classes.entrySet()) {
+                long[] stamp = stamp(entry.getValue(), entry.getKey(), files);
+                if (stamp == null)
+                    return false;
+                writeString(out, entry.getKey());
+                out.writeLong(stamp[0]);
+                out.writeLong(stamp[1]);
+            }
+            writer.bytes.writeTo(out);
+            out.flush();
+
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs())
+                return false;
+            File temp = File.createTempFile(file.getName(), ".tmp", dir);
+            try {
+                Files.write(temp.toPath(), bytes.toByteArray());
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Caching is best effort
+            return false;
+        }
+    }
+
+    /**
+     * Gets the stamp of the class file, or the JAR containing it, of a class
+     *
+     * @return Last modified time and size or {@code null} if the location of
+     *         the class cannot be stamped
+     */
+    private static long[] stamp(ClassLoader loader, String className, Map<File, long[]> files) {
+        URL url = loader.getResource(className.replace('.', '/') + ".class");
+        if (url == null)
+            return null;
+        File f;
+        try {
+            if ("file".equals(url.getProtocol())) {
+                f = new File(url.toURI());
+            } else if ("jar".equals(url.getProtocol())) {
+                String spec = url.getPath();
+                int sep = spec.indexOf("!/");
+                if (sep < 0)
+                    return null;
+                f = new File(new URI(spec.substring(0, sep)));
+            } else {
+                return null;
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+        long[] stamp = files.get(f);
+        if (stamp == null) {
+            if (!f.isFile())
+                return null;
+            stamp = new long[] { f.lastModified(), f.length() };
+            files.put(f, stamp);
+        }
+        return stamp;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<CommandMetadata, Integer> commands = new IdentityHashMap<CommandMetadata, Integer>();
+        private final Map<String, ClassLoader> classes = new LinkedHashMap<String, ClassLoader>();
+
+        void writeGlobal(GlobalMetadata metadata) throws IOException {
+            List<CommandMetadata> all = new ArrayList<CommandMetadata>();
+            collect(metadata.getDefaultCommand(), all);
+            for (CommandMetadata command : metadata.getDefaultGroupCommands()) {
+                collect(command, all);
+            }
+            for (CommandGroupMetadata group : metadata.getCommandGroups()) {
+                collect(group.getDefaultCommand(), all);
+                for (CommandMetadata command : group.getCommands()) {
+                    collect(command, all);
+                }
+            }
+
+            writeString(out, metadata.getName());
+            writeString(out, metadata.getDescription());
+            out.writeBoolean(metadata.aliasesOverrideBuiltIns());
+            out.writeBoolean(metadata.allowsAbbreviatedCommands());
+            out.writeBoolean(metadata.allowsAbbreviatedOptions());
+            out.writeInt(all.size());
+            for (CommandMetadata command : all) {
+                writeCommand(command);
+            }
+            writeCommandRef(metadata.getDefaultCommand());
+            writeCommandRefs(metadata.getDefaultGroupCommands());
+            out.writeInt(metadata.getCommandGroups().size());
+            for (CommandGroupMetadata group : metadata.getCommandGroups()) {
+                writeString(out, group.getName());
+                writeString(out, group.getDescription());
+                out.writeBoolean(group.isHidden());
+                writeOptions(group.getOptions());
+                writeCommandRef(group.getDefaultCommand());
+                writeCommandRefs(group.getCommands());
+            }
+            writeOptions(metadata.getOptions());
+            out.writeInt(metadata.getAliases().size());
+            for (AliasMetadata alias : metadata.getAliases()) {
+                writeString(out, alias.getName());
+                writeStrings(alias.getArguments());
+            }
+            out.flush();
+        }
+
+        private void collect(CommandMetadata command, List<CommandMetadata> all) {
+            if (command != null && !commands.containsKey(command)) {
+                commands.put(command, all.size());
+                all.add(command);
+            }
+        }
+
+        private void writeCommand(CommandMetadata command) throws IOException {
+            writeString(out, command.getName());
+            writeString(out, command.getDescription());
+            writeStrings(command.getDiscussion());
+            writeStrings(command.getExamples());
+            out.writeBoolean(command.isHidden());
+            writeOptions(command.getGlobalOptions());
+            writeOptions(command.getGroupOptions());
+            writeOptions(command.getCommandOptions());
+            out.writeInt(command.getCommandOptions().indexOf(command.getDefaultOption()));
+            ArgumentsMetadata arguments = command.getArguments();
+            out.writeBoolean(arguments != null);
+            if (arguments != null) {
+                writeStrings(arguments.getTitle());
+                writeString(out, arguments.getDescription());
+                writeString(out, arguments.getUsage());
+                out.writeBoolean(arguments.isRequired());
+                out.writeInt(arguments.getArity());
+                out.writeInt(arguments.getCompletionBehaviours());
+                writeString(out, arguments.getCompletionCommand());
+                writeString(out, arguments.getStdin().name());
+                writeAccessors(arguments.getAccessors());
+            }
+            writeAccessors(command.getMetadataInjections());
+            writeClass(command.getType());
+            writeStrings(command.getGroupNames());
+            out.writeInt(command.getExitCodes().size());
+            for (Map.Entry<Integer, String> exitCode : command.getExitCodes().entrySet()) {
+                out.writeInt(exitCode.getKey());
+                writeString(out, exitCode.getValue());
+            }
+        }
+
+        private void writeCommandRef(CommandMetadata command) throws IOException {
+            out.writeInt(command != null ? commands.get(command) : -1);
+        }
+
+        private void writeCommandRefs(List<CommandMetadata> refs) throws IOException {
+            out.writeInt(refs.size());
+            for (CommandMetadata command : refs) {
+                writeCommandRef(command);
+            }
+        }
+
+        private void writeOptions(List<OptionMetadata> options) throws IOException {
+            out.writeInt(options.size());
+            for (OptionMetadata option : options) {
+                out.writeUTF(option.getOptionType().name());
+                writeStrings(option.getOptions());
+                writeString(out, option.getTitle());
+                writeString(out, option.getDescription());
+                out.writeInt(option.getArity());
+                out.writeBoolean(option.isRequired());
+                out.writeBoolean(option.isHidden());
+                out.writeBoolean(option.isOverride());
+                out.writeBoolean(option.isSealed());
+                writeStrings(option.getAllowedValues());
+                out.writeBoolean(option.isIgnoreCase());
+                out.writeInt(option.getCompletionBehaviours());
+                writeString(out, option.getCompletionCommand());
+                writeAccessors(option.getAccessors());
+            }
+        }
+
+        private void writeAccessors(Collection<Accessor> accessors) throws IOException {
+            out.writeInt(accessors.size());
+            for (Accessor accessor : accessors) {
+                List<String> declaringClasses, fieldNames;
+                if (accessor instanceof SnapshotAccessor) {
+                    declaringClasses = ((SnapshotAccessor) accessor).getDeclaringClasses();
+                    fieldNames = ((SnapshotAccessor) accessor).getFieldNames();
+                } else {
+                    List<Field> path = accessor.getPath();
+                    if (path.isEmpty())
+                        throw new IOException("Accessor " + accessor.getName() + " is not backed by a field path");
+                    declaringClasses = new ArrayList<String>(path.size());
+                    fieldNames = new ArrayList<String>(path.size());
+                    for (int i = 0; i < path.size(); i++) {
+                        Field field = path.get(i);
+                        addClass(field.getDeclaringClass());
+                        if (i < path.size() - 1)
+                            addClass(field.getType());
+                        declaringClasses.add(field.getDeclaringClass().getName());
+                        fieldNames.add(field.getName());
+                    }
+                }
+
+                writeString(out, accessor.getName());
+                writeString(out, accessor.getJavaType().getName());
+                out.writeBoolean(accessor.isMultiValued());
+                out.writeBoolean(accessor.isStreaming());
+                writeStrings(declaringClasses);
+                writeStrings(fieldNames);
+            }
+        }
+
+        private void writeClass(Class<?> type) throws IOException {
+            addClass(type);
+            writeString(out, type.getName());
+        }
+
+        private void writeStrings(Collection<String> values) throws IOException {
+            if (values == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(values.size());
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+
+        /**
+         * Records a class, and its superclasses, as one whose class file must
+         * be unchanged for the snapshot to be used
+         */
+        private void addClass(Class<?> type) {
+            for (Class<?> cls = type; cls != null && cls.getClassLoader() != null; cls = cls.getSuperclass()) {
+                // Classes of the Java runtime only change with the runtime
+                URL url = cls.getClassLoader().getResource(cls.getName().replace('.', '/') + ".class");
+                if (url != null && "jrt".equals(url.getProtocol()))
+                    break;
+                if (classes.containsKey(cls.getName()))
+                    break;
+                classes.put(cls.getName(), cls.getClassLoader());
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final ClassLoader loader;
+        private final List<CommandMetadata> commands = new ArrayList<CommandMetadata>();
+
+        Reader(DataInputStream in, ClassLoader loader) {
+            this.in = in;
+            this.loader = loader;
+        }
+
+        GlobalMetadata readGlobal() throws IOException, ClassNotFoundException {
+            String name = readString(in);
+            String description = readString(in);
+            boolean aliasesOverrideBuiltIns = in.readBoolean();
+            boolean allowAbbreviatedCommands = in.readBoolean();
+            boolean allowAbbreviatedOptions = in.readBoolean();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                commands.add(readCommand());
+            }
+            CommandMetadata defaultCommand = readCommandRef();
+            List<CommandMetadata> defaultGroupCommands = readCommandRefs();
+            count = in.readInt();
+            List<CommandGroupMetadata> groups = new ArrayList<CommandGroupMetadata>(count);
+            for (int i = 0; i < count; i++) {
+                String groupName = readString(in);
+                String groupDescription = readString(in);
+                boolean hidden = in.readBoolean();
+                List<OptionMetadata> options = readOptions();
+                CommandMetadata groupDefault = readCommandRef();
+                groups.add(new CommandGroupMetadata(groupName, groupDescription, hidden, options, groupDefault,
+                        readCommandRefs()));
+            }
+            List<OptionMetadata> options = readOptions();
+            count = in.readInt();
+            List<AliasMetadata> aliases = new ArrayList<AliasMetadata>(count);
+            for (int i = 0; i < count; i++) {
+                String aliasName = readString(in);
+                aliases.add(new AliasMetadata(aliasName, readStrings()));
+            }
+            return new GlobalMetadata(name, description, options, defaultCommand, defaultGroupCommands, groups,
+                    aliases, aliasesOverrideBuiltIns, allowAbbreviatedCommands, allowAbbreviatedOptions);
+        }
+
+        private CommandMetadata readCommand() throws IOException, ClassNotFoundException {
+            String name = readString(in);
+            String description = readString(in);
+            List<String> discussion = readStrings();
+            List<String> examples = readStrings();
+            boolean hidden = in.readBoolean();
+            List<OptionMetadata> globalOptions = readOptions();
+            List<OptionMetadata> groupOptions = readOptions();
+            List<OptionMetadata> commandOptions = readOptions();
+            int defaultOption = in.readInt();
+            ArgumentsMetadata arguments = null;
+            if (in.readBoolean()) {
+                List<String> titles = readStrings();
+                String argsDescription = readString(in);
+                String usage = readString(in);
+                boolean required = in.readBoolean();
+                int arity = in.readInt();
+                int completionBehaviours = in.readInt();
+                String completionCommand = readString(in);
+                StdinArguments stdin = StdinArguments.valueOf(readString(in));
+                List<ArgumentsMetadata> merged = Lists.newArrayList();
+                for (Accessor accessor : readAccessors()) {
+                    merged.add(new ArgumentsMetadata(titles, argsDescription, usage, required, arity,
+                            completionBehaviours, completionCommand, stdin, accessor));
+                }
+                arguments = merged.size() == 1 ? merged.get(0) : new ArgumentsMetadata(merged);
+            }
+            List<Accessor> metadataInjections = readAccessors();
+            Class<?> type = readClass();
+            List<String> groupNames = readStrings();
+            int count = in.readInt();
+            Map<Integer, String> exitCodes = Maps.newHashMap();
+            for (int i = 0; i < count; i++) {
+                int code = in.readInt();
+                exitCodes.put(code, readString(in));
+            }
+            return new CommandMetadata(name, description, discussion, examples, hidden, globalOptions,
+                    groupOptions, commandOptions, defaultOption >= 0 ? commandOptions.get(defaultOption) : null,
+                    arguments, metadataInjections, type, groupNames, ImmutableList.<Group> of(), exitCodes);
+        }
+
+        private CommandMetadata readCommandRef() throws IOException {
+            int index = in.readInt();
+            return index >= 0 ? commands.get(index) : null;
+        }
+
+        private List<CommandMetadata> readCommandRefs() throws IOException {
+            int count = in.readInt();
+            List<CommandMetadata> refs = new ArrayList<CommandMetadata>(count);
+            for (int i = 0; i < count; i++) {
+                refs.add(readCommandRef());
+            }
+            return refs;
+        }
+
+        private List<OptionMetadata> readOptions() throws IOException, ClassNotFoundException {
+            int count = in.readInt();
+            List<OptionMetadata> options = new ArrayList<OptionMetadata>(count);
+            for (int i = 0; i < count; i++) {
+                OptionType optionType = OptionType.valueOf(in.readUTF());
+                List<String> names = readStrings();
+                String title = readString(in);
+                String description = readString(in);
+                int arity = in.readInt();
+                boolean required = in.readBoolean();
+                boolean hidden = in.readBoolean();
+                boolean overrides = in.readBoolean();
+                boolean sealed = in.readBoolean();
+                List<String> allowedValues = readStrings();
+                boolean ignoreCase = in.readBoolean();
+                int completionBehaviours = in.readInt();
+                String completionCommand = readString(in);
+                List<Accessor> accessors = readAccessors();
+
+                // Options merged from several commands have several accessors
+                List<OptionMetadata> merged = Lists.newArrayList();
+                for (Accessor accessor : accessors) {
+                    merged.add(new OptionMetadata(optionType, names, title, description, arity, required, hidden,
+                            overrides, sealed, allowedValues, ignoreCase, completionBehaviours, completionCommand,
+                            accessor));
+                }
+                if (merged.size() == 1) {
+                    options.add(merged.get(0));
+                } else if (merged.isEmpty()) {
+                    options.add(new OptionMetadata(optionType, names, title, description, arity, required, hidden,
+                            overrides, sealed, allowedValues, ignoreCase, completionBehaviours, completionCommand,
+                            (Accessor) null));
+                } else {
+                    options.add(new OptionMetadata(merged));
+                }
+            }
+            return options;
+        }
+
+        private List<Accessor> readAccessors() throws IOException, ClassNotFoundException {
+            int count = in.readInt();
+            List<Accessor> accessors = new ArrayList<Accessor>(count);
+            for (int i = 0; i < count; i++) {
+                String name = readString(in);
+                Class<?> javaType = readClass();
+                boolean multiValued = in.readBoolean();
+                boolean streaming = in.readBoolean();
+                List<String> declaringClasses = readStrings();
+                List<String> fieldNames = readStrings();
+                accessors.add(new SnapshotAccessor(name, javaType, multiValued, streaming, loader,
+                        declaringClasses, fieldNames));
+            }
+            return accessors;
+        }
+
+        private Class<?> readClass() throws IOException, ClassNotFoundException {
+            String name = readString(in);
+            Class<?> primitive = PRIMITIVES.get(name);
+            return primitive != null ? primitive : Class.forName(name, false, loader);
+        }
+
+        private List<String> readStrings() throws IOException {
+            int count = in.readInt();
+            if (count < 0)
+                return null;
+            List<String> values = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readString(in));
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.rvesse.airline.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Precomputed lookup index over the options available in a single scope i.e.
+ * the global options, the options of a group or the options of a command
+ * <p>
+ * Options are indexed by each of their names so that resolving an option from a
+ * token is a single hash lookup. Single letter options of the form {@code -x}
+ * are additionally held in a table indexed by the letter for use when
+ * processing classic getopt style option clusters. Names longer than two
+ * characters may also be resolved from unique abbreviations. Names are also
+ * held sorted so that the name at the start of a token e.g.
+ * {@code --name=value} can be resolved without first extracting it.
+ * </p>
+ * <p>
+ * Every lookup resolves to the position of the option within the scope, which
+ * the parser uses directly as the slot of the option within the scope so that
+ * recording a value never needs to look the option up again, see
+ * {@link com.github.rvesse.airline.parser.ParsedOptions}.
+ * </p>
+ */
+public class OptionIndex {
+    private static final int SHORT_TABLE_SIZE = 128;
+    private static final int MIN_ABBREVIATION_LENGTH = 3;
+
+    private final List<OptionMetadata> options;
+    private final AbbreviationIndex<Integer> byName;
+    private final int[] shortPositions = new int[SHORT_TABLE_SIZE];
+    private final String[] sortedNames;
+    private final int[] sortedPositions;
+
+    public OptionIndex(Iterable<OptionMetadata> options) {
+        Preconditions.checkNotNull(options, "options is null");
+        this.options = ImmutableList.copyOf(options);
+        Arrays.fill(this.shortPositions, -1);
+
+        Map<String, Integer> byName = Maps.newLinkedHashMap();
+        for (int i = 0; i < this.options.size(); i++) {
+            int position = indexOf(this.options.get(i));
+            for (String name : this.options.get(i).getOptions()) {
+                // First declaration wins, consistent with searching the
+                // options in order
+                if (byName.containsKey(name))
+                    continue;
+                byName.put(name, position);
+
+                if (isShortOption(name) && name.charAt(1) < SHORT_TABLE_SIZE) {
+                    this.shortPositions[name.charAt(1)] = position;
+                }
+            }
+        }
+        this.byName = new AbbreviationIndex<Integer>(byName, MIN_ABBREVIATION_LENGTH);
+
+        SortedMap<String, Integer> sorted = Maps.newTreeMap();
+        sorted.putAll(byName);
+        this.sortedNames = sorted.keySet().toArray(new String[sorted.size()]);
+        this.sortedPositions = new int[sorted.size()];
+        int i = 0;
+        for (Integer position : sorted.values()) {
+            this.sortedPositions[i++] = position;
+        }
+    }
+
+    private static boolean isShortOption(String name) {
+        return name.length() == 2 && name.charAt(0) == '-' && name.charAt(1) != '-';
+    }
+
+    /**
+     * Gets the indexed options in declaration order
+     *
+     * @return Options
+     */
+    public List<OptionMetadata> getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the option at the given position
+     *
+     * @param position
+     *            Position as returned by one of the lookup methods
+     * @return Option or {@code null} if the position is {@code -1}
+     */
+    public OptionMetadata getOption(int position) {
+        return position >= 0 ? options.get(position) : null;
+    }
+
+    /**
+     * Gets the position of an option amongst the indexed options, options are
+     * compared by identity and the options are searched in order so this is
+     * intended for use when compiling rather than parsing
+     *
+     * @param option
+     *            Option
+     * @return Position or {@code -1} if the option is not indexed
+     */
+    public int indexOf(OptionMetadata option) {
+        for (int i = 0; i < options.size(); i++) {
+            if (options.get(i) == option)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the option with the given name
+     *
+     * @param name
+     *            Option name including any prefix e.g. {@code --name}
+     * @return Option or {@code null} if no such option
+     */
+    public OptionMetadata find(String name) {
+        return getOption(findPosition(name));
+    }
+
+    /**
+     * Finds the position of the option with the given name
+     *
+     * @param name
+     *            Option name including any prefix e.g. {@code --name}
+     * @return Position or {@code -1} if no such option
+     */
+    public int findPosition(String name) {
+        return position(byName.findExact(name));
+    }
+
+    /**
+     * Finds the position of the option whose name is the first {@code length}
+     * characters of the given value, this does not allocate
+     *
+     * @param value
+     *            Value e.g. {@code --name=value}
+     * @param length
+     *            Length of the name within the value
+     * @return Position or {@code -1} if no such option
+     */
+    public int findPosition(String value, int length) {
+        int low = 0, high = sortedNames.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(sortedNames[mid], value, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return sortedPositions[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares a name to a prefix of a value consistently with
+     * {@link String#compareTo(String)}
+     */
+    private static int compare(String name, String value, int length) {
+        int common = Math.min(name.length(), length);
+        for (int i = 0; i < common; i++) {
+            int diff = name.charAt(i) - value.charAt(i);
+            if (diff != 0)
+                return diff;
+        }
+        return name.length() - length;
+    }
+
+    /**
+     * Finds the position of the option with the given name or whose name is
+     * uniquely abbreviated by the given value
+     *
+     * @param value
+     *            Option name or abbreviation
+     * @return Position or {@code -1} if there is no such option or the value
+     *         is an ambiguous abbreviation
+     */
+    public int findAbbreviatedPosition(String value) {
+        return position(byName.find(value));
+    }
+
+    /**
+     * Finds the position of the single letter option for the given letter i.e.
+     * the option named {@code -c} where {@code c} is the given letter
+     *
+     * @param c
+     *            Option letter
+     * @return Position or {@code -1} if no such option
+     */
+    public int findShortPosition(char c) {
+        if (c < SHORT_TABLE_SIZE) {
+            return shortPositions[c];
+        }
+        return findPosition("-" + c);
+    }
+
+    private static int position(Integer position) {
+        return position != null ? position : -1;
+    }
+}
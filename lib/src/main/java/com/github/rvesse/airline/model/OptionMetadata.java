@@ -38,6 +38,24 @@ public class OptionMetadata {
                           int completionBehaviours,
                           String completionCommand,
                           Iterable<Field> path) {
+        this(optionType, options, title, description, arity, required, hidden, overrides, sealed, allowedValues, 
+             ignoreCase, completionBehaviours, completionCommand, path != null ? new Accessor(path) : null);
+    }
+
+    public OptionMetadata(OptionType optionType, 
+                          Iterable<String> options, 
+                          String title, 
+                          String description, 
+                          int arity,
+                          boolean required, 
+                          boolean hidden, 
+                          boolean overrides, 
+                          boolean sealed,
+                          Iterable<String> allowedValues,
+                          boolean ignoreCase,
+                          int completionBehaviours,
+                          String completionCommand,
+                          Accessor accessor) {
     //@formatter:on
         Preconditions.checkNotNull(optionType, "optionType is null");
         Preconditions.checkNotNull(options, "options is null");
@@ -63,8 +81,8 @@ public class OptionMetadata {
             this.allowedValues = null;
         }
 
-        if (path != null) {
-            this.accessors = ImmutableSet.of(new Accessor(path));
+        if (accessor != null) {
+            this.accessors = ImmutableSet.of(accessor);
         }
     }
 
@@ -344,7 +362,7 @@ public class OptionMetadata {
                 child.ignoreCase,
                                     child.completionBehaviour,
                                     child.completionCommand,
-                                    null);
+                                    (Accessor) null);
         //@formatter:on
 
         // Combine both child and parent accessors - this is necessary so the
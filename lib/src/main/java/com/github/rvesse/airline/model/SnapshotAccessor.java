@@ -0,0 +1,102 @@
+package com.github.rvesse.airline.model;
+
+import com.github.rvesse.airline.Accessor;
+import com.google.common.collect.ImmutableList;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * Accessor restored from a {@link MetadataSnapshot}, the field path is held by
+ * name and only resolved to actual fields the first time values are accessed
+ * <p>
+ * This means restoring a snapshot does not need to reflect over the command
+ * classes at all, only the fields a parse actually injects into are ever
+ * looked up.
+ * </p>
+ */
+final class SnapshotAccessor extends Accessor {
+    private final ClassLoader loader;
+    private final List<String> declaringClasses;
+    private final List<String> fieldNames;
+    private final boolean streaming;
+    private volatile Accessor resolved;
+
+    SnapshotAccessor(String name, Class<?> javaType, boolean multiValued, boolean streaming, ClassLoader loader,
+            List<String> declaringClasses, List<String> fieldNames) {
+        super(name, javaType, multiValued);
+        this.streaming = streaming;
+        this.loader = loader;
+        this.declaringClasses = ImmutableList.copyOf(declaringClasses);
+        this.fieldNames = ImmutableList.copyOf(fieldNames);
+    }
+
+    List<String> getDeclaringClasses() {
+        return declaringClasses;
+    }
+
+    List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * Resolves the field path, if the fields no longer exist the snapshot was
+     * stale which should have been detected by its fingerprint
+     */
+    private Accessor resolve() {
+        Accessor accessor = resolved;
+        if (accessor == null) {
+            Field[] path = new Field[fieldNames.size()];
+            for (int i = 0; i < path.length; i++) {
+                try {
+                    path[i] = Class.forName(declaringClasses.get(i), false, loader).getDeclaredField(
+                            fieldNames.get(i));
+                } catch (ClassNotFoundException | NoSuchFieldException e) {
+                    throw new IllegalStateException(String.format("Unable to resolve field %s.%s of %s",
+                            declaringClasses.get(i), fieldNames.get(i), getName()), e);
+                }
+            }
+            accessor = new Accessor(path);
+            resolved = accessor;
+        }
+        return accessor;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    @Override
+    public List<Field> getPath() {
+        return resolve().getPath();
+    }
+
+    @Override
+    public Object getValue(Object instance) {
+        return resolve().getValue(instance);
+    }
+
+    @Override
+    public void addValues(Object commandInstance, Iterable<?> values) {
+        resolve().addValues(commandInstance, values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        SnapshotAccessor that = (SnapshotAccessor) o;
+        return declaringClasses.equals(that.declaringClasses) && fieldNames.equals(that.fieldNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * declaringClasses.hashCode() + fieldNames.hashCode();
+    }
+}
@@ -6,23 +6,31 @@ import java.util.List;
 
 import com.google.common.base.Predicate;
 
+/**
+ * Predicate for finding abbreviated names
+ * <p>
+ * The parser resolves abbreviations via the precomputed
+ * {@link com.github.rvesse.airline.model.AbbreviationIndex} held by the
+ * metadata, this remains available for matching against arbitrary
+ * collections.
+ * </p>
+ *
+ * @param <T>
+ *            Type of the named items
+ */
 public abstract class AbstractAbbreviationFinder<T> implements Predicate<T> {
 
     private List<T> candidates = new ArrayList<T>();
     private T exact = null;
 
     public AbstractAbbreviationFinder(String value, Collection<T> items) {
-        this.candidates.addAll(items);
-        for (int i = 0; i < this.candidates.size(); i++) {
-            T item = this.candidates.get(i);
+        for (T item : items) {
             if (this.isExactNameMatch(value, item)) {
                 this.exact = item;
-                continue;
+                this.candidates.add(item);
+            } else if (this.isPartialNameMatch(value, item)) {
+                this.candidates.add(item);
             }
-            if (this.isPartialNameMatch(value, item))
-                continue;
-            this.candidates.remove(i);
-            i--;
         }
     }
     
@@ -0,0 +1,313 @@
+package com.github.rvesse.airline.parser;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.AbstractIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Expands argument files, also known as response files, within arguments
+ * <p>
+ * An argument of the form {@code @path} is replaced by the arguments read from
+ * the file at {@code path}, an argument starting with {@code @@} is not
+ * expanded and is passed on with the first {@code @} removed. Argument files
+ * are UTF-8 encoded and use the same rules as alias definitions (see
+ * {@link AliasArgumentsParser}) i.e. arguments are separated by white space,
+ * may be enclosed in double quotes, within which {@code \"} is a literal quote,
+ * and outside of quotes {@code \} followed by white space is literal white
+ * space. Arguments within argument files are not themselves expanded.
+ * </p>
+ * <p>
+ * Relative paths are resolved against the JVM working directory unless a
+ * different directory is set for the current thread via
+ * {@link #setWorkingDirectory(File)}, the daemon sets this to the working
+ * directory of the client for the duration of each invocation.
+ * </p>
+ * <p>
+ * Files are memory mapped and their arguments are produced lazily as the
+ * parser consumes them, so argument files holding millions of arguments are
+ * parsed in bounded memory. Since arguments are produced lazily a file that
+ * cannot be read or is malformed causes a {@link ParseArgumentFileException}
+ * when it is reached. The parser stops parsing at that point and, when errors
+ * are being collected, reports it as a {@link ParseError} of kind
+ * {@link ParseError.Kind#ARGUMENT_FILE}.
+ * </p>
+ */
+public final class ArgumentFiles {
+
+    /**
+     * Size of the regions files are mapped in, files larger than this are
+     * mapped as several regions
+     */
+    static final int REGION_SIZE = Integer.MAX_VALUE;
+
+    private static final ThreadLocal<File> WORKING_DIRECTORY = new ThreadLocal<File>();
+
+    private ArgumentFiles() {
+    }
+
+    /**
+     * Sets the directory that relative argument file paths are resolved
+     * against by expansions started on the current thread
+     *
+     * @param directory
+     *            Directory, {@code null} to use the JVM working directory
+     */
+    public static void setWorkingDirectory(File directory) {
+        if (directory != null) {
+            WORKING_DIRECTORY.set(directory);
+        } else {
+            WORKING_DIRECTORY.remove();
+        }
+    }
+
+    private static File resolve(File directory, String path) {
+        File file = new File(path);
+        return directory == null || file.isAbsolute() ? file : new File(directory, path);
+    }
+
+    /**
+     * Expands any argument files within the given arguments
+     *
+     * @param args
+     *            Arguments
+     * @return Lazily expanded arguments
+     */
+    public static Iterator<String> expand(final Iterator<String> args) {
+        // Captured now since the arguments may be consumed later on another
+        // thread
+        final File directory = WORKING_DIRECTORY.get();
+        return new AbstractIterator<String>() {
+            private Iterator<String> file = Collections.emptyIterator();
+
+            @Override
+            protected String computeNext() {
+                if (file.hasNext())
+                    return file.next();
+                while (args.hasNext()) {
+                    String arg = args.next();
+                    if (arg.startsWith("@@")) {
+                        return arg.substring(1);
+                    } else if (arg.length() > 1 && arg.charAt(0) == '@') {
+                        file = read(resolve(directory, arg.substring(1)));
+                        if (file.hasNext())
+                            return file.next();
+                    } else {
+                        return arg;
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * Reads the arguments from an argument file
+     *
+     * @param file
+     *            Argument file
+     * @return Lazily read arguments
+     * @throws ParseArgumentFileException
+     *             Thrown if the file cannot be read
+     */
+    public static Iterator<String> read(File file) {
+        return read(file, REGION_SIZE);
+    }
+
+    static Iterator<String> read(File file, int regionSize) {
+        List<ByteBuffer> regions = new ArrayList<ByteBuffer>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Mappings remain valid once the channel is closed
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(regionSize, size - position);
+                MappedByteBuffer region = channel.map(MapMode.READ_ONLY, position, length);
+                if (position + length < size && characterBoundary(region) == 0) {
+                    // Region is smaller than its first character
+                    length = Math.min(4, size - position);
+                    region = channel.map(MapMode.READ_ONLY, position, length);
+                }
+                if (position + length < size)
+                    region.limit(characterBoundary(region));
+                regions.add(region);
+                position += region.limit();
+            }
+        } catch (IOException e) {
+            throw new ParseArgumentFileException(file, e, "Unable to read argument file %s: %s", file, e.getMessage());
+        }
+        return new FileArguments(file, new MappedReader(file, regions));
+    }
+
+    /**
+     * Finds the end of the last complete UTF-8 character in a region so that
+     * no character is split between regions
+     */
+    private static int characterBoundary(ByteBuffer region) {
+        int limit = region.limit();
+        for (int i = limit - 1; i >= Math.max(0, limit - 4); i--) {
+            int b = region.get(i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                // Found the first byte of the last character
+                int length = b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+                return i + length <= limit ? limit : i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Reads the characters of a file from its mapped regions, decoding them a
+     * buffer at a time
+     */
+    private static final class MappedReader {
+        private final File file;
+        private final List<ByteBuffer> regions;
+        private final CharsetDecoder decoder = Charsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+        private int next = 0;
+        private int pushedBack = -1;
+
+        MappedReader(File file, List<ByteBuffer> regions) {
+            this.file = file;
+            this.regions = regions;
+            this.chars.flip();
+        }
+
+        /**
+         * Reads the next character
+         *
+         * @return Character or {@code -1} at the end of the file
+         */
+        int read() {
+            if (pushedBack >= 0) {
+                int c = pushedBack;
+                pushedBack = -1;
+                return c;
+            }
+            if (!chars.hasRemaining() && !fill())
+                return -1;
+            return chars.get();
+        }
+
+        /**
+         * Pushes back a character so it is returned by the next read
+         *
+         * @param c
+         *            Character, {@code -1} is ignored
+         */
+        void unread(int c) {
+            pushedBack = c;
+        }
+
+        private boolean fill() {
+            chars.clear();
+            try {
+                while (chars.position() == 0) {
+                    if (!bytes.hasRemaining()) {
+                        if (next == regions.size())
+                            break;
+                        bytes = regions.get(next++);
+                    }
+                    CoderResult result = decoder.decode(bytes, chars, next == regions.size());
+                    // Regions end on character boundaries so any bytes left
+                    // over are malformed
+                    if (result.isError() || (result.isUnderflow() && bytes.hasRemaining()))
+                        throw new ParseArgumentFileException(file, "Argument file %s is not valid UTF-8", file);
+                }
+            } finally {
+                chars.flip();
+            }
+            return chars.hasRemaining();
+        }
+    }
+
+    /**
+     * Tokenises the characters of an argument file
+     */
+    private static final class FileArguments extends AbstractIterator<String> {
+        private final File file;
+        private final MappedReader reader;
+        private final StringBuilder arg = new StringBuilder();
+
+        FileArguments(File file, MappedReader reader) {
+            this.file = file;
+            this.reader = reader;
+        }
+
+        @Override
+        protected String computeNext() {
+            int c;
+            do {
+                c = reader.read();
+            } while (c >= 0 && Character.isWhitespace(c));
+            if (c < 0)
+                return endOfData();
+
+            arg.setLength(0);
+            if (c == '"') {
+                return parseQuotedArgument();
+            }
+            reader.unread(c);
+            return parseUnquotedArgument();
+        }
+
+        private String parseQuotedArgument() {
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (c == '"') {
+                    // Reached end of quoted argument
+                    return arg.toString();
+                } else if (c == '\\') {
+                    // May be an escape
+                    int next = reader.read();
+                    if (next == '"') {
+                        arg.append('"');
+                        continue;
+                    }
+                    reader.unread(next);
+                }
+                arg.append((char) c);
+            }
+
+            // Reached end of file which means we have mismatched quotes
+            throw new ParseArgumentFileException(file, "Mismatched quotes in argument file %s", file);
+        }
+
+        private String parseUnquotedArgument() {
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (c == '\\') {
+                    // May be an escape
+                    int next = reader.read();
+                    if (next >= 0 && Character.isWhitespace(next)) {
+                        arg.append((char) next);
+                        continue;
+                    }
+                    reader.unread(next);
+                } else if (Character.isWhitespace(c)) {
+                    // Reached end of argument
+                    break;
+                }
+                arg.append((char) c);
+            }
+            return arg.toString();
+        }
+    }
+}
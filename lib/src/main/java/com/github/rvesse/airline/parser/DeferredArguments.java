@@ -0,0 +1,153 @@
+package com.github.rvesse.airline.parser;
+
+import com.google.common.base.Function;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Arguments whose conversion is deferred until parsing has finished so that
+ * they can be converted in parallel
+ * <p>
+ * This is enabled via
+ * {@link com.github.rvesse.airline.builder.CliBuilder#withParallelConversion()}
+ * or {@link com.github.rvesse.airline.SingleCommand#withParallelConversion()}
+ * and is intended for very large argument lists whose type is expensive to
+ * convert e.g. paths, URIs or user types with a costly {@code fromString()}.
+ * The parser only records the raw tokens, once every token has been seen they
+ * are split into chunks that are converted on a {@link ForkJoinPool}, small
+ * argument lists are converted on the calling thread since they would not
+ * benefit.
+ * </p>
+ * <p>
+ * Converted values keep the order of their tokens regardless of which chunk
+ * converted them. Conversion failures are placed amongst any other errors in
+ * token order, so the first error, or all the errors when errors are
+ * collected, are the same as for serial conversion.
+ * </p>
+ */
+public final class DeferredArguments {
+
+    /**
+     * Number of arguments below which conversion happens on the calling
+     * thread
+     */
+    static final int PARALLEL_THRESHOLD = 1024;
+
+    /**
+     * Minimum number of arguments converted by each task
+     */
+    static final int MIN_CHUNK = 256;
+
+    /**
+     * Marker for a value that could not be converted
+     */
+    static final Object INVALID = new Object();
+
+    private String[] tokens = new String[16];
+    private int[] indices = new int[16];
+    private int size;
+
+    DeferredArguments() {
+    }
+
+    /**
+     * Gets the shared pool used for parallel conversion and by
+     * {@link com.github.rvesse.airline.Cli#parseAll(Iterable)} unless a pool is
+     * given explicitly, the pool is only created when first used
+     *
+     * @return Pool
+     */
+    public static ForkJoinPool getDefaultPool() {
+        return DefaultPool.POOL;
+    }
+
+    /**
+     * Adds an argument
+     *
+     * @param token
+     *            Token
+     * @param index
+     *            Index of the token, used to report conversion errors
+     */
+    void add(String token, int index) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, size * 2);
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        tokens[size] = token;
+        indices[size] = index;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String getToken(int i) {
+        return tokens[i];
+    }
+
+    int getIndex(int i) {
+        return indices[i];
+    }
+
+    /**
+     * Converts the arguments
+     *
+     * @param converter
+     *            Converter, must be safe to call concurrently
+     * @param pool
+     *            Pool to convert on
+     * @return Values in token order, {@link #INVALID} where a token could not
+     *         be converted
+     */
+    Object[] convert(Function<String, ?> converter, ForkJoinPool pool) {
+        Object[] values = new Object[size];
+        if (size < PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            new ConvertTask(converter, values, 0, size, size).compute();
+        } else {
+            int threshold = Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4));
+            pool.invoke(new ConvertTask(converter, values, 0, size, threshold));
+        }
+        return values;
+    }
+
+    private final class ConvertTask extends RecursiveAction {
+        private static final long serialVersionUID = -2384871270340436871L;
+
+        private final Function<String, ?> converter;
+        private final Object[] values;
+        private final int from, to, threshold;
+
+        ConvertTask(Function<String, ?> converter, Object[] values, int from, int to, int threshold) {
+            this.converter = converter;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        values[i] = converter.apply(tokens[i]);
+                    } catch (Exception e) {
+                        values[i] = INVALID;
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ConvertTask(converter, values, from, middle, threshold), new ConvertTask(converter,
+                    values, middle, to, threshold));
+        }
+    }
+
+    private static final class DefaultPool {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+}
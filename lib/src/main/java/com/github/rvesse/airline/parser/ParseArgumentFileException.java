@@ -0,0 +1,32 @@
+package com.github.rvesse.airline.parser;
+
+import java.io.File;
+
+/**
+ * Error that is thrown if an argument file cannot be read or is malformed, see
+ * {@link ArgumentFiles}
+ */
+public class ParseArgumentFileException extends ParseException {
+    private static final long serialVersionUID = 6416180427786526011L;
+
+    private final File file;
+
+    public ParseArgumentFileException(File file, String string, Object... args) {
+        super(string, args);
+        this.file = file;
+    }
+
+    public ParseArgumentFileException(File file, Exception cause, String string, Object... args) {
+        super(cause, string, args);
+        this.file = file;
+    }
+
+    /**
+     * Gets the argument file
+     *
+     * @return Argument file
+     */
+    public File getFile() {
+        return file;
+    }
+}
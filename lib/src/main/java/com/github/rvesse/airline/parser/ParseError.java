@@ -0,0 +1,330 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A structured description of a parse failure
+ * <p>
+ * Unlike the {@link ParseException} hierarchy errors are plain values so
+ * creating them is cheap, they do not capture a stack trace. They are produced
+ * by {@code tryParse} methods such as
+ * {@link com.github.rvesse.airline.Cli#tryParse(String...)} and may be
+ * converted into the equivalent exception via {@link #toException()}.
+ * </p>
+ */
+public final class ParseError {
+
+    /**
+     * Kinds of parse error, each corresponds to a {@link ParseException}
+     * sub-class
+     */
+    public enum Kind {
+        /**
+         * No command was specified, see {@link ParseCommandMissingException}
+         */
+        COMMAND_MISSING,
+        /**
+         * The command was not recognised, see
+         * {@link ParseCommandUnrecognizedException}
+         */
+        COMMAND_UNRECOGNIZED,
+        /**
+         * Required arguments were not given, see
+         * {@link ParseArgumentsMissingException}
+         */
+        ARGUMENTS_MISSING,
+        /**
+         * Input could not be parsed, see
+         * {@link ParseArgumentsUnexpectedException}
+         */
+        ARGUMENTS_UNEXPECTED,
+        /**
+         * More arguments were given than permitted, see
+         * {@link ParseTooManyArgumentsException}
+         */
+        TOO_MANY_ARGUMENTS,
+        /**
+         * A required option was not given, see
+         * {@link ParseOptionMissingException}
+         */
+        OPTION_MISSING,
+        /**
+         * An option was not given its value(s), see
+         * {@link ParseOptionMissingValueException}
+         */
+        OPTION_MISSING_VALUE,
+        /**
+         * An option value was not one of the allowed values, see
+         * {@link ParseOptionIllegalValueException}
+         */
+        OPTION_ILLEGAL_VALUE,
+        /**
+         * An option value or argument could not be converted to the required
+         * type, see {@link ParseOptionConversionException}
+         */
+        CONVERSION,
+        /**
+         * An argument file could not be read or is malformed, see
+         * {@link ParseArgumentFileException}
+         */
+        ARGUMENT_FILE,
+        /**
+         * An exception was thrown while parsing or creating the command, for
+         * example by a {@link com.github.rvesse.airline.CommandFactory}, see
+         * {@link ParseError#getCause()}
+         */
+        EXCEPTION
+    }
+
+    private final Kind kind;
+    private final int tokenIndex;
+    private final OptionMetadata option;
+    private final String name;
+    private final List<String> input;
+    private final String detail;
+    private final RuntimeException cause;
+
+    private ParseError(Kind kind, int tokenIndex, OptionMetadata option, String name, List<String> input,
+            String detail) {
+        this(kind, tokenIndex, option, name, input, detail, null);
+    }
+
+    private ParseError(Kind kind, int tokenIndex, OptionMetadata option, String name, List<String> input,
+            String detail, RuntimeException cause) {
+        this.kind = kind;
+        this.tokenIndex = tokenIndex;
+        this.option = option;
+        this.name = name;
+        this.input = input;
+        this.detail = detail;
+        this.cause = cause;
+    }
+
+    public static ParseError commandMissing() {
+        return new ParseError(Kind.COMMAND_MISSING, -1, null, null, ImmutableList.<String> of(), null);
+    }
+
+    public static ParseError commandUnrecognized(int tokenIndex, List<String> unparsedInput) {
+        Preconditions.checkArgument(!unparsedInput.isEmpty(), "unparsedInput is empty");
+        return new ParseError(Kind.COMMAND_UNRECOGNIZED, tokenIndex, null, null, ImmutableList.copyOf(unparsedInput),
+                null);
+    }
+
+    public static ParseError argumentsMissing(List<String> argumentTitles) {
+        return new ParseError(Kind.ARGUMENTS_MISSING, -1, null, Joiner.on(',').join(argumentTitles),
+                ImmutableList.copyOf(argumentTitles), null);
+    }
+
+    public static ParseError argumentsUnexpected(int tokenIndex, List<String> unparsedInput) {
+        return new ParseError(Kind.ARGUMENTS_UNEXPECTED, tokenIndex, null, null, ImmutableList.copyOf(unparsedInput),
+                null);
+    }
+
+    public static ParseError tooManyArguments(int tokenIndex, int arity, String argument) {
+        return new ParseError(Kind.TOO_MANY_ARGUMENTS, tokenIndex, null, null, ImmutableList.of(argument),
+                Integer.toString(arity));
+    }
+
+    public static ParseError optionMissing(OptionMetadata option) {
+        return new ParseError(Kind.OPTION_MISSING, -1, option, option.getOptions().iterator().next(),
+                ImmutableList.<String> of(), null);
+    }
+
+    public static ParseError optionMissingValue(int tokenIndex, OptionMetadata option) {
+        return new ParseError(Kind.OPTION_MISSING_VALUE, tokenIndex, option, option.getTitle(),
+                ImmutableList.<String> of(), null);
+    }
+
+    public static ParseError optionIllegalValue(int tokenIndex, OptionMetadata option, String value) {
+        return new ParseError(Kind.OPTION_ILLEGAL_VALUE, tokenIndex, option, option.getTitle(),
+                ImmutableList.of(value), null);
+    }
+
+    /**
+     * Creates a conversion error
+     *
+     * @param tokenIndex
+     *            Index of the token that could not be converted
+     * @param option
+     *            Option, {@code null} if the token was an argument
+     * @param name
+     *            Title of the option or arguments
+     * @param value
+     *            Value that could not be converted
+     * @param type
+     *            Type the value was being converted to
+     * @return Error
+     */
+    public static ParseError conversion(int tokenIndex, OptionMetadata option, String name, String value,
+            Class<?> type) {
+        return new ParseError(Kind.CONVERSION, tokenIndex, option, name, ImmutableList.of(value),
+                type.getSimpleName());
+    }
+
+    /**
+     * Creates an argument file error
+     *
+     * @param tokenIndex
+     *            Index the first argument of the file would have had
+     * @param file
+     *            Argument file
+     * @param message
+     *            Message describing why the file could not be read
+     * @return Error
+     */
+    public static ParseError argumentFile(int tokenIndex, File file, String message) {
+        return new ParseError(Kind.ARGUMENT_FILE, tokenIndex, null, null, ImmutableList.of(file.getPath()),
+                message);
+    }
+
+    /**
+     * Creates an error for an exception thrown while parsing or creating the
+     * command
+     *
+     * @param cause
+     *            Exception
+     * @return Error
+     */
+    public static ParseError exception(RuntimeException cause) {
+        Preconditions.checkNotNull(cause, "cause is null");
+        return new ParseError(Kind.EXCEPTION, -1, null, null, ImmutableList.<String> of(),
+                cause.getMessage() != null ? cause.getMessage() : cause.toString(), cause);
+    }
+
+    /**
+     * Gets the kind of error
+     *
+     * @return Kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the index of the token at which the error was detected, tokens
+     * produced by expanding an alias are indexed as if they had been given in
+     * place of the alias
+     *
+     * @return Token index or {@code -1} if the error does not relate to a
+     *         specific token e.g. a missing required option
+     */
+    public int getTokenIndex() {
+        return tokenIndex;
+    }
+
+    /**
+     * Gets the option the error relates to
+     *
+     * @return Option or {@code null} if the error does not relate to an option
+     */
+    public OptionMetadata getOption() {
+        return option;
+    }
+
+    /**
+     * Gets the input the error relates to, this is the unparsed input for
+     * unrecognised commands and unexpected arguments, the offending value for
+     * value errors, the argument titles for missing arguments and the path of
+     * the file for argument file errors
+     *
+     * @return Input
+     */
+    public List<String> getInput() {
+        return input;
+    }
+
+    /**
+     * Gets the exception the error was created from
+     *
+     * @return Exception or {@code null} unless this is an
+     *         {@link Kind#EXCEPTION} error
+     */
+    public RuntimeException getCause() {
+        return cause;
+    }
+
+    /**
+     * Gets a message describing the error, this is the same as the message of
+     * the equivalent exception
+     *
+     * @return Message
+     */
+    public String getMessage() {
+        switch (kind) {
+        case COMMAND_MISSING:
+            return "No command specified";
+        case COMMAND_UNRECOGNIZED:
+            return String.format("Command '%s' not recognized", input.get(0));
+        case ARGUMENTS_MISSING:
+            return String.format("Required arguments are missing: '%s'", name);
+        case ARGUMENTS_UNEXPECTED:
+            return String.format("Found unexpected parameters: %s", input);
+        case TOO_MANY_ARGUMENTS:
+            return String.format(
+                    "Too many arguments, at most %s arguments are permitted but extra argument %s was encountered",
+                    detail, input.get(0));
+        case OPTION_MISSING:
+            return String.format("Required option '%s' is missing", name);
+        case OPTION_MISSING_VALUE:
+            return String.format("Required values for option '%s' not provided", name);
+        case OPTION_ILLEGAL_VALUE:
+            return String.format(
+                    "Value for option '%s' was given as '%s' which is not in the list of allowed values: %s", name,
+                    input.get(0), option.getAllowedValues());
+        case CONVERSION:
+            return String.format("%s: can not convert \"%s\" to a %s", name, input.get(0), detail);
+        case ARGUMENT_FILE:
+        case EXCEPTION:
+            return detail;
+        default:
+            throw new IllegalStateException("Unknown kind " + kind);
+        }
+    }
+
+    /**
+     * Creates the exception equivalent to this error
+     *
+     * @return Exception
+     */
+    public ParseException toException() {
+        switch (kind) {
+        case COMMAND_MISSING:
+            return new ParseCommandMissingException();
+        case COMMAND_UNRECOGNIZED:
+            return new ParseCommandUnrecognizedException(input);
+        case ARGUMENTS_MISSING:
+            return new ParseArgumentsMissingException(input);
+        case ARGUMENTS_UNEXPECTED:
+            return new ParseArgumentsUnexpectedException(input);
+        case TOO_MANY_ARGUMENTS:
+            return new ParseTooManyArgumentsException("%s", getMessage());
+        case OPTION_MISSING:
+            return new ParseOptionMissingException(name);
+        case OPTION_MISSING_VALUE:
+            return new ParseOptionMissingValueException(name);
+        case OPTION_ILLEGAL_VALUE:
+            return new ParseOptionIllegalValueException(name, input.get(0), option.getAllowedValues());
+        case CONVERSION:
+            return new ParseOptionConversionException(name, input.get(0), detail);
+        case ARGUMENT_FILE:
+            return new ParseArgumentFileException(new File(input.get(0)), "%s", detail);
+        case EXCEPTION:
+            if (cause instanceof ParseException)
+                return (ParseException) cause;
+            return new ParseException(cause, "%s", detail);
+        default:
+            throw new IllegalStateException("Unknown kind " + kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParseError{kind=" + kind + ", tokenIndex=" + tokenIndex + ", message=" + getMessage() + "}";
+    }
+}
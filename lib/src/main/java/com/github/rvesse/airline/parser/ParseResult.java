@@ -0,0 +1,102 @@
+package com.github.rvesse.airline.parser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * The result of parsing a command line without throwing, holds either the
+ * command instance or the errors that prevented it being created
+ *
+ * @param <C>
+ *            Command type
+ */
+public final class ParseResult<C> {
+    private final C command;
+    private final List<ParseError> errors;
+    private final ParseState state;
+
+    private ParseResult(C command, List<ParseError> errors, ParseState state) {
+        this.command = command;
+        this.errors = errors;
+        this.state = state;
+    }
+
+    /**
+     * Creates a successful result
+     *
+     * @param command
+     *            Command instance
+     * @param state
+     *            Parser state
+     * @return Result
+     */
+    public static <C> ParseResult<C> success(C command, ParseState state) {
+        return new ParseResult<C>(command, ImmutableList.<ParseError> of(), state);
+    }
+
+    /**
+     * Creates a failed result
+     *
+     * @param errors
+     *            Errors, must not be empty
+     * @param state
+     *            Parser state, {@code null} if parsing did not complete
+     * @return Result
+     */
+    public static <C> ParseResult<C> failure(List<ParseError> errors, ParseState state) {
+        Preconditions.checkArgument(!errors.isEmpty(), "errors is empty");
+        return new ParseResult<C>(null, ImmutableList.copyOf(errors), state);
+    }
+
+    /**
+     * Gets whether parsing succeeded
+     *
+     * @return True if successful, false otherwise
+     */
+    public boolean wasSuccessful() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * Gets the command instance
+     *
+     * @return Command or {@code null} if parsing failed
+     */
+    public C getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the errors in the order they were detected
+     *
+     * @return Errors, empty if parsing succeeded
+     */
+    public List<ParseError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the parser state
+     *
+     * @return Parser state, {@code null} if parsing did not complete
+     */
+    public ParseState getState() {
+        return state;
+    }
+
+    /**
+     * Gets the command instance throwing the exception equivalent to the first
+     * error if parsing failed
+     *
+     * @return Command
+     * @throws ParseException
+     *             Thrown if parsing failed
+     */
+    public C getCommandOrThrow() {
+        if (!errors.isEmpty())
+            throw errors.get(0).toException();
+        return command;
+    }
+}
@@ -18,34 +18,49 @@ public class ParseState
     private final GlobalMetadata global;
     private final CommandGroupMetadata group;
     private final CommandMetadata command;
-    private final ListMultimap<OptionMetadata, Object> parsedOptions;
+    private ListMultimap<OptionMetadata, Object> parsedOptions;
+    private final ParsedOptions optionValues;
     private final List<Object> parsedArguments;
     private final OptionMetadata currentOption;
     private final List<String> unparsedInput; 
+    private final StreamedArguments streamedArguments;
+    private final int currentOptionIndex;
+    private final int unparsedInputIndex;
+    private final List<ParseError> errors;
 
     ParseState(
             GlobalMetadata global,
             CommandGroupMetadata group,
             CommandMetadata command,
             ListMultimap<OptionMetadata, Object> parsedOptions,
+            ParsedOptions optionValues,
             List<Context> locationStack,
             List<Object> parsedArguments,
             OptionMetadata currentOption,
-            List<String> unparsedInput)
+            List<String> unparsedInput,
+            StreamedArguments streamedArguments,
+            int currentOptionIndex,
+            int unparsedInputIndex,
+            List<ParseError> errors)
     {
         this.global = global;
         this.group = group;
         this.command = command;
         this.parsedOptions = parsedOptions;
+        this.optionValues = optionValues;
         this.locationStack = locationStack;
         this.parsedArguments = parsedArguments;
         this.currentOption = currentOption;
         this.unparsedInput = unparsedInput;
+        this.streamedArguments = streamedArguments;
+        this.currentOptionIndex = currentOptionIndex;
+        this.unparsedInputIndex = unparsedInputIndex;
+        this.errors = errors;
     }
 
     public static ParseState newInstance()
     {
-        return new ParseState(null, null, null, ArrayListMultimap.<OptionMetadata, Object>create(), ImmutableList.<Context>of(), ImmutableList.of(), null, ImmutableList.<String>of());
+        return new ParseState(null, null, null, ArrayListMultimap.<OptionMetadata, Object>create(), null, ImmutableList.<Context>of(), ImmutableList.of(), null, ImmutableList.<String>of(), null, -1, -1, ImmutableList.<ParseError>of());
     }
 
     public ParseState pushContext(Context location)
@@ -55,43 +70,43 @@ public class ParseState
                 .add(location)
                 .build();
 
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     public ParseState popContext()
     {
         ImmutableList<Context> locationStack = ImmutableList.copyOf(this.locationStack.subList(0, this.locationStack.size() - 1));
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     public ParseState withOptionValue(OptionMetadata option, Object value)
     {
         ImmutableListMultimap<OptionMetadata, Object> newOptions = ImmutableListMultimap.<OptionMetadata, Object>builder()
-                .putAll(parsedOptions)
+                .putAll(getParsedOptions())
                 .put(option, value)
                 .build();
 
-        return new ParseState(global, group, command, newOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, newOptions, null, locationStack, parsedArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
     
     public ParseState withGlobal(GlobalMetadata global)
     {
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     public ParseState withGroup(CommandGroupMetadata group)
     {
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     public ParseState withCommand(CommandMetadata command)
     {
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     public ParseState withOption(OptionMetadata option)
     {
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, option, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, option, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     public ParseState withArgument(Object argument)
@@ -101,7 +116,7 @@ public class ParseState
                 .add(argument)
                 .build();
 
-        return new ParseState(global, group, command, parsedOptions, locationStack, newArguments, currentOption, unparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, newArguments, currentOption, unparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
 
@@ -112,7 +127,7 @@ public class ParseState
                 .add(input)
                 .build();
 
-        return new ParseState(global, group, command, parsedOptions, locationStack, parsedArguments, currentOption, newUnparsedInput);
+        return new ParseState(global, group, command, parsedOptions, optionValues, locationStack, parsedArguments, currentOption, newUnparsedInput, streamedArguments, currentOptionIndex, unparsedInputIndex, errors);
     }
 
     @Override
@@ -123,10 +138,11 @@ public class ParseState
                 ", global=" + global + 
                 ", group=" + group +
                 ", command=" + command +
-                ", parsedOptions=" + parsedOptions +
+                ", parsedOptions=" + getParsedOptions() +
                 ", parsedArguments=" + parsedArguments +
                 ", currentOption=" + currentOption +
                 ", unparsedInput=" + unparsedInput +
+                ", streamedArguments=" + streamedArguments +
                 '}';
     }
 
@@ -155,18 +171,86 @@ public class ParseState
         return currentOption;
     }
 
+    /**
+     * Gets the parsed option values keyed by option
+     * <p>
+     * When the state was produced by the {@link Parser} this view is created on
+     * demand from {@link #getOptionValues()} which should be preferred.
+     * </p>
+     * 
+     * @return Parsed options
+     */
     public ListMultimap<OptionMetadata, Object> getParsedOptions()
     {
+        if (parsedOptions == null) {
+            parsedOptions = optionValues.asMultimap();
+        }
         return parsedOptions;
     }
 
+    /**
+     * Gets the parsed option values indexed by slot
+     * 
+     * @return Option values or {@code null} if this state was not produced by
+     *         the {@link Parser} or has since had option values added
+     */
+    public ParsedOptions getOptionValues()
+    {
+        return optionValues;
+    }
+
     public List<Object> getParsedArguments()
     {
         return parsedArguments;
     }
 
+    /**
+     * Gets the streamed arguments, only present when the arguments of the
+     * command are streamed
+     * 
+     * @return Streamed arguments or {@code null} if not streamed
+     */
+    public StreamedArguments getStreamedArguments()
+    {
+        return streamedArguments;
+    }
+
     public List<String> getUnparsedInput()
     {
         return unparsedInput;
     }
+
+    /**
+     * Gets the index of the token that introduced the current option
+     * 
+     * @return Token index or {@code -1} if unknown
+     */
+    public int getCurrentOptionIndex()
+    {
+        return currentOptionIndex;
+    }
+
+    /**
+     * Gets the index of the first token that was not parsed
+     * 
+     * @return Token index or {@code -1} if unknown or there was no unparsed
+     *         input
+     */
+    public int getUnparsedInputIndex()
+    {
+        return unparsedInputIndex;
+    }
+
+    /**
+     * Gets the errors recorded while parsing, errors are only recorded when
+     * parsing via {@link Parser#tryParse(GlobalMetadata, Iterable)} or
+     * {@link Parser#tryParseCommand(CommandMetadata, Iterable)}, otherwise the
+     * parser throws on the first error
+     * 
+     * @return Errors
+     */
+    public List<ParseError> getErrors()
+    {
+        return errors;
+    }
 }
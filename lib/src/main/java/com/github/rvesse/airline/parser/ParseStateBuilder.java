@@ -0,0 +1,313 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.Context;
+import com.github.rvesse.airline.model.CommandGroupMetadata;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.model.OptionIndex;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Mutable accumulator for parser state
+ * <p>
+ * Unlike {@link ParseState} which copies its contents on every modification
+ * this accumulates state in place so that the cost of parsing is linear in the
+ * number of tokens. Once parsing is complete {@link #build()} produces an
+ * immutable {@link ParseState} snapshot.
+ * </p>
+ * <p>
+ * Instances are not thread safe and are intended to be confined to a single
+ * invocation of the {@link Parser}.
+ * </p>
+ */
+final class ParseStateBuilder {
+    private static final OptionIndex NO_OPTIONS = new OptionIndex(ImmutableList.<OptionMetadata> of());
+
+    private final List<Context> locationStack = new ArrayList<Context>();
+    private GlobalMetadata global;
+    private CommandGroupMetadata group;
+    private CommandMetadata command;
+    private ParsedOptions parsedOptions = new ParsedOptions(NO_OPTIONS);
+    private List<Object> parsedArguments = new ArrayList<Object>();
+    private PrimitiveValues argumentValues;
+    private DeferredArguments deferredArguments;
+    private OptionMetadata currentOption;
+    private int currentOptionIndex = -1;
+    private final List<String> unparsedInput = new ArrayList<String>();
+    private int unparsedInputIndex = -1;
+    private StreamedArguments streamedArguments;
+    private final List<ParseError> errors;
+    private boolean built = false;
+
+    /**
+     * Creates a new builder
+     * 
+     * @param collectErrors
+     *            Whether errors are collected, if false the first error is
+     *            thrown as the equivalent {@link ParseException}
+     */
+    ParseStateBuilder(boolean collectErrors) {
+        this.errors = collectErrors ? new ArrayList<ParseError>() : null;
+    }
+
+    ParseStateBuilder pushContext(Context location) {
+        this.locationStack.add(location);
+        return this;
+    }
+
+    ParseStateBuilder popContext() {
+        this.locationStack.remove(this.locationStack.size() - 1);
+        return this;
+    }
+
+    /**
+     * Records a value of an option
+     *
+     * @param position
+     *            Position of the option within the current scope, see
+     *            {@link OptionIndex}
+     * @param value
+     *            Value
+     * @return Builder
+     */
+    ParseStateBuilder withOptionValue(int position, Object value) {
+        this.parsedOptions.add(position, value);
+        return this;
+    }
+
+    /**
+     * Records the raw value of a single valued option whose conversion is
+     * deferred until parsing has finished, see {@link ParsedOptions}
+     *
+     * @param position
+     *            Position of the option within the current scope, see
+     *            {@link OptionIndex}
+     * @param option
+     *            Option
+     * @param token
+     *            Raw value
+     * @param index
+     *            Index of the token
+     * @param converter
+     *            Converter for the value
+     * @return Builder
+     */
+    ParseStateBuilder withDeferredOptionValue(int position, OptionMetadata option, String token, int index,
+            Function<String, ?> converter) {
+        this.parsedOptions.addDeferred(position, option, token, index, converter);
+        return this;
+    }
+
+    ParseStateBuilder withGlobal(GlobalMetadata global) {
+        this.global = global;
+        // Global options are always the first scope
+        this.parsedOptions = new ParsedOptions(global.getOptionIndex());
+        return this;
+    }
+
+    ParseStateBuilder withGroup(CommandGroupMetadata group) {
+        this.group = group;
+        this.parsedOptions.enterGroup(group);
+        return this;
+    }
+
+    ParseStateBuilder withCommand(CommandMetadata command) {
+        this.command = command;
+        this.parsedOptions.enterCommand(command);
+        return this;
+    }
+
+    ParseStateBuilder withOption(OptionMetadata option, int index) {
+        this.currentOption = option;
+        this.currentOptionIndex = index;
+        return this;
+    }
+
+    ParseStateBuilder withArgument(Object argument) {
+        this.parsedArguments.add(argument);
+        return this;
+    }
+
+    /**
+     * Accumulates the arguments as primitive values, the values are appended
+     * directly by the parser rather than via {@link #withArgument(Object)}
+     *
+     * @param values
+     *            Values
+     * @return Builder
+     */
+    ParseStateBuilder withArgumentValues(PrimitiveValues values) {
+        this.parsedArguments = values;
+        this.argumentValues = values;
+        return this;
+    }
+
+    /**
+     * Records an argument whose conversion is deferred, see
+     * {@link DeferredArguments}
+     *
+     * @param token
+     *            Token
+     * @param index
+     *            Index of the token
+     * @return Builder
+     */
+    ParseStateBuilder withDeferredArgument(String token, int index) {
+        if (this.deferredArguments == null)
+            this.deferredArguments = new DeferredArguments();
+        this.deferredArguments.add(token, index);
+        return this;
+    }
+
+    ParseStateBuilder withUnparsedInput(String input, int index) {
+        if (this.unparsedInput.isEmpty())
+            this.unparsedInputIndex = index;
+        this.unparsedInput.add(input);
+        return this;
+    }
+
+    ParseStateBuilder withStreamedArguments(StreamedArguments arguments) {
+        this.streamedArguments = arguments;
+        return this;
+    }
+
+    /**
+     * Records an error, when not collecting errors the equivalent exception is
+     * thrown instead
+     * 
+     * @param error
+     *            Error
+     * @return Builder
+     */
+    ParseStateBuilder fail(ParseError error) {
+        if (this.errors == null)
+            throw error.toException();
+        this.errors.add(error);
+        return this;
+    }
+
+    /**
+     * Records errors found once parsing has finished amongst those already
+     * recorded so that errors remain in token order, when not collecting
+     * errors the exception equivalent to the first of them in token order is
+     * thrown instead
+     *
+     * @param found
+     *            Errors
+     * @return Builder
+     */
+    ParseStateBuilder failInTokenOrder(List<ParseError> found) {
+        if (found.isEmpty())
+            return this;
+        List<ParseError> sorted = new ArrayList<ParseError>(found);
+        Collections.sort(sorted, new Comparator<ParseError>() {
+            @Override
+            public int compare(ParseError a, ParseError b) {
+                return Integer.compare(a.getTokenIndex(), b.getTokenIndex());
+            }
+        });
+        if (this.errors == null)
+            throw sorted.get(0).toException();
+        for (ParseError error : sorted) {
+            int i = this.errors.size();
+            while (i > 0 && this.errors.get(i - 1).getTokenIndex() > error.getTokenIndex()) {
+                i--;
+            }
+            this.errors.add(i, error);
+        }
+        return this;
+    }
+
+    boolean isCollectingErrors() {
+        return errors != null;
+    }
+
+    /**
+     * Gets whether the state has been built, errors recorded after that point
+     * are not visible to anyone, this happens when streamed arguments are
+     * consumed by the command after parsing
+     */
+    boolean isBuilt() {
+        return built;
+    }
+
+    boolean isStreaming() {
+        return streamedArguments != null;
+    }
+
+    GlobalMetadata getGlobal() {
+        return global;
+    }
+
+    CommandGroupMetadata getGroup() {
+        return group;
+    }
+
+    CommandMetadata getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the primitive values the arguments are accumulated as
+     *
+     * @return Values or {@code null} if arguments are accumulated as objects
+     */
+    PrimitiveValues getArgumentValues() {
+        return argumentValues;
+    }
+
+    /**
+     * Gets and clears the arguments whose conversion was deferred
+     *
+     * @return Deferred arguments or {@code null} if none
+     */
+    DeferredArguments takeDeferredArguments() {
+        DeferredArguments deferred = this.deferredArguments;
+        this.deferredArguments = null;
+        return deferred;
+    }
+
+    /**
+     * Converts the option values whose conversion was deferred
+     *
+     * @return Errors for the values that could not be converted
+     */
+    List<ParseError> convertDeferredOptionValues() {
+        return parsedOptions.convertDeferred();
+    }
+
+    int getParsedArgumentsCount() {
+        return parsedArguments.size() + (deferredArguments != null ? deferredArguments.size() : 0);
+    }
+
+    /**
+     * Creates an immutable snapshot of the accumulated state
+     *
+     * @return Parse state
+     */
+    ParseState build() {
+        built = true;
+        //@formatter:off
+        return new ParseState(global,
+                              group,
+                              command,
+                              null,
+                              parsedOptions,
+                              ImmutableList.copyOf(locationStack),
+                              argumentValues != null ? argumentValues : ImmutableList.copyOf(parsedArguments),
+                              currentOption,
+                              ImmutableList.copyOf(unparsedInput),
+                              streamedArguments,
+                              currentOptionIndex,
+                              unparsedInputIndex,
+                              errors != null ? ImmutableList.copyOf(errors) : ImmutableList.<ParseError> of());
+        //@formatter:on
+    }
+}
@@ -0,0 +1,306 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.model.CommandGroupMetadata;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.OptionIndex;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Option values produced by the parser held in flat arrays indexed by slot
+ * <p>
+ * Slots are laid out by scope, first the global options, then the options of
+ * the group (if any) and finally the command specific options of the command
+ * (if any). The slot of an option is the offset of its scope plus its position
+ * within the scope, the parser obtains the position when it resolves the
+ * option via the {@link OptionIndex} of the scope, so recording and retrieving
+ * values never needs to look up or compare options.
+ * </p>
+ * <p>
+ * Only the last occurrence of a single valued option is injected so the
+ * parser keeps just the raw token of the latest occurrence of such an option,
+ * earlier occurrences are discarded without ever being converted. Once parsing
+ * has finished the parser converts the remaining tokens, see
+ * {@link #convertDeferred()}, so the values of a parse state are always fully
+ * converted.
+ * </p>
+ * <p>
+ * Instances can only be populated by the parser and are immutable once
+ * parsing has completed.
+ * </p>
+ */
+public final class ParsedOptions {
+    private static final Object[] EMPTY = new Object[0];
+
+    private final List<OptionMetadata> globalOptions;
+    private List<OptionMetadata> groupOptions = ImmutableList.of();
+    private List<OptionMetadata> commandOptions = ImmutableList.of();
+    private CommandGroupMetadata group;
+    private CommandMetadata command;
+    private int groupOffset = -1, commandOffset = -1;
+    private int size, scopeOffset;
+
+    private Object[] values = EMPTY;
+    private final BitSet present = new BitSet();
+    private final BitSet deferred = new BitSet();
+
+    ParsedOptions(OptionIndex globalOptions) {
+        this.globalOptions = globalOptions.getOptions();
+        enterScope(globalOptions);
+    }
+
+    private void enterScope(OptionIndex scope) {
+        scopeOffset = size;
+        size += scope.getOptions().size();
+        if (size > values.length) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    void enterGroup(CommandGroupMetadata group) {
+        this.group = group;
+        this.groupOptions = group.getOptions();
+        this.groupOffset = size;
+        enterScope(group.getOptionIndex());
+    }
+
+    void enterCommand(CommandMetadata command) {
+        this.command = command;
+        this.commandOptions = command.getCommandOptions();
+        this.commandOffset = size;
+        enterScope(command.getCommandOptionIndex());
+    }
+
+    /**
+     * Adds a value
+     *
+     * @param position
+     *            Position of the option within the current scope
+     * @param value
+     *            Value
+     */
+    void add(int position, Object value) {
+        addToSlot(slot(position), value);
+    }
+
+    /**
+     * Adds a value whose conversion is deferred until parsing has finished,
+     * the value replaces any previous value of the option
+     *
+     * @param position
+     *            Position of the option within the current scope
+     * @param option
+     *            Option
+     * @param token
+     *            Raw value
+     * @param index
+     *            Index of the token
+     * @param converter
+     *            Converter for the value
+     */
+    void addDeferred(int position, OptionMetadata option, String token, int index, Function<String, ?> converter) {
+        int slot = slot(position);
+        present.set(slot);
+        deferred.set(slot);
+        values[slot] = new DeferredValue(option, token, index, converter);
+    }
+
+    /**
+     * Converts the values whose conversion was deferred, a value that cannot
+     * be converted is removed
+     *
+     * @return Errors for the values that could not be converted in slot order
+     */
+    List<ParseError> convertDeferred() {
+        List<ParseError> errors = Collections.emptyList();
+        for (int slot = deferred.nextSetBit(0); slot >= 0; slot = deferred.nextSetBit(slot + 1)) {
+            DeferredValue value = (DeferredValue) values[slot];
+            try {
+                values[slot] = value.converter.apply(value.token);
+            } catch (Exception e) {
+                if (errors.isEmpty())
+                    errors = new ArrayList<ParseError>();
+                errors.add(ParseError.conversion(value.index, value.option, value.option.getTitle(), value.token,
+                        value.option.getJavaType()));
+                values[slot] = null;
+                present.clear(slot);
+            }
+        }
+        deferred.clear();
+        return errors;
+    }
+
+    private int slot(int position) {
+        int slot = scopeOffset + position;
+        if (position < 0 || slot >= size)
+            throw new IllegalStateException(String.format("Option position %d is outside the current scope",
+                    position));
+        return slot;
+    }
+
+    private void addToSlot(int slot, Object value) {
+        if (!present.get(slot)) {
+            present.set(slot);
+            values[slot] = value;
+        } else if (values[slot] instanceof MultipleValues) {
+            ((MultipleValues) values[slot]).add(value);
+        } else {
+            MultipleValues multiple = new MultipleValues();
+            multiple.add(values[slot]);
+            multiple.add(value);
+            values[slot] = multiple;
+        }
+    }
+
+    /**
+     * Gets the total number of slots
+     *
+     * @return Number of slots
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the offset of the group options, {@code -1} if no group was parsed
+     *
+     * @return Group offset
+     */
+    public int getGroupOffset() {
+        return groupOffset;
+    }
+
+    /**
+     * Gets the offset of the command options, {@code -1} if no command was
+     * parsed
+     *
+     * @return Command offset
+     */
+    public int getCommandOffset() {
+        return commandOffset;
+    }
+
+    /**
+     * Gets the group whose options occupy the group slots
+     *
+     * @return Group or {@code null}
+     */
+    public CommandGroupMetadata getGroup() {
+        return group;
+    }
+
+    /**
+     * Gets the command whose options occupy the command slots
+     *
+     * @return Command or {@code null}
+     */
+    public CommandMetadata getCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the slots which have values
+     *
+     * @return Copy of the present slots
+     */
+    public BitSet getPresent() {
+        return (BitSet) present.clone();
+    }
+
+    /**
+     * Gets whether the slot has any values
+     *
+     * @param slot
+     *            Slot
+     * @return True if present, false otherwise
+     */
+    public boolean isPresent(int slot) {
+        return slot >= 0 && present.get(slot);
+    }
+
+    /**
+     * Gets the values for a slot, a single valued option only has the value
+     * of its last occurrence
+     *
+     * @param slot
+     *            Slot, slots which are negative or out of range have no values
+     * @return Values
+     */
+    public List<Object> getValues(int slot) {
+        if (!isPresent(slot))
+            return Collections.emptyList();
+        Object value = values[slot];
+        if (deferred.get(slot))
+            throw new IllegalStateException("Values are still being parsed");
+        return value instanceof MultipleValues ? Collections.unmodifiableList((MultipleValues) value) : Collections
+                .singletonList(value);
+    }
+
+    /**
+     * Gets the option for a slot
+     *
+     * @param slot
+     *            Slot
+     * @return Option
+     */
+    public OptionMetadata getOption(int slot) {
+        if (slot < 0 || slot >= size)
+            throw new IndexOutOfBoundsException(Integer.toString(slot));
+        if (commandOffset >= 0 && slot >= commandOffset)
+            return commandOptions.get(slot - commandOffset);
+        if (groupOffset >= 0 && slot >= groupOffset)
+            return groupOptions.get(slot - groupOffset);
+        return globalOptions.get(slot);
+    }
+
+    /**
+     * Creates a multimap of the values keyed by option
+     *
+     * @return Multimap
+     */
+    public ListMultimap<OptionMetadata, Object> asMultimap() {
+        ImmutableListMultimap.Builder<OptionMetadata, Object> multimap = ImmutableListMultimap.builder();
+        for (int slot = present.nextSetBit(0); slot >= 0; slot = present.nextSetBit(slot + 1)) {
+            multimap.putAll(getOption(slot), getValues(slot));
+        }
+        return multimap.build();
+    }
+
+    /**
+     * Raw value whose conversion is deferred
+     */
+    private static final class DeferredValue {
+        private final OptionMetadata option;
+        private final String token;
+        private final int index;
+        private final Function<String, ?> converter;
+
+        DeferredValue(OptionMetadata option, String token, int index, Function<String, ?> converter) {
+            this.option = option;
+            this.token = token;
+            this.index = index;
+            this.converter = converter;
+        }
+    }
+
+    /**
+     * Marks a slot that holds multiple values, values themselves may be lists
+     * so a dedicated type is needed to tell them apart
+     */
+    private static final class MultipleValues extends ArrayList<Object> {
+        private static final long serialVersionUID = 4006516374545758183L;
+
+        MultipleValues() {
+            super(2);
+        }
+    }
+}
@@ -1,26 +1,111 @@
 package com.github.rvesse.airline.parser;
 
+import com.github.rvesse.airline.Accessor;
 import com.github.rvesse.airline.Context;
+import com.github.rvesse.airline.StdinArguments;
 import com.github.rvesse.airline.TypeConverter;
 import com.github.rvesse.airline.model.*;
-import com.google.common.base.Predicate;
-import com.google.common.base.Splitter;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
-
-import static com.google.common.base.Predicates.compose;
-import static com.google.common.base.Predicates.equalTo;
-import static com.google.common.collect.Iterables.find;
+import java.util.concurrent.ForkJoinPool;
 
 public class Parser {
-    private static final Pattern SHORT_OPTIONS_PATTERN = Pattern.compile("-[^-].*");
+    /**
+     * Marker returned in place of a value that could not be converted when
+     * errors are being collected
+     */
+    private static final Object INVALID = new Object();
+
+    private final TypeConverter typeConverter;
+    private final boolean argumentFiles;
+    private final ForkJoinPool conversionPool;
+
+    public Parser() {
+        this(TypeConverter.newInstance());
+    }
+
+    /**
+     * Creates a new parser
+     * 
+     * @param typeConverter
+     *            Type converter used to convert arguments into the Java types
+     *            that the options and arguments expect
+     */
+    public Parser(TypeConverter typeConverter) {
+        this(typeConverter, false);
+    }
+
+    /**
+     * Creates a new parser
+     * 
+     * @param typeConverter
+     *            Type converter used to convert arguments into the Java types
+     *            that the options and arguments expect
+     * @param argumentFiles
+     *            Whether arguments of the form {@code @path} are expanded into
+     *            the arguments held in the file, see {@link ArgumentFiles}
+     */
+    public Parser(TypeConverter typeConverter, boolean argumentFiles) {
+        this(typeConverter, argumentFiles, null);
+    }
+
+    /**
+     * Creates a new parser
+     * 
+     * @param typeConverter
+     *            Type converter used to convert arguments into the Java types
+     *            that the options and arguments expect
+     * @param argumentFiles
+     *            Whether arguments of the form {@code @path} are expanded into
+     *            the arguments held in the file, see {@link ArgumentFiles}
+     * @param conversionPool
+     *            Pool on which the conversion of arguments is done in parallel
+     *            once parsing has finished, see {@link DeferredArguments},
+     *            {@code null} to convert each argument as it is parsed
+     */
+    public Parser(TypeConverter typeConverter, boolean argumentFiles, ForkJoinPool conversionPool) {
+        this.typeConverter = Preconditions.checkNotNull(typeConverter, "typeConverter is null");
+        this.argumentFiles = argumentFiles;
+        this.conversionPool = conversionPool;
+    }
+
+    /**
+     * Gets the tokens to parse, expanding any argument files, a file that
+     * cannot be read ends the tokens and is reported as an error, once the
+     * state is built the remaining tokens can only be consumed as streamed
+     * arguments so the error is thrown to the command instead
+     */
+    private Iterator<String> tokens(Iterable<String> params, final ParseStateBuilder state) {
+        if (!argumentFiles)
+            return params.iterator();
+        final Iterator<String> expanded = ArgumentFiles.expand(params.iterator());
+        return new AbstractIterator<String>() {
+            private int index = 0;
+
+            @Override
+            protected String computeNext() {
+                try {
+                    if (expanded.hasNext()) {
+                        index++;
+                        return expanded.next();
+                    }
+                } catch (ParseArgumentFileException e) {
+                    if (!state.isCollectingErrors() || state.isBuilt())
+                        throw e;
+                    state.fail(ParseError.argumentFile(index, e.getFile(), e.getMessage()));
+                }
+                return endOfData();
+            }
+        };
+    }
 
     // global> (option value*)* (group (option value*)*)? (command (option
     // value* | arg)* '--'? args*)?
@@ -29,119 +114,78 @@ public class Parser {
     }
 
     public ParseState parse(GlobalMetadata metadata, Iterable<String> params) {
-        PeekingIterator<String> tokens = Iterators.peekingIterator(params.iterator());
+        return parse(metadata, params, false);
+    }
 
-        ParseState state = ParseState.newInstance().pushContext(Context.GLOBAL).withGlobal(metadata);
+    /**
+     * Parses the given parameters without throwing on errors
+     * <p>
+     * Any errors encountered are recorded in {@link ParseState#getErrors()}
+     * and parsing continues with the next token. Validation of the resulting
+     * state e.g. checking that required options are present is left to the
+     * caller.
+     * </p>
+     * 
+     * @param metadata
+     *            Global metadata
+     * @param params
+     *            Parameters
+     * @return Parse state
+     */
+    public ParseState tryParse(GlobalMetadata metadata, Iterable<String> params) {
+        return parse(metadata, params, true);
+    }
 
-        // Define needed predicates
-        Predicate<? super CommandGroupMetadata> findGroupPredicate;
-        Predicate<? super CommandMetadata> findCommandPredicate;
+    private ParseState parse(GlobalMetadata metadata, Iterable<String> params, boolean collectErrors) {
+        ParseStateBuilder state = new ParseStateBuilder(collectErrors).pushContext(Context.GLOBAL).withGlobal(
+                metadata);
+        TokenIterator tokens = new TokenIterator(tokens(params, state), 0);
 
         // Parse global options
-        state = parseOptions(tokens, state, metadata.getOptions());
+        parseOptions(tokens, state, metadata.getOptionIndex());
 
         // Check if we got an alias
         if (tokens.hasNext()) {
-            if (metadata.getAliases().size() > 0) {
-                AliasMetadata alias = find(metadata.getAliases(),
-                        compose(equalTo(tokens.peek()), AliasMetadata.nameGetter()), null);
-                if (alias != null) {
-                    if (!metadata.aliasesOverrideBuiltIns()) {
-                        // Check we don't have a default group/command with the
-                        // same
-                        // name as otherwise that would take precedence
-                        findGroupPredicate = compose(equalTo(tokens.peek()), CommandGroupMetadata.nameGetter());
-                        findCommandPredicate = compose(equalTo(tokens.peek()), CommandMetadata.nameGetter());
-                        if (find(metadata.getCommandGroups(), findGroupPredicate, null) != null
-                                || find(metadata.getDefaultGroupCommands(), findCommandPredicate, null) != null)
-                            alias = null;
-                    }
+            AliasMetadata alias = metadata.getAliasIndex().find(tokens.peek());
+            if (alias != null) {
+                // Discard the alias, the expansion is indexed from its
+                // position
+                int aliasIndex = tokens.index();
+                tokens.next();
 
-                    // Apply the alias
-                    if (alias != null) {
-                        // Discard the alias
-                        tokens.next();
-
-                        List<String> newParams = new ArrayList<String>();
-                        List<String> remainingParams = new ArrayList<String>();
-                        while (tokens.hasNext()) {
-                            remainingParams.add(tokens.next());
-                        }
-
-                        // Process alias arguments
-                        Set<Integer> used = new TreeSet<Integer>();
-                        for (String arg : alias.getArguments()) {
-                            if (arg.startsWith("$")) {
-                                // May be a positional parameter
-                                try {
-                                    int num = Integer.parseInt(arg.substring(1));
-                                    num--;
-
-                                    if (num >= 0 && num < remainingParams.size()) {
-                                        // Valid positional parameter
-                                        newParams.add(remainingParams.get(num));
-                                        used.add(num);
-                                        continue;
-                                    }
-                                } catch (NumberFormatException e) {
-                                    // Ignore - the number was invalid so we'll
-                                    // treat it as an ordinary parameter
-                                }
-                            }
-
-                            // Some other parameter
-                            newParams.add(arg);
-                        }
-
-                        // Remove used positional parameters
-                        int removed = 0;
-                        for (int pos : used) {
-                            remainingParams.remove(pos - removed);
-                            removed++;
-                        }
-
-                        // Pass through any remaining parameters
-                        for (String arg : remainingParams) {
-                            newParams.add(arg);
-                        }
-
-                        // Prepare a new tokens iterator
-                        tokens = Iterators.peekingIterator(newParams.iterator());
-                    }
+                List<String> remainingParams = new ArrayList<String>();
+                while (tokens.hasNext()) {
+                    remainingParams.add(tokens.next());
                 }
+
+                // Prepare a new tokens iterator
+                List<String> newParams = metadata.getAliasIndex().expand(alias, remainingParams);
+                tokens = new TokenIterator(newParams.iterator(), aliasIndex);
             }
         }
 
         // Parse group
         if (tokens.hasNext()) {
-            //@formatter:off
-            findGroupPredicate = (Predicate<? super CommandGroupMetadata>) (metadata != null && metadata.allowsAbbreviatedCommands() 
-                                 ? new AbbreviatedGroupFinder(tokens.peek(), metadata.getCommandGroups()) 
-                                 : compose(equalTo(tokens.peek()), CommandGroupMetadata.nameGetter()));
-            //@formatter:on
-            CommandGroupMetadata group = find(metadata.getCommandGroups(), findGroupPredicate, null);
+            CommandGroupMetadata group = findName(metadata, metadata.getCommandGroupIndex(), tokens.peek());
             if (group != null) {
                 tokens.next();
-                state = state.withGroup(group).pushContext(Context.GROUP);
+                state.withGroup(group).pushContext(Context.GROUP);
 
-                state = parseOptions(tokens, state, state.getGroup().getOptions());
+                parseOptions(tokens, state, group.getOptionIndex());
             }
         }
 
         // parse command
-        List<CommandMetadata> expectedCommands = metadata.getDefaultGroupCommands();
+        AbbreviationIndex<CommandMetadata> expectedCommands = metadata.getDefaultGroupCommandIndex();
         if (state.getGroup() != null) {
-            expectedCommands = state.getGroup().getCommands();
+            expectedCommands = state.getGroup().getCommandIndex();
         }
 
         if (tokens.hasNext()) {
-            //@formatter:off
-            findCommandPredicate = (Predicate<? super CommandMetadata>) (metadata != null && metadata.allowsAbbreviatedCommands() 
-                                   ? new AbbreviatedCommandFinder(tokens.peek(), expectedCommands)
-                                   : compose(equalTo(tokens.peek()), CommandMetadata.nameGetter()));
-            //@formatter:on
-            CommandMetadata command = find(expectedCommands, findCommandPredicate, state.getGroup() != null ? state
-                    .getGroup().getDefaultCommand() : null);
+            CommandMetadata command = findName(metadata, expectedCommands, tokens.peek());
+            if (command == null && state.getGroup() != null) {
+                command = state.getGroup().getDefaultCommand();
+            }
 
             boolean usingDefault = false;
             if (command == null && state.getGroup() == null && metadata.getDefaultCommand() != null) {
@@ -151,199 +195,255 @@ public class Parser {
 
             if (command == null) {
                 while (tokens.hasNext()) {
-                    state = state.withUnparsedInput(tokens.next());
+                    state.withUnparsedInput(tokens.peek(), tokens.index());
+                    tokens.next();
                 }
             } else {
                 if (tokens.peek().equals(command.getName()) || (!usingDefault && metadata.allowsAbbreviatedCommands())) {
                     tokens.next();
                 }
 
-                state = state.withCommand(command).pushContext(Context.COMMAND);
+                withCommand(state, command).pushContext(Context.COMMAND);
 
-                while (tokens.hasNext()) {
-                    state = parseOptions(tokens, state, command.getCommandOptions());
+                int defaultPosition = command.getCommandOptionIndex().indexOf(command.getDefaultOption());
+                while (tokens.hasNext() && !state.isStreaming()) {
+                    parseOptions(tokens, state, command.getCommandOptionIndex());
 
-                    state = parseArgs(state, tokens, command.getArguments(), command.getDefaultOption());
+                    parseArgs(state, tokens, command.getArguments(), command.getDefaultOption(), defaultPosition);
                 }
             }
         }
 
-        return state;
+        convertDeferred(state, state.getCommand() != null ? state.getCommand().getArguments() : null);
+        return state.build();
     }
 
     public ParseState parseCommand(CommandMetadata command, Iterable<String> params) {
-        PeekingIterator<String> tokens = Iterators.peekingIterator(params.iterator());
-        ParseState state = ParseState.newInstance().pushContext(Context.GLOBAL).withCommand(command);
+        return parseCommand(command, params, false);
+    }
 
-        while (tokens.hasNext()) {
-            state = parseOptions(tokens, state, command.getCommandOptions());
+    /**
+     * Parses the given parameters for a single command without throwing on
+     * errors, see {@link #tryParse(GlobalMetadata, Iterable)}
+     * 
+     * @param command
+     *            Command metadata
+     * @param params
+     *            Parameters
+     * @return Parse state
+     */
+    public ParseState tryParseCommand(CommandMetadata command, Iterable<String> params) {
+        return parseCommand(command, params, true);
+    }
 
-            state = parseArgs(state, tokens, command.getArguments(), command.getDefaultOption());
+    private ParseState parseCommand(CommandMetadata command, Iterable<String> params, boolean collectErrors) {
+        ParseStateBuilder state = withCommand(new ParseStateBuilder(collectErrors).pushContext(Context.GLOBAL),
+                command);
+        TokenIterator tokens = new TokenIterator(tokens(params, state), 0);
+
+        int defaultPosition = command.getCommandOptionIndex().indexOf(command.getDefaultOption());
+        while (tokens.hasNext() && !state.isStreaming()) {
+            parseOptions(tokens, state, command.getCommandOptionIndex());
+
+            parseArgs(state, tokens, command.getArguments(), command.getDefaultOption(), defaultPosition);
+        }
+        convertDeferred(state, command.getArguments());
+        return state.build();
+    }
+
+    /**
+     * Selects the command, arguments of a primitive type are accumulated as
+     * {@link PrimitiveValues} so they are never boxed
+     */
+    private ParseStateBuilder withCommand(ParseStateBuilder state, CommandMetadata command) {
+        state.withCommand(command);
+        ArgumentsMetadata arguments = command.getArguments();
+        if (arguments != null && !arguments.isStreaming()) {
+            PrimitiveValues values = typeConverter.newPrimitiveValues(arguments.getJavaType());
+            if (values != null)
+                state.withArgumentValues(values);
         }
         return state;
     }
 
-    private ParseState parseOptions(PeekingIterator<String> tokens, ParseState state,
-            List<OptionMetadata> allowedOptions) {
+    private void parseOptions(TokenIterator tokens, ParseStateBuilder state,
+            OptionIndex allowedOptions) {
         while (tokens.hasNext()) {
             //
-            // Try to parse next option(s) using different styles. If code
-            // matches it returns the next parser state, otherwise it returns
-            // null.
+            // Try to parse next option(s) using the styles permitted by the
+            // kind of the token. If code matches it updates the parser state
+            // and returns true, otherwise it leaves the state untouched and
+            // returns false.
+            TokenKind kind = tokens.peekKind();
+            if (kind == TokenKind.SEPARATOR) {
+                break;
+            }
 
             // Parse a simple option
-            ParseState nextState = parseSimpleOption(tokens, state, allowedOptions);
-            if (nextState != null) {
-                state = nextState;
+            if (parseSimpleOption(tokens, state, allowedOptions)) {
                 continue;
             }
 
             // Parse GNU getopt long-form: --option=value
-            nextState = parseLongGnuGetOpt(tokens, state, allowedOptions);
-            if (nextState != null) {
-                state = nextState;
+            if (tokens.peekValueIndex() >= 0 && parseLongGnuGetOpt(tokens, state, allowedOptions)) {
                 continue;
             }
 
             // Handle classic getopt syntax: -abc
-            nextState = parseClassicGetOpt(tokens, state, allowedOptions);
-            if (nextState != null) {
-                state = nextState;
+            if (kind == TokenKind.SHORT_OPTIONS && parseClassicGetOpt(tokens, state, allowedOptions)) {
                 continue;
             }
 
             // did not match an option
             break;
         }
-
-        return state;
     }
 
-    private ParseState parseSimpleOption(PeekingIterator<String> tokens, ParseState state,
-            List<OptionMetadata> allowedOptions) {
-        OptionMetadata option = findOption(state, allowedOptions, tokens.peek());
-        if (option == null) {
-            return null;
+    private boolean parseSimpleOption(TokenIterator tokens, ParseStateBuilder state,
+            OptionIndex allowedOptions) {
+        int position = findOption(state, allowedOptions, tokens.peek());
+        if (position < 0) {
+            return false;
         }
+        OptionMetadata option = allowedOptions.getOption(position);
 
+        state.pushContext(Context.OPTION).withOption(option, tokens.index());
         tokens.next();
-        state = state.pushContext(Context.OPTION).withOption(option);
 
-        Object value;
         if (option.getArity() == 0) {
-            state = state.withOptionValue(option, Boolean.TRUE).popContext();
+            state.withOptionValue(position, Boolean.TRUE).popContext();
         } else if (option.getArity() == 1) {
             if (tokens.hasNext()) {
-                String tokenStr = tokens.next();
-                checkValidValue(option, tokenStr);
-                value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), tokenStr);
-                state = state.withOptionValue(option, value).popContext();
+                withOptionValue(state, position, option, tokens.peek(), tokens.index());
+                tokens.next();
             }
         } else {
-            ImmutableList.Builder<Object> values = ImmutableList.builder();
+            // Values of a primitive type are accumulated without boxing
+            PrimitiveValues primitives = typeConverter.newPrimitiveValues(option.getJavaType());
+            ImmutableList.Builder<Object> values = primitives == null ? ImmutableList.builder() : null;
 
             int count = 0;
+            boolean valid = true;
 
             boolean hasSeparator = false;
             boolean foundNextOption = false;
             while (count < option.getArity() && tokens.hasNext() && !hasSeparator) {
+                hasSeparator = tokens.peekKind() == TokenKind.SEPARATOR;
+                if (hasSeparator)
+                    break;
                 String peekedToken = tokens.peek();
-                hasSeparator = peekedToken.equals("--");
-                foundNextOption = findOption(state, allowedOptions, peekedToken) != null;
-
-                if (hasSeparator || foundNextOption)
+                foundNextOption = findOption(state, allowedOptions, peekedToken) >= 0;
+                if (foundNextOption)
                     break;
-                String tokenStr = tokens.next();
-                checkValidValue(option, tokenStr);
-                values.add(TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), tokenStr));
+                if (primitives != null) {
+                    valid &= isValidValue(state, option, peekedToken, tokens.index())
+                            && append(state, option, option.getTitle(), primitives, peekedToken, tokens.index());
+                    tokens.next();
+                    ++count;
+                    continue;
+                }
+                Object value = convertOptionValue(state, option, peekedToken, tokens.index());
+                tokens.next();
+                if (value == INVALID) {
+                    valid = false;
+                } else {
+                    values.add(value);
+                }
                 ++count;
             }
 
             if (count == option.getArity() || hasSeparator || foundNextOption) {
-                state = state.withOptionValue(option, values.build()).popContext();
+                if (valid) {
+                    state.withOptionValue(position, primitives != null ? primitives : values.build());
+                }
+                state.popContext();
             }
         }
-        return state;
+        return true;
     }
 
-    private ParseState parseLongGnuGetOpt(PeekingIterator<String> tokens, ParseState state,
-            List<OptionMetadata> allowedOptions) {
-        List<String> parts = ImmutableList.copyOf(Splitter.on(Pattern.compile("=|:")).limit(2).split(tokens.peek()));
-        if (parts.size() != 2) {
-            return null;
+    private boolean parseLongGnuGetOpt(TokenIterator tokens, ParseStateBuilder state,
+            OptionIndex allowedOptions) {
+        String token = tokens.peek();
+        int valueIndex = tokens.peekValueIndex();
+        if (valueIndex < 0) {
+            return false;
         }
 
-        OptionMetadata option = findOption(state, allowedOptions, parts.get(0));
+        int position = findOption(state, allowedOptions, token, valueIndex);
+        OptionMetadata option = allowedOptions.getOption(position);
         if (option == null || option.getArity() != 1) {
             // TODO: this is not exactly correct. It should be an error
             // condition
-            return null;
+            return false;
         }
 
+        // update state
+        int index = tokens.index();
+        state.pushContext(Context.OPTION).withOption(option, index);
+        withOptionValue(state, position, option, token.substring(valueIndex + 1), index);
+
         // we have a match so consume the token
         tokens.next();
 
-        // update state
-        state = state.pushContext(Context.OPTION).withOption(option);
-        checkValidValue(option, parts.get(1));
-        Object value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), parts.get(1));
-        state = state.withOption(option).withOptionValue(option, value).popContext();
-
-        return state;
+        return true;
     }
 
-    private ParseState parseClassicGetOpt(PeekingIterator<String> tokens, ParseState state,
-            List<OptionMetadata> allowedOptions) {
-        if (!SHORT_OPTIONS_PATTERN.matcher(tokens.peek()).matches()) {
-            return null;
+    private boolean parseClassicGetOpt(TokenIterator tokens, ParseStateBuilder state,
+            OptionIndex allowedOptions) {
+        if (tokens.peekKind() != TokenKind.SHORT_OPTIONS) {
+            return false;
         }
 
-        // remove leading dash from token
-        String remainingToken = tokens.peek().substring(1);
-
-        ParseState nextState = state;
-        while (!remainingToken.isEmpty()) {
-            char tokenCharacter = remainingToken.charAt(0);
-
-            // is the current token character a single letter option?
-            OptionMetadata option = findOption(state, allowedOptions, "-" + tokenCharacter);
-            if (option == null) {
-                return null;
+        String token = tokens.peek();
+
+        // Since the state is mutable we must resolve every option in the
+        // token before applying any of them, otherwise a token which turns out
+        // not to be an option cluster would leave partial changes behind
+        int[] positions = new int[token.length() - 1];
+        int count = 0;
+        for (int i = 1; i < token.length(); i++) {
+            // skipping the leading dash, is the current token character a single letter option?
+            int position = findShortOption(state, allowedOptions, token.charAt(i));
+            if (position < 0) {
+                return false;
             }
+            positions[count++] = position;
 
-            nextState = nextState.pushContext(Context.OPTION).withOption(option);
+            // any characters after an option that takes a value are the value
+            if (allowedOptions.getOption(position).getArity() != 0) {
+                break;
+            }
+        }
 
-            // remove current token character
-            remainingToken = remainingToken.substring(1);
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            OptionMetadata option = allowedOptions.getOption(position);
+            state.pushContext(Context.OPTION).withOption(option, tokens.index());
 
-            // for no argument options, process the option and remove the
-            // character from the token
+            // for no argument options, process the option and move on to the
+            // next character in the token
             if (option.getArity() == 0) {
-                nextState = nextState.withOptionValue(option, Boolean.TRUE).popContext();
+                state.withOptionValue(position, Boolean.TRUE).popContext();
                 continue;
             }
 
             if (option.getArity() == 1) {
                 // we must, consume the current token so we can see the next
                 // token
+                int index = tokens.index();
                 tokens.next();
 
                 // if current token has more characters, this is the value;
                 // otherwise it is the next token
-                if (!remainingToken.isEmpty()) {
-                    checkValidValue(option, remainingToken);
-                    Object value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(),
-                            remainingToken);
-                    nextState = nextState.withOptionValue(option, value).popContext();
+                if (i + 2 < token.length()) {
+                    withOptionValue(state, position, option, token.substring(i + 2), index);
                 } else if (tokens.hasNext()) {
-                    String tokenStr = tokens.next();
-                    checkValidValue(option, tokenStr);
-                    Object value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(),
-                            tokenStr);
-                    nextState = nextState.withOptionValue(option, value).popContext();
+                    withOptionValue(state, position, option, tokens.peek(), tokens.index());
+                    tokens.next();
                 }
 
-                return nextState;
+                return true;
             }
 
             throw new UnsupportedOperationException("Short options style can not be used with option "
@@ -353,97 +453,331 @@ public class Parser {
         // consume the current token
         tokens.next();
 
-        return nextState;
+        return true;
     }
 
     /**
-     * Checks for a valid value and throws an error if the value for the option
+     * Converts an option value and records it, leaving the option context
+     * regardless of whether the value was valid, the conversion of values of
+     * single valued options is deferred (see {@link ParsedOptions})
+     * 
+     * @param state
+     *            State
+     * @param position
+     *            Position of the option within the current scope
+     * @param option
+     *            Option meta data
+     * @param tokenStr
+     *            Token string
+     * @param index
+     *            Index of the token
+     */
+    private void withOptionValue(ParseStateBuilder state, int position, OptionMetadata option, String tokenStr,
+            int index) {
+        if (isSingleValued(option)) {
+            // Only the last value of a single valued option is injected so
+            // conversion is deferred until the value is needed
+            if (isValidValue(state, option, tokenStr, index)) {
+                state.withDeferredOptionValue(position, option, tokenStr, index,
+                        typeConverter.getConverter(option.getJavaType()));
+            }
+            state.popContext();
+            return;
+        }
+        Object value = convertOptionValue(state, option, tokenStr, index);
+        if (value != INVALID) {
+            state.withOptionValue(position, value);
+        }
+        state.popContext();
+    }
+
+    /**
+     * Gets whether every accessor of an option is single valued, an option
+     * merged from several declarations may have both single and multi valued
+     * accessors
+     */
+    private static boolean isSingleValued(OptionMetadata option) {
+        for (Accessor accessor : option.getAccessors()) {
+            if (accessor.isMultiValued())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks and converts an option value
+     * 
+     * @param state
+     *            State
+     * @param option
+     *            Option meta data
+     * @param tokenStr
+     *            Token string
+     * @param index
+     *            Index of the token
+     * @return Value, or {@link #INVALID} if the value was not valid and errors
+     *         are being collected
+     */
+    private Object convertOptionValue(ParseStateBuilder state, OptionMetadata option, String tokenStr, int index) {
+        if (!isValidValue(state, option, tokenStr, index)) {
+            return INVALID;
+        }
+        return convert(state, option, option.getTitle(), option.getJavaType(), tokenStr, index);
+    }
+
+    /**
+     * Checks an option value, an invalid value is recorded as an error
+     * 
+     * @return True if valid, false if the value was not valid and errors are
+     *         being collected
+     */
+    private boolean isValidValue(ParseStateBuilder state, OptionMetadata option, String tokenStr, int index) {
+        if (!isValidValue(option, tokenStr)) {
+            state.fail(ParseError.optionIllegalValue(index, option, tokenStr));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Converts a value and appends it to primitive values, when collecting
+     * errors a failed conversion is recorded as an error rather than thrown
+     * 
+     * @return True if appended, false if the value could not be converted and
+     *         errors are being collected
+     */
+    private boolean append(ParseStateBuilder state, OptionMetadata option, String name, PrimitiveValues values,
+            String tokenStr, int index) {
+        try {
+            values.append(tokenStr);
+            return true;
+        } catch (IllegalArgumentException e) {
+            state.fail(ParseError.conversion(index, option, name, tokenStr, values.getType()));
+            return false;
+        }
+    }
+
+    /**
+     * Converts a value, when collecting errors a failed conversion is recorded
+     * as an error rather than thrown
+     * 
+     * @return Value, or {@link #INVALID} if the value could not be converted
+     *         and errors are being collected
+     */
+    private Object convert(ParseStateBuilder state, OptionMetadata option, String name, Class<?> type,
+            String tokenStr, int index) {
+        try {
+            return typeConverter.getConverter(type).apply(tokenStr);
+        } catch (Exception e) {
+            state.fail(ParseError.conversion(index, option, name, tokenStr, type));
+            return INVALID;
+        }
+    }
+
+    /**
+     * Checks for a valid value, a value is invalid if the value for the option
      * is restricted and not in the set of allowed values
      * 
      * @param option
      *            Option meta data
      * @param tokenStr
      *            Token string
+     * @return True if valid, false otherwise
      */
-    private void checkValidValue(OptionMetadata option, String tokenStr) {
+    private boolean isValidValue(OptionMetadata option, String tokenStr) {
         if (option.getAllowedValues() == null)
-            return;
+            return true;
         if (option.getAllowedValues().contains(tokenStr))
-            return;
+            return true;
         if (option.isIgnoreCase()) {
             for (String value : option.getAllowedValues()) {
                 if (value.toUpperCase().equals(tokenStr.toUpperCase())) {
-                    return;
+                    return true;
                 }
             }
         }
-        throw new ParseOptionIllegalValueException(option.getTitle(), tokenStr, option.getAllowedValues());
+        return false;
     }
 
-    private ParseState parseArgs(ParseState state, PeekingIterator<String> tokens, ArgumentsMetadata arguments,
-            OptionMetadata defaultOption) {
+    private void parseArgs(ParseStateBuilder state, TokenIterator tokens, ArgumentsMetadata arguments,
+            OptionMetadata defaultOption, int defaultPosition) {
         if (tokens.hasNext()) {
-            if (tokens.peek().equals("--")) {
-                state = state.pushContext(Context.ARGS);
+            if (arguments != null && arguments.isStreaming()) {
+                if (tokens.peekKind() == TokenKind.SEPARATOR) {
+                    state.pushContext(Context.ARGS);
+                    tokens.next();
+                }
+
+                // Leave the remaining tokens to be consumed lazily
+                if (tokens.hasNext()) {
+                    PeekingIterator<String> remaining = tokens;
+                    if (arguments.getStdin() != StdinArguments.NONE)
+                        remaining = Iterators.peekingIterator(expandStdin(tokens, arguments));
+                    state.withStreamedArguments(new StreamedArguments(remaining, typeConverter, arguments));
+                }
+                return;
+            }
+
+            if (tokens.peekKind() == TokenKind.SEPARATOR) {
+                state.pushContext(Context.ARGS);
                 tokens.next();
 
                 // Consume all remaining tokens as arguments
                 // Default option can't possibly apply at this point because we
                 // saw the -- separator
                 while (tokens.hasNext()) {
-                    state = parseArg(state, tokens, arguments, null);
+                    parseArg(state, tokens, arguments, null, -1);
                 }
             } else {
-                state = parseArg(state, tokens, arguments, defaultOption);
+                parseArg(state, tokens, arguments, defaultOption, defaultPosition);
             }
         }
+    }
 
-        return state;
+    /**
+     * Gets whether a token is the {@code -} marker standing for arguments read
+     * from standard input
+     */
+    private static boolean isStdinMarker(ArgumentsMetadata arguments, String token) {
+        return arguments.getStdin() != StdinArguments.NONE && token.equals("-");
     }
 
-    private ParseState parseArg(ParseState state, PeekingIterator<String> tokens, ArgumentsMetadata arguments,
-            OptionMetadata defaultOption) {
-        if (arguments != null) {
-            // Enforce maximum arity on arguments
-            if (arguments.getArity() > 0 && state.getParsedArguments().size() == arguments.getArity()) {
-                throw new ParseTooManyArgumentsException(
-                        "Too many arguments, at most %d arguments are permitted but extra argument %s was encountered",
-                        arguments.getArity(), tokens.peek());
+    /**
+     * Replaces the {@code -} marker within tokens with the arguments read from
+     * standard input, the arguments are only read as they are consumed
+     */
+    private static Iterator<String> expandStdin(final Iterator<String> tokens, final ArgumentsMetadata arguments) {
+        return new AbstractIterator<String>() {
+            private Iterator<String> input = Collections.emptyIterator();
+
+            @Override
+            protected String computeNext() {
+                while (!input.hasNext()) {
+                    if (!tokens.hasNext())
+                        return endOfData();
+                    String token = tokens.next();
+                    if (!isStdinMarker(arguments, token))
+                        return token;
+                    input = StandardInputArguments.read(arguments.getStdin());
+                }
+                return input.next();
+            }
+        };
+    }
+
+    /**
+     * Parses a single argument
+     * 
+     * @return True if parsing may continue, false if the arity of the
+     *         arguments was exceeded
+     */
+    private boolean parseArg(ParseStateBuilder state, ArgumentsMetadata arguments, String tokenStr, int index) {
+        // Enforce maximum arity on arguments
+        if (arguments.getArity() > 0 && state.getParsedArgumentsCount() == arguments.getArity()) {
+            state.fail(ParseError.tooManyArguments(index, arguments.getArity(), tokenStr));
+            return false;
+        }
+
+        // Argument
+        PrimitiveValues values = state.getArgumentValues();
+        if (values != null) {
+            append(state, null, arguments.getTitle().get(0), values, tokenStr, index);
+            return true;
+        }
+        if (conversionPool != null) {
+            state.withDeferredArgument(tokenStr, index);
+            return true;
+        }
+        Object value = convert(state, null, arguments.getTitle().get(0), arguments.getJavaType(), tokenStr, index);
+        if (value != INVALID) {
+            state.withArgument(value);
+        }
+        return true;
+    }
+
+    /**
+     * Converts the option values and arguments whose conversion was deferred,
+     * failures are reported amongst any other errors in token order
+     */
+    private void convertDeferred(ParseStateBuilder state, ArgumentsMetadata arguments) {
+        List<ParseError> errors = state.convertDeferredOptionValues();
+        DeferredArguments deferred = state.takeDeferredArguments();
+        if (deferred != null) {
+            Class<?> type = arguments.getJavaType();
+            String name = arguments.getTitle().get(0);
+            Object[] values = deferred.convert(typeConverter.getConverter(type), conversionPool);
+            errors = new ArrayList<ParseError>(errors);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == DeferredArguments.INVALID) {
+                    errors.add(ParseError.conversion(deferred.getIndex(i), null, name, deferred.getToken(i), type));
+                } else {
+                    state.withArgument(values[i]);
+                }
             }
+        }
+        state.failInTokenOrder(errors);
+    }
+
+    private void parseArg(ParseStateBuilder state, TokenIterator tokens, ArgumentsMetadata arguments,
+            OptionMetadata defaultOption, int defaultPosition) {
+        if (arguments != null) {
+            int index = tokens.index();
+            String tokenStr = tokens.next();
 
-            // Argument
-            state = state.withArgument(TypeConverter.newInstance().convert(arguments.getTitle().get(0),
-                    arguments.getJavaType(), tokens.next()));
+            if (isStdinMarker(arguments, tokenStr)) {
+                // Arguments read from standard input are converted as they
+                // are read, errors are reported at the position of the marker
+                Iterator<String> input = StandardInputArguments.read(arguments.getStdin());
+                while (input.hasNext()) {
+                    if (!parseArg(state, arguments, input.next(), index))
+                        return;
+                }
+                return;
+            }
+            parseArg(state, arguments, tokenStr, index);
         } else if (defaultOption != null) {
             // Default Option
-            state = state.withOption(defaultOption);
-            String tokenStr = tokens.next();
-            checkValidValue(defaultOption, tokenStr);
-            Object value = TypeConverter.newInstance().convert(defaultOption.getTitle(), defaultOption.getJavaType(),
-                    tokenStr);
-            state = state.withOptionValue(defaultOption, value).popContext();
+            int index = tokens.index();
+            state.withOption(defaultOption, index);
+            withOptionValue(state, defaultPosition, defaultOption, tokens.next(), index);
         } else {
             // Unparsed input
-            state = state.withUnparsedInput(tokens.next());
+            state.withUnparsedInput(tokens.peek(), tokens.index());
+            tokens.next();
         }
-        return state;
     }
 
-    private OptionMetadata findOption(ParseState state, List<OptionMetadata> options, final String param) {
-        Predicate<? super OptionMetadata> findOptionPredicate;
+    private <T> T findName(GlobalMetadata metadata, AbbreviationIndex<T> index, String name) {
+        if (metadata.allowsAbbreviatedCommands()) {
+            return index.find(name);
+        }
+        return index.findExact(name);
+    }
+
+    /**
+     * Finds the position of an option within the given scope, the position is
+     * the slot of the option within the scope (see {@link ParsedOptions}) so
+     * the option need not be looked up again when its value is recorded
+     */
+    private int findOption(ParseStateBuilder state, OptionIndex options, String param) {
         if (state.getGlobal() != null && state.getGlobal().allowsAbbreviatedOptions()) {
-            findOptionPredicate = new AbbreviatedOptionFinder(param, options);
-        } else {
-            findOptionPredicate = new Predicate<OptionMetadata>() {
+            return options.findAbbreviatedPosition(param);
+        }
+        return options.findPosition(param);
+    }
 
-                @Override
-                public boolean apply(OptionMetadata op) {
-                    return op.getOptions().contains(param);
-                }
-            };
+    private int findOption(ParseStateBuilder state, OptionIndex options, String token, int length) {
+        if (state.getGlobal() != null && state.getGlobal().allowsAbbreviatedOptions()) {
+            return options.findAbbreviatedPosition(token.substring(0, length));
         }
+        return options.findPosition(token, length);
+    }
 
-        return find(options, findOptionPredicate, null);
+    private int findShortOption(ParseStateBuilder state, OptionIndex options, char c) {
+        if (state.getGlobal() != null && state.getGlobal().allowsAbbreviatedOptions()) {
+            return options.findAbbreviatedPosition("-" + c);
+        }
+        return options.findShortPosition(c);
     }
 
 }
@@ -40,7 +40,6 @@ public class ParserUtil
     }
     
     
-    @SuppressWarnings("unchecked")
     public static <T> T injectOptions(T commandInstance,
         Iterable<OptionMetadata> options,
         ListMultimap<OptionMetadata, Object> parsedOptions,
@@ -51,25 +50,87 @@ public class ParserUtil
     {      
         // inject options
         for (OptionMetadata option : options) {
-            List<?> values = parsedOptions.get(option);
-            if (option.getArity() > 1 && !values.isEmpty()) {
-                // hack: flatten the collection
-                values = ImmutableList.copyOf(concat((Iterable<Iterable<Object>>) values));
-            }
-            if (values != null && !values.isEmpty()) {
-                for (Accessor accessor : option.getAccessors()) {
-                    accessor.addValues(commandInstance, values);
-                }
-            }
+            injectOption(commandInstance, option, parsedOptions.get(option));
         }
   
-        // inject args
+        injectArguments(commandInstance, arguments, parsedArguments);
+        injectMetadata(commandInstance, metadataInjection, bindings);
+  
+        return commandInstance;
+    }
+    
+    
+    /**
+     * Injects the values of an option
+     * 
+     * @param commandInstance
+     *            Command instance
+     * @param option
+     *            Option
+     * @param values
+     *            Parsed values, options with an arity greater than one have a
+     *            list of values per occurrence
+     */
+    @SuppressWarnings("unchecked")
+    public static void injectOption(Object commandInstance, OptionMetadata option, List<?> values)
+    {
+        if (option.getArity() > 1 && !values.isEmpty()) {
+            // hack: flatten the collection
+            values = values.get(0) instanceof PrimitiveValues ? flatten(values) : ImmutableList.copyOf(concat((Iterable<Iterable<Object>>) values));
+        }
+        if (values != null && !values.isEmpty()) {
+            for (Accessor accessor : option.getAccessors()) {
+                accessor.addValues(commandInstance, values);
+            }
+        }
+    }
+
+    /**
+     * Flattens the values of the occurrences of an option whose values are
+     * primitive values into a single primitive values without boxing them
+     */
+    private static PrimitiveValues flatten(List<?> values)
+    {
+        PrimitiveValues flattened = ((PrimitiveValues) values.get(0)).newValues();
+        for (Object value : values) {
+            flattened.appendAll((PrimitiveValues) value);
+        }
+        return flattened;
+    }
+
+    /**
+     * Injects the parsed arguments
+     * 
+     * @param commandInstance
+     *            Command instance
+     * @param arguments
+     *            Arguments metadata, may be {@code null}
+     * @param parsedArguments
+     *            Parsed arguments
+     */
+    public static void injectArguments(Object commandInstance, ArgumentsMetadata arguments,
+            Iterable<Object> parsedArguments)
+    {
         if (arguments != null && parsedArguments != null) {
             for (Accessor accessor : arguments.getAccessors()) {
                 accessor.addValues(commandInstance, parsedArguments);
             }
         }
-  
+    }
+
+    /**
+     * Injects metadata into the fields that request it
+     * 
+     * @param commandInstance
+     *            Command instance
+     * @param metadataInjection
+     *            Fields into which metadata is injected
+     * @param bindings
+     *            Available metadata keyed by type
+     */
+    public static void injectMetadata(Object commandInstance, Iterable<Accessor> metadataInjection,
+            Map<Class<?>, Object> bindings)
+    {
         for (Accessor accessor : metadataInjection) {
             Object injectee = bindings.get(accessor.getJavaType());
   
@@ -77,11 +138,8 @@ public class ParserUtil
                 accessor.addValues(commandInstance, ImmutableList.of(injectee));
             }
         }
-  
-        return commandInstance;
     }
-    
-    
+
     public static <T> T createInstance(Class<?> type,
             Iterable<OptionMetadata> options,
             ListMultimap<OptionMetadata, Object> parsedOptions,
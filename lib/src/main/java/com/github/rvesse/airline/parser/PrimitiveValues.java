@@ -0,0 +1,282 @@
+package com.github.rvesse.airline.parser;
+
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Values of a primitive type accumulated straight into a primitive array
+ * <p>
+ * The parser uses these for options and arguments whose fields are arrays of
+ * {@code int}, {@code long}, {@code double} or {@code boolean} so that each
+ * value is converted and stored without ever being boxed, an
+ * {@link com.github.rvesse.airline.Accessor} for a matching array field copies
+ * the array directly. For consumers that expect a list of objects the values
+ * are also presented as a read only list, boxing only the values that are
+ * actually retrieved.
+ * </p>
+ * <p>
+ * Values can only be appended by the parser, to everything else instances
+ * are read only.
+ * </p>
+ */
+public abstract class PrimitiveValues extends AbstractList<Object> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 8;
+
+    int size;
+    private int capacity;
+
+    PrimitiveValues() {
+    }
+
+    /**
+     * Creates values for a primitive type
+     *
+     * @param type
+     *            Type
+     * @return Values or {@code null} if the type does not have a specialised
+     *         representation
+     */
+    public static PrimitiveValues create(Class<?> type) {
+        if (type == Integer.TYPE)
+            return new IntValues();
+        if (type == Long.TYPE)
+            return new LongValues();
+        if (type == Double.TYPE)
+            return new DoubleValues();
+        if (type == Boolean.TYPE)
+            return new BooleanValues();
+        return null;
+    }
+
+    /**
+     * Gets the primitive type of the values
+     *
+     * @return Type
+     */
+    public abstract Class<?> getType();
+
+    /**
+     * Gets the backing primitive array, only the first {@link #size()}
+     * elements are values
+     */
+    abstract Object array();
+
+    abstract void setArray(Object array);
+
+    abstract Object newArray(int length);
+
+    /**
+     * Converts a value and stores it at the given index of the backing array
+     */
+    abstract void store(int index, String value);
+
+    /**
+     * Converts a value and appends it, conversion follows the built in
+     * conversions of {@link com.github.rvesse.airline.TypeConverter}
+     *
+     * @param value
+     *            Value
+     * @throws IllegalArgumentException
+     *             Thrown if the value cannot be converted
+     */
+    final void append(String value) {
+        ensureCapacity(size + 1);
+        store(size, value);
+        size++;
+    }
+
+    /**
+     * Appends all the given values
+     *
+     * @param values
+     *            Values which must have the same type as these values
+     */
+    final void appendAll(PrimitiveValues values) {
+        Preconditions.checkArgument(values.getType() == getType(), "values must have the same type");
+        ensureCapacity(size + values.size);
+        System.arraycopy(values.array(), 0, array(), size, values.size);
+        size += values.size;
+    }
+
+    /**
+     * Creates empty values of the same type
+     *
+     * @return Values
+     */
+    final PrimitiveValues newValues() {
+        return create(getType());
+    }
+
+    /**
+     * Copies the values into a new primitive array, for example an
+     * {@code int[]} for values of type {@code int}
+     *
+     * @return Array
+     */
+    public final Object toPrimitiveArray() {
+        Object copy = newArray(size);
+        System.arraycopy(array(), 0, copy, 0, size);
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > capacity) {
+            capacity = Math.max(needed, capacity == 0 ? INITIAL_CAPACITY : capacity * 2);
+            Object grown = newArray(capacity);
+            System.arraycopy(array(), 0, grown, 0, size);
+            setArray(grown);
+        }
+    }
+
+    final void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+    }
+
+    private static final class IntValues extends PrimitiveValues {
+        private int[] values = new int[0];
+
+        @Override
+        public Class<?> getType() {
+            return Integer.TYPE;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (int[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new int[length];
+        }
+
+        @Override
+        void store(int index, String value) {
+            values[index] = Integer.parseInt(value);
+        }
+
+        @Override
+        public Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+
+    private static final class LongValues extends PrimitiveValues {
+        private long[] values = new long[0];
+
+        @Override
+        public Class<?> getType() {
+            return Long.TYPE;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (long[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new long[length];
+        }
+
+        @Override
+        void store(int index, String value) {
+            values[index] = Long.parseLong(value);
+        }
+
+        @Override
+        public Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+
+    private static final class DoubleValues extends PrimitiveValues {
+        private double[] values = new double[0];
+
+        @Override
+        public Class<?> getType() {
+            return Double.TYPE;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (double[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new double[length];
+        }
+
+        @Override
+        void store(int index, String value) {
+            values[index] = Double.parseDouble(value);
+        }
+
+        @Override
+        public Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+
+    private static final class BooleanValues extends PrimitiveValues {
+        private boolean[] values = new boolean[0];
+
+        @Override
+        public Class<?> getType() {
+            return Boolean.TYPE;
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void setArray(Object array) {
+            values = (boolean[]) array;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new boolean[length];
+        }
+
+        @Override
+        void store(int index, String value) {
+            values[index] = Boolean.parseBoolean(value);
+        }
+
+        @Override
+        public Object get(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+}
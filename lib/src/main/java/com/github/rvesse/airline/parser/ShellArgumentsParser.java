@@ -0,0 +1,180 @@
+package com.github.rvesse.airline.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a command line into arguments using shell like rules, this
+ * generalises the rules of {@link AliasArgumentsParser}
+ * <ul>
+ * <li>Arguments are separated by unquoted white space</li>
+ * <li>Within double quotes a backslash escapes a double quote or a backslash
+ * and is otherwise literal</li>
+ * <li>Within single quotes every character is literal</li>
+ * <li>Outside of quotes a backslash escapes the next character, whether that
+ * is white space, a quote or a backslash, an escaped line break is removed</li>
+ * <li>Quoted and unquoted text that is not separated by white space forms a
+ * single argument so {@code --name="a b"} is the argument {@code --name=a b}</li>
+ * </ul>
+ */
+public class ShellArgumentsParser {
+
+    /**
+     * Parses a command line into arguments
+     *
+     * @param value
+     *            Command line
+     * @return Arguments
+     * @throws ParseException
+     *             Thrown if the command line ends within quotes or with an
+     *             escape
+     */
+    public static List<String> parse(String value) {
+        ShellArgumentsParser parser = new ShellArgumentsParser(value);
+        parser.parse();
+        if (!parser.complete)
+            throw new ParseException("Mismatched quotes or trailing escape in command line: %s", value);
+        return parser.args;
+    }
+
+    /**
+     * Gets whether a command line is complete, a command line that ends within
+     * quotes or with an escape is continued on the next line
+     *
+     * @param value
+     *            Command line
+     * @return True if complete
+     */
+    public static boolean isComplete(String value) {
+        ShellArgumentsParser parser = new ShellArgumentsParser(value);
+        parser.parse();
+        return parser.complete;
+    }
+
+    /**
+     * Parses a partially typed command line, the last argument is the
+     * argument being typed which is empty if the command line is empty or
+     * ends with white space and may end within quotes
+     *
+     * @param value
+     *            Partial command line
+     * @return Arguments, never empty
+     */
+    public static List<String> parsePartial(String value) {
+        ShellArgumentsParser parser = new ShellArgumentsParser(value);
+        parser.parse();
+        if (!parser.complete) {
+            parser.args.add(parser.arg.toString());
+        } else if (!parser.endsInArgument) {
+            parser.args.add("");
+        }
+        return parser.args;
+    }
+
+    private final CharSequence sequence;
+    private final List<String> args = new ArrayList<String>();
+    private final StringBuilder arg = new StringBuilder();
+    private boolean inArgument = false;
+    private boolean endsInArgument = false;
+    private boolean complete = true;
+
+    private ShellArgumentsParser(String value) {
+        this.sequence = value;
+    }
+
+    private void parse() {
+        for (int i = 0; i < this.sequence.length(); i++) {
+            char c = this.sequence.charAt(i);
+
+            switch (c) {
+            case '"':
+                inArgument = true;
+                i = parseDoubleQuoted(i);
+                break;
+            case '\'':
+                inArgument = true;
+                i = parseSingleQuoted(i);
+                break;
+            case '\\':
+                if (i + 1 < this.sequence.length()) {
+                    char next = this.sequence.charAt(++i);
+                    if (next == '\n') {
+                        // Escaped line break joins the lines
+                        continue;
+                    }
+                    inArgument = true;
+                    arg.append(next);
+                } else {
+                    // Trailing escape continues the line
+                    complete = false;
+                }
+                break;
+            default:
+                if (Character.isWhitespace(c)) {
+                    // Reached end of argument
+                    endArgument();
+                    continue;
+                }
+                inArgument = true;
+                arg.append(c);
+            }
+            if (!complete)
+                return;
+        }
+
+        // Reached end of input
+        endsInArgument = inArgument;
+        endArgument();
+    }
+
+    private void endArgument() {
+        if (inArgument) {
+            args.add(arg.toString());
+            arg.setLength(0);
+            inArgument = false;
+        }
+    }
+
+    private int parseDoubleQuoted(int start) {
+        for (int i = start + 1; i < this.sequence.length(); i++) {
+            char c = this.sequence.charAt(i);
+            switch (c) {
+            case '"':
+                // Reached end of quoted text
+                return i;
+            case '\\':
+                // May be an escape
+                if (i + 1 < this.sequence.length()) {
+                    char next = this.sequence.charAt(i + 1);
+                    if (next == '"' || next == '\\') {
+                        arg.append(next);
+                        i++;
+                        continue;
+                    }
+                }
+            default:
+                // Any other character just gets accumulated
+                arg.append(c);
+            }
+        }
+
+        // Reached end of input which means we have mismatched quotes
+        complete = false;
+        return this.sequence.length();
+    }
+
+    private int parseSingleQuoted(int start) {
+        for (int i = start + 1; i < this.sequence.length(); i++) {
+            char c = this.sequence.charAt(i);
+            if (c == '\'') {
+                // Reached end of quoted text
+                return i;
+            }
+            arg.append(c);
+        }
+
+        // Reached end of input which means we have mismatched quotes
+        complete = false;
+        return this.sequence.length();
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.StdinArguments;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+
+/**
+ * Reads arguments from standard input for commands whose
+ * {@link com.github.rvesse.airline.Arguments} permit it, see
+ * {@link com.github.rvesse.airline.Arguments#stdin()}
+ * <p>
+ * Standard input is read through a buffered channel and decoded as UTF-8 a
+ * buffer at a time, arguments are produced lazily as they are consumed so
+ * arbitrarily large inputs are read in bounded memory. By default
+ * {@link System#in} is read, code that runs commands on behalf of another
+ * process, such as the {@link com.github.rvesse.airline.daemon.DaemonServer},
+ * can set the input for the current thread via {@link #setInput(InputStream)}.
+ * </p>
+ */
+public final class StandardInputArguments {
+
+    private static final ThreadLocal<InputStream> INPUT = new ThreadLocal<InputStream>();
+
+    private StandardInputArguments() {
+    }
+
+    /**
+     * Sets the input that arguments are read from by parses on the current
+     * thread
+     *
+     * @param in
+     *            Input, {@code null} to read {@link System#in}
+     */
+    public static void setInput(InputStream in) {
+        if (in != null) {
+            INPUT.set(in);
+        } else {
+            INPUT.remove();
+        }
+    }
+
+    /**
+     * Reads arguments from the input for the current thread
+     *
+     * @param format
+     *            How arguments are delimited
+     * @return Lazily read arguments
+     */
+    static Iterator<String> read(StdinArguments format) {
+        InputStream in = INPUT.get();
+        return read(in != null ? in : System.in, format);
+    }
+
+    /**
+     * Reads arguments from an input
+     *
+     * @param in
+     *            Input, it is not closed
+     * @param format
+     *            How arguments are delimited
+     * @return Lazily read arguments
+     */
+    static Iterator<String> read(InputStream in, StdinArguments format) {
+        Preconditions.checkArgument(format != StdinArguments.NONE, "format must not be NONE");
+        return new InputArguments(Channels.newChannel(in), format == StdinArguments.NUL ? '\0' : '\n');
+    }
+
+    private static final class InputArguments extends AbstractIterator<String> {
+        private final ReadableByteChannel channel;
+        private final char delimiter;
+        private final CharsetDecoder decoder = Charsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final ByteBuffer bytes = ByteBuffer.allocate(65536);
+        private final CharBuffer chars = CharBuffer.allocate(65536);
+        private final StringBuilder arg = new StringBuilder();
+        private boolean eof = false;
+
+        InputArguments(ReadableByteChannel channel, char delimiter) {
+            this.channel = channel;
+            this.delimiter = delimiter;
+            this.bytes.flip();
+            this.chars.flip();
+        }
+
+        @Override
+        protected String computeNext() {
+            while (true) {
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    if (c == delimiter) {
+                        String value = take();
+                        if (value != null)
+                            return value;
+                    } else {
+                        arg.append(c);
+                    }
+                }
+                if (!fill()) {
+                    String value = take();
+                    return value != null ? value : endOfData();
+                }
+            }
+        }
+
+        /**
+         * Takes the accumulated argument, empty lines are ignored and a line
+         * may end with a carriage return
+         */
+        private String take() {
+            if (delimiter == '\n') {
+                if (arg.length() > 0 && arg.charAt(arg.length() - 1) == '\r')
+                    arg.setLength(arg.length() - 1);
+                if (arg.length() == 0)
+                    return null;
+            } else if (arg.length() == 0 && eof) {
+                // Input ending with a delimiter does not have an empty final
+                // argument
+                return null;
+            }
+            String value = arg.toString();
+            arg.setLength(0);
+            return value;
+        }
+
+        private boolean fill() {
+            if (eof)
+                return false;
+            chars.clear();
+            try {
+                while (chars.position() == 0 && !eof) {
+                    bytes.compact();
+                    int read = channel.read(bytes);
+                    bytes.flip();
+                    if (read < 0)
+                        eof = true;
+                    CoderResult result = decoder.decode(bytes, chars, eof);
+                    if (result.isError())
+                        throw new ParseException("Standard input is not valid UTF-8");
+                }
+            } catch (IOException e) {
+                throw new ParseException(e, "Unable to read arguments from standard input: %s", e.getMessage());
+            } finally {
+                chars.flip();
+            }
+            return chars.hasRemaining() || !eof;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.TypeConverter;
+import com.github.rvesse.airline.model.ArgumentsMetadata;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.UnmodifiableIterator;
+
+import java.util.Iterator;
+
+/**
+ * Arguments that are converted lazily from the remaining tokens as they are
+ * iterated
+ * <p>
+ * When the {@link com.github.rvesse.airline.Arguments} of a command are
+ * injected into a field of type {@link Iterable} or {@link Iterator} the
+ * parser stops at the first argument and binds the field to the remaining
+ * tokens rather than accumulating them, each token is only converted via the
+ * {@link TypeConverter} when the command consumes it. This means that once
+ * arguments start all remaining tokens are treated as arguments and options
+ * are no longer recognised. Conversion errors, argument files that cannot be
+ * read and exceeding the arity of the arguments are reported when the
+ * offending argument is reached.
+ * </p>
+ * <p>
+ * The arguments may only be iterated once and are not thread safe. Since the
+ * tokens are consumed lazily the arguments that were parsed must not be
+ * modified until the command has finished consuming them.
+ * </p>
+ */
+public final class StreamedArguments implements Iterable<Object> {
+    private final PeekingIterator<String> tokens;
+    private final TypeConverter typeConverter;
+    private final ArgumentsMetadata arguments;
+    private boolean iterated = false;
+
+    StreamedArguments(PeekingIterator<String> tokens, TypeConverter typeConverter, ArgumentsMetadata arguments) {
+        this.tokens = tokens;
+        this.typeConverter = typeConverter;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Gets whether there are no further arguments, this does not consume any
+     * arguments
+     *
+     * @return True if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return !tokens.hasNext();
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        if (iterated)
+            throw new IllegalStateException("Streamed arguments may only be iterated once");
+        iterated = true;
+
+        return new UnmodifiableIterator<Object>() {
+            private final String title = arguments.getTitle().get(0);
+            private int count = 0;
+
+            @Override
+            public boolean hasNext() {
+                return tokens.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                // Enforce maximum arity on arguments
+                if (arguments.getArity() > 0 && count == arguments.getArity()) {
+                    throw new ParseTooManyArgumentsException(
+                            "Too many arguments, at most %d arguments are permitted but extra argument %s was encountered",
+                            arguments.getArity(), tokens.peek());
+                }
+                count++;
+                return typeConverter.convert(title, arguments.getJavaType(), tokens.next());
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "StreamedArguments{" + arguments.getTitle() + "}";
+    }
+}
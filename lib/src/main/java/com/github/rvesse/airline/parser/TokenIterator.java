@@ -0,0 +1,100 @@
+package com.github.rvesse.airline.parser;
+
+import com.google.common.collect.PeekingIterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Peeking iterator over the tokens being parsed, this is the lexer stage of the
+ * parser
+ * <p>
+ * It tracks the index of each token so errors can report where they occurred
+ * and classifies each token (see {@link TokenKind}) at most once, the
+ * classification is computed on demand for the next token and retained until
+ * that token is consumed.
+ * </p>
+ */
+final class TokenIterator implements PeekingIterator<String> {
+    private final Iterator<String> tokens;
+    private int index;
+    private boolean peeked = false;
+    private String peekedToken;
+    private TokenKind kind;
+    private int valueIndex = -2;
+
+    TokenIterator(Iterator<String> tokens, int startIndex) {
+        this.tokens = tokens;
+        this.index = startIndex;
+    }
+
+    /**
+     * Gets the kind of the next token, {@link #hasNext()} must be true
+     *
+     * @return Kind
+     */
+    TokenKind peekKind() {
+        if (kind == null)
+            kind = TokenKind.classify(peek());
+        return kind;
+    }
+
+    /**
+     * Gets the position of the separator between an option name and an inline
+     * value within the next token, {@link #hasNext()} must be true
+     *
+     * @return Position or {@code -1} if the token has no inline value
+     */
+    int peekValueIndex() {
+        if (valueIndex == -2)
+            valueIndex = peekKind() == TokenKind.SEPARATOR ? -1 : TokenKind.valueIndex(peek());
+        return valueIndex;
+    }
+
+    /**
+     * Gets the index of the token that will be returned by the next call to
+     * {@link #next()} or {@link #peek()}
+     *
+     * @return Index
+     */
+    int index() {
+        return index;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return peeked || tokens.hasNext();
+    }
+
+    @Override
+    public String peek() {
+        if (!peeked) {
+            peekedToken = tokens.next();
+            peeked = true;
+        }
+        return peekedToken;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        String token;
+        if (peeked) {
+            token = peekedToken;
+            peeked = false;
+            peekedToken = null;
+        } else {
+            token = tokens.next();
+        }
+        index++;
+        kind = null;
+        valueIndex = -2;
+        return token;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.rvesse.airline.parser;
+
+/**
+ * Lexical classification of a token, assigned once per token by
+ * {@link TokenIterator} so the parser can dispatch on it rather than trying
+ * each option style in turn
+ * <p>
+ * Classification is purely syntactic, whether a token actually names an
+ * option still depends on the options in scope. Independently of its kind a
+ * token may carry an inline value i.e. {@code --name=value} or
+ * {@code --name:value}, see {@link TokenIterator#peekValueIndex()}.
+ * </p>
+ */
+enum TokenKind {
+    /**
+     * The {@code --} separator, all following tokens are arguments
+     */
+    SEPARATOR,
+    /**
+     * A token starting with {@code --} e.g. {@code --name}
+     */
+    LONG_OPTION,
+    /**
+     * A token starting with a single {@code -} followed by at least one
+     * character e.g. {@code -abc}, this may be a single option or a cluster of
+     * short options
+     */
+    SHORT_OPTIONS,
+    /**
+     * Any other token
+     */
+    VALUE;
+
+    /**
+     * Classifies a token
+     *
+     * @param token
+     *            Token
+     * @return Kind
+     */
+    static TokenKind classify(String token) {
+        if (token.length() < 2 || token.charAt(0) != '-')
+            return VALUE;
+        if (token.charAt(1) != '-')
+            return SHORT_OPTIONS;
+        return token.length() == 2 ? SEPARATOR : LONG_OPTION;
+    }
+
+    /**
+     * Finds the position of the separator between an option name and an
+     * inline value
+     *
+     * @param token
+     *            Token
+     * @return Position of the first {@code =} or {@code :} or {@code -1} if
+     *         none
+     */
+    static int valueIndex(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '=' || c == ':')
+                return i;
+        }
+        return -1;
+    }
+}
@@ -3,8 +3,8 @@ package com.github.rvesse.airline;
 import com.github.rvesse.airline.Arguments;
 import com.github.rvesse.airline.Command;
 
-@Command(name = "ArgsRequiredWrongMain")
-public class ArgsRequiredWrongMain
+@Command(name = "ArgsRequiredArrayMain")
+public class ArgsRequiredArrayMain
 {
     @Arguments(required = true)
     public String[] file;
@@ -3,6 +3,8 @@ package com.github.rvesse.airline;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.testng.Assert;
@@ -317,4 +319,67 @@ public class TestAliases {
         // Check parsing
         cli.parse();
     }
+
+    @Test
+    public void user_aliases_nested_01() throws IOException {
+        //@formatter:off
+        CliBuilder<Args1> builder = Cli.<Args1>builder("test")
+                                    .withCommand(Args1.class);
+        builder.withAlias("foo")
+               .withArguments("bar", "-long", "345");
+        builder.withAlias("bar")
+               .withArguments("Args1", "-debug");
+        Cli<Args1> cli = builder.build();
+        //@formatter:on
+
+        // Check parsing
+        Args1 cmd = cli.parse("foo", "a");
+        Assert.assertTrue(cmd.debug);
+        Assert.assertEquals(cmd.l, 345l);
+        Assert.assertEquals(cmd.parameters.size(), 1);
+        Assert.assertEquals(cmd.parameters.get(0), "a");
+    }
+
+    @Test
+    public void user_aliases_nested_positional_01() throws IOException {
+        //@formatter:off
+        CliBuilder<Args1> builder = Cli.<Args1>builder("test")
+                                    .withCommand(Args1.class);
+        builder.withAlias("foo")
+               .withArguments("bar", "$2", "-float", "$1");
+        builder.withAlias("bar")
+               .withArguments("Args1", "-long", "$1");
+        Cli<Args1> cli = builder.build();
+        //@formatter:on
+
+        // Check parsing
+        Args1 cmd = cli.parse("foo", "1.23", "345", "a");
+        Assert.assertEquals(cmd.l, 345l);
+        Assert.assertEquals(cmd.floa, 1.23f);
+        Assert.assertEquals(cmd.parameters.size(), 1);
+        Assert.assertEquals(cmd.parameters.get(0), "a");
+    }
+
+    @Test
+    public void user_aliases_nested_cycle_01() throws IOException {
+        //@formatter:off
+        CliBuilder<Args1> builder = Cli.<Args1>builder("test")
+                                    .withCommand(Args1.class);
+        builder.withAlias("foo")
+               .withArguments("bar", "a");
+        builder.withAlias("bar")
+               .withArguments("foo", "b");
+        builder.withAlias("Args1")
+               .withArguments("Args1", "c");
+        builder.withAliasesOverridingBuiltIns();
+        Cli<Args1> cli = builder.build();
+        //@formatter:on
+
+        // Expansion stops when it would re-enter an alias
+        Assert.assertEquals(cli.getMetadata().getAliasIndex().expand(cli.getMetadata().getAliasIndex().find("foo"),
+                Collections.<String> emptyList()), Arrays.asList("foo", "b", "a"));
+
+        Args1 cmd = cli.parse("Args1", "d");
+        Assert.assertEquals(cmd.parameters, Arrays.asList("c", "d"));
+    }
 }
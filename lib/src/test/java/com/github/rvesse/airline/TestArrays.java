@@ -0,0 +1,103 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.args.ArgsArrays;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.MetadataLoader;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.github.rvesse.airline.parser.ParseError.Kind;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.github.rvesse.airline.parser.ParseState;
+import com.github.rvesse.airline.parser.Parser;
+import com.github.rvesse.airline.parser.PrimitiveValues;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestArrays {
+
+    @Test
+    public void array_metadata() {
+        CommandMetadata command = MetadataLoader.loadCommand(ArgsArrays.class);
+        assertEquals(command.getArguments().getJavaType(), int.class);
+        assertTrue(command.getArguments().isMultiValued());
+        for (OptionMetadata option : command.getCommandOptions()) {
+            if (option.getOptions().contains("--units"))
+                assertEquals(option.getJavaType(), TimeUnit.class);
+        }
+    }
+
+    @Test
+    public void primitive_arrays() {
+        ArgsArrays cmd = singleCommand(ArgsArrays.class).parse("-i", "1", "--range", "10", "20", "-i", "2",
+                "--weights", "0.5", "1", "1.5", "--flags", "true", "false", "--range", "30", "40", "3", "4", "5");
+        assertEquals(cmd.ids, new int[] { 1, 2 });
+        assertEquals(cmd.range, new long[] { 10, 20, 30, 40 });
+        assertEquals(cmd.weights, new double[] { 0.5, 1, 1.5 });
+        assertEquals(cmd.flags, new boolean[] { true, false });
+        assertEquals(cmd.numbers, new int[] { 3, 4, 5 });
+        assertNull(cmd.names);
+        assertEquals(cmd.ports, new int[] { 80 });
+    }
+
+    @Test
+    public void object_arrays() {
+        ArgsArrays cmd = singleCommand(ArgsArrays.class).parse("--names", "a", "--units", "SECONDS", "DAYS",
+                "--names", "b");
+        assertEquals(cmd.names, new String[] { "a", "b" });
+        assertEquals(cmd.units, new TimeUnit[] { TimeUnit.SECONDS, TimeUnit.DAYS });
+    }
+
+    @Test
+    public void arrays_append_to_existing() {
+        ArgsArrays cmd = singleCommand(ArgsArrays.class).parse("--ports", "8080", "--ports", "8443");
+        assertEquals(cmd.ports, new int[] { 80, 8080, 8443 });
+    }
+
+    @Test
+    public void primitive_arguments_are_not_boxed() {
+        ParseState state = new Parser().parseCommand(MetadataLoader.loadCommand(ArgsArrays.class),
+                ImmutableList.of("--range", "1", "2", "7", "8"));
+        assertTrue(state.getParsedArguments() instanceof PrimitiveValues);
+        assertEquals(((PrimitiveValues) state.getParsedArguments()).toPrimitiveArray(), new int[] { 7, 8 });
+        assertTrue(state.getParsedOptions().values().iterator().next() instanceof PrimitiveValues);
+        assertEquals(state.getParsedArguments(), ImmutableList.of(7, 8));
+    }
+
+    @Test
+    public void primitive_conversion_errors() {
+        ParseResult<ArgsArrays> result = singleCommand(ArgsArrays.class).tryParse("1", "--range", "2", "x", "y",
+                "3");
+        assertFalse(result.wasSuccessful());
+        assertEquals(result.getErrors().size(), 2);
+        assertEquals(result.getErrors().get(0).getKind(), Kind.CONVERSION);
+        assertEquals(result.getErrors().get(0).getTokenIndex(), 3);
+        assertEquals(result.getErrors().get(0).getOption().getOptions(), ImmutableSet.of("--range"));
+        assertEquals(result.getErrors().get(1).getKind(), Kind.CONVERSION);
+        assertEquals(result.getErrors().get(1).getTokenIndex(), 4);
+        assertNull(result.getErrors().get(1).getOption());
+    }
+
+    @Test
+    public void custom_primitive_converter() {
+        TypeConverter converter = TypeConverter.newInstance().register(int.class, new Function<String, Integer>() {
+            @Override
+            public Integer apply(String input) {
+                return Integer.parseInt(input, 16);
+            }
+        });
+        assertNull(converter.newPrimitiveValues(int.class));
+        ArgsArrays cmd = singleCommand(ArgsArrays.class, converter).parse("-i", "ff", "10");
+        assertEquals(cmd.ids, new int[] { 255 });
+        assertEquals(cmd.numbers, new int[] { 16 });
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.Git.Add;
+import com.github.rvesse.airline.Git.RemoteAdd;
+import com.github.rvesse.airline.Git.RemoteShow;
+import com.github.rvesse.airline.args.OptionsRequired;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.help.Help;
+import com.github.rvesse.airline.parser.ParseOptionMissingException;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestCompiledParser {
+
+    private static Cli<Runnable> git() {
+        CliBuilder<Runnable> builder = Cli.<Runnable> builder("git").withDefaultCommand(Help.class)
+                .withCommand(Help.class).withCommand(Add.class);
+        builder.withGroup("remote").withDefaultCommand(RemoteShow.class).withCommand(RemoteShow.class)
+                .withCommand(RemoteAdd.class);
+        return builder.build();
+    }
+
+    @Test
+    public void compiled_parser_shared_by_cli() {
+        Cli<Runnable> cli = git();
+        CompiledParser<Runnable> parser = cli.compile();
+        assertSame(cli.compile(), parser);
+        assertSame(parser.getMetadata(), cli.getMetadata());
+        assertNull(parser.getCommandMetadata());
+    }
+
+    @Test
+    public void compiled_parser_parses_groups_and_defaults() {
+        CompiledParser<Runnable> parser = git().compile();
+
+        Add add = (Add) parser.parse("-v", "add", "-i", "a", "b");
+        assertTrue(add.verbose);
+        assertTrue(add.interactive);
+        assertEquals(add.patterns, ImmutableList.of("a", "b"));
+
+        RemoteShow show = (RemoteShow) parser.parse("remote", "-n", "origin");
+        assertTrue(show.noQuery);
+        assertEquals(show.remote, "origin");
+
+        assertTrue(parser.parse() instanceof Help);
+    }
+
+    @Test
+    public void compiled_parser_injects_metadata() {
+        Cli<Runnable> cli = git();
+        Help help = (Help) cli.compile().parse("help");
+        assertSame(help.global, cli.getMetadata());
+    }
+
+    @Test
+    public void compiled_single_command() {
+        SingleCommand<OptionsRequired> command = singleCommand(OptionsRequired.class);
+        CompiledParser<OptionsRequired> parser = command.compile();
+        assertSame(parser.getCommandMetadata(), command.getCommandMetadata());
+        assertNull(parser.getMetadata());
+
+        OptionsRequired options = parser.parse("--required", "a");
+        assertEquals(options.requiredOption, "a");
+        assertNull(options.optionalOption);
+    }
+
+    @Test(expectedExceptions = ParseOptionMissingException.class)
+    public void compiled_single_command_validates_required_options() {
+        singleCommand(OptionsRequired.class).compile().parse("--optional", "a");
+    }
+
+    @Test
+    public void compiled_parser_concurrent() throws Exception {
+        final CompiledParser<Runnable> parser = git().compile();
+        final int iterations = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                final String remote = "remote" + t;
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < iterations; i++) {
+                            RemoteAdd add = (RemoteAdd) parser.parse("remote", "add", "-t", remote, remote, "url");
+                            if (!remote.equals(add.branch) || !ImmutableList.of(remote, "url").equals(add.remote))
+                                return false;
+
+                            Add other = (Add) parser.parse("add", remote);
+                            if (other.interactive || !ImmutableList.of(remote).equals(other.patterns))
+                                return false;
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
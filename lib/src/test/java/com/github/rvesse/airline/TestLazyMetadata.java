@@ -0,0 +1,101 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.Git.Add;
+import com.github.rvesse.airline.Git.RemoteAdd;
+import com.github.rvesse.airline.Git.RemoteShow;
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.args.ArgsMultipleDefaultOptions;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.help.Help;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestLazyMetadata {
+
+    private static Cli<Object> brokenCli() {
+        return Cli.builder("test").withLazyMetadata().withCommand(Args1.class)
+                .withCommand(ArgsMultipleDefaultOptions.class).build();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void eager_metadata_fails_on_invalid_command() {
+        Cli.builder("test").withCommand(Args1.class).withCommand(ArgsMultipleDefaultOptions.class).build();
+    }
+
+    @Test
+    public void lazy_metadata_loads_only_named_commands() {
+        Cli<Object> cli = brokenCli();
+        Args1 args = (Args1) cli.parse("Args1", "-log", "2", "a");
+        assertEquals(args.verbose.intValue(), 2);
+        assertEquals(args.parameters, ImmutableList.of("a"));
+
+        try {
+            cli.getMetadata();
+            fail("Expected the invalid command to fail when the full metadata is loaded");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void lazy_metadata_groups_and_aliases() {
+        CliBuilder<Runnable> builder = Cli.<Runnable> builder("git").withLazyMetadata().withCommand(Add.class);
+        builder.withGroup("remote").withDefaultCommand(RemoteShow.class).withCommand(RemoteShow.class)
+                .withCommand(RemoteAdd.class);
+        builder.withAlias("track").withArguments("remote", "add", "-t", "master");
+        Cli<Runnable> cli = builder.build();
+
+        assertTrue(cli.parse("remote", "add", "origin", "url") instanceof RemoteAdd);
+        assertTrue(cli.parse("remote") instanceof RemoteShow);
+        RemoteAdd add = (RemoteAdd) cli.parse("track", "origin", "url");
+        assertEquals(add.branch, "master");
+        assertEquals(add.remote, ImmutableList.of("origin", "url"));
+        assertTrue(((Add) cli.parse("-v", "add")).verbose);
+    }
+
+    @Test
+    public void lazy_metadata_falls_back_to_full_metadata() {
+        Cli<Runnable> cli = Cli.<Runnable> builder("git").withLazyMetadata().withDefaultCommand(Help.class)
+                .withCommand(Help.class).withCommand(Add.class).build();
+
+        // Default command is not named in the arguments
+        assertTrue(cli.parse() instanceof Help);
+
+        // Help has the metadata injected so must see all the commands
+        Help help = (Help) cli.parse("help", "add");
+        assertNotNull(help.global);
+        assertEquals(help.global.getDefaultGroupCommands().size(), 2);
+
+        // Errors are those of the full metadata
+        cli = Cli.<Runnable> builder("git").withLazyMetadata().withCommand(Add.class).build();
+        ParseResult<Runnable> result = cli.tryParse("bogus");
+        assertFalse(result.wasSuccessful());
+        assertEquals(result.getErrors().get(0).getMessage(), "Command 'bogus' not recognized");
+    }
+
+    @Test
+    public void lazy_metadata_compile() {
+        Cli<Runnable> cli = Cli.<Runnable> builder("git").withLazyMetadata().withCommand(Add.class).build();
+        CompiledParser<Runnable> parser = cli.compile();
+        assertSame(cli.compile(), parser);
+        assertSame(cli.getMetadata(), parser.getMetadata());
+        assertTrue(cli.parse("add") instanceof Add);
+    }
+
+    @Test
+    public void lazy_metadata_ignored_with_abbreviation() {
+        Cli<Object> cli = Cli.builder("test").withLazyMetadata().withCommandAbbreviation().withCommand(Args1.class)
+                .build();
+        assertSame(cli.compile(), cli.compile());
+        assertTrue(cli.parse("Arg") instanceof Args1);
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.args.ArgsArityLimited;
+import com.github.rvesse.airline.args.ArgsParallelConversion;
+import com.github.rvesse.airline.args.ArgsParallelConversion.Item;
+import com.github.rvesse.airline.parser.ParseError;
+import com.github.rvesse.airline.parser.ParseError.Kind;
+import com.github.rvesse.airline.parser.ParseOptionConversionException;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestParallelConversion {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterClass
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @BeforeMethod
+    public void reset() {
+        Item.THREADS.clear();
+    }
+
+    private static List<String> items(int count) {
+        List<String> args = new ArrayList<String>(count + 1);
+        args.add("-v");
+        for (int i = 0; i < count; i++) {
+            args.add(Integer.toString(i));
+        }
+        return args;
+    }
+
+    private static void assertItems(ArgsParallelConversion cmd, int count) {
+        assertTrue(cmd.verbose);
+        assertEquals(cmd.items.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(cmd.items.get(i).value, i);
+        }
+    }
+
+    @Test
+    public void parallel_conversion_keeps_order() {
+        SingleCommand<ArgsParallelConversion> parser = singleCommand(ArgsParallelConversion.class)
+                .withParallelConversion(pool);
+        assertItems(parser.parse(items(20000)), 20000);
+        for (Thread thread : Item.THREADS) {
+            assertTrue(thread instanceof ForkJoinWorkerThread, thread.getName());
+        }
+    }
+
+    @Test
+    public void parallel_conversion_cli() {
+        Cli<ArgsParallelConversion> cli = Cli.<ArgsParallelConversion> builder("test")
+                .withCommand(ArgsParallelConversion.class).withParallelConversion().build();
+        List<String> args = items(5000);
+        args.add(0, "ArgsParallelConversion");
+        assertItems(cli.parse(args), 5000);
+    }
+
+    @Test
+    public void small_argument_lists_converted_serially() {
+        assertItems(singleCommand(ArgsParallelConversion.class).withParallelConversion(pool).parse(items(10)), 10);
+        assertEquals(Item.THREADS.size(), 1);
+        assertFalse(Item.THREADS.iterator().next() instanceof ForkJoinWorkerThread);
+    }
+
+    @Test
+    public void parallel_conversion_errors_in_token_order() {
+        List<String> args = items(10000);
+        args.set(9001, "x");
+        args.set(17, "y");
+        args.set(5000, "z");
+
+        ParseResult<ArgsParallelConversion> result = singleCommand(ArgsParallelConversion.class)
+                .withParallelConversion(pool).tryParse(args);
+        assertFalse(result.wasSuccessful());
+        List<ParseError> errors = result.getErrors();
+        assertEquals(errors.size(), 3);
+        assertEquals(errors.get(0).getTokenIndex(), 17);
+        assertEquals(errors.get(1).getTokenIndex(), 5000);
+        assertEquals(errors.get(2).getTokenIndex(), 9001);
+        for (ParseError error : errors) {
+            assertEquals(error.getKind(), Kind.CONVERSION);
+        }
+
+        try {
+            singleCommand(ArgsParallelConversion.class).withParallelConversion(pool).parse(args);
+            fail("Expected a conversion error");
+        } catch (ParseOptionConversionException e) {
+            assertEquals(e.getValue(), "y");
+        }
+    }
+
+    @Test
+    public void deferred_conversion_errors_in_token_order() {
+        // Deferred argument and option value errors are placed amongst the
+        // errors found while parsing in token order
+        ParseResult<ArgsParallelConversion> result = singleCommand(ArgsParallelConversion.class)
+                .withParallelConversion(pool).tryParse("-m", "z", "1", "x", "-n", "y", "2");
+        assertFalse(result.wasSuccessful());
+        List<ParseError> errors = result.getErrors();
+        assertEquals(errors.size(), 3);
+        assertEquals(errors.get(0).getTokenIndex(), 1);
+        assertEquals(errors.get(0).getInput(), ImmutableList.of("z"));
+        assertEquals(errors.get(1).getTokenIndex(), 3);
+        assertEquals(errors.get(1).getInput(), ImmutableList.of("x"));
+        assertEquals(errors.get(2).getTokenIndex(), 5);
+        assertEquals(errors.get(2).getInput(), ImmutableList.of("y"));
+        for (ParseError error : errors) {
+            assertEquals(error.getKind(), Kind.CONVERSION);
+        }
+    }
+
+    @Test
+    public void parallel_conversion_enforces_arity() {
+        ParseResult<ArgsArityLimited> result = singleCommand(ArgsArityLimited.class).withParallelConversion(pool)
+                .tryParse("a", "b", "c", "d");
+        assertFalse(result.wasSuccessful());
+        assertEquals(result.getErrors().get(0).getKind(), Kind.TOO_MANY_ARGUMENTS);
+        assertEquals(result.getErrors().get(0).getTokenIndex(), 3);
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.Git.Add;
+import com.github.rvesse.airline.Git.RemoteAdd;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.help.Help;
+import com.github.rvesse.airline.parser.ParseError.Kind;
+import com.github.rvesse.airline.parser.ParseException;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestParseAll {
+
+    private static Cli<Runnable> git(boolean lazy) {
+        CliBuilder<Runnable> builder = Cli.<Runnable> builder("git").withCommand(Help.class).withCommand(Add.class);
+        builder.withGroup("remote").withCommand(Git.RemoteShow.class).withCommand(RemoteAdd.class);
+        if (lazy)
+            builder.withLazyMetadata();
+        return builder.build();
+    }
+
+    private static List<List<String>> inputs(int count) {
+        List<List<String>> inputs = new ArrayList<List<String>>();
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+            case 0:
+                inputs.add(ImmutableList.of("add", "file" + i));
+                break;
+            case 1:
+                inputs.add(ImmutableList.of("remote", "add", "-t", "b" + i, "origin", "url"));
+                break;
+            default:
+                inputs.add(ImmutableList.of("bogus" + i));
+            }
+        }
+        return inputs;
+    }
+
+    private static void check(List<ParseResult<Runnable>> results, int count) {
+        assertEquals(results.size(), count);
+        for (int i = 0; i < count; i++) {
+            ParseResult<Runnable> result = results.get(i);
+            switch (i % 3) {
+            case 0:
+                assertTrue(result.wasSuccessful());
+                assertEquals(((Add) result.getCommand()).patterns, ImmutableList.of("file" + i));
+                break;
+            case 1:
+                assertTrue(result.wasSuccessful());
+                assertEquals(((RemoteAdd) result.getCommand()).branch, "b" + i);
+                break;
+            default:
+                assertFalse(result.wasSuccessful());
+                assertEquals(result.getErrors().get(0).getKind(), Kind.COMMAND_UNRECOGNIZED);
+            }
+        }
+    }
+
+    @Test
+    public void parse_all_preserves_order() {
+        check(git(false).parseAll(inputs(5000)), 5000);
+    }
+
+    @Test
+    public void parse_all_lazy_metadata() {
+        check(git(true).parseAll(inputs(300)), 300);
+    }
+
+    @Test
+    public void parse_all_custom_pool() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            check(git(false).parseAll(pool, inputs(100)), 100);
+            check(git(false).parseAll(pool, inputs(1)), 1);
+            assertTrue(git(false).parseAll(pool, inputs(0)).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parse_all_isolates_exceptions() {
+        final CommandFactory<Runnable> defaultFactory = new CommandFactoryDefault<Runnable>();
+        Cli<Runnable> cli = Cli.<Runnable> builder("git").withCommand(Add.class).withCommand(Help.class)
+                .withCommandFactory(new CommandFactory<Runnable>() {
+                    @Override
+                    public Runnable createInstance(Class<?> type) {
+                        if (type == Help.class)
+                            throw new IllegalStateException("no help");
+                        return defaultFactory.createInstance(type);
+                    }
+                }).build();
+
+        List<ParseResult<Runnable>> results = cli.parseAll(ImmutableList.of(ImmutableList.of("add", "a"),
+                ImmutableList.of("help"), ImmutableList.of("add", "b")));
+        assertEquals(results.size(), 3);
+        assertEquals(((Add) results.get(0).getCommand()).patterns, ImmutableList.of("a"));
+        assertEquals(((Add) results.get(2).getCommand()).patterns, ImmutableList.of("b"));
+
+        ParseResult<Runnable> failed = results.get(1);
+        assertFalse(failed.wasSuccessful());
+        assertEquals(failed.getErrors().size(), 1);
+        assertEquals(failed.getErrors().get(0).getKind(), Kind.EXCEPTION);
+        assertEquals(failed.getErrors().get(0).getMessage(), "no help");
+        assertTrue(failed.getErrors().get(0).getCause() instanceof IllegalStateException);
+        try {
+            failed.getCommandOrThrow();
+            fail("Expected an exception");
+        } catch (ParseException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.Git.Add;
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.args.ArgsAllowedValues;
+import com.github.rvesse.airline.args.ArgsArityLimited;
+import com.github.rvesse.airline.args.OptionsRequired;
+import com.github.rvesse.airline.parser.ParseError;
+import com.github.rvesse.airline.parser.ParseError.Kind;
+import com.github.rvesse.airline.parser.ParseException;
+import com.github.rvesse.airline.parser.ParseOptionIllegalValueException;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestParseResult {
+
+    @Test
+    public void try_parse_success() {
+        ParseResult<Args1> result = singleCommand(Args1.class).tryParse("-log", "2", "a");
+        assertTrue(result.wasSuccessful());
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(result.getCommand().verbose.intValue(), 2);
+        assertEquals(result.getCommand().parameters, ImmutableList.of("a"));
+    }
+
+    @Test
+    public void try_parse_collects_all_conversion_errors() {
+        ParseResult<Args1> result = singleCommand(Args1.class).tryParse("-log", "x", "-long", "y", "a");
+        assertFalse(result.wasSuccessful());
+        assertNull(result.getCommand());
+
+        List<ParseError> errors = result.getErrors();
+        assertEquals(errors.size(), 2);
+        assertError(errors.get(0), Kind.CONVERSION, 1);
+        assertEquals(errors.get(0).getOption().getTitle(), "verbose");
+        assertEquals(errors.get(0).getInput(), ImmutableList.of("x"));
+        assertError(errors.get(1), Kind.CONVERSION, 3);
+        assertEquals(errors.get(1).getOption().getTitle(), "l");
+
+        // Parsing continued past the errors
+        assertEquals(result.getState().getParsedArguments(), ImmutableList.<Object> of("a"));
+    }
+
+    @Test
+    public void try_parse_validation_errors() {
+        ParseResult<OptionsRequired> result = singleCommand(OptionsRequired.class).tryParse("--optional", "a",
+                "extra");
+        List<ParseError> errors = result.getErrors();
+        assertEquals(errors.size(), 2);
+        assertError(errors.get(0), Kind.ARGUMENTS_UNEXPECTED, 2);
+        assertEquals(errors.get(0).getInput(), ImmutableList.of("extra"));
+        assertError(errors.get(1), Kind.OPTION_MISSING, -1);
+        assertEquals(errors.get(1).getMessage(), "Required option '--required' is missing");
+    }
+
+    @Test
+    public void try_parse_missing_value_not_reported_as_missing() {
+        ParseResult<OptionsRequired> result = singleCommand(OptionsRequired.class).tryParse("--optional", "a",
+                "--required");
+        assertEquals(result.getErrors().size(), 1);
+        assertError(result.getErrors().get(0), Kind.OPTION_MISSING_VALUE, 2);
+    }
+
+    @Test
+    public void try_parse_too_many_arguments() {
+        ParseResult<ArgsArityLimited> result = singleCommand(ArgsArityLimited.class).tryParse("a", "b", "c", "d",
+                "e");
+        List<ParseError> errors = result.getErrors();
+        assertEquals(errors.size(), 2);
+        assertError(errors.get(0), Kind.TOO_MANY_ARGUMENTS, 3);
+        assertError(errors.get(1), Kind.TOO_MANY_ARGUMENTS, 4);
+    }
+
+    @Test
+    public void try_parse_commands() {
+        Cli<Runnable> cli = Cli.<Runnable> builder("git").withCommand(Add.class).build();
+
+        ParseResult<Runnable> result = cli.tryParse();
+        assertEquals(result.getErrors().size(), 1);
+        assertError(result.getErrors().get(0), Kind.COMMAND_MISSING, -1);
+
+        result = cli.tryParse("-v", "bogus", "x");
+        assertEquals(result.getErrors().size(), 1);
+        assertError(result.getErrors().get(0), Kind.COMMAND_UNRECOGNIZED, 1);
+        assertEquals(result.getErrors().get(0).getMessage(), "Command 'bogus' not recognized");
+
+        result = cli.tryParse("-v", "add", "a");
+        assertTrue(result.wasSuccessful());
+        assertTrue(((Add) result.getCommand()).verbose);
+    }
+
+    @Test
+    public void parse_throws_first_error() {
+        SingleCommand<ArgsAllowedValues> command = singleCommand(ArgsAllowedValues.class);
+        ParseResult<ArgsAllowedValues> result = command.tryParse("-mode", "z");
+        assertEquals(result.getErrors().size(), 1);
+        ParseError error = result.getErrors().get(0);
+        assertError(error, Kind.OPTION_ILLEGAL_VALUE, 1);
+
+        try {
+            command.parse("-mode", "z");
+            fail("Expected a ParseOptionIllegalValueException");
+        } catch (ParseOptionIllegalValueException e) {
+            assertEquals(e.getMessage(), error.getMessage());
+        }
+
+        try {
+            result.getCommandOrThrow();
+            fail("Expected a ParseOptionIllegalValueException");
+        } catch (ParseException e) {
+            assertTrue(e instanceof ParseOptionIllegalValueException);
+        }
+    }
+
+    private static void assertError(ParseError error, Kind kind, int tokenIndex) {
+        assertEquals(error.getKind(), kind);
+        assertEquals(error.getTokenIndex(), tokenIndex);
+        assertEquals(error.toException().getMessage(), error.getMessage());
+    }
+}
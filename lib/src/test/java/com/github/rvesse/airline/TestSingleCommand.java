@@ -366,11 +366,11 @@ public class TestSingleCommand
         assertFalse(arguments.inspect);
     }
 
-    @Test(expectedExceptions = ParseException.class,
-            description = "Verify that the main parameter's type is checked to be a List")
-    public void wrongMainTypeShouldThrow()
+    @Test(description = "Verify that the main parameter may be an array")
+    public void arrayMainType()
     {
-        singleCommand(ArgsRequiredWrongMain.class).parse("f2");
+        ArgsRequiredArrayMain args = singleCommand(ArgsRequiredArrayMain.class).parse("f1", "f2");
+        assertEquals(args.file, new String[] { "f1", "f2" });
     }
 
     @Test(description = "This used to run out of memory")
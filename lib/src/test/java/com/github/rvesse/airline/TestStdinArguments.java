@@ -0,0 +1,102 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.args.ArgsStdinLines;
+import com.github.rvesse.airline.args.ArgsStdinNul;
+import com.github.rvesse.airline.parser.ParseError.Kind;
+import com.github.rvesse.airline.parser.ParseException;
+import com.github.rvesse.airline.parser.ParseResult;
+import com.github.rvesse.airline.parser.StandardInputArguments;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestStdinArguments {
+
+    private static void stdin(String input) throws UnsupportedEncodingException {
+        StandardInputArguments.setInput(new ByteArrayInputStream(input.getBytes("UTF-8")));
+    }
+
+    @AfterMethod
+    public void resetStdin() {
+        StandardInputArguments.setInput(null);
+    }
+
+    @Test
+    public void stdin_lines() throws UnsupportedEncodingException {
+        stdin("2\r\n\n3\n4");
+        ArgsStdinLines cmd = singleCommand(ArgsStdinLines.class).parse("-v", "1", "-", "5");
+        assertTrue(cmd.verbose);
+        assertEquals(cmd.numbers, ImmutableList.of(1, 2, 3, 4, 5));
+    }
+
+    @Test
+    public void stdin_lines_satisfy_required() throws UnsupportedEncodingException {
+        stdin("7\n");
+        ArgsStdinLines cmd = singleCommand(ArgsStdinLines.class).parse("-");
+        assertEquals(cmd.numbers, ImmutableList.of(7));
+    }
+
+    @Test
+    public void stdin_lines_errors() throws UnsupportedEncodingException {
+        stdin("1\nx\n3\n4\n5\n6\n7\n");
+        ParseResult<ArgsStdinLines> result = singleCommand(ArgsStdinLines.class).tryParse("-v", "-");
+        assertFalse(result.wasSuccessful());
+        assertEquals(result.getErrors().size(), 2);
+        assertEquals(result.getErrors().get(0).getKind(), Kind.CONVERSION);
+        assertEquals(result.getErrors().get(0).getTokenIndex(), 1);
+        assertEquals(result.getErrors().get(1).getKind(), Kind.TOO_MANY_ARGUMENTS);
+    }
+
+    @Test
+    public void stdin_nul_streamed() throws UnsupportedEncodingException {
+        stdin("a b\0c\nd\0\0e\0");
+        ArgsStdinNul cmd = singleCommand(ArgsStdinNul.class).parse("first", "-", "last");
+        assertEquals(ImmutableList.copyOf(cmd.files), Arrays.asList("first", "a b", "c\nd", "", "e", "last"));
+    }
+
+    @Test
+    public void stdin_read_lazily() throws UnsupportedEncodingException {
+        // A large input is only read as far as it is consumed
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            input.append("file").append(i).append('\0');
+        }
+        final ByteArrayInputStream in = new ByteArrayInputStream(input.toString().getBytes("UTF-8"));
+        StandardInputArguments.setInput(in);
+        ArgsStdinNul cmd = singleCommand(ArgsStdinNul.class).parse("-");
+        Iterator<String> files = cmd.files.iterator();
+        assertEquals(files.next(), "file0");
+        assertTrue(in.available() > 0);
+        int count = 1;
+        while (files.hasNext()) {
+            files.next();
+            count++;
+        }
+        assertEquals(count, 200000);
+    }
+
+    @Test
+    public void stdin_not_enabled() throws UnsupportedEncodingException {
+        stdin("ignored\n");
+        Args1 cmd = singleCommand(Args1.class).parse("-");
+        assertEquals(cmd.parameters, ImmutableList.of("-"));
+    }
+
+    @Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = "Standard input is not valid UTF-8")
+    public void stdin_invalid() {
+        StandardInputArguments.setInput(new ByteArrayInputStream(new byte[] { 'a', (byte) 0xFF, '\n' }));
+        singleCommand(ArgsStdinLines.class).parse("-");
+    }
+}
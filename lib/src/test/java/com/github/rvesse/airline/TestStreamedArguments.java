@@ -0,0 +1,107 @@
+package com.github.rvesse.airline;
+
+import com.github.rvesse.airline.args.ArgsStreaming;
+import com.github.rvesse.airline.args.ArgsStreamingIterator;
+import com.github.rvesse.airline.parser.ParseArgumentsMissingException;
+import com.github.rvesse.airline.parser.ParseException;
+import com.github.rvesse.airline.parser.ParseTooManyArgumentsException;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestStreamedArguments {
+
+    @Test
+    public void streamed_arguments() {
+        ArgsStreaming cmd = singleCommand(ArgsStreaming.class).parse("-v", "1", "2", "3");
+        assertTrue(cmd.verbose);
+        assertEquals(ImmutableList.copyOf(cmd.numbers), ImmutableList.of(1, 2, 3));
+    }
+
+    @Test
+    public void streamed_arguments_consume_options() {
+        // Once arguments start everything else is an argument
+        ArgsStreaming cmd = singleCommand(ArgsStreaming.class).parse("1", "-v");
+        assertFalse(cmd.verbose);
+        Iterator<Integer> numbers = cmd.numbers.iterator();
+        assertEquals(numbers.next(), Integer.valueOf(1));
+        try {
+            numbers.next();
+            throw new AssertionError("Expected a conversion error");
+        } catch (ParseException e) {
+            // Expected, conversion happens on demand
+        }
+    }
+
+    @Test
+    public void streamed_arguments_after_separator() {
+        ArgsStreaming cmd = singleCommand(ArgsStreaming.class).parse("-v", "--", "4");
+        assertTrue(cmd.verbose);
+        assertEquals(ImmutableList.copyOf(cmd.numbers), ImmutableList.of(4));
+    }
+
+    @Test(expectedExceptions = ParseArgumentsMissingException.class)
+    public void streamed_arguments_required() {
+        singleCommand(ArgsStreaming.class).parse("-v");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void streamed_arguments_iterated_once() {
+        ArgsStreaming cmd = singleCommand(ArgsStreaming.class).parse("1");
+        cmd.numbers.iterator();
+        cmd.numbers.iterator();
+    }
+
+    @Test
+    public void streamed_arguments_iterator() {
+        ArgsStreamingIterator cmd = singleCommand(ArgsStreamingIterator.class).parse("a", "b");
+        assertEquals(ImmutableList.copyOf(cmd.args), ImmutableList.of("a", "b"));
+
+        cmd = singleCommand(ArgsStreamingIterator.class).parse();
+        assertNull(cmd.args);
+    }
+
+    @Test(expectedExceptions = ParseTooManyArgumentsException.class)
+    public void streamed_arguments_arity() {
+        ArgsStreamingIterator cmd = singleCommand(ArgsStreamingIterator.class).parse("a", "b", "c");
+        ImmutableList.copyOf(cmd.args);
+    }
+
+    @Test
+    public void streamed_arguments_lazy() {
+        // The arguments are only pulled from the input as they are consumed
+        final int[] produced = new int[1];
+        Iterable<String> input = new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new AbstractIterator<String>() {
+                    @Override
+                    protected String computeNext() {
+                        if (produced[0] == 100000)
+                            return endOfData();
+                        return Integer.toString(produced[0]++);
+                    }
+                };
+            }
+        };
+
+        ArgsStreaming cmd = singleCommand(ArgsStreaming.class).parse(input);
+        assertTrue(produced[0] < 3);
+
+        long sum = 0;
+        for (int number : cmd.numbers) {
+            sum += number;
+        }
+        assertEquals(produced[0], 100000);
+        assertEquals(sum, 99999L * 100000L / 2);
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.rvesse.airline;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.rvesse.airline.args.ArgsCustomType;
+import com.github.rvesse.airline.args.ArgsCustomType.Point;
+import com.github.rvesse.airline.args.ArgsEnum.ChoiceType;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.parser.ParseOptionConversionException;
+import com.google.common.base.Function;
+
+public class TestTypeConverter {
+
+    private static final Function<String, Point> POINT_CONVERTER = new Function<String, Point>() {
+        @Override
+        public Point apply(String input) {
+            String[] parts = input.split(",");
+            return new Point(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        }
+    };
+
+    @Test
+    public void converters_are_cached() {
+        TypeConverter converter = TypeConverter.newInstance();
+        Assert.assertSame(converter.getConverter(ChoiceType.class), converter.getConverter(ChoiceType.class));
+        Assert.assertSame(converter.getConverter(ChoiceType.class),
+                TypeConverter.newInstance().getConverter(ChoiceType.class));
+    }
+
+    @Test
+    public void convert_builtins() {
+        TypeConverter converter = TypeConverter.newInstance();
+        Assert.assertEquals(converter.convert("test", int.class, "3"), 3);
+        Assert.assertEquals(converter.convert("test", Long.class, "3"), 3l);
+        Assert.assertEquals(converter.convert("test", boolean.class, "true"), true);
+        Assert.assertEquals(converter.convert("test", ChoiceType.class, "TWO"), ChoiceType.TWO);
+        Assert.assertEquals(converter.convert("test", StringBuilder.class, "foo").toString(), "foo");
+    }
+
+    @Test(expectedExceptions = ParseOptionConversionException.class)
+    public void convert_bad_value() {
+        TypeConverter.newInstance().convert("test", int.class, "foo");
+    }
+
+    @Test(expectedExceptions = ParseOptionConversionException.class)
+    public void convert_unsupported_type() {
+        TypeConverter.newInstance().convert("test", Point.class, "1,2");
+    }
+
+    @Test
+    public void custom_converter_cli() {
+        //@formatter:off
+        Cli<ArgsCustomType> cli = Cli.<ArgsCustomType>builder("test")
+                                     .withCommand(ArgsCustomType.class)
+                                     .withTypeConverter(Point.class, POINT_CONVERTER)
+                                     .build();
+        //@formatter:on
+
+        ArgsCustomType cmd = cli.parse("ArgsCustomType", "-origin", "1,2", "3,4", "5,6");
+        Assert.assertEquals(cmd.origin.x, 1);
+        Assert.assertEquals(cmd.origin.y, 2);
+        Assert.assertEquals(cmd.points.size(), 2);
+        Assert.assertEquals(cmd.points.get(1).x, 5);
+    }
+
+    @Test(expectedExceptions = ParseOptionConversionException.class)
+    public void custom_converter_cli_bad_value() {
+        //@formatter:off
+        Cli<ArgsCustomType> cli = Cli.<ArgsCustomType>builder("test")
+                                     .withCommand(ArgsCustomType.class)
+                                     .withTypeConverter(Point.class, POINT_CONVERTER)
+                                     .build();
+        //@formatter:on
+
+        cli.parse("ArgsCustomType", "-origin", "1");
+    }
+
+    @Test
+    public void custom_converter_cli_builder_isolation() {
+        TypeConverter converter = TypeConverter.newInstance();
+        CliBuilder<ArgsCustomType> builder = Cli.<ArgsCustomType> builder("test").withCommand(ArgsCustomType.class)
+                .withTypeConverter(Point.class, POINT_CONVERTER).withTypeConverter(converter);
+        Cli<ArgsCustomType> cli = builder.build();
+
+        // Registrations survive replacing the converter without modifying it
+        Assert.assertEquals(cli.parse("ArgsCustomType", "-origin", "1,2").origin.x, 1);
+        Assert.assertNotSame(converter.getConverter(Point.class), POINT_CONVERTER);
+
+        // Registering after building only affects later builds
+        builder.withTypeConverter(Point.class, new Function<String, Point>() {
+            @Override
+            public Point apply(String input) {
+                return new Point(0, 0);
+            }
+        });
+        Assert.assertEquals(builder.build().parse("ArgsCustomType", "-origin", "1,2").origin.x, 0);
+        Assert.assertEquals(cli.parse("ArgsCustomType", "-origin", "1,2").origin.x, 1);
+    }
+
+    @Test
+    public void custom_converter_single_command() {
+        TypeConverter converter = TypeConverter.newInstance().register(Point.class, POINT_CONVERTER);
+        SingleCommand<ArgsCustomType> parser = SingleCommand.singleCommand(ArgsCustomType.class, converter);
+
+        ArgsCustomType cmd = parser.parse("-origin", "1,2");
+        Assert.assertEquals(cmd.origin.x, 1);
+        Assert.assertEquals(cmd.origin.y, 2);
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.rvesse.airline.args;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test options and arguments injected into arrays
+ */
+@Command(name = "ArgsArrays")
+public class ArgsArrays
+{
+    @Option(name = "-i")
+    public int[] ids;
+
+    @Option(name = "--range", arity = 2)
+    public long[] range;
+
+    @Option(name = "--weights", arity = 3)
+    public double[] weights;
+
+    @Option(name = "--flags", arity = 2)
+    public boolean[] flags;
+
+    @Option(name = "--names")
+    public String[] names;
+
+    @Option(name = "--units", arity = 2)
+    public TimeUnit[] units;
+
+    @Option(name = "--ports")
+    public int[] ports = { 80 };
+
+    @Arguments
+    public int[] numbers;
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.airline.args;
+
+import java.util.List;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+@Command(name = "ArgsCustomType")
+public class ArgsCustomType
+{
+    /**
+     * A type with no built-in conversion from a string
+     */
+    public static class Point
+    {
+        public final int x, y;
+
+        public Point(int x, int y)
+        {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Option(name = "-origin", description = "Origin")
+    public Point origin;
+
+    @Arguments
+    public List<Point> points;
+}
@@ -0,0 +1,16 @@
+package com.github.rvesse.airline.args;
+
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+import java.util.List;
+
+@Command(name = "ArgsMergedSingleAndMultiValued")
+public class ArgsMergedSingleAndMultiValued
+{
+    @Option(name = "-level", title = "level", description = "Level")
+    public Integer level;
+
+    @Option(name = "-level", title = "level", description = "Level")
+    public List<Integer> levels;
+}
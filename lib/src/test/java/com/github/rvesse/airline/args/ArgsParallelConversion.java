@@ -0,0 +1,50 @@
+package com.github.rvesse.airline.args;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Test arguments converted in parallel
+ */
+@Command(name = "ArgsParallelConversion")
+public class ArgsParallelConversion
+{
+    @Option(name = "-v")
+    public boolean verbose;
+
+    @Option(name = "-m")
+    public Integer max;
+
+    @Option(name = "-n")
+    public List<Integer> counts;
+
+    @Arguments
+    public List<Item> items;
+
+    public static final class Item
+    {
+        /**
+         * Threads on which items were converted
+         */
+        public static final Set<Thread> THREADS = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+        public final int value;
+
+        private Item(int value)
+        {
+            this.value = value;
+        }
+
+        public static Item fromString(String value)
+        {
+            THREADS.add(Thread.currentThread());
+            return new Item(Integer.parseInt(value));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.rvesse.airline.args;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+import com.github.rvesse.airline.StdinArguments;
+
+import java.util.List;
+
+/**
+ * Test arguments read from standard input
+ */
+@Command(name = "ArgsStdinLines")
+public class ArgsStdinLines
+{
+    @Option(name = "-v")
+    public boolean verbose;
+
+    @Arguments(required = true, arity = 5, stdin = StdinArguments.LINES)
+    public List<Integer> numbers;
+}
@@ -0,0 +1,15 @@
+package com.github.rvesse.airline.args;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.StdinArguments;
+
+/**
+ * Test streamed arguments read from standard input
+ */
+@Command(name = "ArgsStdinNul")
+public class ArgsStdinNul
+{
+    @Arguments(stdin = StdinArguments.NUL)
+    public Iterable<String> files;
+}
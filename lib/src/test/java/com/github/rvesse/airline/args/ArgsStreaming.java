@@ -0,0 +1,18 @@
+package com.github.rvesse.airline.args;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+/**
+ * Test streamed arguments
+ */
+@Command(name = "ArgsStreaming")
+public class ArgsStreaming
+{
+    @Option(name = "-v")
+    public boolean verbose;
+
+    @Arguments(required = true)
+    public Iterable<Integer> numbers;
+}
@@ -0,0 +1,16 @@
+package com.github.rvesse.airline.args;
+
+import java.util.Iterator;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+
+/**
+ * Test streamed arguments with restricted arity
+ */
+@Command(name = "ArgsStreamingIterator")
+public class ArgsStreamingIterator
+{
+    @Arguments(arity = 2)
+    public Iterator<String> args;
+}
@@ -0,0 +1,153 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.CommandFactory;
+import com.github.rvesse.airline.CommandFactoryDefault;
+import com.github.rvesse.airline.Option;
+import com.google.common.base.Joiner;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestBatchRunner {
+
+    private static final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Command(name = "echo")
+    public static class Echo implements Runnable {
+        @Arguments
+        public List<String> args;
+
+        @Override
+        public void run() {
+            Invocation.current().getOut().print(Joiner.on('|').join(args));
+        }
+    }
+
+    @Command(name = "sleep")
+    public static class Sleep implements Callable<Integer> {
+        @Option(name = "--exit")
+        public int exitCode;
+
+        @Arguments
+        public long millis;
+
+        @Override
+        public Integer call() throws InterruptedException {
+            threads.add(Thread.currentThread().getName());
+            Thread.sleep(millis);
+            Invocation.current().getOut().print(millis);
+            return exitCode;
+        }
+    }
+
+    @Command(name = "fail")
+    public static class Fail implements Runnable {
+        @Override
+        public void run() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private static BatchRunner<Object> runner() {
+        Cli<Object> cli = Cli.builder("batch").withCommand(Echo.class).withCommand(Sleep.class)
+                .withCommand(Fail.class).build();
+        return new BatchRunner<Object>(cli);
+    }
+
+    @Test
+    public void batch_results_and_exit_codes() throws IOException {
+        String script = "# comment\n\necho a 'b c'\nbogus\nfail\necho \"x\ny\"\nsleep --exit 4 1\n";
+        List<BatchResult> results = runner().run(new StringReader(script));
+        assertEquals(results.size(), 5);
+
+        assertEquals(results.get(0).getLineNumber(), 3);
+        assertEquals(results.get(0).getExitCode(), 0);
+        assertEquals(results.get(0).getOutput(), "a|b c");
+
+        assertEquals(results.get(1).getLineNumber(), 4);
+        assertEquals(results.get(1).getExitCode(), DaemonServer.EXIT_PARSE_ERROR);
+        assertTrue(results.get(1).getError().startsWith("Parser error: Command 'bogus' not recognized"));
+
+        assertEquals(results.get(2).getExitCode(), DaemonServer.EXIT_ERROR);
+        assertTrue(results.get(2).getError().contains("IllegalStateException: failed"));
+
+        assertEquals(results.get(3).getLineNumber(), 6);
+        assertEquals(results.get(3).getCommandLine(), "echo \"x\ny\"");
+        assertEquals(results.get(3).getOutput(), "x\ny");
+
+        assertEquals(results.get(4).getLineNumber(), 8);
+        assertEquals(results.get(4).getExitCode(), 4);
+    }
+
+    @Test
+    public void batch_ordered() throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            script.append("sleep ").append((40 - i) % 7).append('\n');
+        }
+        BatchRunner<Object> runner = runner();
+        runner.setWorkers(4);
+        final List<Integer> delivered = new ArrayList<Integer>();
+        List<BatchResult> results = runner.run(new StringReader(script.toString()), new BatchListener() {
+            @Override
+            public void completed(BatchResult result) {
+                delivered.add(result.getLineNumber());
+            }
+        });
+        assertEquals(results.size(), 40);
+        for (int i = 0; i < 40; i++) {
+            assertEquals(results.get(i).getLineNumber(), i + 1);
+            assertEquals(results.get(i).getOutput(), Integer.toString((40 - i) % 7));
+            assertEquals((int) delivered.get(i), i + 1);
+        }
+    }
+
+    @Test
+    public void batch_unordered() throws IOException {
+        threads.clear();
+        BatchRunner<Object> runner = runner();
+        runner.setWorkers(2);
+        runner.setOrdered(false);
+        List<BatchResult> results = runner.run(new StringReader("sleep 300\nsleep 0\n"));
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(0).getLineNumber(), 2);
+        assertEquals(results.get(1).getLineNumber(), 1);
+        assertEquals(threads.size(), 2);
+        assertTrue(threads.iterator().next().startsWith("airline-batch-worker-"));
+    }
+
+    @Test(timeOut = 10000)
+    public void batch_command_factory_failure() throws IOException {
+        final CommandFactory<Object> defaultFactory = new CommandFactoryDefault<Object>();
+        Cli<Object> cli = Cli.builder("batch").withCommand(Echo.class).withCommand(Fail.class)
+                .withCommandFactory(new CommandFactory<Object>() {
+                    @Override
+                    public Object createInstance(Class<?> type) {
+                        if (type == Fail.class)
+                            throw new IllegalArgumentException("cannot create");
+                        return defaultFactory.createInstance(type);
+                    }
+                }).build();
+        List<BatchResult> results = new BatchRunner<Object>(cli).run(new StringReader("echo a\nfail\necho b\n"));
+        assertEquals(results.size(), 3);
+        assertEquals(results.get(0).getOutput(), "a");
+        assertEquals(results.get(1).getLineNumber(), 2);
+        assertEquals(results.get(1).getExitCode(), DaemonServer.EXIT_ERROR);
+        assertTrue(results.get(1).getError().startsWith("Command threw error: cannot create"));
+        assertEquals(results.get(2).getOutput(), "b");
+    }
+}
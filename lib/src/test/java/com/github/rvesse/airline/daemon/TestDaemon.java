@@ -0,0 +1,249 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.CommandFactory;
+import com.github.rvesse.airline.CommandFactoryDefault;
+import com.github.rvesse.airline.Option;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestDaemon {
+
+    private static final File info = new File("target/daemon.info");
+
+    private DaemonServer<DaemonCommand> server;
+
+    public interface DaemonCommand {
+        int run(Invocation invocation) throws Exception;
+    }
+
+    @Command(name = "echo")
+    public static class Echo implements DaemonCommand {
+        @Option(name = "-n")
+        public boolean noNewline;
+
+        @Arguments
+        public List<String> args;
+
+        @Override
+        public int run(Invocation invocation) {
+            invocation.getOut().print(args != null ? Joiner.on(' ').join(args) : "");
+            if (!noNewline)
+                invocation.getOut().println();
+            return 0;
+        }
+    }
+
+    @Command(name = "cat")
+    public static class Cat implements DaemonCommand {
+        @Override
+        public int run(Invocation invocation) throws IOException {
+            ByteStreams.copy(invocation.getIn(), invocation.getOut());
+            return 3;
+        }
+    }
+
+    @Command(name = "env")
+    public static class Env implements DaemonCommand {
+        @Arguments
+        public String name;
+
+        @Override
+        public int run(Invocation invocation) {
+            Invocation current = Invocation.current();
+            current.getErr().print(current.getEnvironment().get(name) + " " + current.resolve("x").getPath());
+            return 0;
+        }
+    }
+
+    @Command(name = "fail")
+    public static class Fail implements DaemonCommand {
+        @Override
+        public int run(Invocation invocation) {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    @Command(name = "broken")
+    public static class Broken extends Fail {
+    }
+
+    @BeforeClass
+    public void setup() throws IOException {
+        final CommandFactory<DaemonCommand> defaultFactory = new CommandFactoryDefault<DaemonCommand>();
+        Cli<DaemonCommand> cli = Cli.<DaemonCommand> builder("daemon").withCommand(Echo.class)
+                .withCommand(Cat.class).withCommand(Env.class).withCommand(Fail.class).withCommand(Broken.class)
+                .withCommandFactory(new CommandFactory<DaemonCommand>() {
+                    @Override
+                    public DaemonCommand createInstance(Class<?> type) {
+                        if (type == Broken.class)
+                            throw new IllegalArgumentException("cannot create");
+                        return defaultFactory.createInstance(type);
+                    }
+                }).withArgumentFiles().build();
+        server = new DaemonServer<DaemonCommand>(cli, new CommandExecutor<DaemonCommand>() {
+            @Override
+            public int execute(DaemonCommand command, Invocation invocation) throws Exception {
+                return command.run(invocation);
+            }
+        });
+        server.start(info);
+    }
+
+    @AfterClass
+    public void teardown() throws IOException {
+        server.close();
+        assertFalse(info.exists());
+    }
+
+    private static int run(ByteArrayOutputStream out, ByteArrayOutputStream err, byte[] in, String... args)
+            throws IOException {
+        return DaemonClient.run(info, ImmutableList.copyOf(args), ImmutableMap.of("NAME", "value"), new File(
+                "/work"), new ByteArrayInputStream(in), out, err);
+    }
+
+    @Test
+    public void daemon_echo() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(run(out, err, new byte[0], "echo", "-n", "a", "b"), 0);
+        assertEquals(out.toString("UTF-8"), "a b");
+        assertEquals(err.size(), 0);
+    }
+
+    @Test
+    public void daemon_stdin_and_exit_code() throws IOException {
+        byte[] input = new byte[100000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) ('a' + i % 26);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(run(out, err, input, "cat"), 3);
+        assertEquals(out.toByteArray(), input);
+    }
+
+    @Test
+    public void daemon_environment() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(run(out, err, new byte[0], "env", "NAME"), 0);
+        assertEquals(err.toString("UTF-8"), "value " + new File("/work", "x").getPath());
+    }
+
+    @Test
+    public void daemon_argument_files() throws IOException {
+        File dir = new File("target/daemon-client").getAbsoluteFile();
+        dir.mkdirs();
+        try (OutputStream output = new FileOutputStream(new File(dir, "args.txt"))) {
+            output.write("a \"b c\"".getBytes(Charsets.UTF_8));
+        }
+
+        // Relative argument files are resolved against the directory of the
+        // client rather than that of the daemon
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(DaemonClient.run(info, ImmutableList.of("echo", "-n", "@args.txt"), ImmutableMap
+                .<String, String> of(), dir, new ByteArrayInputStream(new byte[0]), out, err), 0);
+        assertEquals(out.toString("UTF-8"), "a b c");
+    }
+
+    @Test
+    public void daemon_errors() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(run(out, err, new byte[0], "bogus"), DaemonServer.EXIT_PARSE_ERROR);
+        assertTrue(err.toString("UTF-8").startsWith("Parser error: Command 'bogus' not recognized"));
+
+        err.reset();
+        assertEquals(run(out, err, new byte[0], "fail"), DaemonServer.EXIT_ERROR);
+        assertTrue(err.toString("UTF-8").contains("IllegalStateException: failed"));
+
+        err.reset();
+        assertEquals(run(out, err, new byte[0], "broken"), DaemonServer.EXIT_ERROR);
+        assertTrue(err.toString("UTF-8").startsWith("Command threw error: cannot create"));
+    }
+
+    @Test
+    public void daemon_concurrent_invocations() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 32; i++) {
+                final String arg = Integer.toString(i);
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        run(out, new ByteArrayOutputStream(), new byte[0], "echo", "-n", arg);
+                        return new String(out.toByteArray(), Charsets.UTF_8);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(results.get(i).get(), Integer.toString(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void daemon_rejects_invalid_token() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("port", Integer.toString(server.getPort()));
+        props.setProperty("token", "bogus");
+        File bogus = new File("target/daemon-bogus.info");
+        try (OutputStream output = new FileOutputStream(bogus)) {
+            props.store(output, null);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(DaemonClient.run(bogus, ImmutableList.of("echo", "x"), ImmutableMap.<String, String> of(),
+                new File("."), new ByteArrayInputStream(new byte[0]), out, err), DaemonServer.EXIT_ERROR);
+        assertEquals(out.size(), 0);
+        assertTrue(err.toString("UTF-8").startsWith("Invalid daemon token"));
+        bogus.delete();
+    }
+
+    @Test(timeOut = 10000)
+    public void daemon_rejects_oversized_token() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(DaemonProtocol.MAGIC);
+            output.writeInt(DaemonProtocol.VERSION);
+            output.writeInt(Integer.MAX_VALUE);
+            output.flush();
+            // Closed without allocating or reading the token
+            assertEquals(socket.getInputStream().read(), -1);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        assertEquals(run(out, err, new byte[0], "echo", "-n", "ok"), 0);
+        assertEquals(out.toString("UTF-8"), "ok");
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.rvesse.airline.daemon;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.CommandFactory;
+import com.github.rvesse.airline.CommandFactoryDefault;
+import com.github.rvesse.airline.Option;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestInteractiveShell {
+
+    @Command(name = "echo")
+    public static class Echo implements Runnable {
+        @Option(name = { "-u", "--upper" })
+        public boolean upper;
+
+        @Arguments
+        public List<String> args;
+
+        @Override
+        public void run() {
+            String value = args != null ? Joiner.on('|').join(args) : "";
+            Invocation.current().getOut().println(upper ? value.toUpperCase() : value);
+        }
+    }
+
+    @Command(name = "fail")
+    public static class Fail implements Runnable {
+        @Override
+        public void run() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private static InteractiveShell<Runnable> shell() {
+        return shell(Cli.<Runnable> builder("shell").withCommand(Echo.class).withCommand(Fail.class).build());
+    }
+
+    private static InteractiveShell<Runnable> shell(Cli<Runnable> cli) {
+        InteractiveShell<Runnable> shell = new InteractiveShell<Runnable>(cli, new CommandExecutor<Runnable>() {
+            @Override
+            public int execute(Runnable command, Invocation invocation) {
+                command.run();
+                return 0;
+            }
+        });
+        shell.setPrompt("");
+        return shell;
+    }
+
+    private static String run(InteractiveShell<Runnable> shell, ByteArrayOutputStream err, int expectedExitCode,
+            String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = shell.run(new ByteArrayInputStream(input.getBytes("UTF-8")), new PrintStream(out, true,
+                "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        assertEquals(exitCode, expectedExitCode);
+        return out.toString("UTF-8");
+    }
+
+    private static String run(InteractiveShell<Runnable> shell, String input) throws IOException {
+        return run(shell, new ByteArrayOutputStream(), 0, input);
+    }
+
+    @Test
+    public void shell_runs_commands() throws IOException {
+        String out = run(shell(), "echo a \"b c\"\n\n--upper\necho -u 'd e'\n");
+        assertEquals(out, String.format("a|b c%nD E%n"));
+    }
+
+    @Test
+    public void shell_continuation_lines() throws IOException {
+        InteractiveShell<Runnable> shell = shell();
+        String out = run(shell, "echo \"a\nb\" c \\\nd\n");
+        assertEquals(out, String.format("> > a%nb|c|d%n"));
+        assertEquals(shell.getHistory(), ImmutableList.of("echo \"a\nb\" c \\\nd"));
+    }
+
+    @Test
+    public void shell_errors_and_exit() throws IOException {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        String out = run(shell(), err, 5, "bogus\nfail\necho ok\nexit 5\necho never\n");
+        assertEquals(out, String.format("ok%n"));
+        String errors = err.toString("UTF-8");
+        assertTrue(errors.startsWith("Parser error: Command 'bogus' not recognized"), errors);
+        assertTrue(errors.contains("IllegalStateException: failed"), errors);
+    }
+
+    @Test
+    public void shell_command_factory_failure() throws IOException {
+        final CommandFactory<Runnable> defaultFactory = new CommandFactoryDefault<Runnable>();
+        Cli<Runnable> cli = Cli.<Runnable> builder("shell").withCommand(Echo.class).withCommand(Fail.class)
+                .withCommandFactory(new CommandFactory<Runnable>() {
+                    @Override
+                    public Runnable createInstance(Class<?> type) {
+                        if (type == Fail.class)
+                            throw new IllegalArgumentException("cannot create");
+                        return defaultFactory.createInstance(type);
+                    }
+                }).build();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        String out = run(shell(cli), err, 0, "fail\necho ok\n");
+        assertEquals(out, String.format("ok%n"));
+        assertTrue(err.toString("UTF-8").startsWith("Command threw error: cannot create"));
+    }
+
+    @Test
+    public void shell_history() throws IOException {
+        InteractiveShell<Runnable> shell = shell();
+        String out = run(shell, "echo a\necho b\n!!\n!1\n!echo\n!9\nhistory\n");
+        assertEquals(out, String.format("a%nb%necho b%nb%necho a%na%necho a%na%n    1  echo a%n    2  echo b%n"
+                + "    3  echo a%n    4  history%n"));
+    }
+
+    @Test
+    public void shell_history_file() throws IOException {
+        File file = new File("target/shell-history");
+        file.delete();
+        InteractiveShell<Runnable> shell = shell();
+        shell.setHistoryFile(file);
+        run(shell, "echo 'a\\b'\necho \"x\ny\"\n");
+
+        shell = shell();
+        shell.setHistoryFile(file);
+        assertEquals(run(shell, "!1\n"), String.format("echo 'a\\b'%na\\b%n"));
+        assertEquals(shell.getHistory(), ImmutableList.of("echo 'a\\b'", "echo \"x\ny\"", "echo 'a\\b'"));
+        file.delete();
+    }
+
+    @Test
+    public void shell_completion() throws IOException {
+        InteractiveShell<Runnable> shell = shell();
+        assertEquals(shell.complete("ec"), ImmutableList.of("echo"));
+        assertEquals(shell.complete("e"), ImmutableList.of("exit", "echo"));
+        assertEquals(shell.complete("echo --u"), ImmutableList.of("--upper"));
+        assertEquals(shell.complete("echo "), ImmutableList.of("-u", "--upper", "--"));
+        assertEquals(run(shell, "f\t\n"), String.format("fail%n"));
+    }
+}
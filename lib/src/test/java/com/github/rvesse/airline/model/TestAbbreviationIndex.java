@@ -0,0 +1,83 @@
+package com.github.rvesse.airline.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Functions;
+
+public class TestAbbreviationIndex {
+
+    private static AbbreviationIndex<String> index(String... names) {
+        return AbbreviationIndex.forNames(Arrays.asList(names), Functions.<String> identity());
+    }
+
+    @Test
+    public void abbreviation_exact_01() {
+        AbbreviationIndex<String> index = index("add", "addall", "remove");
+        Assert.assertEquals(index.find("add"), "add");
+        Assert.assertEquals(index.findExact("add"), "add");
+        Assert.assertFalse(index.isAmbiguous("add"));
+    }
+
+    @Test
+    public void abbreviation_unique_01() {
+        AbbreviationIndex<String> index = index("add", "addall", "remove");
+        Assert.assertEquals(index.find("rem"), "remove");
+        Assert.assertEquals(index.find("adda"), "addall");
+        Assert.assertNull(index.findExact("rem"));
+    }
+
+    @Test
+    public void abbreviation_ambiguous_01() {
+        AbbreviationIndex<String> index = index("add", "addall", "remove");
+        Assert.assertNull(index.find("ad"));
+        Assert.assertTrue(index.isAmbiguous("ad"));
+
+        List<String> candidates = index.getCandidates("ad");
+        Assert.assertEquals(candidates.size(), 2);
+        Assert.assertTrue(candidates.contains("add"));
+        Assert.assertTrue(candidates.contains("addall"));
+    }
+
+    @Test
+    public void abbreviation_missing_01() {
+        AbbreviationIndex<String> index = index("add", "addall", "remove");
+        Assert.assertNull(index.find("foo"));
+        Assert.assertNull(index.find("removes"));
+        Assert.assertFalse(index.isAmbiguous("foo"));
+        Assert.assertTrue(index.getCandidates("foo").isEmpty());
+    }
+
+    @Test
+    public void abbreviation_same_item_01() {
+        // Several names identifying the same item are not ambiguous
+        String item = "verbose";
+        Map<String, String> names = new HashMap<String, String>();
+        names.put("--verbose", item);
+        names.put("--verbosity", item);
+        names.put("-v", item);
+
+        AbbreviationIndex<String> index = new AbbreviationIndex<String>(names, 3);
+        Assert.assertEquals(index.find("--verb"), item);
+        Assert.assertFalse(index.isAmbiguous("--verb"));
+        Assert.assertEquals(index.getCandidates("--verb").size(), 1);
+    }
+
+    @Test
+    public void abbreviation_min_length_01() {
+        // Names shorter than the minimum length can only be matched exactly
+        Map<String, String> names = new HashMap<String, String>();
+        names.put("-v", "verbose");
+        names.put("-x", "extract");
+
+        AbbreviationIndex<String> index = new AbbreviationIndex<String>(names, 3);
+        Assert.assertEquals(index.find("-v"), "verbose");
+        Assert.assertNull(index.find("-"));
+        Assert.assertFalse(index.isAmbiguous("-"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.rvesse.airline.model;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.help.CommandSuggester;
+
+public class TestMetadataLoader {
+
+    @Test
+    public void command_metadata_cached_01() {
+        CommandMetadata first = MetadataLoader.loadCommand(Args1.class);
+        CommandMetadata second = MetadataLoader.loadCommand(Args1.class);
+        Assert.assertSame(first, second);
+    }
+
+    @Test
+    public void command_metadata_cached_02() {
+        // Metadata is reused across CLIs
+        Cli<Args1> a = Cli.<Args1> builder("a").withCommand(Args1.class).build();
+        Cli<Args1> b = Cli.<Args1> builder("b").withCommand(Args1.class).build();
+        Assert.assertSame(a.getMetadata().getDefaultGroupCommands().get(0), b.getMetadata()
+                .getDefaultGroupCommands().get(0));
+    }
+
+    @Test
+    public void command_metadata_null_01() {
+        Assert.assertNull(MetadataLoader.loadCommand(null));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void command_metadata_not_annotated_01() {
+        MetadataLoader.loadCommand(String.class);
+    }
+
+    @Test
+    public void suggester_metadata_cached_01() {
+        Assert.assertSame(MetadataLoader.loadSuggester(CommandSuggester.class),
+                MetadataLoader.loadSuggester(CommandSuggester.class));
+    }
+}
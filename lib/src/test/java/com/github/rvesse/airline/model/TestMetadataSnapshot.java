@@ -0,0 +1,125 @@
+package com.github.rvesse.airline.model;
+
+import com.github.rvesse.airline.Accessor;
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.command.CommandAdd;
+import com.github.rvesse.airline.command.CommandCommit;
+import com.github.rvesse.airline.command.CommandRemote;
+import com.github.rvesse.airline.command.CommandWithGroupAnnotation;
+import com.github.rvesse.airline.help.Help;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestMetadataSnapshot {
+
+    private static final File f = new File("target/metadata-snapshot.bin");
+
+    @AfterMethod
+    public void cleanup() {
+        f.delete();
+    }
+
+    private static CliBuilder<Object> builder() {
+        CliBuilder<Object> builder = Cli.builder("git").withMetadataCache(f).withDefaultCommand(Help.class)
+                .withCommand(Help.class).withCommand(CommandAdd.class).withCommand(CommandWithGroupAnnotation.class);
+        builder.withGroup("remotes").withDescription("Manage remotes").withCommand(CommandRemote.class);
+        builder.withAlias("ad").withArguments("add", "-i");
+        return builder;
+    }
+
+    private static Accessor firstAccessor(GlobalMetadata metadata, String command) {
+        CommandMetadata add = metadata.getDefaultGroupCommandIndex().findExact(command);
+        return add.getCommandOptions().get(0).getAccessors().iterator().next();
+    }
+
+    private static String help(GlobalMetadata metadata, List<String> command) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Help.help(metadata, command, true, out);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void snapshot_round_trip() throws IOException {
+        f.delete();
+        Cli<Object> loaded = builder().build();
+        assertTrue(f.isFile());
+        assertSame(firstAccessor(loaded.getMetadata(), "add").getClass(), Accessor.class);
+
+        Cli<Object> restored = builder().build();
+        GlobalMetadata metadata = restored.getMetadata();
+        assertTrue(firstAccessor(metadata, "add") instanceof SnapshotAccessor);
+
+        // Restored metadata is equivalent
+        assertEquals(metadata.toString(), loaded.getMetadata().toString());
+        assertEquals(help(metadata, Collections.<String> emptyList()),
+                help(loaded.getMetadata(), Collections.<String> emptyList()));
+        assertEquals(help(metadata, ImmutableList.of("add")), help(loaded.getMetadata(), ImmutableList.of("add")));
+
+        // Fields are resolved by name when injecting
+        CommandAdd add = (CommandAdd) restored.parse("-v", "ad", "A.java");
+        assertTrue(add.interactive);
+        assertTrue(add.commandMain.verbose);
+        assertEquals(add.patterns, ImmutableList.of("A.java"));
+        assertTrue(restored.parse("singleGroup") instanceof CommandWithGroupAnnotation);
+        assertTrue(restored.parse("remotes", "remote") instanceof CommandRemote);
+
+        Help help = (Help) restored.parse("help");
+        assertSame(help.global, metadata);
+    }
+
+    @Test
+    public void snapshot_rebuilt_when_configuration_changes() throws IOException {
+        builder().build();
+        byte[] before = Files.readAllBytes(f.toPath());
+
+        Cli<Object> cli = builder().withCommand(CommandCommit.class).build();
+        assertNotEquals(Files.readAllBytes(f.toPath()), before);
+        assertTrue(cli.parse("commit") instanceof CommandCommit);
+
+        assertNull(MetadataSnapshot.load(f, "bogus", getClass().getClassLoader()));
+    }
+
+    @Test
+    public void snapshot_rebuilt_when_classes_change() throws Exception {
+        builder().build();
+        byte[] before = Files.readAllBytes(f.toPath());
+
+        File classFile = new File(CommandAdd.class.getResource("CommandAdd.class").toURI());
+        long lastModified = classFile.lastModified();
+        try {
+            assertTrue(classFile.setLastModified(lastModified - 60000));
+            Cli<Object> cli = builder().build();
+            assertFalse(firstAccessor(cli.getMetadata(), "add") instanceof SnapshotAccessor);
+            assertNotEquals(Files.readAllBytes(f.toPath()), before);
+        } finally {
+            classFile.setLastModified(lastModified);
+        }
+    }
+
+    @Test
+    public void snapshot_corrupt() throws IOException {
+        Files.write(f.toPath(), new byte[] { 'A', 'I', 'R', 'M', 0, 0 });
+        Cli<Object> cli = builder().build();
+        assertNotNull(cli.getMetadata());
+        assertTrue(f.length() > 6);
+        assertTrue(firstAccessor(builder().build().getMetadata(), "add") instanceof SnapshotAccessor);
+    }
+}
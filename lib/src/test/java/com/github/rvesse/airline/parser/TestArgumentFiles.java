@@ -0,0 +1,191 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.args.ArgsStreaming;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.io.Files;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+
+public class TestArgumentFiles {
+
+    private static File write(String name, String content) throws IOException {
+        File file = new File("target", name);
+        Files.write(content, file, Charsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> read(File file, int regionSize) {
+        return ImmutableList.copyOf(ArgumentFiles.read(file, regionSize));
+    }
+
+    @Test
+    public void argument_files_quoting() throws IOException {
+        File file = write("args-quoting.txt", "foo \"bar baz\"\n\t\"a \\\"b\\\"\" c\\ d e\\f \"\"  ");
+        Assert.assertEquals(ImmutableList.copyOf(ArgumentFiles.read(file)),
+                ImmutableList.of("foo", "bar baz", "a \"b\"", "c d", "e\\f", ""));
+    }
+
+    @Test
+    public void argument_files_regions() throws IOException {
+        // Multi-byte characters straddle the region boundaries
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("été-€").append(i).append("-😀 ");
+        }
+        File file = write("args-regions.txt", content.toString());
+        List<String> expected = read(file, Integer.MAX_VALUE);
+        Assert.assertEquals(expected.size(), 200);
+        Assert.assertEquals(expected.get(7), "été-€7-😀");
+        for (int regionSize : new int[] { 1, 2, 3, 5, 7, 64 }) {
+            Assert.assertEquals(read(file, regionSize), expected, "Region size " + regionSize);
+        }
+    }
+
+    @Test
+    public void argument_files_expand() throws IOException {
+        File file = write("args-expand.txt", "b c");
+        File empty = write("args-empty.txt", "");
+        List<String> args = ImmutableList.copyOf(ArgumentFiles.expand(Iterators.forArray("a", "@" + file.getPath(),
+                "@" + empty.getPath(), "@@d", "@", "e")));
+        Assert.assertEquals(args, ImmutableList.of("a", "b", "c", "@d", "@", "e"));
+    }
+
+    @Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = "Mismatched quotes.*")
+    public void argument_files_mismatched_quotes() throws IOException {
+        read(write("args-mismatched.txt", "a \"b"), Integer.MAX_VALUE);
+    }
+
+    @Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = "Unable to read argument file.*")
+    public void argument_files_missing() {
+        ArgumentFiles.read(new File("target/does-not-exist.txt"));
+    }
+
+    @Test
+    public void argument_files_single_command() throws IOException {
+        File file = write("args-single.txt", "-log 3 \"x y\"\n-debug");
+        Args1 args = singleCommand(Args1.class).withArgumentFiles().parse("a", "@" + file.getPath(), "b");
+        Assert.assertEquals(args.verbose.intValue(), 3);
+        Assert.assertTrue(args.debug);
+        Assert.assertEquals(args.parameters, ImmutableList.of("a", "x y", "b"));
+
+        // Not expanded unless enabled
+        args = singleCommand(Args1.class).parse("@" + file.getPath());
+        Assert.assertEquals(args.parameters, ImmutableList.of("@" + file.getPath()));
+    }
+
+    @Test
+    public void argument_files_cli() throws IOException {
+        File file = new File("target/args-large.txt");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8))) {
+            writer.write("Args1 -long 7");
+            for (int i = 0; i < 100000; i++) {
+                writer.write(" arg");
+                writer.write(Integer.toString(i));
+            }
+        }
+
+        for (boolean lazy : new boolean[] { false, true }) {
+            CliBuilder<Args1> builder = Cli.<Args1> builder("test").withCommand(Args1.class).withArgumentFiles();
+            if (lazy)
+                builder.withLazyMetadata();
+            Args1 args = builder.build().parse("@" + file.getPath());
+            Assert.assertEquals(args.l, 7);
+            Assert.assertEquals(args.parameters.size(), 100000);
+            Assert.assertEquals(args.parameters.get(99999), "arg99999");
+        }
+    }
+
+    @Test
+    public void argument_files_errors() throws IOException {
+        File missing = new File("target/does-not-exist.txt");
+        ParseResult<Args1> result = singleCommand(Args1.class).withArgumentFiles().tryParse("a",
+                "@" + missing.getPath(), "b");
+        Assert.assertFalse(result.wasSuccessful());
+        Assert.assertEquals(result.getErrors().size(), 1);
+        ParseError error = result.getErrors().get(0);
+        Assert.assertEquals(error.getKind(), ParseError.Kind.ARGUMENT_FILE);
+        Assert.assertEquals(error.getTokenIndex(), 1);
+        Assert.assertEquals(error.getInput(), ImmutableList.of(missing.getPath()));
+        Assert.assertTrue(error.getMessage().startsWith("Unable to read argument file"));
+        Assert.assertTrue(error.toException() instanceof ParseArgumentFileException);
+
+        // Malformed files are reported once the arguments before the problem
+        // have been parsed
+        File file = write("args-malformed.txt", "-log 3 \"x");
+        Cli<Args1> cli = Cli.<Args1> builder("test").withDefaultCommand(Args1.class).withCommand(Args1.class)
+                .withArgumentFiles().build();
+        ParseResult<Args1> cliResult = cli.tryParse("Args1", "@" + file.getPath());
+        Assert.assertFalse(cliResult.wasSuccessful());
+        Assert.assertEquals(cliResult.getErrors().get(0).getKind(), ParseError.Kind.ARGUMENT_FILE);
+        Assert.assertEquals(cliResult.getErrors().get(0).getTokenIndex(), 3);
+        Assert.assertTrue(cliResult.getErrors().get(0).getMessage().startsWith("Mismatched quotes"));
+
+        try {
+            singleCommand(Args1.class).withArgumentFiles().parse("@" + missing.getPath());
+            Assert.fail("Expected an argument file error");
+        } catch (ParseArgumentFileException e) {
+            Assert.assertEquals(e.getFile(), missing);
+        }
+    }
+
+    @Test
+    public void argument_files_errors_streamed() {
+        File missing = new File("target/does-not-exist.txt");
+        ParseResult<ArgsStreaming> result = singleCommand(ArgsStreaming.class).withArgumentFiles().tryParse("1",
+                "2", "@" + missing.getPath(), "3");
+        Assert.assertTrue(result.wasSuccessful());
+
+        // The file is only read once the command consumes the arguments so
+        // the error must reach the command rather than truncating them
+        Iterator<Integer> numbers = result.getCommand().numbers.iterator();
+        Assert.assertEquals(numbers.next(), Integer.valueOf(1));
+        Assert.assertEquals(numbers.next(), Integer.valueOf(2));
+        try {
+            numbers.hasNext();
+            Assert.fail("Expected an argument file error");
+        } catch (ParseArgumentFileException e) {
+            Assert.assertEquals(e.getFile(), missing);
+        }
+    }
+
+    @Test
+    public void argument_files_working_directory() throws IOException {
+        File dir = new File("target/args-dir").getAbsoluteFile();
+        dir.mkdirs();
+        Files.write("b c", new File(dir, "args-relative.txt"), Charsets.UTF_8);
+
+        ArgumentFiles.setWorkingDirectory(dir);
+        Iterator<String> expanded;
+        try {
+            expanded = ArgumentFiles.expand(Iterators.forArray("a", "@args-relative.txt"));
+        } finally {
+            ArgumentFiles.setWorkingDirectory(null);
+        }
+        // The directory applies to the whole expansion even once it is unset
+        Assert.assertEquals(ImmutableList.copyOf(expanded), ImmutableList.of("a", "b", "c"));
+
+        try {
+            ImmutableList.copyOf(ArgumentFiles.expand(Iterators.forArray("@args-relative.txt")));
+            Assert.fail("Expected the file to be resolved against the JVM working directory");
+        } catch (ParseArgumentFileException e) {
+            Assert.assertEquals(e.getFile(), new File("args-relative.txt"));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.Accessor;
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.Git.Add;
+import com.github.rvesse.airline.Git.RemoteAdd;
+import com.github.rvesse.airline.Git.RemoteShow;
+import com.github.rvesse.airline.Group;
+import com.github.rvesse.airline.OptionType;
+import com.github.rvesse.airline.TypeConverter;
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.args.ArgsMergedSingleAndMultiValued;
+import com.github.rvesse.airline.builder.CliBuilder;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.GlobalMetadata;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.rvesse.airline.SingleCommand.singleCommand;
+
+public class TestParsedOptions {
+
+    private static GlobalMetadata git() {
+        CliBuilder<Runnable> builder = Cli.<Runnable> builder("git").withCommand(Add.class);
+        builder.withGroup("remote").withDefaultCommand(RemoteShow.class).withCommand(RemoteShow.class)
+                .withCommand(RemoteAdd.class);
+        return builder.build().getMetadata();
+    }
+
+    @Test
+    public void option_positions_01() {
+        GlobalMetadata metadata = git();
+        for (int i = 0; i < metadata.getOptions().size(); i++) {
+            Assert.assertEquals(metadata.getOptionIndex().indexOf(metadata.getOptions().get(i)), i);
+        }
+        for (CommandMetadata command : metadata.getDefaultGroupCommands()) {
+            for (int i = 0; i < command.getCommandOptions().size(); i++) {
+                Assert.assertEquals(command.getCommandOptionIndex().indexOf(command.getCommandOptions().get(i)), i);
+            }
+        }
+    }
+
+    @Test
+    public void option_positions_shared_option() throws NoSuchFieldException {
+        OptionMetadata option = option("-a");
+        OptionMetadata other = option("-b");
+
+        CommandMetadata first = command(ImmutableList.of(option));
+        CommandMetadata second = command(ImmutableList.of(other, option));
+
+        // The same option has a different position in each command and is
+        // never copied
+        Assert.assertSame(first.getCommandOptions().get(0), option);
+        Assert.assertSame(second.getCommandOptions().get(1), option);
+        Assert.assertEquals(first.getCommandOptionIndex().indexOf(option), 0);
+        Assert.assertEquals(second.getCommandOptionIndex().indexOf(option), 1);
+        Assert.assertEquals(first.getCommandOptionIndex().indexOf(other), -1);
+
+        ParsedOptions values = new Parser().parseCommand(second, ImmutableList.of("-a", "x", "-b", "y"))
+                .getOptionValues();
+        Assert.assertEquals(values.getValues(1), ImmutableList.of("x"));
+        Assert.assertEquals(values.getValues(0), ImmutableList.of("y"));
+    }
+
+    private static OptionMetadata option(String name) throws NoSuchFieldException {
+        return new OptionMetadata(OptionType.COMMAND, ImmutableList.of(name), name, null, 1, false, false, false,
+                false, null, false, 0, null, ImmutableList.of(RemoteAdd.class.getField("branch")));
+    }
+
+    private static CommandMetadata command(Iterable<OptionMetadata> options) {
+        return new CommandMetadata("test", null, ImmutableList.<String> of(), ImmutableList.<String> of(), false,
+                ImmutableList.<OptionMetadata> of(), ImmutableList.<OptionMetadata> of(), options, null, null,
+                ImmutableList.<Accessor> of(), RemoteAdd.class, ImmutableList.<String> of(),
+                ImmutableList.<Group> of(), Collections.<Integer, String> emptyMap());
+    }
+
+    @Test
+    public void parsed_options_slots_01() {
+        GlobalMetadata metadata = git();
+        ParseState state = new Parser().parse(metadata, "-v", "remote", "add", "-t", "b", "-t", "c", "name", "url");
+
+        ParsedOptions values = state.getOptionValues();
+        Assert.assertNotNull(values);
+        Assert.assertEquals(values.getGroupOffset(), metadata.getOptions().size());
+        Assert.assertEquals(values.getCommandOffset(), values.getGroupOffset()
+                + state.getGroup().getOptions().size());
+        Assert.assertSame(values.getCommand(), state.getCommand());
+
+        // Global -v
+        Assert.assertTrue(values.isPresent(0));
+        Assert.assertEquals(values.getValues(0), ImmutableList.of(Boolean.TRUE));
+        Assert.assertSame(values.getOption(0), metadata.getOptions().get(0));
+
+        // Command -t specified twice, only the last value of a single valued
+        // option is kept
+        OptionMetadata branch = state.getCommand().getCommandOptionIndex().find("-t");
+        int slot = values.getCommandOffset() + state.getCommand().getCommandOptions().indexOf(branch);
+        Assert.assertEquals(values.getValues(slot), ImmutableList.of("c"));
+        Assert.assertSame(values.getOption(slot), branch);
+        Assert.assertEquals(values.getPresent().cardinality(), 2);
+
+        // Parsed values can't be modified
+        values.getPresent().clear();
+        Assert.assertTrue(values.isPresent(slot));
+
+        // Out of range slots have no values
+        Assert.assertFalse(values.isPresent(-1));
+        Assert.assertTrue(values.getValues(values.size()).isEmpty());
+    }
+
+    @Test
+    public void parsed_options_multimap_01() {
+        GlobalMetadata metadata = git();
+        ParseState state = new Parser().parse(metadata, "-v", "remote", "add", "-t", "b", "name", "url");
+
+        OptionMetadata branch = state.getCommand().getCommandOptionIndex().find("-t");
+        Assert.assertEquals(state.getParsedOptions().get(branch), ImmutableList.<Object> of("b"));
+        Assert.assertEquals(state.getParsedOptions().get(metadata.getOptions().get(0)),
+                ImmutableList.<Object> of(Boolean.TRUE));
+        Assert.assertEquals(state.getParsedOptions().size(), 2);
+    }
+
+    @Test
+    public void parsed_options_deferred_conversion_01() {
+        final AtomicInteger conversions = new AtomicInteger();
+        TypeConverter converter = TypeConverter.newInstance().register(Integer.class,
+                new Function<String, Integer>() {
+                    @Override
+                    public Integer apply(String input) {
+                        conversions.incrementAndGet();
+                        return Integer.valueOf(input);
+                    }
+                });
+
+        // Only the last occurrence of a single valued option is converted
+        Args1 args = singleCommand(Args1.class, converter).parse("-log", "x", "-log", "2", "-log", "3", "a");
+        Assert.assertEquals(args.verbose, Integer.valueOf(3));
+        Assert.assertEquals(args.parameters, ImmutableList.of("a"));
+        Assert.assertEquals(conversions.get(), 1);
+    }
+
+    @Test
+    public void parsed_options_deferred_conversion_02() {
+        CommandMetadata command = singleCommand(Args1.class).getCommandMetadata();
+        ParseState state = new Parser().parseCommand(command, ImmutableList.of("-log", "x", "-log", "3"));
+        ParsedOptions values = state.getOptionValues();
+        OptionMetadata log = command.getCommandOptionIndex().find("-log");
+        int slot = values.getCommandOffset() + command.getCommandOptions().indexOf(log);
+
+        // Earlier occurrences are discarded so retrieving values never fails
+        Assert.assertEquals(values.getValues(slot), ImmutableList.of(3));
+        Assert.assertEquals(state.getParsedOptions().get(log), ImmutableList.of(3));
+        Assert.assertTrue(state.toString().contains("3"));
+    }
+
+    @Test
+    public void parsed_options_deferred_conversion_merged() {
+        // An option that is also injected into a collection keeps every value
+        // so is never deferred
+        ArgsMergedSingleAndMultiValued args = singleCommand(ArgsMergedSingleAndMultiValued.class).parse("-level",
+                "1", "-level", "2");
+        Assert.assertEquals(args.level, Integer.valueOf(2));
+        Assert.assertEquals(args.levels, ImmutableList.of(1, 2));
+
+        ParseResult<ArgsMergedSingleAndMultiValued> result = singleCommand(ArgsMergedSingleAndMultiValued.class)
+                .tryParse("-level", "x", "-level", "2");
+        Assert.assertFalse(result.wasSuccessful());
+        Assert.assertEquals(result.getErrors().size(), 1);
+        Assert.assertEquals(result.getErrors().get(0).getKind(), ParseError.Kind.CONVERSION);
+        Assert.assertEquals(result.getErrors().get(0).getTokenIndex(), 1);
+    }
+
+    @Test
+    public void parsed_options_deferred_conversion_errors_01() {
+        // Errors are reported at the position of the last occurrence in token
+        // order
+        ParseResult<Args1> result = singleCommand(Args1.class).tryParse("-long", "y", "a", "-log", "1", "-log", "x",
+                "-groups", "g");
+        Assert.assertFalse(result.wasSuccessful());
+        Assert.assertEquals(result.getErrors().size(), 2);
+        Assert.assertEquals(result.getErrors().get(0).getKind(), ParseError.Kind.CONVERSION);
+        Assert.assertEquals(result.getErrors().get(0).getTokenIndex(), 1);
+        Assert.assertEquals(result.getErrors().get(1).getKind(), ParseError.Kind.CONVERSION);
+        Assert.assertEquals(result.getErrors().get(1).getTokenIndex(), 6);
+        Assert.assertEquals(result.getErrors().get(1).getInput(), ImmutableList.of("x"));
+
+        try {
+            singleCommand(Args1.class).parse("-log", "1", "-log", "x");
+            Assert.fail("Expected a conversion error");
+        } catch (ParseOptionConversionException e) {
+            Assert.assertEquals(e.getValue(), "x");
+        }
+    }
+}
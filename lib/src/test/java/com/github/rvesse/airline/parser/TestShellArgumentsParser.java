@@ -0,0 +1,62 @@
+package com.github.rvesse.airline.parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestShellArgumentsParser {
+
+    private static void check(String value, String... expected) {
+        List<String> args = ShellArgumentsParser.parse(value);
+        Assert.assertEquals(args, Arrays.asList(expected));
+    }
+
+    @Test
+    public void shell_arguments_plain() {
+        check("foo bar", "foo", "bar");
+        check("  foo \t bar  ", "foo", "bar");
+        check("");
+    }
+
+    @Test
+    public void shell_arguments_quotes() {
+        check("\"foo bar\" 'baz qux'", "foo bar", "baz qux");
+        check("\"a \\\"b\\\" \\\\ \\n\"", "a \"b\" \\ \\n");
+        check("'a \\\" b'", "a \\\" b");
+        check("\"\" ''", "", "");
+    }
+
+    @Test
+    public void shell_arguments_adjacent_quotes() {
+        check("--name=\"a b\" x'y'z", "--name=a b", "xyz");
+    }
+
+    @Test
+    public void shell_arguments_escapes() {
+        check("foo\\ bar \\\"baz\\' \\\\", "foo bar", "\"baz'", "\\");
+        check("foo \\\nbar", "foo", "bar");
+    }
+
+    @Test
+    public void shell_arguments_incomplete() {
+        Assert.assertFalse(ShellArgumentsParser.isComplete("foo \"bar"));
+        Assert.assertFalse(ShellArgumentsParser.isComplete("foo 'bar"));
+        Assert.assertFalse(ShellArgumentsParser.isComplete("foo \\"));
+        Assert.assertTrue(ShellArgumentsParser.isComplete("foo \"bar\""));
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void shell_arguments_mismatched_quotes() {
+        ShellArgumentsParser.parse("foo \"bar");
+    }
+
+    @Test
+    public void shell_arguments_partial() {
+        Assert.assertEquals(ShellArgumentsParser.parsePartial(""), Arrays.asList(""));
+        Assert.assertEquals(ShellArgumentsParser.parsePartial("foo "), Arrays.asList("foo", ""));
+        Assert.assertEquals(ShellArgumentsParser.parsePartial("foo --b"), Arrays.asList("foo", "--b"));
+        Assert.assertEquals(ShellArgumentsParser.parsePartial("foo \"a b"), Arrays.asList("foo", "a b"));
+    }
+}
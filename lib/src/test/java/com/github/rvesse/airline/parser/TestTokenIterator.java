@@ -0,0 +1,69 @@
+package com.github.rvesse.airline.parser;
+
+import com.github.rvesse.airline.args.Args1;
+import com.github.rvesse.airline.model.MetadataLoader;
+import com.github.rvesse.airline.model.OptionIndex;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+public class TestTokenIterator {
+
+    @Test
+    public void token_kinds() {
+        Assert.assertEquals(TokenKind.classify("--"), TokenKind.SEPARATOR);
+        Assert.assertEquals(TokenKind.classify("--name"), TokenKind.LONG_OPTION);
+        Assert.assertEquals(TokenKind.classify("-abc"), TokenKind.SHORT_OPTIONS);
+        Assert.assertEquals(TokenKind.classify("-a"), TokenKind.SHORT_OPTIONS);
+        Assert.assertEquals(TokenKind.classify("-"), TokenKind.VALUE);
+        Assert.assertEquals(TokenKind.classify(""), TokenKind.VALUE);
+        Assert.assertEquals(TokenKind.classify("value"), TokenKind.VALUE);
+    }
+
+    @Test
+    public void token_value_index() {
+        Assert.assertEquals(TokenKind.valueIndex("--name=value"), 6);
+        Assert.assertEquals(TokenKind.valueIndex("--name:a=b"), 6);
+        Assert.assertEquals(TokenKind.valueIndex("-Dkey=value"), 5);
+        Assert.assertEquals(TokenKind.valueIndex("--name"), -1);
+    }
+
+    @Test
+    public void token_iterator_classifies_next_token() {
+        TokenIterator tokens = new TokenIterator(Arrays.asList("-v", "--", "--count=3", "x").iterator(), 5);
+        Assert.assertEquals(tokens.index(), 5);
+        Assert.assertEquals(tokens.peekKind(), TokenKind.SHORT_OPTIONS);
+        Assert.assertEquals(tokens.peekValueIndex(), -1);
+        Assert.assertEquals(tokens.next(), "-v");
+
+        Assert.assertEquals(tokens.index(), 6);
+        Assert.assertEquals(tokens.peekKind(), TokenKind.SEPARATOR);
+        tokens.next();
+
+        Assert.assertEquals(tokens.peekKind(), TokenKind.LONG_OPTION);
+        Assert.assertEquals(tokens.peekValueIndex(), 7);
+        tokens.next();
+
+        Assert.assertEquals(tokens.peekKind(), TokenKind.VALUE);
+        Assert.assertEquals(tokens.next(), "x");
+        Assert.assertEquals(tokens.index(), 9);
+        Assert.assertFalse(tokens.hasNext());
+    }
+
+    @Test
+    public void option_index_finds_name_prefix() {
+        OptionIndex index = new OptionIndex(MetadataLoader.loadCommand(Args1.class).getCommandOptions());
+        int log = index.findPosition("-log");
+        Assert.assertSame(index.getOption(log), index.getOptions().get(log));
+        Assert.assertSame(index.getOption(log), index.find("-log"));
+        Assert.assertEquals(index.findPosition("-log=2", 4), log);
+        Assert.assertEquals(index.findPosition("-verbose:2", 8), index.findPosition("-verbose"));
+        Assert.assertEquals(index.findPosition("-lo=2", 3), -1);
+        Assert.assertEquals(index.findPosition("-logs=2", 5), -1);
+        Assert.assertEquals(index.findPosition("=2", 0), -1);
+        Assert.assertEquals(index.findShortPosition('v'), -1);
+        Assert.assertEquals(index.findAbbreviatedPosition("-verb"), index.findPosition("-verbose"));
+    }
+}
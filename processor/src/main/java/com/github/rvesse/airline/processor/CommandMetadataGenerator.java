@@ -0,0 +1,571 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.DefaultOption;
+import com.github.rvesse.airline.Group;
+import com.github.rvesse.airline.Groups;
+import com.github.rvesse.airline.Option;
+import com.github.rvesse.airline.model.MetadataLoader;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the {@link com.github.rvesse.airline.model.CommandMetadataFactory}
+ * for a single command class
+ * <p>
+ * This mirrors the field inspection performed by
+ * {@link com.github.rvesse.airline.model.MetadataLoader} so that the generated
+ * metadata is equivalent to that which would be loaded via reflection.
+ * </p>
+ */
+class CommandMetadataGenerator {
+    static final String FACTORY_SUFFIX = MetadataLoader.FACTORY_SUFFIX;
+
+    private static final String JAVAX_INJECT = "javax.inject.Inject";
+    private static final String GUICE_INJECT = "com.google.inject.Inject";
+    private static final String[] METADATA_TYPES = { "com.github.rvesse.airline.model.GlobalMetadata",
+            "com.github.rvesse.airline.model.CommandGroupMetadata",
+            "com.github.rvesse.airline.model.CommandMetadata" };
+
+    private final Elements elements;
+    private final Types types;
+    private final ProcessingEnvironment env;
+    private final TypeElement commandType;
+    private final PackageElement commandPackage;
+    private final TypeMirror collectionType;
+    private final StringBuilder injections = new StringBuilder();
+    private boolean usesReflection = false;
+
+    CommandMetadataGenerator(ProcessingEnvironment env, TypeElement commandType) {
+        this.env = env;
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.commandType = commandType;
+        this.commandPackage = elements.getPackageOf(commandType);
+        this.collectionType = types.erasure(elements.getTypeElement("java.util.Collection").asType());
+    }
+
+    /**
+     * Generates the factory
+     *
+     * @return Qualified name of the generated factory
+     * @throws UnsupportedCommandException
+     *             Thrown if the command cannot be described by generated code
+     * @throws IOException
+     *             Thrown if the source file cannot be written
+     */
+    String generate() throws UnsupportedCommandException, IOException {
+        if (commandType.getModifiers().contains(Modifier.PRIVATE) || !isAccessible(commandType))
+            throw new UnsupportedCommandException("class is not accessible");
+        if (commandType.getAnnotation(Group.class) != null || commandType.getAnnotation(Groups.class) != null)
+            throw new UnsupportedCommandException("@Group annotations are not supported");
+
+        Command command = commandType.getAnnotation(Command.class);
+        addInjectionMetadata(commandType, new ArrayList<VariableElement>());
+
+        String factoryName = factoryName();
+        String qualifiedName = commandPackage.isUnnamed() ? factoryName : commandPackage.getQualifiedName() + "."
+                + factoryName;
+
+        JavaFileObject source = env.getFiler().createSourceFile(qualifiedName, commandType);
+        Writer writer = source.openWriter();
+        try {
+            writer.write(generateSource(command, factoryName));
+        } finally {
+            writer.close();
+        }
+        return qualifiedName;
+    }
+
+    private String factoryName() {
+        StringBuilder name = new StringBuilder(commandType.getSimpleName());
+        for (TypeElement outer = enclosingType(commandType); outer != null; outer = enclosingType(outer)) {
+            name.insert(0, '_').insert(0, outer.getSimpleName());
+        }
+        return name.append(FACTORY_SUFFIX).toString();
+    }
+
+    private String generateSource(Command command, String factoryName) {
+        String commandClass = typeName(commandType.asType());
+
+        StringBuilder source = new StringBuilder();
+        if (!commandPackage.isUnnamed()) {
+            source.append("package ").append(commandPackage.getQualifiedName()).append(";\n\n");
+        }
+        source.append("import com.github.rvesse.airline.Accessor;\n");
+        source.append("import com.github.rvesse.airline.Group;\n");
+        source.append("import com.github.rvesse.airline.OptionType;\n");
+        source.append("import com.github.rvesse.airline.StdinArguments;\n");
+        source.append("import com.github.rvesse.airline.model.ArgumentsMetadata;\n");
+        source.append("import com.github.rvesse.airline.model.CommandMetadata;\n");
+        source.append("import com.github.rvesse.airline.model.CommandMetadataFactory;\n");
+        source.append("import com.github.rvesse.airline.model.InjectionMetadata;\n");
+        source.append("import com.github.rvesse.airline.model.OptionMetadata;\n");
+        source.append("import com.google.common.collect.ImmutableList;\n");
+        source.append("import com.google.common.collect.Iterables;\n");
+        source.append("\n");
+        if (usesReflection) {
+            source.append("import java.lang.reflect.Field;\n");
+        }
+        source.append("import java.util.Arrays;\n");
+        source.append("import java.util.HashMap;\n");
+        source.append("import java.util.Map;\n");
+        source.append("\n");
+        source.append("/**\n");
+        source.append(" * Metadata for {@link ").append(commandClass).append("}, generated by the Airline annotation processor\n");
+        source.append(" */\n");
+        source.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+        source.append("public final class ").append(factoryName).append(" implements CommandMetadataFactory {\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public Class<?> getCommandType() {\n");
+        source.append("        return ").append(commandClass).append(".class;\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public CommandMetadata createCommandMetadata() {\n");
+        source.append("        InjectionMetadata injection = new InjectionMetadata();\n");
+        source.append(injections);
+        source.append("        injection.compact();\n\n");
+
+        source.append("        Map<Integer, String> exitCodes = new HashMap<Integer, String>();\n");
+        int[] codes = command.exitCodes();
+        String[] exitDescriptions = command.exitDescriptions();
+        for (int i = 0; i < codes.length; i++) {
+            String description = exitDescriptions.length > i ? exitDescriptions[i] : null;
+            source.append("        exitCodes.put(").append(codes[i]).append(", ").append(literal(description))
+                    .append(");\n");
+        }
+        source.append("\n");
+
+        source.append("        return new CommandMetadata(").append(literal(command.name())).append(",\n");
+        source.append("                ").append(literal(command.description().isEmpty() ? null : command.description())).append(",\n");
+        source.append("                ").append(mutableListOrNull(command.discussion())).append(",\n");
+        source.append("                ").append(mutableListOrNull(command.examples())).append(",\n");
+        source.append("                ").append(command.hidden()).append(",\n");
+        source.append("                injection.getGlobalOptions(),\n");
+        source.append("                injection.getGroupOptions(),\n");
+        source.append("                injection.getCommandOptions(),\n");
+        source.append("                injection.getDefaultOption(),\n");
+        source.append("                Iterables.getFirst(injection.getArguments(), null),\n");
+        source.append("                injection.getMetadataInjections(),\n");
+        source.append("                ").append(commandClass).append(".class,\n");
+        source.append("                Arrays.<String> asList(").append(literals(command.groupNames())).append("),\n");
+        source.append("                ImmutableList.<Group> of(),\n");
+        source.append("                exitCodes);\n");
+        source.append("    }\n");
+
+        if (usesReflection) {
+            source.append("\n");
+            source.append("    private static Field field(Class<?> type, String name) {\n");
+            source.append("        try {\n");
+            source.append("            return type.getDeclaredField(name);\n");
+            source.append("        } catch (NoSuchFieldException e) {\n");
+            source.append("            throw new IllegalStateException(\"Generated metadata for \" + type.getName() + \" is out of date\", e);\n");
+            source.append("        }\n");
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    //
+    // Field inspection, this follows MetadataLoader.loadInjectionMetadata()
+    //
+
+    private void addInjectionMetadata(TypeElement type, List<VariableElement> path)
+            throws UnsupportedCommandException {
+        if (type.getKind() == ElementKind.INTERFACE) {
+            return;
+        }
+        for (TypeElement cls = type; cls != null && !isObject(cls); cls = superclass(cls)) {
+            for (VariableElement field : ElementFilter.fieldsIn(cls.getEnclosedElements())) {
+                List<VariableElement> fieldPath = new ArrayList<VariableElement>(path);
+                fieldPath.add(field);
+
+                if (hasAnnotation(field, JAVAX_INJECT)) {
+                    addInjection(field, fieldPath);
+                }
+                if (hasAnnotation(field, GUICE_INJECT)) {
+                    addInjection(field, fieldPath);
+                }
+
+                Option option = field.getAnnotation(Option.class);
+                DefaultOption defaultOption = field.getAnnotation(DefaultOption.class);
+                if (option != null) {
+                    addOption(type, field, fieldPath, option, defaultOption != null);
+                }
+                if (option == null && defaultOption != null) {
+                    throw new UnsupportedCommandException("field %s has @DefaultOption but no @Option", field);
+                }
+
+                Arguments arguments = field.getAnnotation(Arguments.class);
+                if (arguments != null) {
+                    addArguments(field, fieldPath, arguments);
+                }
+            }
+        }
+    }
+
+    private void addInjection(VariableElement field, List<VariableElement> path) throws UnsupportedCommandException {
+        TypeMirror fieldType = types.erasure(field.asType());
+        for (String metadataType : METADATA_TYPES) {
+            if (fieldType.toString().equals(metadataType)) {
+                injections.append("        injection.addMetadataInjection(").append(accessor(path)).append(");\n");
+                return;
+            }
+        }
+
+        if (fieldType.getKind() != TypeKind.DECLARED)
+            throw new UnsupportedCommandException("field %s with @Inject is not of a class type", field);
+        addInjectionMetadata((TypeElement) types.asElement(fieldType), path);
+    }
+
+    private void addOption(TypeElement type, VariableElement field, List<VariableElement> path, Option option,
+            boolean isDefaultOption) throws UnsupportedCommandException {
+        String title = option.title().isEmpty() ? field.getSimpleName().toString() : option.title();
+
+        int arity = option.arity();
+        if (arity < 0 && arity != Integer.MIN_VALUE)
+            throw new UnsupportedCommandException("invalid arity for option %s", title);
+        if (arity < 0) {
+            String fieldType = field.asType().toString();
+            arity = fieldType.equals("boolean") || fieldType.equals("java.lang.Boolean") ? 0 : 1;
+        }
+
+        String allowedValues = option.allowedValues().length == 0 ? "null" : "ImmutableList.<String> of("
+                + literals(option.allowedValues()) + ")";
+
+        StringBuilder code = injections;
+        code.append("        injection.addOption(new OptionMetadata(OptionType.").append(option.type().name()).append(",\n");
+        code.append("                ImmutableList.<String> of(").append(literals(option.name())).append("),\n");
+        code.append("                ").append(literal(title)).append(",\n");
+        code.append("                ").append(literal(option.description())).append(",\n");
+        code.append("                ").append(arity).append(",\n");
+        code.append("                ").append(option.required()).append(",\n");
+        code.append("                ").append(option.hidden()).append(",\n");
+        code.append("                ").append(option.override()).append(",\n");
+        code.append("                ").append(option.sealed()).append(",\n");
+        code.append("                ").append(allowedValues).append(",\n");
+        code.append("                ").append(option.ignoreCase()).append(",\n");
+        code.append("                ").append(option.completionBehaviour()).append(",\n");
+        code.append("                ").append(literal(option.completionCommand())).append(",\n");
+        code.append("                ").append(accessor(path)).append("),\n");
+        code.append("            ").append(isDefaultOption).append(", ")
+                .append(typeName(isAccessible(type) ? type.asType() : commandType.asType())).append(".class, ")
+                .append(literal(fieldName(field))).append(");\n");
+    }
+
+    private void addArguments(VariableElement field, List<VariableElement> path, Arguments arguments)
+            throws UnsupportedCommandException {
+        String[] titles = arguments.title();
+        if (titles.length == 1 && titles[0].equals("")) {
+            titles = new String[] { field.getSimpleName().toString() };
+        }
+        int arity = arguments.arity() <= 0 ? Integer.MIN_VALUE : arguments.arity();
+
+        StringBuilder code = injections;
+        code.append("        injection.addArguments(new ArgumentsMetadata(ImmutableList.<String> of(")
+                .append(literals(titles)).append("),\n");
+        code.append("                ").append(literal(arguments.description())).append(",\n");
+        code.append("                ").append(literal(arguments.usage())).append(",\n");
+        code.append("                ").append(arguments.required()).append(",\n");
+        code.append("                ").append(arity == Integer.MIN_VALUE ? "Integer.MIN_VALUE" : arity).append(",\n");
+        code.append("                ").append(arguments.completionBehaviour()).append(",\n");
+        code.append("                ").append(literal(arguments.completionCommand())).append(",\n");
+        code.append("                StdinArguments.").append(arguments.stdin().name()).append(",\n");
+        code.append("                ").append(accessor(path)).append("),\n");
+        code.append("            ").append(literal(fieldName(field))).append(");\n");
+    }
+
+    //
+    // Accessor generation
+    //
+
+    /**
+     * Generates an accessor for a field path, this accesses the fields directly
+     * where possible and otherwise falls back to a reflective accessor
+     */
+    private String accessor(List<VariableElement> path) throws UnsupportedCommandException {
+        String direct = directAccessor(path);
+        if (direct != null)
+            return direct;
+
+        usesReflection = true;
+        StringBuilder accessor = new StringBuilder("new Accessor(");
+        for (int i = 0; i < path.size(); i++) {
+            VariableElement field = path.get(i);
+            TypeElement declaringType = (TypeElement) field.getEnclosingElement();
+            if (!isAccessible(declaringType))
+                throw new UnsupportedCommandException("class %s is not accessible", declaringType);
+            if (i > 0)
+                accessor.append(", ");
+            accessor.append("field(").append(typeName(declaringType.asType())).append(".class, ")
+                    .append(literal(field.getSimpleName().toString())).append(")");
+        }
+        return accessor.append(")").toString();
+    }
+
+    private String directAccessor(List<VariableElement> path) {
+        // Every field must be accessible and every intermediate object
+        // creatable from generated code
+        TypeMirror ownerType = commandType.asType();
+        List<String> ownerTypes = new ArrayList<String>();
+        for (int i = 0; i < path.size(); i++) {
+            VariableElement field = path.get(i);
+            if (!isAccessible(field) || !isAccessibleType(ownerType))
+                return null;
+            ownerTypes.add(typeName(ownerType));
+            ownerType = field.asType();
+            if (i < path.size() - 1 && newInstance(ownerType) == null)
+                return null;
+        }
+
+        VariableElement last = path.get(path.size() - 1);
+        TypeMirror fieldType = last.asType();
+        String erasedType = types.erasure(fieldType).toString();
+        if (erasedType.equals("java.lang.Iterable") || erasedType.equals("java.util.Iterator"))
+            // Streamed fields are bound by the reflective accessor
+            return null;
+        String valueType;
+        String javaType;
+        String collectionFactory = null;
+        boolean multiValued = types.isAssignable(types.erasure(fieldType), collectionType);
+        if (multiValued) {
+            TypeMirror itemType = collectionItemType(fieldType);
+            if (itemType == null || !isAccessibleType(itemType) || !((DeclaredType) itemType).getTypeArguments().isEmpty())
+                return null;
+            collectionFactory = collectionFactory(fieldType);
+            if (collectionFactory == null || !isAccessibleType(fieldType))
+                return null;
+            valueType = typeName(fieldType);
+            javaType = typeName(itemType);
+        } else if (fieldType.getKind().isPrimitive()) {
+            valueType = types.boxedClass((PrimitiveType) fieldType).getQualifiedName().toString();
+            javaType = fieldType.toString();
+        } else if (fieldType.getKind() == TypeKind.DECLARED && isAccessibleType(fieldType)) {
+            valueType = typeName(fieldType);
+            javaType = valueType;
+        } else {
+            return null;
+        }
+
+        String indent = "                ";
+        StringBuilder code = new StringBuilder();
+        code.append("new Accessor(").append(literal(accessorName(path))).append(", ").append(javaType)
+                .append(".class, ").append(multiValued).append(") {\n");
+
+        String targetType = ownerTypes.get(ownerTypes.size() - 1);
+        if (path.size() > 1) {
+            code.append(indent).append("    @Override\n");
+            code.append(indent).append("    public Object getValue(Object instance) {\n");
+            code.append(indent).append("        ").append(ownerTypes.get(0)).append(" value0 = (").append(ownerTypes.get(0))
+                    .append(") instance;\n");
+            for (int i = 1; i < path.size(); i++) {
+                String type = ownerTypes.get(i);
+                String field = path.get(i - 1).getSimpleName().toString();
+                code.append(indent).append("        ").append(type).append(" value").append(i).append(" = value")
+                        .append(i - 1).append(".").append(field).append(";\n");
+                code.append(indent).append("        if (value").append(i).append(" == null) {\n");
+                code.append(indent).append("            value").append(i).append(" = ")
+                        .append(newInstance(path.get(i - 1).asType())).append(";\n");
+                code.append(indent).append("            value").append(i - 1).append(".").append(field).append(" = value")
+                        .append(i).append(";\n");
+                code.append(indent).append("        }\n");
+            }
+            code.append(indent).append("        return value").append(path.size() - 1).append(";\n");
+            code.append(indent).append("    }\n\n");
+        }
+
+        String field = last.getSimpleName().toString();
+        code.append(indent).append("    @Override\n");
+        code.append(indent).append("    public void addValues(Object instance, Iterable<?> values) {\n");
+        code.append(indent).append("        if (Iterables.isEmpty(values)) {\n");
+        code.append(indent).append("            return;\n");
+        code.append(indent).append("        }\n");
+        code.append(indent).append("        ").append(targetType).append(" target = (").append(targetType)
+                .append(") getValue(instance);\n");
+        if (multiValued) {
+            code.append(indent).append("        ").append(valueType).append(" collection = target.").append(field)
+                    .append(";\n");
+            code.append(indent).append("        if (collection == null) {\n");
+            code.append(indent).append("            collection = ").append(collectionFactory).append(";\n");
+            code.append(indent).append("            target.").append(field).append(" = collection;\n");
+            code.append(indent).append("        }\n");
+            code.append(indent).append("        Iterables.addAll(collection, values);\n");
+        } else {
+            code.append(indent).append("        target.").append(field).append(" = (").append(valueType)
+                    .append(") Iterables.getLast(values);\n");
+        }
+        code.append(indent).append("    }\n");
+        code.append(indent).append("}");
+        return code.toString();
+    }
+
+    private String accessorName(List<VariableElement> path) {
+        // Same naming as reflective accessors
+        StringBuilder name = new StringBuilder(path.get(0).getEnclosingElement().getSimpleName());
+        for (VariableElement field : path) {
+            name.append('.').append(field.getSimpleName());
+        }
+        return name.toString();
+    }
+
+    private TypeMirror collectionItemType(TypeMirror type) {
+        if (types.isSameType(types.erasure(type), collectionType)) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED)
+                return null;
+            return arguments.get(0);
+        }
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            if (types.isAssignable(types.erasure(supertype), collectionType)) {
+                return collectionItemType(supertype);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the expression used to create a collection, this follows the
+     * behaviour of {@link com.github.rvesse.airline.Accessor}
+     */
+    private String collectionFactory(TypeMirror type) {
+        String rawType = types.erasure(type).toString();
+        if (rawType.equals("java.util.Collection") || rawType.equals("java.util.List"))
+            return "new java.util.ArrayList()";
+        if (rawType.equals("java.util.Set"))
+            return "new java.util.HashSet()";
+        if (rawType.equals("java.util.SortedSet"))
+            return "new java.util.TreeSet()";
+        return newInstance(type);
+    }
+
+    /**
+     * Gets the expression used to create an instance of the type or
+     * {@code null} if generated code cannot create it
+     */
+    private String newInstance(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED || !isAccessibleType(type))
+            return null;
+        TypeElement element = (TypeElement) types.asElement(type);
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT))
+            return null;
+        if (element.getNestingKind() == NestingKind.MEMBER && !element.getModifiers().contains(Modifier.STATIC))
+            return null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            // Reflection only uses public constructors
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+                return "new " + typeName(type) + "()";
+        }
+        return null;
+    }
+
+    //
+    // Helpers
+    //
+
+    private boolean isAccessible(VariableElement field) {
+        if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.FINAL))
+            return false;
+        TypeElement declaringType = (TypeElement) field.getEnclosingElement();
+        return isAccessible(declaringType) && isVisible(field.getModifiers(), declaringType);
+    }
+
+    private boolean isAccessibleType(TypeMirror type) {
+        if (type.getKind().isPrimitive())
+            return true;
+        if (type.getKind() != TypeKind.DECLARED)
+            return false;
+        return isAccessible((TypeElement) types.asElement(type));
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        for (TypeElement t = type; t != null; t = enclosingType(t)) {
+            if (!isVisible(t.getModifiers(), t))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isVisible(java.util.Set<Modifier> modifiers, TypeElement owner) {
+        if (modifiers.contains(Modifier.PUBLIC))
+            return true;
+        if (modifiers.contains(Modifier.PRIVATE))
+            return false;
+        return elements.getPackageOf(owner).equals(commandPackage);
+    }
+
+    private TypeElement enclosingType(TypeElement type) {
+        return type.getEnclosingElement() instanceof TypeElement ? (TypeElement) type.getEnclosingElement() : null;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED)
+            return null;
+        return (TypeElement) types.asElement(superclass);
+    }
+
+    private boolean isObject(TypeElement type) {
+        return type.getQualifiedName().contentEquals("java.lang.Object");
+    }
+
+    private boolean hasAnnotation(VariableElement field, String annotationType) {
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(
+                    annotationType))
+                return true;
+        }
+        return false;
+    }
+
+    private String typeName(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private String fieldName(VariableElement field) {
+        return ((TypeElement) field.getEnclosingElement()).getQualifiedName() + "." + field.getSimpleName();
+    }
+
+    private String literal(String value) {
+        return value == null ? "null" : elements.getConstantExpression(value);
+    }
+
+    private String literals(String[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0)
+                builder.append(", ");
+            builder.append(literal(value));
+        }
+        return builder.toString();
+    }
+
+    private String mutableListOrNull(String[] values) {
+        if (values.length == 0)
+            return "null";
+        return "new java.util.ArrayList<String>(Arrays.<String> asList(" + literals(values) + "))";
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.model.CommandMetadataFactory;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor that generates a {@link CommandMetadataFactory} for
+ * each class annotated with {@link Command}
+ * <p>
+ * The generated factories build the command metadata from constants and
+ * access the annotated fields directly so neither annotation scanning nor
+ * reflective field access is needed at runtime. Each factory is named so that
+ * {@link com.github.rvesse.airline.model.MetadataLoader} finds it directly
+ * from the command class and is also registered in {@code META-INF/services}.
+ * </p>
+ * <p>
+ * Commands the processor cannot fully describe, for example those that use
+ * {@link com.github.rvesse.airline.Group} annotations, are skipped with a note
+ * and continue to have their metadata loaded via reflection. Individual fields
+ * that are not accessible from generated code, such as private fields, are
+ * accessed reflectively but still avoid annotation scanning.
+ * </p>
+ */
+@SupportedAnnotationTypes("com.github.rvesse.airline.Command")
+public class CommandMetadataProcessor extends AbstractProcessor {
+
+    static final String SERVICES_FILE = "META-INF/services/" + CommandMetadataFactory.class.getName();
+
+    private final Set<String> factories = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Command.class)) {
+            if (element.getKind() != ElementKind.CLASS)
+                continue;
+            TypeElement commandType = (TypeElement) element;
+
+            CommandMetadataGenerator generator = new CommandMetadataGenerator(processingEnv, commandType);
+            try {
+                factories.add(generator.generate());
+            } catch (UnsupportedCommandException e) {
+                processingEnv.getMessager().printMessage(
+                        Kind.NOTE,
+                        String.format("Metadata for command %s will be loaded via reflection: %s",
+                                commandType.getQualifiedName(), e.getMessage()), commandType);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.ERROR,
+                        String.format("Failed to generate metadata for command %s: %s", commandType.getQualifiedName(), e),
+                        commandType);
+            }
+        }
+
+        if (roundEnv.processingOver()) {
+            writeServicesFile();
+        }
+        return false;
+    }
+
+    private void writeServicesFile() {
+        if (factories.isEmpty())
+            return;
+
+        Filer filer = processingEnv.getFiler();
+
+        // Preserve existing registrations, this matters for incremental
+        // compilation where only some commands are reprocessed
+        Set<String> registered = new TreeSet<String>(factories);
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(),
+                    StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        registered.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // No existing registrations
+        }
+
+        try {
+            FileObject services = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+            Writer writer = new OutputStreamWriter(services.openOutputStream(), StandardCharsets.UTF_8);
+            try {
+                for (String factory : registered) {
+                    writer.write(factory);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    String.format("Failed to write %s: %s", SERVICES_FILE, e));
+        }
+    }
+}
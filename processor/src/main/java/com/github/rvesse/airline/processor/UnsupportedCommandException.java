@@ -0,0 +1,13 @@
+package com.github.rvesse.airline.processor;
+
+/**
+ * Thrown when the metadata for a command cannot be generated at compile time,
+ * such commands fall back to having their metadata loaded via reflection
+ */
+class UnsupportedCommandException extends Exception {
+    private static final long serialVersionUID = -3497164553409657016L;
+
+    UnsupportedCommandException(String message, Object... args) {
+        super(String.format(message, args));
+    }
+}
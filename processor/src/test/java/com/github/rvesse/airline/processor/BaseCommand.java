@@ -0,0 +1,12 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Option;
+import com.github.rvesse.airline.OptionType;
+
+public abstract class BaseCommand {
+    @Option(type = OptionType.GLOBAL, name = { "-v", "--verbose" }, description = "Verbose output")
+    public boolean verbose;
+
+    @Option(name = "--name", description = "Name")
+    String name;
+}
@@ -0,0 +1,29 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.HelpOption;
+import com.github.rvesse.airline.Option;
+import com.github.rvesse.airline.model.CommandMetadata;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Set;
+
+@Command(name = "generated", description = "Command with generated metadata", exitCodes = { 0, 1 }, exitDescriptions = { "OK", "Error" })
+public class GeneratedCommand extends BaseCommand {
+    @Inject
+    public HelpOption helpOption;
+
+    @Inject
+    public CommandMetadata metadata;
+
+    @Option(name = { "-c", "--count" }, allowedValues = { "1", "2", "3" })
+    public int count;
+
+    @Option(name = "--tag", arity = 1)
+    public Set<String> tags;
+
+    @Arguments(title = "file", description = "Files")
+    public List<String> files;
+}
@@ -0,0 +1,12 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Group;
+import com.github.rvesse.airline.Option;
+
+@Group(name = "group")
+@Command(name = "grouped")
+public class GroupedCommand {
+    @Option(name = "--flag")
+    public boolean flag;
+}
@@ -0,0 +1,12 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+public class NestedCommands {
+    @Command(name = "nested")
+    public static class Nested {
+        @Option(name = "--flag")
+        public boolean flag;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Arguments;
+import com.github.rvesse.airline.Command;
+import com.github.rvesse.airline.Option;
+
+import java.util.List;
+
+@Command(name = "private")
+public class PrivateFieldsCommand {
+    @Option(name = "--flag")
+    private boolean flag;
+
+    @Arguments
+    private List<Integer> values;
+
+    public boolean isFlag() {
+        return flag;
+    }
+
+    public List<Integer> getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.rvesse.airline.processor;
+
+import com.github.rvesse.airline.Accessor;
+import com.github.rvesse.airline.Cli;
+import com.github.rvesse.airline.SingleCommand;
+import com.github.rvesse.airline.model.CommandMetadata;
+import com.github.rvesse.airline.model.CommandMetadataFactory;
+import com.github.rvesse.airline.model.MetadataLoader;
+import com.github.rvesse.airline.model.OptionMetadata;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ServiceLoader;
+
+public class TestCommandMetadataProcessor {
+
+    private static Accessor accessor(OptionMetadata option) {
+        return option.getAccessors().iterator().next();
+    }
+
+    private static OptionMetadata findOption(Iterable<OptionMetadata> options, String name) {
+        for (OptionMetadata option : options) {
+            if (option.getOptions().contains(name))
+                return option;
+        }
+        Assert.fail("No option " + name);
+        return null;
+    }
+
+    @Test
+    public void factories_are_registered() {
+        boolean found = false;
+        for (CommandMetadataFactory factory : ServiceLoader.load(CommandMetadataFactory.class)) {
+            Assert.assertNotEquals(factory.getCommandType(), GroupedCommand.class);
+            if (factory.getCommandType().equals(GeneratedCommand.class)) {
+                found = true;
+                Assert.assertEquals(factory.getClass().getName(), GeneratedCommand.class.getName() + "_AirlineMetadata");
+            }
+        }
+        Assert.assertTrue(found);
+    }
+
+    @Test
+    public void factories_are_found_by_name() throws ClassNotFoundException {
+        Assert.assertEquals(MetadataLoader.getFactoryClassName(GeneratedCommand.class),
+                GeneratedCommand.class.getName() + "_AirlineMetadata");
+
+        // Nested commands are named after their enclosing classes
+        String name = MetadataLoader.getFactoryClassName(NestedCommands.Nested.class);
+        Assert.assertEquals(name, NestedCommands.class.getPackage().getName() + ".NestedCommands_Nested_AirlineMetadata");
+        Assert.assertTrue(CommandMetadataFactory.class.isAssignableFrom(Class.forName(name)));
+        Assert.assertEquals(MetadataLoader.loadCommand(NestedCommands.Nested.class).getName(), "nested");
+
+        // Commands without a factory still load via reflection
+        Assert.assertEquals(MetadataLoader.loadCommand(GroupedCommand.class).getName(), "grouped");
+    }
+
+    @Test
+    public void generated_metadata() {
+        CommandMetadata metadata = MetadataLoader.loadCommand(GeneratedCommand.class);
+
+        Assert.assertEquals(metadata.getName(), "generated");
+        Assert.assertEquals(metadata.getDescription(), "Command with generated metadata");
+        Assert.assertEquals(metadata.getType(), GeneratedCommand.class);
+        Assert.assertEquals(metadata.getExitCodes().get(0), "OK");
+        Assert.assertEquals(metadata.getExitCodes().get(1), "Error");
+
+        Assert.assertEquals(metadata.getGlobalOptions().size(), 1);
+        OptionMetadata verbose = metadata.getGlobalOptions().get(0);
+        Assert.assertEquals(verbose.getArity(), 0);
+        Assert.assertEquals(verbose.getJavaType(), boolean.class);
+        Assert.assertEquals(accessor(verbose).getName(), "BaseCommand.verbose");
+
+        OptionMetadata count = findOption(metadata.getCommandOptions(), "--count");
+        Assert.assertEquals(count.getTitle(), "count");
+        Assert.assertEquals(count.getArity(), 1);
+        Assert.assertEquals(count.getAllowedValues(), ImmutableSet.of("1", "2", "3"));
+
+        OptionMetadata tags = findOption(metadata.getCommandOptions(), "--tag");
+        Assert.assertTrue(tags.isMultiValued());
+        Assert.assertEquals(tags.getJavaType(), String.class);
+
+        OptionMetadata help = findOption(metadata.getCommandOptions(), "--help");
+        Assert.assertEquals(accessor(help).getName(), "GeneratedCommand.helpOption.help");
+
+        Assert.assertEquals(metadata.getArguments().getTitle(), ImmutableList.of("file"));
+        Assert.assertTrue(metadata.getArguments().isMultiValued());
+
+        // Accessible fields are accessed directly rather than via reflection
+        Assert.assertNotEquals(accessor(count).getClass(), Accessor.class);
+        Assert.assertNotEquals(accessor(help).getClass(), Accessor.class);
+
+        // HelpOption injects its metadata into private fields
+        Assert.assertEquals(metadata.getMetadataInjections().size(), 4);
+    }
+
+    @Test
+    public void generated_metadata_parse() {
+        Cli<Object> cli = Cli.builder("test").withCommand(GeneratedCommand.class).build();
+        GeneratedCommand cmd = (GeneratedCommand) cli.parse("-v", "generated", "--name", "test", "-c", "2", "--tag",
+                "a", "--tag", "b", "--help", "x", "y");
+
+        Assert.assertTrue(cmd.verbose);
+        Assert.assertEquals(cmd.name, "test");
+        Assert.assertEquals(cmd.count, 2);
+        Assert.assertEquals(cmd.tags, ImmutableSet.of("a", "b"));
+        Assert.assertTrue(cmd.helpOption.help);
+        Assert.assertEquals(cmd.files, ImmutableList.of("x", "y"));
+        Assert.assertNotNull(cmd.metadata);
+        Assert.assertEquals(cmd.metadata.getName(), "generated");
+    }
+
+    @Test
+    public void private_fields_use_reflection() {
+        CommandMetadata metadata = MetadataLoader.loadCommand(PrivateFieldsCommand.class);
+        OptionMetadata flag = metadata.getCommandOptions().get(0);
+        Assert.assertEquals(accessor(flag).getClass(), Accessor.class);
+        Assert.assertEquals(accessor(flag).getName(), "PrivateFieldsCommand.flag");
+
+        PrivateFieldsCommand cmd = SingleCommand.singleCommand(PrivateFieldsCommand.class).parse("--flag", "1", "2");
+        Assert.assertTrue(cmd.isFlag());
+        Assert.assertEquals(cmd.getValues(), ImmutableList.of(1, 2));
+    }
+
+    @Test
+    public void unsupported_commands_fall_back_to_reflection() {
+        CommandMetadata metadata = MetadataLoader.loadCommand(GroupedCommand.class);
+        Assert.assertEquals(metadata.getGroups().size(), 1);
+        Assert.assertEquals(accessor(metadata.getCommandOptions().get(0)).getClass(), Accessor.class);
+
+        GroupedCommand cmd = SingleCommand.singleCommand(GroupedCommand.class).parse("--flag");
+        Assert.assertTrue(cmd.flag);
+    }
+}